@@ -10,7 +10,40 @@ repositories {
     mavenCentral()
 }
 
+sourceSets {
+    create("jmh") {
+        compileClasspath += sourceSets["main"].output
+        runtimeClasspath += sourceSets["main"].output
+    }
+}
+
 dependencies {
+    "jmhImplementation"("org.openjdk.jmh:jmh-core:1.37")
+    "jmhAnnotationProcessor"("org.openjdk.jmh:jmh-generator-annprocess:1.37")
+}
+
+tasks.register<JavaExec>("jmh") {
+    group = "benchmark"
+    description = "Запускает JMH-бенчмарки (фильтр и опции JMH передаются через -Pjmh=\"...\")"
+    classpath = sourceSets["jmh"].runtimeClasspath
+    mainClass.set("org.openjdk.jmh.Main")
+    args = (project.findProperty("jmh") as String? ?: "").split(" ").filter { it.isNotBlank() }
+}
+
+tasks.register<JavaExec>("footprint") {
+    group = "benchmark"
+    description = "Выводит потребление кучи и памяти вне кучи хранилищами маршрутов и время полной сборки мусора (-Prows=N)"
+    classpath = sourceSets["jmh"].runtimeClasspath
+    mainClass.set("org.wineeenottt.Benchmarks.StoreFootprint")
+    args = listOf(project.findProperty("rows") as String? ?: "1000000")
+}
+
+tasks.register<JavaExec>("loadgen") {
+    group = "benchmark"
+    description = "Нагружает сервер команд запросами и выводит количество запросов в секунду и процентили задержки (-Pargs=\"<порт> [подключений] [секунд] [процент записи]\")"
+    classpath = sourceSets["main"].runtimeClasspath
+    mainClass.set("org.wineeenottt.Network.LoadGenerator")
+    args = (project.findProperty("args") as String? ?: "").split(" ").filter { it.isNotBlank() }
 }
 
 application {
@@ -0,0 +1,82 @@
+package org.wineeenottt.Benchmarks;
+
+import org.wineeenottt.Collection.Coordinates;
+import org.wineeenottt.Collection.Location;
+import org.wineeenottt.Collection.Route;
+
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Вспомогательный класс для генерации синтетических маршрутов, используемых в бенчмарках.
+ * Значения полей генерируются детерминированно, чтобы результаты разных запусков были сравнимы.
+ */
+public final class BenchmarkRoutes {
+
+    /**
+     * Названия остановок, из которых выбираются имена мест отправления и назначения.
+     */
+    private static final String[] LOCATION_NAMES = {
+            "NevskyProspekt", "MoskovskyRailway", "Vasileostrovskaya", "LakhtaCenter", "MoskovskyProspekt",
+            "Petrogradskaya", "PulkovoAirport", "KrestovskyIsland", "Piterland", "ParkKultury"
+    };
+
+    /**
+     * Дата, от которой отсчитываются даты создания маршрутов.
+     */
+    private static final ZonedDateTime BASE_DATE = ZonedDateTime.of(2025, 2, 27, 12, 44, 20, 650883000, ZoneId.of("Europe/Moscow"));
+
+    private BenchmarkRoutes() {
+    }
+
+    /**
+     * Генерирует маршруты с ID от 1 до count в перемешанном порядке.
+     *
+     * @param count количество маршрутов.
+     * @param seed  зерно генератора случайных чисел.
+     * @return список маршрутов.
+     */
+    public static List<Route> generate(int count, long seed) {
+        Random random = new Random(seed);
+        List<Route> routes = new ArrayList<>(count);
+        for (int id = 1; id <= count; id++) {
+            routes.add(route(id, random));
+        }
+        Collections.shuffle(routes, random);
+        return routes;
+    }
+
+    /**
+     * Генерирует один маршрут с заданным ID.
+     *
+     * @param id     ID маршрута.
+     * @param random генератор случайных чисел.
+     * @return маршрут.
+     */
+    public static Route route(int id, Random random) {
+        return new Route(
+                id,
+                "Route" + id,
+                new Coordinates(random.nextDouble() * 750, random.nextFloat() * 100),
+                BASE_DATE.plusSeconds(id),
+                location(random),
+                location(random),
+                2 + (long) random.nextInt(10_000)
+        );
+    }
+
+    /**
+     * Генерирует случайное место.
+     *
+     * @param random генератор случайных чисел.
+     * @return объект Location.
+     */
+    private static Location location(Random random) {
+        return new Location(59 + random.nextFloat(), 30 + random.nextInt(2), random.nextDouble() * 30,
+                LOCATION_NAMES[random.nextInt(LOCATION_NAMES.length)]);
+    }
+}
@@ -0,0 +1,129 @@
+package org.wineeenottt.Benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.wineeenottt.Collection.Route;
+import org.wineeenottt.Collection.RouteInterner;
+import org.wineeenottt.WorkWithFile.FileManager;
+import org.wineeenottt.WorkWithFile.RouteFileIndex;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнивает обычный CSV файл с блочным сжатым файлом ({@link org.wineeenottt.WorkWithFile.BlockCompressedFile}):
+ * загрузку, сохранение, построение индекса и чтение одного маршрута по индексу. Размер файла выводится при подготовке.
+ * Запуск: {@code ./gradlew jmh -Pjmh="CompressedStorageBenchmark"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+public class CompressedStorageBenchmark {
+
+    /**
+     * Количество маршрутов в коллекции.
+     */
+    @Param({"1000000"})
+    public int rows;
+
+    /**
+     * true - блочный сжатый файл, false - обычный CSV файл.
+     */
+    @Param({"false", "true"})
+    public boolean compressed;
+
+    /**
+     * Маршруты коллекции.
+     */
+    private List<Route> routes;
+
+    /**
+     * Временный файл коллекции.
+     */
+    private File file;
+
+    /**
+     * Индекс файла для чтения отдельных маршрутов.
+     */
+    private RouteFileIndex index;
+
+    /**
+     * Генератор номеров записей индекса.
+     */
+    private final SplittableRandom random = new SplittableRandom(42);
+
+    /**
+     * Генерирует маршруты, записывает их в файл заданного формата и строит индекс.
+     *
+     * @throws IOException если не удалось записать файл.
+     */
+    @Setup
+    public void setUp() throws IOException {
+        file = File.createTempFile("routes", ".csv");
+        file.deleteOnExit();
+        routes = BenchmarkRoutes.generate(rows, 42);
+        System.setProperty(FileManager.COMPRESSION_PROPERTY, Boolean.toString(compressed));
+        new FileManager().writeCsv(file.getPath(), routes);
+        index = new FileManager().indexCsvFile(file.getPath());
+        System.out.println("Размер файла: " + file.length() / 1024 + " КБ");
+    }
+
+    /**
+     * Удаляет временный файл.
+     */
+    @TearDown
+    public void tearDown() {
+        file.delete();
+    }
+
+    /**
+     * Загружает коллекцию из файла.
+     *
+     * @return маршруты.
+     * @throws IOException если произошла ошибка чтения.
+     */
+    @Benchmark
+    public List<Route> load() throws IOException {
+        return new FileManager(new RouteInterner()).parseCsvFile(file.getPath());
+    }
+
+    /**
+     * Сохраняет коллекцию в файл.
+     *
+     * @throws IOException если произошла ошибка записи.
+     */
+    @Benchmark
+    public void save() throws IOException {
+        new FileManager().writeCsv(file.getPath(), routes);
+    }
+
+    /**
+     * Строит индекс файла без построения маршрутов.
+     *
+     * @return индекс.
+     * @throws IOException если произошла ошибка чтения.
+     */
+    @Benchmark
+    public RouteFileIndex buildIndex() throws IOException {
+        return new FileManager().indexCsvFile(file.getPath());
+    }
+
+    /**
+     * Читает по индексу тысячу маршрутов из случайных мест файла.
+     *
+     * @return последний прочитанный маршрут.
+     */
+    @Benchmark
+    public Route readRandom() {
+        Route route = null;
+        for (int i = 0; i < 1000; i++) {
+            route = index.read(random.nextInt(index.size()));
+        }
+        return route;
+    }
+}
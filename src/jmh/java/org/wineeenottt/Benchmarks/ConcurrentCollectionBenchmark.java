@@ -0,0 +1,213 @@
+package org.wineeenottt.Benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.wineeenottt.Collection.CollectionManager;
+import org.wineeenottt.Collection.Route;
+import org.wineeenottt.Collection.RouteInterner;
+import org.wineeenottt.Collection.TreeRouteStore;
+import org.wineeenottt.WorkWithFile.MutationLog;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Измеряет пропускную способность CollectionManager, общего для нескольких потоков: чтение без записи
+ * (группа read), чтение вместе с потоком, который добавляет новые маршруты и удаляет самые старые (группа mixed),
+ * и одновременная запись из нескольких потоков вместе с чтением (группа writeHeavy).
+ * Изменения применяются либо в вызывающих потоках под блокировкой записи, либо единственным записывающим потоком
+ * пачками (параметр writerLoop), с журналом изменений на диске или без него (параметр journal).
+ * Масштабирование по числу потоков видно при запуске с разным количеством потоков в группе:
+ * {@code ./gradlew jmh -Pjmh="ConcurrentCollectionBenchmark.read -tg 4"},
+ * {@code ./gradlew jmh -Pjmh="ConcurrentCollectionBenchmark.mixed -tg 8,1"} или
+ * {@code ./gradlew jmh -Pjmh="ConcurrentCollectionBenchmark.writeHeavy -tg 2,8 -p journal=true"}.
+ * После каждого прогона проверяется, что все добавленные маршруты получили разные ID и ни одно изменение не потеряно.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-D" + MutationLog.COMPACTION_PROPERTY + "=" + Long.MAX_VALUE})
+public class ConcurrentCollectionBenchmark {
+
+    /**
+     * Количество маршрутов в коллекции.
+     */
+    @Param({"100000"})
+    public int size;
+
+    /**
+     * true - изменения применяет единственный записывающий поток пачками, false - вызывающие потоки.
+     */
+    @Param({"false", "true"})
+    public boolean writerLoop;
+
+    /**
+     * true - каждое изменение записывается в журнал изменений со сбросом на диск.
+     */
+    @Param({"false", "true"})
+    public boolean journal;
+
+    /**
+     * Общая для потоков группы коллекция.
+     */
+    private CollectionManager collection;
+
+    /**
+     * Образцы маршрутов, поля которых используются при добавлении.
+     */
+    private List<Route> samples;
+
+    /**
+     * Количество маршрутов, добавленных записывающими потоками.
+     */
+    private final AtomicInteger added = new AtomicInteger();
+
+    /**
+     * ID следующего маршрута, который удаляет записывающий поток.
+     */
+    private final AtomicInteger nextRemoved = new AtomicInteger(1);
+
+    /**
+     * Временный CSV файл, рядом с которым лежит журнал изменений, или null без журнала.
+     */
+    private File file;
+
+    /**
+     * Заполняет коллекцию маршрутами с ID от 1 до size, открывает пустой журнал и запускает записывающий поток,
+     * если они нужны.
+     *
+     * @throws IOException если не удалось создать журнал.
+     */
+    @Setup(Level.Iteration)
+    public void setUp() throws IOException {
+        samples = BenchmarkRoutes.generate(size, 42);
+        MutationLog mutationLog = null;
+        if (journal) {
+            file = File.createTempFile("routes", ".csv");
+            file.deleteOnExit();
+            mutationLog = new MutationLog(file.getPath());
+            mutationLog.recover(samples, 0);
+        }
+        collection = new CollectionManager(samples, new TreeRouteStore(), new RouteInterner(), mutationLog);
+        if (writerLoop) {
+            collection.startWriterLoop();
+        }
+        added.set(0);
+        nextRemoved.set(1);
+    }
+
+    /**
+     * Проверяет, что наибольший ID вырос ровно на количество добавленных маршрутов, а в коллекции остались
+     * все маршруты, которые не были удалены.
+     */
+    @TearDown(Level.Iteration)
+    public void verify() {
+        int expectedMaxId = size + added.get();
+        if (collection.getMaxId() != expectedMaxId) {
+            throw new IllegalStateException("Наибольший ID " + collection.getMaxId() + ", ожидался " + expectedMaxId);
+        }
+        long expectedCount = expectedMaxId - (nextRemoved.get() - 1);
+        if (collection.getDistanceStatistics().getCount() != expectedCount) {
+            throw new IllegalStateException("В коллекции " + collection.getDistanceStatistics().getCount()
+                    + " маршрутов, ожидалось " + expectedCount);
+        }
+        for (int id = nextRemoved.get(); id <= expectedMaxId; id += Math.max(1, size / 1000)) {
+            if (!collection.containsIdRoute(id)) {
+                throw new IllegalStateException("Маршрут с ID " + id + " потерян");
+            }
+        }
+        collection.stopWriterLoop();
+        if (file != null) {
+            new File(file.getPath() + ".wal").delete();
+            file.delete();
+            file = null;
+        }
+    }
+
+    /**
+     * Чтение без записи: сумма расстояний, подсчет по диапазону расстояний и поиск по ID.
+     *
+     * @return результат чтения.
+     */
+    @Benchmark
+    @Group("read")
+    public long readOnly() {
+        return readRoutes();
+    }
+
+    /**
+     * Чтение одновременно с записью.
+     *
+     * @return результат чтения.
+     */
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(3)
+    public long mixedRead() {
+        return readRoutes();
+    }
+
+    /**
+     * Запись одновременно с чтением: добавляет маршрут с автоматически выделенным ID и удаляет самый старый.
+     */
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public void mixedWrite() {
+        writeRoutes();
+    }
+
+    /**
+     * Чтение одновременно с записью из нескольких потоков.
+     *
+     * @return результат чтения.
+     */
+    @Benchmark
+    @Group("writeHeavy")
+    @GroupThreads(1)
+    public long writeHeavyRead() {
+        return readRoutes();
+    }
+
+    /**
+     * Запись из нескольких потоков одновременно: изменения, отданные записывающему потоку одновременно,
+     * применяются одной пачкой.
+     */
+    @Benchmark
+    @Group("writeHeavy")
+    @GroupThreads(4)
+    public void writeHeavyWrite() {
+        writeRoutes();
+    }
+
+    /**
+     * Добавляет маршрут с автоматически выделенным ID и удаляет самый старый.
+     */
+    private void writeRoutes() {
+        Route sample = samples.get(ThreadLocalRandom.current().nextInt(samples.size()));
+        collection.addRoute(sample.getName(), sample.getCoordinates(), sample.getCreationDate(),
+                sample.getFrom(), sample.getTo(), sample.getDistance());
+        added.incrementAndGet();
+        collection.removeById(nextRemoved.getAndIncrement());
+    }
+
+    /**
+     * Выполняет по одному запросу каждого вида.
+     *
+     * @return сумма результатов запросов.
+     */
+    private long readRoutes() {
+        Random random = ThreadLocalRandom.current();
+        long from = random.nextInt(10_000);
+        long result = collection.sumOfDistance();
+        result += collection.countDistanceBetween(from, from + 100);
+        result += collection.containsIdRoute(1 + random.nextInt(size)) ? 1 : 0;
+        return result;
+    }
+}
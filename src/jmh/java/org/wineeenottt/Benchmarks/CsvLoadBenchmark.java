@@ -0,0 +1,98 @@
+package org.wineeenottt.Benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.wineeenottt.Collection.Route;
+import org.wineeenottt.WorkWithFile.FileManager;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Измеряет пропускную способность загрузки CSV файла в строках в секунду (счетчик rows)
+ * при разборе в одном потоке и параллельно на всех ядрах.
+ * Запуск: {@code ./gradlew jmh -Pjmh="CsvLoadBenchmark"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+public class CsvLoadBenchmark {
+
+    /**
+     * Количество маршрутов в файле.
+     */
+    @Param({"100000", "1000000"})
+    public int rows;
+
+    /**
+     * Количество потоков разбора; 0 - по числу доступных ядер.
+     */
+    @Param({"1", "0"})
+    public int threads;
+
+    /**
+     * Временный CSV файл с маршрутами.
+     */
+    private File file;
+
+    /**
+     * Пул, в котором разбирается файл.
+     */
+    private ForkJoinPool pool;
+
+    /**
+     * Счетчик разобранных строк; JMH выводит его в строках в секунду.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class RowCounter {
+
+        /**
+         * Количество разобранных строк.
+         */
+        public long rows;
+    }
+
+    /**
+     * Записывает файл с маршрутами и создает пул разбора.
+     *
+     * @throws IOException если не удалось создать временный файл.
+     */
+    @Setup
+    public void setUp() throws IOException {
+        file = File.createTempFile("routes", ".csv");
+        file.deleteOnExit();
+        new FileManager().parseToCsv(file.getPath(), BenchmarkRoutes.generate(rows, 42));
+        pool = threads == 0 ? ForkJoinPool.commonPool() : new ForkJoinPool(threads);
+    }
+
+    /**
+     * Удаляет временный файл и останавливает собственный пул.
+     */
+    @TearDown
+    public void tearDown() {
+        if (pool != ForkJoinPool.commonPool()) {
+            pool.shutdown();
+        }
+        file.delete();
+    }
+
+    /**
+     * Загружает файл целиком.
+     *
+     * @param counter счетчик разобранных строк.
+     * @return загруженные маршруты.
+     * @throws IOException если произошла ошибка чтения файла.
+     */
+    @Benchmark
+    public List<Route> load(RowCounter counter) throws IOException {
+        List<Route> routes = new FileManager().parseCsvFile(file.getPath(), pool);
+        counter.rows += routes.size();
+        return routes;
+    }
+}
@@ -0,0 +1,182 @@
+package org.wineeenottt.Benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.wineeenottt.WorkWithFile.CsvTokenizer;
+import org.wineeenottt.WorkWithFile.FileManager;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.ZonedDateTime;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнивает разбор строк CSV побайтовым CsvTokenizer с прежним split(",") и trim() и измеряет
+ * выделение памяти на одну строку. Все результаты приведены к одной строке файла (@OperationsPerInvocation),
+ * поэтому с профилировщиком gc метрика gc.alloc.rate.norm показывает байты на строку.
+ * Запуск: {@code ./gradlew jmh -Pjmh="CsvTokenizerBenchmark -prof gc"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@OperationsPerInvocation(CsvTokenizerBenchmark.ROWS)
+public class CsvTokenizerBenchmark {
+
+    /**
+     * Количество строк в разбираемых данных.
+     */
+    static final int ROWS = 10_000;
+
+    /**
+     * Данные CSV без заголовка.
+     */
+    private ByteBuffer data;
+
+    /**
+     * Строки данных для прежнего способа разбора.
+     */
+    private String[] lines;
+
+    /**
+     * Временный файл с теми же данными и заголовком.
+     */
+    private File file;
+
+    /**
+     * Пул из одного потока, чтобы выделения памяти при загрузке файла не делились между потоками.
+     */
+    private ForkJoinPool pool;
+
+    /**
+     * Формирует данные из сгенерированных маршрутов.
+     *
+     * @throws IOException если не удалось записать временный файл.
+     */
+    @Setup
+    public void setUp() throws IOException {
+        file = File.createTempFile("routes", ".csv");
+        file.deleteOnExit();
+        new FileManager().parseToCsv(file.getPath(), BenchmarkRoutes.generate(ROWS, 42));
+        String text = Files.readString(file.toPath(), StandardCharsets.UTF_8);
+        String body = text.substring(text.indexOf('\n') + 1);
+        lines = body.split("\n");
+        data = ByteBuffer.wrap(body.getBytes(StandardCharsets.UTF_8));
+        pool = new ForkJoinPool(1);
+    }
+
+    /**
+     * Останавливает пул и удаляет временный файл.
+     */
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+        file.delete();
+    }
+
+    /**
+     * Проходит все числовые поля побайтовым разборщиком без создания строк.
+     *
+     * @param blackhole приемник значений.
+     */
+    @Benchmark
+    public void tokenizeNumbers(Blackhole blackhole) {
+        CsvTokenizer tokenizer = new CsvTokenizer(data);
+        while (tokenizer.nextLine()) {
+            blackhole.consume(tokenizer.fieldCount());
+            tokenizer.nextField();
+            blackhole.consume(tokenizer.parseInt());
+            tokenizer.nextField();
+            tokenizer.nextField();
+            blackhole.consume(tokenizer.parseDouble());
+            tokenizer.nextField();
+            blackhole.consume(tokenizer.parseFloat());
+            tokenizer.nextField();
+            tokenizer.nextField();
+            blackhole.consume(tokenizer.parseFloat());
+            tokenizer.nextField();
+            blackhole.consume(tokenizer.parseInt());
+            tokenizer.nextField();
+            blackhole.consume(tokenizer.parseDouble());
+            tokenizer.nextField();
+            tokenizer.nextField();
+            blackhole.consume(tokenizer.parseFloat());
+            tokenizer.nextField();
+            blackhole.consume(tokenizer.parseInt());
+            tokenizer.nextField();
+            blackhole.consume(tokenizer.parseDouble());
+            tokenizer.nextField();
+            tokenizer.nextField();
+            blackhole.consume(tokenizer.parseLong());
+        }
+    }
+
+    /**
+     * Разбирает те же числовые поля прежним способом: split(","), trim() и стандартные методы разбора.
+     *
+     * @param blackhole приемник значений.
+     */
+    @Benchmark
+    public void splitAndTrim(Blackhole blackhole) {
+        for (String line : lines) {
+            String[] fields = line.split(",");
+            blackhole.consume(Integer.parseInt(fields[0].trim()));
+            blackhole.consume(Double.parseDouble(fields[2].trim()));
+            blackhole.consume(Float.parseFloat(fields[3].trim()));
+            blackhole.consume(Float.parseFloat(fields[5].trim()));
+            blackhole.consume(Integer.parseInt(fields[6].trim()));
+            blackhole.consume(Double.parseDouble(fields[7].trim()));
+            blackhole.consume(Float.parseFloat(fields[9].trim()));
+            blackhole.consume(Integer.parseInt(fields[10].trim()));
+            blackhole.consume(Double.parseDouble(fields[11].trim()));
+            blackhole.consume(Long.parseLong(fields[13].trim()));
+        }
+    }
+
+    /**
+     * Разбирает поле даты создания побайтовым разборщиком в наносекунды эпохи и код часового пояса.
+     *
+     * @param blackhole приемник значений.
+     */
+    @Benchmark
+    public void tokenizeDates(Blackhole blackhole) {
+        CsvTokenizer tokenizer = new CsvTokenizer(data);
+        while (tokenizer.nextLine()) {
+            blackhole.consume(tokenizer.fieldCount());
+            for (int field = 0; field < 5; field++) {
+                tokenizer.nextField();
+            }
+            blackhole.consume(tokenizer.parseDate());
+            blackhole.consume(tokenizer.dateZone());
+        }
+    }
+
+    /**
+     * Разбирает те же поля даты прежним способом: split(","), trim() и ZonedDateTime.parse.
+     *
+     * @param blackhole приемник значений.
+     */
+    @Benchmark
+    public void parseDatesWithFormatter(Blackhole blackhole) {
+        for (String line : lines) {
+            blackhole.consume(ZonedDateTime.parse(line.split(",")[4].trim()));
+        }
+    }
+
+    /**
+     * Загружает файл целиком через FileManager, включая создание маршрутов и разбор дат.
+     *
+     * @param blackhole приемник результата.
+     * @throws IOException если произошла ошибка чтения файла.
+     */
+    @Benchmark
+    public void loadFile(Blackhole blackhole) throws IOException {
+        blackhole.consume(new FileManager().parseCsvFile(file.getPath(), pool));
+    }
+}
@@ -0,0 +1,134 @@
+package org.wineeenottt.Benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.wineeenottt.Collection.Route;
+import org.wineeenottt.WorkWithFile.CsvWriter;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнивает запись коллекции в CSV файл прежним способом (сложение строк для каждой строки
+ * и BufferedWriter в кодировке по умолчанию) и через {@link CsvWriter} (кодирование в байтовый буфер
+ * и запись в FileChannel крупными блоками). Сброс на диск не измеряется.
+ * Кроме количества записей файла в секунду выводится счетчик bytes - записанные байты в секунду;
+ * пропускная способность в МБ/с равна ему, деленному на 10^6.
+ * Запуск: {@code ./gradlew jmh -Pjmh="CsvWriteBenchmark"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+public class CsvWriteBenchmark {
+
+    /**
+     * Количество маршрутов в коллекции.
+     */
+    @Param({"100000", "1000000"})
+    public int rows;
+
+    /**
+     * Маршруты коллекции.
+     */
+    private List<Route> routes;
+
+    /**
+     * Временный CSV файл.
+     */
+    private File file;
+
+    /**
+     * Счетчик записанных байт.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Bytes {
+
+        /**
+         * Количество записанных байт.
+         */
+        public long bytes;
+
+        /**
+         * Обнуляет счетчик перед итерацией.
+         */
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytes = 0;
+        }
+    }
+
+    /**
+     * Генерирует маршруты.
+     *
+     * @throws IOException если не удалось создать временный файл.
+     */
+    @Setup
+    public void setUp() throws IOException {
+        file = File.createTempFile("routes", ".csv");
+        file.deleteOnExit();
+        routes = BenchmarkRoutes.generate(rows, 42);
+    }
+
+    /**
+     * Удаляет временный файл.
+     */
+    @TearDown
+    public void tearDown() {
+        file.delete();
+    }
+
+    /**
+     * Прежний способ записи: строка каждого маршрута собирается сложением строк и записывается через BufferedWriter.
+     *
+     * @param counter счетчик записанных байт.
+     * @throws IOException если произошла ошибка записи.
+     */
+    @Benchmark
+    public void concatenation(Bytes counter) throws IOException {
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file)), 1 << 16)) {
+            writer.write(CsvWriter.HEADER);
+            for (Route route : routes) {
+                writer.write(route.getId() + "," +
+                        route.getName() + "," +
+                        route.getCoordinates().getX() + "," +
+                        route.getCoordinates().getY() + "," +
+                        route.getCreationDate() + "," +
+                        route.getFrom().getX() + "," +
+                        route.getFrom().getY() + "," +
+                        route.getFrom().getZ() + "," +
+                        route.getFrom().getName() + "," +
+                        route.getTo().getX() + "," +
+                        route.getTo().getY() + "," +
+                        route.getTo().getZ() + "," +
+                        route.getTo().getName() + "," +
+                        route.getDistance() + "\n");
+            }
+        }
+        counter.bytes += file.length();
+    }
+
+    /**
+     * Запись через CsvWriter в канал файла.
+     *
+     * @param counter счетчик записанных байт.
+     * @throws IOException если произошла ошибка записи.
+     */
+    @Benchmark
+    public void csvWriter(Bytes counter) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+             CsvWriter writer = new CsvWriter(channel)) {
+            writer.writeHeader();
+            for (Route route : routes) {
+                writer.writeRoute(route);
+            }
+            counter.bytes += writer.size();
+        }
+    }
+}
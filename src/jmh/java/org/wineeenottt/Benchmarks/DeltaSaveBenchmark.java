@@ -0,0 +1,112 @@
+package org.wineeenottt.Benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.wineeenottt.Collection.Route;
+import org.wineeenottt.Collection.RouteInterner;
+import org.wineeenottt.WorkWithFile.FileManager;
+import org.wineeenottt.WorkWithFile.RouteSnapshot;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнивает полное сохранение коллекции (CSV файл и снимок) с разностным сегментом снимка,
+ * в который записываются только измененные и удаленные маршруты.
+ * Запуск: {@code ./gradlew jmh -Pjmh="DeltaSaveBenchmark"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+public class DeltaSaveBenchmark {
+
+    /**
+     * Идентификатор снимка, к которому относятся сегменты.
+     */
+    private static final long SNAPSHOT_ID = 42;
+
+    /**
+     * Количество маршрутов в коллекции.
+     */
+    @Param({"100000", "1000000"})
+    public int rows;
+
+    /**
+     * Количество маршрутов, измененных после предыдущего сохранения.
+     */
+    @Param({"10", "1000"})
+    public int changed;
+
+    /**
+     * Маршруты коллекции.
+     */
+    private List<Route> routes;
+
+    /**
+     * Измененные маршруты.
+     */
+    private List<Route> puts;
+
+    /**
+     * ID удаленных маршрутов.
+     */
+    private List<Integer> deletes;
+
+    /**
+     * Временный CSV файл; снимок и сегменты лежат рядом с ним.
+     */
+    private File file;
+
+    /**
+     * Генерирует маршруты и записывает исходный снимок.
+     *
+     * @throws IOException если не удалось записать файлы.
+     */
+    @Setup
+    public void setUp() throws IOException {
+        file = File.createTempFile("routes", ".csv");
+        routes = BenchmarkRoutes.generate(rows, 42);
+        puts = new ArrayList<>(routes.subList(0, changed));
+        deletes = new ArrayList<>();
+        for (int i = 0; i < changed; i++) {
+            deletes.add(routes.get(rows - 1 - i).getId());
+        }
+        new RouteSnapshot(new RouteInterner()).write(RouteSnapshot.pathFor(file.getPath()), routes, 0, SNAPSHOT_ID);
+    }
+
+    /**
+     * Удаляет временные файлы.
+     */
+    @TearDown
+    public void tearDown() {
+        new File(RouteSnapshot.pathFor(file.getPath()) + ".delta.1").delete();
+        new File(RouteSnapshot.pathFor(file.getPath())).delete();
+        file.delete();
+    }
+
+    /**
+     * Полное сохранение: CSV файл и снимок со всеми маршрутами.
+     *
+     * @throws IOException если произошла ошибка записи.
+     */
+    @Benchmark
+    public void fullSave() throws IOException {
+        new FileManager().writeCsv(file.getPath(), routes);
+        new RouteSnapshot().write(RouteSnapshot.pathFor(file.getPath()), routes, 0, SNAPSHOT_ID);
+    }
+
+    /**
+     * Разностное сохранение: сегмент снимка с измененными маршрутами и ID удаленных.
+     *
+     * @throws IOException если произошла ошибка записи.
+     */
+    @Benchmark
+    public void deltaSave() throws IOException {
+        new RouteSnapshot().writeDelta(RouteSnapshot.pathFor(file.getPath()), SNAPSHOT_ID, 1, puts, deletes, 0);
+    }
+}
@@ -0,0 +1,85 @@
+package org.wineeenottt.Benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.wineeenottt.Collection.CollectionManager;
+import org.wineeenottt.Collection.Route;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнивает поиск маршрута по ID через индекс CollectionManager с линейным проходом по HashSet,
+ * которым CollectionManager пользовался раньше в containsIdRoute, removeById и update.
+ * Запуск: {@code ./gradlew jmh -Pjmh="IdLookupBenchmark"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IdLookupBenchmark {
+
+    /**
+     * Количество маршрутов в коллекции.
+     */
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    /**
+     * Коллекция в прежнем виде - множество маршрутов без индекса.
+     */
+    private HashSet<Route> scanCollection;
+
+    /**
+     * Менеджер коллекции с индексом по ID.
+     */
+    private CollectionManager indexedCollection;
+
+    /**
+     * Заполняет обе коллекции одинаковыми маршрутами.
+     */
+    @Setup
+    public void setUp() {
+        List<Route> routes = BenchmarkRoutes.generate(size, 42);
+        scanCollection = new HashSet<>(routes);
+        indexedCollection = new CollectionManager(scanCollection);
+    }
+
+    /**
+     * Поиск маршрута линейным проходом, как в прежней реализации containsIdRoute.
+     *
+     * @return true, если маршрут найден.
+     */
+    @Benchmark
+    public boolean containsByScan() {
+        Integer id = randomId();
+        for (Route route : scanCollection) {
+            if (route.getId().equals(id)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Поиск маршрута через индекс CollectionManager.
+     *
+     * @return true, если маршрут найден.
+     */
+    @Benchmark
+    public boolean containsByIndex() {
+        return indexedCollection.containsIdRoute(randomId());
+    }
+
+    /**
+     * Возвращает случайный существующий ID.
+     *
+     * @return ID маршрута.
+     */
+    private Integer randomId() {
+        return ThreadLocalRandom.current().nextInt(size) + 1;
+    }
+}
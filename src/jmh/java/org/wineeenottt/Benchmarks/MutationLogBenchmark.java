@@ -0,0 +1,113 @@
+package org.wineeenottt.Benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.wineeenottt.Collection.Route;
+import org.wineeenottt.WorkWithFile.FileManager;
+import org.wineeenottt.WorkWithFile.MutationLog;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнивает стоимость долговечного сохранения одного изменения: запись в журнал изменений со сбросом на диск
+ * (в одном и в четырех потоках, где сбросы объединяются групповой фиксацией) и перезапись всего CSV файла.
+ * Запуск: {@code ./gradlew jmh -Pjmh="MutationLogBenchmark"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgs = {"-Xmx4g", "-Droute.wal.compactionBytes=" + Long.MAX_VALUE})
+public class MutationLogBenchmark {
+
+    /**
+     * Количество маршрутов в коллекции.
+     */
+    @Param({"100000"})
+    public int rows;
+
+    /**
+     * Временный CSV файл, рядом с которым лежит журнал.
+     */
+    private File file;
+
+    /**
+     * Маршруты коллекции.
+     */
+    private List<Route> routes;
+
+    /**
+     * Журнал изменений.
+     */
+    private MutationLog mutationLog;
+
+    /**
+     * Создает коллекцию маршрутов и открывает пустой журнал.
+     *
+     * @throws IOException если не удалось создать файлы.
+     */
+    @Setup
+    public void setUp() throws IOException {
+        file = File.createTempFile("routes", ".csv");
+        file.deleteOnExit();
+        routes = BenchmarkRoutes.generate(rows, 42);
+        mutationLog = new MutationLog(file.getPath());
+        mutationLog.recover(routes, 0);
+    }
+
+    /**
+     * Удаляет временные файлы.
+     */
+    @TearDown
+    public void tearDown() {
+        new File(file.getPath() + ".wal").delete();
+        file.delete();
+    }
+
+    /**
+     * Генератор изменяемых маршрутов потока.
+     */
+    @State(Scope.Thread)
+    public static class Mutations {
+
+        /**
+         * Генератор случайных чисел потока.
+         */
+        private final Random random = new Random();
+    }
+
+    /**
+     * Записывает изменение маршрута в журнал в одном потоке.
+     *
+     * @param mutations генератор изменяемых маршрутов.
+     * @throws IOException если запись не удалось сбросить на диск.
+     */
+    @Benchmark
+    public void appendPut(Mutations mutations) throws IOException {
+        mutationLog.put(routes.get(mutations.random.nextInt(rows)));
+    }
+
+    /**
+     * Записывает изменения маршрутов в журнал в четырех потоках; сбросы на диск объединяются.
+     *
+     * @param mutations генератор изменяемых маршрутов.
+     * @throws IOException если запись не удалось сбросить на диск.
+     */
+    @Benchmark
+    @Threads(4)
+    public void appendPutConcurrent(Mutations mutations) throws IOException {
+        mutationLog.put(routes.get(mutations.random.nextInt(rows)));
+    }
+
+    /**
+     * Сохраняет изменение перезаписью всего CSV файла, как команда save.
+     */
+    @Benchmark
+    public void rewriteCsv() {
+        new FileManager().parseToCsv(file.getPath(), routes);
+    }
+}
@@ -0,0 +1,106 @@
+package org.wineeenottt.Benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.wineeenottt.Collection.Route;
+import org.wineeenottt.Collection.RouteInterner;
+import org.wineeenottt.WorkWithFile.FileManager;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Измеряет загрузку и сохранение коллекции, разделенной на части в каталоге, в зависимости от количества частей.
+ * Части обрабатываются пулом, в котором потоков столько же, сколько частей; один файл для сравнения -
+ * {@link CsvWriteBenchmark} и {@link CsvLoadBenchmark}.
+ * Запуск: {@code ./gradlew jmh -Pjmh="ShardedStorageBenchmark"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+public class ShardedStorageBenchmark {
+
+    /**
+     * Количество маршрутов в коллекции.
+     */
+    @Param({"1000000"})
+    public int rows;
+
+    /**
+     * Количество частей (и потоков пула).
+     */
+    @Param({"1", "2", "4", "8"})
+    public int shards;
+
+    /**
+     * Маршруты коллекции.
+     */
+    private List<Route> routes;
+
+    /**
+     * Временный каталог с частями коллекции.
+     */
+    private Path directory;
+
+    /**
+     * Пул, в котором обрабатываются части.
+     */
+    private ForkJoinPool pool;
+
+    /**
+     * Генерирует маршруты и записывает их в каталог заданным количеством частей.
+     *
+     * @throws IOException если не удалось записать файлы.
+     */
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("routes");
+        routes = BenchmarkRoutes.generate(rows, 42);
+        pool = new ForkJoinPool(shards);
+        System.setProperty(FileManager.SHARDS_PROPERTY, Integer.toString(shards));
+        new FileManager().writeCsv(directory.toString(), routes, pool);
+    }
+
+    /**
+     * Удаляет временный каталог и останавливает пул.
+     */
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+        File[] files = directory.toFile().listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.toFile().delete();
+    }
+
+    /**
+     * Загружает коллекцию из каталога.
+     *
+     * @return маршруты.
+     * @throws IOException если произошла ошибка чтения.
+     */
+    @Benchmark
+    public List<Route> load() throws IOException {
+        return new FileManager(new RouteInterner()).parseCsvFile(directory.toString(), pool);
+    }
+
+    /**
+     * Сохраняет коллекцию в каталог (с новым поколением частей).
+     *
+     * @throws IOException если произошла ошибка записи.
+     */
+    @Benchmark
+    public void save() throws IOException {
+        new FileManager().writeCsv(directory.toString(), routes, pool);
+    }
+}
@@ -0,0 +1,138 @@
+package org.wineeenottt.Benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.wineeenottt.Collection.CollectionManager;
+import org.wineeenottt.Collection.LazyRouteStore;
+import org.wineeenottt.Collection.Route;
+import org.wineeenottt.Collection.RouteInterner;
+import org.wineeenottt.Collection.TreeRouteStore;
+import org.wineeenottt.WorkWithFile.FileManager;
+import org.wineeenottt.WorkWithFile.RouteSnapshot;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнивает загрузку коллекции из CSV файла и из двоичного снимка: только чтение файла
+ * и полный холодный старт с построением CollectionManager, в том числе над ленивым хранилищем,
+ * для которого при старте строится только индекс файла.
+ * Запуск: {@code ./gradlew jmh -Pjmh="SnapshotLoadBenchmark"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+public class SnapshotLoadBenchmark {
+
+    /**
+     * Количество маршрутов в файле.
+     */
+    @Param({"100000", "1000000"})
+    public int rows;
+
+    /**
+     * Временный CSV файл с маршрутами; снимок лежит рядом с ним.
+     */
+    private File file;
+
+    /**
+     * Записывает CSV файл и снимок с одинаковыми маршрутами.
+     *
+     * @throws IOException если не удалось записать файлы.
+     */
+    @Setup
+    public void setUp() throws IOException {
+        file = File.createTempFile("routes", ".csv");
+        file.deleteOnExit();
+        new File(RouteSnapshot.pathFor(file.getPath())).deleteOnExit();
+        List<Route> routes = BenchmarkRoutes.generate(rows, 42);
+        new FileManager().parseToCsv(file.getPath(), routes);
+        new RouteSnapshot(new RouteInterner()).write(RouteSnapshot.pathFor(file.getPath()), routes);
+    }
+
+    /**
+     * Удаляет временные файлы.
+     */
+    @TearDown
+    public void tearDown() {
+        new File(RouteSnapshot.pathFor(file.getPath())).delete();
+        file.delete();
+    }
+
+    /**
+     * Читает маршруты из CSV файла.
+     *
+     * @return маршруты.
+     * @throws IOException если произошла ошибка чтения файла.
+     */
+    @Benchmark
+    public List<Route> readCsv() throws IOException {
+        return new FileManager().parseCsvFile(file.getPath());
+    }
+
+    /**
+     * Читает маршруты из снимка.
+     *
+     * @return маршруты.
+     * @throws IOException если произошла ошибка чтения файла.
+     */
+    @Benchmark
+    public List<Route> readSnapshot() throws IOException {
+        return new RouteSnapshot(new RouteInterner()).read(RouteSnapshot.pathFor(file.getPath()));
+    }
+
+    /**
+     * Холодный старт из CSV файла: чтение и построение коллекции.
+     *
+     * @return менеджер коллекции.
+     * @throws IOException если произошла ошибка чтения файла.
+     */
+    @Benchmark
+    public CollectionManager startFromCsv() throws IOException {
+        RouteInterner interner = new RouteInterner();
+        return new CollectionManager(new FileManager(interner).parseCsvFile(file.getPath()), new TreeRouteStore(), interner);
+    }
+
+    /**
+     * Холодный старт из снимка: чтение и построение коллекции.
+     *
+     * @return менеджер коллекции.
+     * @throws IOException если произошла ошибка чтения файла.
+     */
+    @Benchmark
+    public CollectionManager startFromSnapshot() throws IOException {
+        RouteInterner interner = new RouteInterner();
+        return new CollectionManager(new RouteSnapshot(interner).read(RouteSnapshot.pathFor(file.getPath())),
+                new TreeRouteStore(), interner);
+    }
+
+    /**
+     * Холодный старт из CSV файла с ленивым хранилищем: построение индекса файла и коллекции над ним.
+     *
+     * @return менеджер коллекции.
+     * @throws IOException если произошла ошибка чтения файла.
+     */
+    @Benchmark
+    public CollectionManager startLazyFromCsv() throws IOException {
+        RouteInterner interner = new RouteInterner();
+        return new CollectionManager(new LazyRouteStore(new FileManager(interner).indexCsvFile(file.getPath())),
+                interner, null);
+    }
+
+    /**
+     * Холодный старт из снимка с ленивым хранилищем: построение индекса снимка и коллекции над ним.
+     *
+     * @return менеджер коллекции.
+     * @throws IOException если произошла ошибка чтения файла.
+     */
+    @Benchmark
+    public CollectionManager startLazyFromSnapshot() throws IOException {
+        RouteInterner interner = new RouteInterner();
+        return new CollectionManager(new LazyRouteStore(new RouteSnapshot(interner).index(RouteSnapshot.pathFor(file.getPath()))),
+                interner, null);
+    }
+}
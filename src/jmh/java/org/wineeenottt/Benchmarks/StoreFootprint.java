@@ -0,0 +1,116 @@
+package org.wineeenottt.Benchmarks;
+
+import org.wineeenottt.Collection.LazyRouteStore;
+import org.wineeenottt.Collection.RouteStore;
+import org.wineeenottt.Collection.RouteStoreType;
+import org.wineeenottt.WorkWithFile.FileManager;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.Random;
+
+/**
+ * Отчет о потреблении памяти хранилищами маршрутов.
+ * Для каждого типа хранилища заполняет его маршрутами и выводит прирост занятой кучи и памяти вне кучи
+ * (direct-буферов) в пересчете на одну строку, а также среднее время полной сборки мусора,
+ * пока заполненное хранилище остается достижимым. Ленивое хранилище строится по индексу временного CSV файла
+ * с теми же маршрутами; отображенный в память файл не входит ни в кучу, ни в direct-буферы.
+ * Запуск: {@code ./gradlew footprint -Prows=1000000}.
+ */
+public final class StoreFootprint {
+
+    /**
+     * Количество полных сборок мусора, по которым усредняется время сборки.
+     */
+    private static final int GC_ROUNDS = 5;
+
+    private StoreFootprint() {
+    }
+
+    /**
+     * Точка входа отчета.
+     *
+     * @param args первый аргумент (если присутствует) - количество маршрутов, по умолчанию 1000000.
+     * @throws IOException если не удалось записать или проиндексировать временный файл.
+     */
+    public static void main(String[] args) throws IOException {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        System.out.printf("%-12s %12s %14s %14s %12s%n", "store", "rows", "heap B/row", "direct B/row", "full GC ms");
+        for (RouteStoreType type : RouteStoreType.values()) {
+            File file = null;
+            if (type == RouteStoreType.LAZY) {
+                file = File.createTempFile("routes", ".csv");
+                file.deleteOnExit();
+                new FileManager().writeCsv(file.getPath(), BenchmarkRoutes.generate(rows, 42));
+            }
+            long heapBefore = usedHeap();
+            long directBefore = usedDirect();
+            RouteStore store;
+            if (file != null) {
+                store = new LazyRouteStore(new FileManager().indexCsvFile(file.getPath()));
+            } else {
+                store = type.create();
+                Random random = new Random(42);
+                for (int id = 1; id <= rows; id++) {
+                    store.put(BenchmarkRoutes.route(id, random));
+                }
+            }
+            long heapAfter = usedHeap();
+            long directAfter = usedDirect();
+            long gcTime = gcTime();
+            for (int i = 0; i < GC_ROUNDS; i++) {
+                System.gc();
+            }
+            double gcMillis = (double) (gcTime() - gcTime) / GC_ROUNDS;
+            System.out.printf("%-12s %12d %14.1f %14.1f %12.1f%n", type, store.size(),
+                    (double) (heapAfter - heapBefore) / rows, (double) (directAfter - directBefore) / rows, gcMillis);
+            if (file != null) {
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * Возвращает объем занятой кучи после принудительной сборки мусора.
+     *
+     * @return объем занятой кучи в байтах.
+     */
+    private static long usedHeap() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    /**
+     * Возвращает объем памяти, занятой direct-буферами.
+     *
+     * @return объем памяти в байтах.
+     */
+    private static long usedDirect() {
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if (pool.getName().equals("direct")) {
+                return pool.getMemoryUsed();
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Возвращает суммарное время всех сборок мусора с момента запуска JVM.
+     *
+     * @return время сборок в миллисекундах.
+     */
+    private static long gcTime() {
+        long total = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, collector.getCollectionTime());
+        }
+        return total;
+    }
+}
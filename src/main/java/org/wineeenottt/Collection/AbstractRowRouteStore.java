@@ -0,0 +1,342 @@
+package org.wineeenottt.Collection;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Абстрактный класс AbstractRowRouteStore - основа хранилищ, размещающих маршруты в пронумерованных строках
+ * собственного компактного представления.
+ * <p>
+ * Строки упорядочены по возрастанию ID, поэтому поиск по ID выполняется двоичным поиском, обход в порядке ID
+ * не требует сортировки, а удаление хвоста (remove_greater) сводится к усечению строк.
+ * Новые маршруты получают ID больше максимального и дописываются в конец за константное время.
+ * Удаление отдельного маршрута помечает строку удаленной; помеченные строки уплотняются,
+ * когда их становится больше половины.
+ * <p>
+ * Методы get и iterator материализуют маршрут из строки по требованию, поэтому изменения
+ * полученного объекта необходимо записать обратно методом put. Все поля маршрута должны быть заданы (не null).
+ */
+abstract class AbstractRowRouteStore implements RouteStore {
+
+    /**
+     * Минимальное количество удаленных строк, при котором выполняется уплотнение.
+     */
+    private static final int MIN_COMPACTION = 64;
+
+    /**
+     * Количество занятых строк, включая удаленные.
+     */
+    protected int rowCount;
+
+    /**
+     * Количество удаленных строк.
+     */
+    protected int deletedCount;
+
+    /**
+     * Возвращает ID маршрута, хранящегося в строке.
+     *
+     * @param row номер строки.
+     * @return ID маршрута.
+     */
+    protected abstract int idAt(int row);
+
+    /**
+     * Возвращает расстояние маршрута, хранящегося в строке.
+     *
+     * @param row номер строки.
+     * @return расстояние маршрута.
+     */
+    protected abstract long distanceAt(int row);
+
+    /**
+     * Проверяет, помечена ли строка удаленной.
+     *
+     * @param row номер строки.
+     * @return true, если строка удалена.
+     */
+    protected abstract boolean isDeleted(int row);
+
+    /**
+     * Помечает строку удаленной или снимает пометку.
+     *
+     * @param row     номер строки.
+     * @param deleted признак удаления.
+     */
+    protected abstract void setDeleted(int row, boolean deleted);
+
+    /**
+     * Создает объект маршрута по значениям строки.
+     *
+     * @param row номер строки.
+     * @return объект маршрута.
+     */
+    protected abstract Route read(int row);
+
+    /**
+     * Записывает значения полей маршрута в строку.
+     *
+     * @param row   номер строки.
+     * @param route маршрут.
+     */
+    protected abstract void write(int row, Route route);
+
+    /**
+     * Копирует строку from в строку to.
+     *
+     * @param from номер исходной строки.
+     * @param to   номер строки назначения.
+     */
+    protected abstract void move(int from, int to);
+
+    /**
+     * Освобождает ресурсы, удерживаемые строками, которые больше не используются.
+     *
+     * @param from номер первой строки (включительно).
+     * @param to   номер последней строки (не включительно).
+     */
+    protected abstract void release(int from, int to);
+
+    /**
+     * Обеспечивает место как минимум для указанного количества строк.
+     *
+     * @param rows требуемое количество строк.
+     */
+    protected abstract void ensureCapacity(int rows);
+
+    /**
+     * Освобождает все строки и возвращает хранилище в начальное состояние.
+     */
+    protected abstract void reset();
+
+    /**
+     * Вызывается после завершения каждой изменяющей операции, когда все строки находятся в согласованном состоянии.
+     * Наследники могут выполнять здесь отложенное обслуживание, например уплотнение вспомогательных структур.
+     */
+    protected void afterMutation() {
+    }
+
+    /**
+     * Сообщает, что хранилище не держит объекты маршрутов: маршрут раскладывается по строке собственного
+     * представления.
+     *
+     * @return false.
+     */
+    @Override
+    public boolean keepsRouteObjects() {
+        return false;
+    }
+
+    /**
+     * Возвращает количество маршрутов в хранилище.
+     *
+     * @return количество маршрутов.
+     */
+    @Override
+    public int size() {
+        return rowCount - deletedCount;
+    }
+
+    /**
+     * Проверяет наличие маршрута с указанным ID двоичным поиском по строкам.
+     *
+     * @param id ID маршрута.
+     * @return true, если маршрут существует.
+     */
+    @Override
+    public boolean contains(int id) {
+        return rowOf(id) >= 0;
+    }
+
+    /**
+     * Материализует маршрут с указанным ID.
+     *
+     * @param id ID маршрута.
+     * @return новый объект маршрута или null, если маршрута с таким ID нет.
+     */
+    @Override
+    public Route get(int id) {
+        int row = rowOf(id);
+        return row < 0 ? null : read(row);
+    }
+
+    /**
+     * Записывает маршрут в строку. Маршрут с тем же ID заменяется, маршрут с ID больше максимального
+     * дописывается в конец, иначе последующие строки сдвигаются для сохранения порядка.
+     *
+     * @param route маршрут.
+     */
+    @Override
+    public void put(Route route) {
+        int position = search(route.getId());
+        if (position >= 0) {
+            if (isDeleted(position)) {
+                setDeleted(position, false);
+                deletedCount--;
+            } else {
+                release(position, position + 1);
+            }
+            write(position, route);
+            afterMutation();
+            return;
+        }
+        int row = -(position + 1);
+        ensureCapacity(rowCount + 1);
+        for (int i = rowCount; i > row; i--) {
+            move(i - 1, i);
+        }
+        rowCount++;
+        setDeleted(row, false);
+        write(row, route);
+        afterMutation();
+    }
+
+    /**
+     * Помечает строку маршрута с указанным ID удаленной.
+     *
+     * @param id ID маршрута.
+     * @return удаленный маршрут или null, если маршрута с таким ID нет.
+     */
+    @Override
+    public Route remove(int id) {
+        int row = rowOf(id);
+        if (row < 0) {
+            return null;
+        }
+        Route removed = read(row);
+        setDeleted(row, true);
+        deletedCount++;
+        release(row, row + 1);
+        if (deletedCount >= MIN_COMPACTION && deletedCount > rowCount / 2) {
+            compact();
+        }
+        afterMutation();
+        return removed;
+    }
+
+    /**
+     * Усекает строки до первой строки с ID больше указанного.
+     *
+     * @param id      граница ID (не включительно).
+     * @param removed обработчик, получающий расстояние и ID каждого удаленного маршрута.
+     */
+    @Override
+    public void removeGreater(int id, DistanceIndex.EntryConsumer removed) {
+        int position = search(id);
+        int from = position >= 0 ? position + 1 : -(position + 1);
+        for (int row = from; row < rowCount; row++) {
+            if (isDeleted(row)) {
+                deletedCount--;
+            } else {
+                removed.accept(distanceAt(row), idAt(row));
+                release(row, row + 1);
+            }
+        }
+        rowCount = from;
+        afterMutation();
+    }
+
+    /**
+     * Удаляет все маршруты.
+     */
+    @Override
+    public void clear() {
+        reset();
+        rowCount = 0;
+        deletedCount = 0;
+    }
+
+    /**
+     * Возвращает итератор, материализующий маршруты в порядке возрастания ID.
+     *
+     * @return итератор по маршрутам.
+     */
+    @Override
+    public Iterator<Route> iterator() {
+        return new Iterator<>() {
+            private int row = nextRow(0);
+
+            @Override
+            public boolean hasNext() {
+                return row < rowCount;
+            }
+
+            @Override
+            public Route next() {
+                if (row >= rowCount) {
+                    throw new NoSuchElementException();
+                }
+                Route route = read(row);
+                row = nextRow(row + 1);
+                return route;
+            }
+        };
+    }
+
+    /**
+     * Находит первую неудаленную строку, начиная с указанной.
+     *
+     * @param row номер строки, с которой начинается поиск.
+     * @return номер строки или rowCount, если таких строк нет.
+     */
+    protected int nextRow(int row) {
+        while (row < rowCount && isDeleted(row)) {
+            row++;
+        }
+        return row;
+    }
+
+    /**
+     * Находит строку маршрута с указанным ID.
+     *
+     * @param id ID маршрута.
+     * @return номер строки или -1, если маршрута нет.
+     */
+    protected int rowOf(int id) {
+        int row = search(id);
+        return row >= 0 && !isDeleted(row) ? row : -1;
+    }
+
+    /**
+     * Выполняет двоичный поиск ID среди занятых строк, включая удаленные.
+     *
+     * @param id ID маршрута.
+     * @return номер строки или -(точка вставки + 1), если ID не найден.
+     */
+    private int search(int id) {
+        int low = 0;
+        int high = rowCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int middleId = idAt(middle);
+            if (middleId < id) {
+                low = middle + 1;
+            } else if (middleId > id) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * Переносит неудаленные строки в начало, избавляясь от удаленных строк.
+     */
+    private void compact() {
+        int target = 0;
+        for (int row = 0; row < rowCount; row++) {
+            if (!isDeleted(row)) {
+                if (row != target) {
+                    move(row, target);
+                }
+                target++;
+            }
+        }
+        for (int row = target; row < rowCount; row++) {
+            setDeleted(row, false);
+        }
+        rowCount = target;
+        deletedCount = 0;
+    }
+}
@@ -1,48 +1,605 @@
 package org.wineeenottt.Collection;
 
+import org.wineeenottt.IO.ConsoleCapture;
+import org.wineeenottt.WorkWithFile.BackgroundSaver;
 import org.wineeenottt.WorkWithFile.FileManager;
+import org.wineeenottt.WorkWithFile.MutationLog;
 
+import java.io.IOException;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
  * Класс CollectionManager управляет коллекцией маршрутов (Route), предоставляя методы для работы с ней.
- * Коллекция хранится в виде HashSet, что обеспечивает уникальность элементов.
+ * Маршруты хранятся в хранилище RouteStore, которое обеспечивает уникальность элементов по ID
+ * и обход в порядке возрастания ID без сортировки. По умолчанию используется объектное хранилище TreeRouteStore.
+ * <p>
+ * Коллекция может загружаться в фоновом потоке (см. {@link #loading}): до окончания загрузки маршруты
+ * добавляются частями, а команды, которым нужна коллекция, ждут окончания загрузки ({@link #awaitLoaded})
+ * или выполняются над уже загруженной частью под блокировкой загрузки ({@link #withLoadedPrefix}).
+ * <p>
+ * Один экземпляр можно использовать из нескольких потоков. Методы, изменяющие коллекцию, выполняются
+ * под блокировкой записи {@link StampedLock}, поэтому изменения линеаризуемы, и в конце публикуют новую версию
+ * коллекции - неизменяемые снимки хранилища, индекса расстояний и агрегатов ({@link Version}), разделяющие
+ * с коллекцией неизмененные узлы. Методы чтения закрепляют последнюю опубликованную версию и работают с ней
+ * без блокировок: долгий show или сохранение видят согласованное состояние, а запись их не ждет.
+ * Если хранилище не поддерживает снимки ({@link RouteStore#snapshot}), версии не публикуются и чтение выполняется
+ * параллельно под блокировкой чтения, а сумма расстояний читается оптимистично; хранилище, которое нельзя читать
+ * из нескольких потоков ({@link RouteStore#supportsConcurrentReads}), читается под блокировкой записи.
+ * Маршруты опубликованной версии не изменяются на месте: обновление изменяет копию маршрута.
+ * <p>
+ * Изменения можно применять единственным записывающим потоком ({@link #startWriterLoop}): тогда потоки
+ * не соревнуются за блокировку записи, а изменения, отданные одновременно, применяются пачкой с одним сбросом
+ * журнала изменений на диск и одной публикацией версии.
  */
 public class CollectionManager {
 
     private static final String PATTERN = "yyyy-MM-dd HH:mm:ss";
-    private int maxId;
     /**
-     * Коллекция маршрутов, над которой осуществляется работа.
+     * Системное свойство, задающее количество изменений, после которого коллекция сохраняется автоматически.
      */
-    private final HashSet<Route> hashSetRouteCollection;
+    public static final String AUTOSAVE_PROPERTY = "route.autosave";
+    /**
+     * Системное свойство, включающее применение изменений единственным записывающим потоком ({@link #startWriterLoop}).
+     */
+    public static final String WRITER_LOOP_PROPERTY = "route.writerLoop";
+    /**
+     * Имя записывающего потока.
+     */
+    private static final String WRITER_THREAD_NAME = "collection-writer";
+    /**
+     * Наибольшее количество разностных сегментов после полного снимка.
+     */
+    private static final int MAX_DELTA_SEGMENTS = 64;
+    /**
+     * Во сколько раз размер коллекции должен превышать количество записей в разностных сегментах,
+     * чтобы сохранение оставалось разностным.
+     */
+    private static final int DELTA_FRACTION = 4;
+    /**
+     * Наибольший ID маршрута; новые ID выделяются атомарным увеличением.
+     */
+    private final AtomicInteger maxId = new AtomicInteger();
+    /**
+     * Блокировка коллекции: чтение под блокировкой чтения или оптимистично, изменения под блокировкой записи.
+     */
+    private final StampedLock lock = new StampedLock();
+    /**
+     * Последняя опубликованная версия коллекции или null, если хранилище не поддерживает снимки.
+     */
+    private volatile Version version;
+    /**
+     * Цикл единственного записывающего потока или null, если изменения применяются в вызывающих потоках.
+     */
+    private volatile WriterLoop writerLoop;
+    /**
+     * Признак того, что изменения применяются пачкой и записи журнала сбрасываются на диск один раз в конце пачки.
+     */
+    private boolean deferJournalSync;
+    /**
+     * Номер последней записи журнала, еще не сброшенной на диск, или 0.
+     */
+    private long unsyncedLsn;
+    /**
+     * Хранилище маршрутов, над которым осуществляется работа. Заменяется только при окончании загрузки.
+     */
+    private RouteStore routes;
+    /**
+     * Упорядоченный индекс расстояний маршрутов, поддерживаемый при каждом изменении коллекции.
+     */
+    private final DistanceIndex distanceIndex;
+    /**
+     * Агрегаты по полю distance, поддерживаемые при каждом изменении коллекции.
+     */
+    private final DistanceStatistics distanceStatistics;
+    /**
+     * Пул разделяемых экземпляров названий, координат и мест маршрутов.
+     */
+    private final RouteInterner routeInterner;
+    /**
+     * Журнал изменений, в который записывается каждое изменение коллекции, или null, если журнал не ведется.
+     */
+    private final MutationLog mutationLog;
+    /**
+     * Фоновый поток, в котором коллекция сохраняется на диск.
+     */
+    private final BackgroundSaver backgroundSaver = new BackgroundSaver();
+    /**
+     * Количество изменений коллекции после последнего сохранения.
+     */
+    private int dirtyMutations;
+    /**
+     * Количество изменений, после которого коллекция сохраняется автоматически, или 0, если автосохранение выключено.
+     */
+    private volatile int autosaveMutations;
+    /**
+     * Путь к файлу, в который коллекция сохраняется автоматически.
+     */
+    private String autosavePath;
+    /**
+     * ID маршрутов, добавленных или измененных после последнего сохранения.
+     */
+    private final Set<Integer> changedIds = new HashSet<>();
+    /**
+     * ID маршрутов, удаленных после последнего сохранения.
+     */
+    private final Set<Integer> deletedIds = new HashSet<>();
+    /**
+     * Путь к CSV файлу, рядом с которым лежит снимок, продолжаемый разностными сегментами, или null.
+     */
+    private String basePath;
+    /**
+     * Идентификатор снимка, продолжаемого разностными сегментами, или 0, если следующее сохранение полное.
+     */
+    private long baseSnapshotId;
+    /**
+     * Номер последнего разностного сегмента снимка.
+     */
+    private int deltaSequence;
+    /**
+     * Количество строк и удаленных ID во всех разностных сегментах снимка.
+     */
+    private long deltaRows;
+    /**
+     * Признак того, что следующее сохранение должно быть полным (например, после очистки коллекции).
+     */
+    private boolean fullSaveRequired;
     /**
      * Время создания коллекции.
      */
     private final ZonedDateTime collectionCreation;
+    /**
+     * Признак окончания загрузки коллекции: счетчик обнуляется, когда коллекция загружена полностью.
+     */
+    private final CountDownLatch loaded;
+    /**
+     * Блокировка, под которой фоновая загрузка добавляет маршруты и выполняются команды над загруженной частью.
+     */
+    private final ReentrantLock loadLock = new ReentrantLock();
+    /**
+     * Количество маршрутов, загруженных к текущему моменту.
+     */
+    private volatile int loadedRoutes;
+    /**
+     * Доля загруженной части файла, от 0 до 1.
+     */
+    private volatile double loadProgress;
+
+    /**
+     * Конструктор класса CollectionManager, использующий объектное хранилище TreeRouteStore.
+     *
+     * @param routes Набор маршрутов, который будет использоваться для инициализации коллекции.
+     */
+    public CollectionManager(Collection<Route> routes) {
+        this(routes, new TreeRouteStore());
+    }
 
     /**
      * Конструктор класса CollectionManager.
+     * Маршруты добавляются в хранилище в порядке возрастания ID, чтобы упорядоченные хранилища дописывали их в конец.
      *
      * @param routes Набор маршрутов, который будет использоваться для инициализации коллекции.
+     * @param store  Пустое хранилище, в котором будут храниться маршруты.
+     */
+    public CollectionManager(Collection<Route> routes, RouteStore store) {
+        this(routes, store, new RouteInterner());
+    }
+
+    /**
+     * Конструктор класса CollectionManager.
+     * Маршруты добавляются в хранилище в порядке возрастания ID, чтобы упорядоченные хранилища дописывали их в конец.
+     *
+     * @param routes         Набор маршрутов, который будет использоваться для инициализации коллекции.
+     * @param store          Пустое хранилище, в котором будут храниться маршруты.
+     * @param routeInterner  Пул разделяемых значений, общий для загрузчика, хранилища и чтения полей.
+     */
+    public CollectionManager(Collection<Route> routes, RouteStore store, RouteInterner routeInterner) {
+        this(routes, store, routeInterner, null);
+    }
+
+    /**
+     * Конструктор класса CollectionManager.
+     * Маршруты добавляются в хранилище в порядке возрастания ID, чтобы упорядоченные хранилища дописывали их в конец.
+     *
+     * @param routes         Набор маршрутов, который будет использоваться для инициализации коллекции.
+     * @param store          Пустое хранилище, в котором будут храниться маршруты.
+     * @param routeInterner  Пул разделяемых значений, общий для загрузчика, хранилища и чтения полей.
+     * @param mutationLog    Открытый журнал изменений, уже примененный к маршрутам, или null.
      */
-    public CollectionManager(Set<Route> routes) {
-        this.hashSetRouteCollection = new HashSet<>(routes);
+    public CollectionManager(Collection<Route> routes, RouteStore store, RouteInterner routeInterner, MutationLog mutationLog) {
+        this.routes = store;
+        this.routeInterner = routeInterner;
+        this.mutationLog = mutationLog;
+        this.distanceIndex = new DistanceIndex();
+        this.distanceStatistics = new DistanceStatistics(distanceIndex);
+        List<Route> sortedRoutes = new ArrayList<>(routes);
+        sortedRoutes.sort(Comparator.comparing(Route::getId));
+        for (Route route : sortedRoutes) {
+            if (this.routes.contains(route.getId())) {
+                System.err.println("Ошибка: маршрут с ID " + route.getId() + " встречается повторно и не был добавлен");
+            } else {
+                putRoute(route);
+            }
+        }
+        this.collectionCreation = ZonedDateTime.now();
+        this.maxId.set(new FileManager().findMaxId(routes));
+        this.loaded = new CountDownLatch(0);
+        publish();
+    }
+
+    /**
+     * Конструктор класса CollectionManager для хранилища, которое уже заполнено при загрузке
+     * (например, ленивого хранилища {@link LazyRouteStore}). Расстояния учитываются через
+     * {@link RouteStore#forEachDistance}, поэтому маршруты при создании не материализуются.
+     *
+     * @param store          Заполненное хранилище маршрутов с уникальными ID.
+     * @param routeInterner  Пул разделяемых значений, общий для загрузчика, хранилища и чтения полей.
+     * @param mutationLog    Открытый журнал изменений, уже примененный к хранилищу, или null.
+     */
+    public CollectionManager(RouteStore store, RouteInterner routeInterner, MutationLog mutationLog) {
+        this(store, routeInterner, mutationLog, new CountDownLatch(0));
+    }
+
+    /**
+     * Конструктор класса CollectionManager для заполненного хранилища с заданным признаком окончания загрузки.
+     *
+     * @param store          Хранилище маршрутов с уникальными ID.
+     * @param routeInterner  Пул разделяемых значений, общий для загрузчика, хранилища и чтения полей.
+     * @param mutationLog    Открытый журнал изменений или null.
+     * @param loaded         Признак окончания загрузки.
+     */
+    private CollectionManager(RouteStore store, RouteInterner routeInterner, MutationLog mutationLog, CountDownLatch loaded) {
+        this.routes = store;
+        this.routeInterner = routeInterner;
+        this.mutationLog = mutationLog;
+        this.distanceIndex = new DistanceIndex();
+        this.distanceStatistics = new DistanceStatistics(distanceIndex);
+        rebuildDistances();
         this.collectionCreation = ZonedDateTime.now();
-        this.maxId = new FileManager().findMaxId(routes);
+        this.maxId.set(store.maxId());
+        this.loaded = loaded;
+        publish();
+    }
+
+    /**
+     * Создает пустую коллекцию, которая будет заполнена загрузкой в фоновом потоке.
+     * Загрузчик добавляет маршруты методом {@link #addLoadedRoutes}, применяет журнал изменений методом
+     * {@link #recoverMutationLog} и завершает загрузку методом {@link #finishLoading}; до этого маршруты
+     * хранятся в объектном хранилище TreeRouteStore.
+     *
+     * @param routeInterner  Пул разделяемых значений, общий для загрузчика, хранилища и чтения полей.
+     * @param mutationLog    Журнал изменений, который будет применен после загрузки маршрутов, или null.
+     * @return Коллекция в состоянии загрузки.
+     */
+    public static CollectionManager loading(RouteInterner routeInterner, MutationLog mutationLog) {
+        return new CollectionManager(new TreeRouteStore(), routeInterner, mutationLog, new CountDownLatch(1));
+    }
+
+    /**
+     * Добавляет часть загруженных маршрутов в порядке возрастания ID; маршрут с уже загруженным ID
+     * не добавляется, как и при создании коллекции. Изменения не записываются в журнал.
+     *
+     * @param batch    Часть загруженных маршрутов.
+     * @param progress Доля загруженной части файла, от 0 до 1.
+     */
+    public void addLoadedRoutes(Collection<Route> batch, double progress) {
+        List<Route> sortedRoutes = new ArrayList<>(batch);
+        sortedRoutes.sort(Comparator.comparing(Route::getId));
+        loadLock.lock();
+        long stamp = lock.writeLock();
+        try {
+            for (Route route : sortedRoutes) {
+                if (routes.contains(route.getId())) {
+                    System.err.println("Ошибка: маршрут с ID " + route.getId() + " встречается повторно и не был добавлен");
+                } else {
+                    putRoute(route);
+                }
+                maxId.accumulateAndGet(route.getId(), Math::max);
+            }
+            loadedRoutes = routes.size();
+            loadProgress = progress;
+        } finally {
+            unlockWrite(stamp);
+            loadLock.unlock();
+        }
+    }
+
+    /**
+     * Применяет журнал изменений к загруженным маршрутам и открывает журнал для записи.
+     *
+     * @param baseLsn Номер последней записи журнала, учтенной в загруженных маршрутах (0 для CSV файла).
+     * @throws IOException Если произошла ошибка ввода-вывода при чтении или открытии журнала.
+     */
+    public void recoverMutationLog(long baseLsn) throws IOException {
+        if (mutationLog == null) {
+            return;
+        }
+        loadLock.lock();
+        long stamp = lock.writeLock();
+        try {
+            if (mutationLog.recover(routes, baseLsn)) {
+                rebuildDistances();
+                maxId.set(routes.maxId());
+                loadedRoutes = routes.size();
+            }
+        } finally {
+            unlockWrite(stamp);
+            loadLock.unlock();
+        }
+    }
+
+    /**
+     * Завершает загрузку коллекции и пропускает команды, ожидающие ее окончания.
+     * Если задано хранилище, коллекция переходит в него: маршруты, добавленные при загрузке, дописываются
+     * в него в порядке возрастания ID, а маршруты, которые уже есть в хранилище (ленивое хранилище над индексом
+     * файла), учитываются в индексе расстояний.
+     *
+     * @param store Хранилище, в котором коллекция будет храниться дальше, или null, чтобы оставить текущее.
+     */
+    public void finishLoading(RouteStore store) {
+        loadLock.lock();
+        long stamp = lock.writeLock();
+        try {
+            if (store != null && store != routes) {
+                boolean filled = !store.isEmpty();
+                for (Route route : routes) {
+                    store.put(route);
+                }
+                routes = store;
+                if (filled) {
+                    rebuildDistances();
+                    maxId.accumulateAndGet(store.maxId(), Math::max);
+                }
+            }
+            loadedRoutes = routes.size();
+            loadProgress = 1;
+        } finally {
+            unlockWrite(stamp);
+            loadLock.unlock();
+        }
+        loaded.countDown();
+    }
+
+    /**
+     * Проверяет, загружена ли коллекция полностью.
+     *
+     * @return true, если загрузка завершена.
+     */
+    public boolean isLoaded() {
+        return loaded.getCount() == 0;
+    }
+
+    /**
+     * Ждет окончания загрузки коллекции не дольше указанного времени.
+     *
+     * @param timeout Наибольшее время ожидания.
+     * @param unit    Единица измерения времени ожидания.
+     * @return true, если коллекция загружена.
+     * @throws InterruptedException Если ожидание прервано.
+     */
+    public boolean awaitLoaded(long timeout, TimeUnit unit) throws InterruptedException {
+        return loaded.await(timeout, unit);
+    }
+
+    /**
+     * Возвращает описание хода загрузки коллекции.
+     *
+     * @return Количество загруженных маршрутов и доля загруженной части файла.
+     */
+    public String loadStatus() {
+        return String.format(Locale.ROOT, "загружено маршрутов: %d (%.0f%% файла)", loadedRoutes, loadProgress * 100);
+    }
+
+    /**
+     * Выполняет действие над уже загруженной частью коллекции: на время действия фоновая загрузка
+     * приостанавливается, поэтому действие видит согласованное состояние.
+     *
+     * @param action Действие, которое только читает коллекцию.
+     */
+    public void withLoadedPrefix(Runnable action) {
+        loadLock.lock();
+        try {
+            action.run();
+        } finally {
+            loadLock.unlock();
+        }
+    }
+
+    /**
+     * Переключает коллекцию на применение изменений единственным записывающим потоком. Изменяющие методы кладут
+     * изменение в кольцевой буфер без блокировок и ждут его применения, а записывающий поток применяет все
+     * накопившиеся изменения пачкой: под одной блокировкой записи, с одним сбросом журнала изменений на диск
+     * и одной публикацией версии на пачку. Методы чтения по-прежнему работают с последней опубликованной версией.
+     * Если цикл уже запущен, ничего не делает.
+     */
+    public synchronized void startWriterLoop() {
+        if (writerLoop == null) {
+            writerLoop = new WriterLoop(this::applyBatch, WRITER_THREAD_NAME);
+        }
+    }
+
+    /**
+     * Останавливает записывающий поток после применения уже отданных изменений; дальнейшие изменения
+     * применяются в вызывающих потоках. Вызывается, когда другие потоки не изменяют коллекцию.
+     */
+    public synchronized void stopWriterLoop() {
+        WriterLoop loop = writerLoop;
+        if (loop != null) {
+            writerLoop = null;
+            loop.stop();
+        }
+    }
+
+    /**
+     * Выполняет изменение коллекции: в записывающем потоке, если он запущен, иначе в текущем потоке
+     * под блокировкой записи. В обоих случаях метод возвращается, когда изменение применено и опубликовано.
+     * Вывод изменения, выполненного записывающим потоком, попадает туда же, куда вывод текущего потока
+     * ({@link ConsoleCapture#bind}).
+     *
+     * @param mutation Изменение, которое выполняется под блокировкой записи.
+     */
+    private void write(Runnable mutation) {
+        WriterLoop loop = writerLoop;
+        if (loop != null) {
+            loop.submit(ConsoleCapture.bind(mutation));
+            return;
+        }
+        long stamp = lock.writeLock();
+        try {
+            mutation.run();
+        } finally {
+            unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Применяет пачку изменений в записывающем потоке: под одной блокировкой записи, откладывая сброс журнала
+     * изменений до публикации версии в конце пачки.
+     *
+     * @param batch Действие, которое применяет изменения пачки по порядку.
+     */
+    private void applyBatch(Runnable batch) {
+        long stamp = lock.writeLock();
+        deferJournalSync = true;
+        try {
+            batch.run();
+        } finally {
+            deferJournalSync = false;
+            unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Публикует версию коллекции и снимает блокировку записи.
+     *
+     * @param stamp Метка блокировки записи.
+     */
+    private void unlockWrite(long stamp) {
+        try {
+            publish();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Публикует новую версию коллекции из снимков хранилища, индекса расстояний и агрегатов.
+     * Перед публикацией на диск сбрасываются отложенные записи журнала, поэтому версия не содержит изменений,
+     * которые могут потеряться при сбое. Если хранилище не поддерживает снимки, версия не публикуется.
+     * Вызывается под блокировкой записи.
+     */
+    private void publish() {
+        syncJournal();
+        RouteStore snapshot = routes.snapshot();
+        if (snapshot == null) {
+            version = null;
+            return;
+        }
+        DistanceIndex index = distanceIndex.snapshot();
+        version = new Version(snapshot, index, distanceStatistics.snapshot(index), dirtyMutations);
+    }
+
+    /**
+     * Выполняет действие, которое только читает коллекцию, над последней опубликованной версией без блокировки;
+     * если версии нет, действие выполняется над самой коллекцией под блокировкой чтения.
+     *
+     * @param reader Действие над версией коллекции.
+     */
+    private void read(Consumer<Version> reader) {
+        query(pinned -> {
+            reader.accept(pinned);
+            return null;
+        });
+    }
+
+    /**
+     * Вычисляет значение по последней опубликованной версии коллекции без блокировки;
+     * если версии нет, значение вычисляется по самой коллекции под блокировкой чтения.
+     *
+     * @param reader Функция, которая только читает коллекцию.
+     * @param <T>    Тип значения.
+     * @return Значение функции.
+     */
+    private <T> T query(Function<Version, T> reader) {
+        Version pinned = version;
+        if (pinned != null) {
+            return reader.apply(pinned);
+        }
+        long stamp = readLock();
+        try {
+            return reader.apply(new Version(routes, distanceIndex, distanceStatistics, dirtyMutations));
+        } finally {
+            lock.unlock(stamp);
+        }
+    }
+
+    /**
+     * Захватывает блокировку для чтения коллекции. Если хранилище не поддерживает одновременное чтение,
+     * вместо нее захватывается блокировка записи.
+     *
+     * @return Метка блокировки, которую нужно передать в {@link StampedLock#unlock}.
+     */
+    private long readLock() {
+        long stamp = lock.readLock();
+        if (routes.supportsConcurrentReads()) {
+            return stamp;
+        }
+        long writeStamp = lock.tryConvertToWriteLock(stamp);
+        if (writeStamp != 0) {
+            return writeStamp;
+        }
+        lock.unlockRead(stamp);
+        return lock.writeLock();
+    }
+
+    /**
+     * Заново строит индекс расстояний и агрегаты по маршрутам хранилища.
+     */
+    private void rebuildDistances() {
+        distanceIndex.clear();
+        distanceStatistics.clear();
+        routes.forEachDistance((distance, id) -> {
+            distanceIndex.add(distance, id);
+            distanceStatistics.add(distance);
+        });
     }
 
     /**
      * Выводит основную информацию о коллекции, включая тип коллекции, тип элементов,
-     * время создания и количество элементов.
+     * время создания, количество элементов и агрегаты по полю distance.
      */
     public void infoAboutCollection() {
-        System.out.println("Коллекция: " + hashSetRouteCollection.getClass().getSimpleName());
-        System.out.println("Тип элементов: " + Route.class.getSimpleName());
-        System.out.println("Время создания коллекции: " + collectionCreation.format(DateTimeFormatter.ofPattern(PATTERN)));
-        System.out.println("Количество элементов: " + hashSetRouteCollection.size());
+        read(version -> {
+            System.out.println("Коллекция: " + version.routes.getClass().getSimpleName());
+            System.out.println("Тип элементов: " + Route.class.getSimpleName());
+            System.out.println("Время создания коллекции: " + collectionCreation.format(DateTimeFormatter.ofPattern(PATTERN)));
+            System.out.println("Количество элементов: " + version.routes.size());
+            System.out.println("Различных названий: " + routeInterner.getNameDictionary().size());
+            System.out.println("Несохраненных изменений: " + version.dirtyMutations);
+            System.out.println(autosaveMutations > 0
+                    ? "Автосохранение: включено (изменений между сохранениями: " + autosaveMutations + ")"
+                    : "Автосохранение: выключено");
+            System.out.println(backgroundSaver.status());
+            if (!isLoaded()) {
+                System.out.println("Коллекция загружается: " + loadStatus());
+            }
+            if (version.statistics.getCount() > 0) {
+                System.out.println("Distance: сумма = " + version.statistics.getSum()
+                        + ", минимум = " + version.statistics.getMin()
+                        + ", максимум = " + version.statistics.getMax()
+                        + ", среднее = " + String.format(Locale.ROOT, "%.2f", version.statistics.getMean())
+                        + ", дисперсия = " + String.format(Locale.ROOT, "%.2f", version.statistics.getVariance()));
+            }
+        });
     }
 
     /**
@@ -50,24 +607,30 @@ public class CollectionManager {
      * Если коллекция пуста, выводится соответствующее сообщение.
      */
     public void showElementsCollection() {
-        if (hashSetRouteCollection.isEmpty()) {
-            System.out.println("Коллекция пуста");
-        } else {
-            List<Route> routeList = new ArrayList<>(hashSetRouteCollection);
-
-            routeList.sort((r1, r2) -> Integer.compare(r1.getId(), r2.getId()));
-
-            for (Route route : routeList) {
-                System.out.println(route);
+        read(version -> {
+            if (version.routes.isEmpty()) {
+                System.out.println("Коллекция пуста");
+            } else {
+                for (Route route : version.routes) {
+                    System.out.println(route);
+                }
             }
-        }
+        });
     }
 
     /**
      * Удаляет все элементы из коллекции.
      */
     public void clearAllCollection() {
-        hashSetRouteCollection.clear();
+        write(() -> {
+            routes.clear();
+            distanceIndex.clear();
+            distanceStatistics.clear();
+            changedIds.clear();
+            deletedIds.clear();
+            fullSaveRequired = true;
+            logMutation(MutationLog::appendClear);
+        });
     }
 
     /**
@@ -77,53 +640,98 @@ public class CollectionManager {
      * @return true, если элемент с таким ID существует, иначе false.
      */
     public boolean containsIdRoute(Integer id) {
-        for (Route route : hashSetRouteCollection) {
-            if (route.getId().equals(id)) {
-                return true;
-            }
-        }
-        return false;
+        return query(version -> version.routes.contains(id));
     }
 
     /**
      * Удаляет из коллекции все элементы, ID которых превышает указанный.
+     * Удаляется хвост упорядоченной коллекции, поэтому время работы пропорционально количеству удаленных элементов.
      *
      * @param id ID, по которому происходит удаление элементов.
      */
     public void removeGreater(Integer id) {
-        if (hashSetRouteCollection.isEmpty()) {
-            System.out.println("Коллекция пуста");
-        } else {
-            HashSet<Route> toRemove = new HashSet<>();
-
-            for (Route route : hashSetRouteCollection) {
-                if (route.getId() > id) {
-                    toRemove.add(route);
+        write(() -> {
+            if (routes.isEmpty()) {
+                System.out.println("Коллекция пуста");
+            } else {
+                int size = routes.size();
+                routes.removeGreater(id, (distance, removedId) -> {
+                    untrackDistance(distance, removedId);
+                    markDeleted(removedId);
+                });
+                if (routes.size() != size) {
+                    logMutation(log -> log.appendRemoveGreater(id));
                 }
             }
-            hashSetRouteCollection.removeAll(toRemove);
-        }
+        });
     }
 
     /**
      * Выводит расстояния всех маршрутов в коллекции, отсортированные по возрастанию.
+     * Расстояния берутся из упорядоченного индекса, поэтому сортировка не выполняется.
      * Если коллекция пуста, выводится соответствующее сообщение.
      */
     public void showRouteSortedDistance() {
-        if (hashSetRouteCollection.isEmpty()) {
-            System.out.println("Коллекция пуста");
-        } else {
-            List<Long> distances = new ArrayList<>();
-            for (Route route : hashSetRouteCollection) {
-                if (route.getDistance() != null) {
-                    distances.add(route.getDistance());
-                }
-            }
-            Collections.sort(distances);
-            for (Long distance : distances) {
-                System.out.println(distance);
+        read(version -> {
+            if (version.routes.isEmpty()) {
+                System.out.println("Коллекция пуста");
+            } else {
+                version.distanceIndex.forEach((distance, id) -> System.out.println(distance));
             }
+        });
+    }
+
+    /**
+     * Возвращает перцентиль расстояний маршрутов методом ближайшего ранга.
+     *
+     * @param percentile Перцентиль в диапазоне [0, 100].
+     * @return Значение перцентиля или null, если коллекция пуста.
+     * @throws IllegalArgumentException Если перцентиль вне диапазона [0, 100].
+     */
+    public Long distancePercentile(double percentile) {
+        if (!(percentile >= 0 && percentile <= 100)) {
+            throw new IllegalArgumentException("Перцентиль должен быть в диапазоне от 0 до 100");
         }
+        return query(version -> {
+            if (version.distanceIndex.isEmpty()) {
+                return null;
+            }
+            int rank = (int) Math.ceil(percentile / 100 * version.distanceIndex.size());
+            return version.distanceIndex.distanceAt(Math.max(rank, 1) - 1);
+        });
+    }
+
+    /**
+     * Возвращает количество маршрутов, расстояние которых лежит в отрезке [from, to].
+     *
+     * @param from Нижняя граница расстояния (включительно).
+     * @param to   Верхняя граница расстояния (включительно).
+     * @return Количество маршрутов.
+     */
+    public int countDistanceBetween(long from, long to) {
+        return query(version -> version.distanceIndex.countBetween(from, to));
+    }
+
+    /**
+     * Выводит маршруты, расстояние которых равно k-му по возрастанию расстоянию в коллекции.
+     * Если коллекция пуста или ранг вне диапазона, выводится соответствующее сообщение.
+     *
+     * @param rank Ранг расстояния, начиная с 1.
+     */
+    public void showRoutesWithDistanceRank(int rank) {
+        read(version -> {
+            if (version.distanceIndex.isEmpty()) {
+                System.out.println("Коллекция пуста");
+            } else if (rank < 1 || rank > version.distanceIndex.size()) {
+                System.out.println("Ранг должен быть в диапазоне от 1 до " + version.distanceIndex.size());
+            } else {
+                long distance = version.distanceIndex.distanceAt(rank - 1);
+                System.out.println("Расстояние с рангом " + rank + ": " + distance);
+                DistanceIndex index = version.distanceIndex;
+                index.forEach(index.countLess(distance), index.countLessOrEqual(distance),
+                        (routeDistance, id) -> System.out.println(version.routes.get(id)));
+            }
+        });
     }
 
     /**
@@ -131,17 +739,15 @@ public class CollectionManager {
      * Если коллекция пуста, выводится соответствующее сообщение.
      */
     public void showIdSortedCollection() {
-        if (hashSetRouteCollection.isEmpty()) {
-            System.out.println("Коллекция пуста");
-        } else {
-            List<Route> routeList = new ArrayList<>(hashSetRouteCollection);
-
-            routeList.sort(Comparator.comparing(Route::getId));
-
-            for (Route route : routeList) {
-                System.out.println("ID: " + route.getId() + ", Name: " + route.getName());
+        read(version -> {
+            if (version.routes.isEmpty()) {
+                System.out.println("Коллекция пуста");
+            } else {
+                for (Route route : version.routes) {
+                    System.out.println("ID: " + route.getId() + ", Name: " + route.getName());
+                }
             }
-        }
+        });
     }
 
     /**
@@ -150,40 +756,47 @@ public class CollectionManager {
      * @param id ID маршрута, который необходимо удалить.
      */
     public void removeById(Integer id) {
-        if (hashSetRouteCollection.isEmpty()) {
-            System.out.println("Коллекция пуста");
-        } else {
-            Route toRemove = null;
-            for (Route route : hashSetRouteCollection) {
-                if (route.getId().equals(id)) {
-                    toRemove = route;
-                    break;
+        write(() -> {
+            if (routes.isEmpty()) {
+                System.out.println("Коллекция пуста");
+            } else {
+                Route removed = routes.remove(id);
+                if (removed != null) {
+                    untrackDistance(removed);
+                    markDeleted(id);
+                    logMutation(log -> log.appendRemove(id));
                 }
             }
-            if (toRemove != null) {
-                hashSetRouteCollection.remove(toRemove);
-            }
-        }
+        });
     }
 
     /**
      * Возвращает сумму расстояний всех маршрутов в коллекции.
+     * Сумма поддерживается при изменении коллекции, поэтому метод выполняется за константное время.
+     * Сумма берется из опубликованной версии, а без версий сначала читается оптимистично, без блокировки;
+     * блокировка чтения берется, только если коллекция изменилась во время чтения.
      *
      * @return Сумма расстояний всех маршрутов. Если коллекция пуста, возвращает 0.
      */
     public Long sumOfDistance() {
-        if (hashSetRouteCollection.isEmpty()) {
+        Version pinned = version;
+        long stamp = pinned != null ? 0 : lock.tryOptimisticRead();
+        boolean empty = pinned != null ? pinned.routes.isEmpty() : routes.isEmpty();
+        long sum = pinned != null ? pinned.statistics.getSum() : distanceStatistics.getSum();
+        if (pinned == null && !lock.validate(stamp)) {
+            stamp = readLock();
+            try {
+                empty = routes.isEmpty();
+                sum = distanceStatistics.getSum();
+            } finally {
+                lock.unlock(stamp);
+            }
+        }
+        if (empty) {
             System.out.println("Коллекция пуста");
             return 0L;
-        } else {
-            Long sum = 0L;
-            for (Route route : hashSetRouteCollection) {
-                if (route.getDistance() != null) {
-                    sum += route.getDistance();
-                }
-            }
-            return sum;
         }
+        return sum;
     }
 
     /**
@@ -192,11 +805,13 @@ public class CollectionManager {
      * @return Максимальный ID.
      */
     public int getMaxId() {
-        return maxId;
+        return maxId.get();
     }
 
     /**
      * Добавляет новый маршрут в коллекцию, автоматически генерируя ID (maxId + 1).
+     * ID выделяется атомарно под блокировкой записи, поэтому маршруты, добавленные из разных потоков,
+     * получают разные ID.
      *
      * @param name         Название маршрута.
      * @param coordinates  Координаты маршрута.
@@ -206,10 +821,13 @@ public class CollectionManager {
      * @param distance     Расстояние маршрута.
      */
     public void addRoute(String name, Coordinates coordinates, ZonedDateTime creationDate, Location from, Location to, Long distance) {
-        int newId = maxId + 1;
-        Route route = new Route(newId, name, coordinates, creationDate, from, to, distance);
-        hashSetRouteCollection.add(route);
-        maxId = newId;
+        write(() -> {
+            int newId = maxId.incrementAndGet();
+            Route route = new Route(newId, name, coordinates, creationDate, from, to, distance);
+            putRoute(route);
+            markChanged(newId);
+            logMutation(log -> log.appendPut(route));
+        });
     }
 
     /**
@@ -225,21 +843,380 @@ public class CollectionManager {
      * @param distance     Расстояние маршрута.
      */
     public void addIfMaxIdRoute(int id, String name, Coordinates coordinates, ZonedDateTime creationDate, Location from, Location to, Long distance) {
-        if (id > maxId) {
-            Route route = new Route(id, name, coordinates, creationDate, from, to, distance);
-            hashSetRouteCollection.add(route);
-            maxId = id;
+        write(() -> {
+            if (id > maxId.get()) {
+                Route route = new Route(id, name, coordinates, creationDate, from, to, distance);
+                putRoute(route);
+                maxId.set(id);
+                markChanged(id);
+                logMutation(log -> log.appendPut(route));
+            }
+        });
+    }
+
+    /**
+     * Добавляет маршрут в хранилище и учитывает его расстояние в индексе расстояний и агрегатах.
+     *
+     * @param route Маршрут, который необходимо добавить.
+     */
+    private void putRoute(Route route) {
+        intern(route);
+        routes.put(route);
+        trackDistance(route);
+    }
+
+    /**
+     * Заменяет значения маршрута разделяемыми экземплярами пула, если хранилище держит объекты маршрутов;
+     * хранилище, раскладывающее маршрут по колонкам, сохраняет значения без пула.
+     *
+     * @param route Маршрут, значения которого необходимо заменить.
+     */
+    private void intern(Route route) {
+        if (routes.keepsRouteObjects()) {
+            routeInterner.intern(route);
+        }
+    }
+
+    /**
+     * Учитывает расстояние маршрута в индексе расстояний и агрегатах.
+     *
+     * @param route Маршрут, расстояние которого необходимо учесть.
+     */
+    private void trackDistance(Route route) {
+        if (route.getDistance() != null) {
+            distanceIndex.add(route.getDistance(), route.getId());
+            distanceStatistics.add(route.getDistance());
+        }
+    }
+
+    /**
+     * Исключает расстояние маршрута из индекса расстояний и агрегатов.
+     *
+     * @param route Маршрут, расстояние которого необходимо исключить.
+     */
+    private void untrackDistance(Route route) {
+        if (route.getDistance() != null) {
+            untrackDistance(route.getDistance(), route.getId());
+        }
+    }
+
+    /**
+     * Исключает расстояние маршрута из индекса расстояний и агрегатов.
+     *
+     * @param distance Расстояние маршрута.
+     * @param id       ID маршрута.
+     */
+    private void untrackDistance(long distance, int id) {
+        if (distanceIndex.remove(distance, id)) {
+            distanceStatistics.remove(distance);
+        }
+    }
+
+    /**
+     * Учитывает изменение коллекции: записывает его в журнал изменений, если он ведется, и ждет сброса записи на диск
+     * (при применении пачки сброс откладывается до публикации версии), запускает уплотнение журнала
+     * в снимок, когда журнал вырос больше порога, и автосохранение, когда накопилось заданное количество изменений.
+     * Уплотнение и автосохранение выполняются в фоновом потоке над копией коллекции.
+     *
+     * @param mutation Запись изменения в журнал.
+     */
+    private void logMutation(Mutation mutation) {
+        dirtyMutations++;
+        if (mutationLog != null) {
+            try {
+                long lsn = mutation.writeTo(mutationLog);
+                if (deferJournalSync) {
+                    unsyncedLsn = lsn;
+                } else {
+                    mutationLog.sync(lsn);
+                }
+                if (mutationLog.needsCompaction()) {
+                    long snapshotId = newSnapshotId();
+                    List<Route> copy = copyRoutes();
+                    backgroundSaver.compact(copy, mutationLog, mutationLog.seal(), snapshotId);
+                    startSnapshot(mutationLog.getCsvPath(), snapshotId);
+                }
+            } catch (IOException e) {
+                System.err.println("Ошибка при записи в журнал изменений: " + e.getMessage());
+            }
+        }
+        if (autosaveMutations > 0 && dirtyMutations >= autosaveMutations) {
+            saveRoutes(autosavePath);
+        }
+    }
+
+    /**
+     * Сбрасывает на диск записи журнала, отложенные при применении пачки изменений. Вызывается под блокировкой записи.
+     */
+    private void syncJournal() {
+        if (unsyncedLsn == 0) {
+            return;
+        }
+        long lsn = unsyncedLsn;
+        unsyncedLsn = 0;
+        try {
+            mutationLog.sync(lsn);
+        } catch (IOException e) {
+            System.err.println("Ошибка при записи в журнал изменений: " + e.getMessage());
         }
     }
 
     /**
-     * Сохраняет коллекцию маршрутов в файл по указанному пути.
+     * Отмечает маршрут добавленным или измененным после последнего сохранения.
+     *
+     * @param id ID маршрута.
+     */
+    private void markChanged(int id) {
+        deletedIds.remove(id);
+        changedIds.add(id);
+    }
+
+    /**
+     * Отмечает маршрут удаленным после последнего сохранения.
+     *
+     * @param id ID маршрута.
+     */
+    private void markDeleted(int id) {
+        changedIds.remove(id);
+        deletedIds.add(id);
+    }
+
+    /**
+     * Возвращает новый ненулевой идентификатор снимка.
+     *
+     * @return идентификатор снимка.
+     */
+    private static long newSnapshotId() {
+        long snapshotId;
+        do {
+            snapshotId = ThreadLocalRandom.current().nextLong();
+        } while (snapshotId == 0);
+        return snapshotId;
+    }
+
+    /**
+     * Начинает цепочку разностных сегментов от нового полного снимка, который содержит все текущие изменения.
+     *
+     * @param filePath   Путь к CSV файлу, рядом с которым записывается снимок.
+     * @param snapshotId Идентификатор снимка.
+     */
+    private void startSnapshot(String filePath, long snapshotId) {
+        basePath = filePath;
+        baseSnapshotId = snapshotId;
+        deltaSequence = 0;
+        deltaRows = 0;
+        fullSaveRequired = false;
+        changedIds.clear();
+        deletedIds.clear();
+    }
+
+    /**
+     * Задает снимок, из которого загружена коллекция, чтобы следующие сохранения продолжали его разностными сегментами.
+     *
+     * @param filePath      Путь к CSV файлу, рядом с которым лежит снимок.
+     * @param snapshotId    Идентификатор снимка (0 - следующее сохранение полное).
+     * @param deltaSequence Номер последнего примененного разностного сегмента.
+     * @param deltaRows     Количество записей в примененных разностных сегментах.
+     */
+    public void setSnapshotBase(String filePath, long snapshotId, int deltaSequence, long deltaRows) {
+        long stamp = lock.writeLock();
+        try {
+            this.basePath = filePath;
+            this.baseSnapshotId = snapshotId;
+            this.deltaSequence = deltaSequence;
+            this.deltaRows = deltaRows;
+        } finally {
+            unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Снимает копию коллекции на текущий момент. Маршруты копируются поверхностно: координаты, места и даты
+     * не изменяются на месте, поэтому копия не меняется при дальнейших изменениях коллекции.
+     * Маршруты опубликованной версии не изменяются вовсе, поэтому из нее копируются только ссылки.
+     *
+     * @return Копия маршрутов в порядке возрастания ID.
+     */
+    private List<Route> copyRoutes() {
+        publish();
+        Version pinned = version;
+        if (pinned != null) {
+            List<Route> copy = new ArrayList<>(pinned.routes.size());
+            for (Route route : pinned.routes) {
+                copy.add(route);
+            }
+            return copy;
+        }
+        List<Route> copy = new ArrayList<>(routes.size());
+        for (Route route : routes) {
+            copy.add(new Route(route));
+        }
+        return copy;
+    }
+
+    /**
+     * Версия коллекции: хранилище, индекс расстояний и агрегаты на один момент времени. Опубликованная версия
+     * состоит из неизменяемых снимков, поэтому ее читают без блокировок; версия над самой коллекцией
+     * создается только на время чтения под блокировкой.
+     */
+    private static final class Version {
+
+        /**
+         * Маршруты версии.
+         */
+        private final RouteStore routes;
+
+        /**
+         * Индекс расстояний версии.
+         */
+        private final DistanceIndex distanceIndex;
+
+        /**
+         * Агрегаты по полю distance версии.
+         */
+        private final DistanceStatistics statistics;
+
+        /**
+         * Количество несохраненных изменений на момент версии.
+         */
+        private final int dirtyMutations;
+
+        /**
+         * Конструктор класса Version.
+         *
+         * @param routes         Маршруты.
+         * @param distanceIndex  Индекс расстояний.
+         * @param statistics     Агрегаты по полю distance.
+         * @param dirtyMutations Количество несохраненных изменений.
+         */
+        Version(RouteStore routes, DistanceIndex distanceIndex, DistanceStatistics statistics, int dirtyMutations) {
+            this.routes = routes;
+            this.distanceIndex = distanceIndex;
+            this.statistics = statistics;
+            this.dirtyMutations = dirtyMutations;
+        }
+    }
+
+    /**
+     * Запись изменения коллекции в журнал изменений.
+     */
+    @FunctionalInterface
+    private interface Mutation {
+
+        /**
+         * Добавляет запись изменения в журнал, не дожидаясь сброса на диск.
+         *
+         * @param log Журнал изменений.
+         * @return Номер записи журнала.
+         * @throws IOException Если журнал не открыт или недоступен после ошибки.
+         */
+        long writeTo(MutationLog log) throws IOException;
+    }
+
+    /**
+     * Возвращает агрегаты по полю distance.
+     *
+     * @return Агрегаты по полю distance.
+     */
+    public DistanceStatistics getDistanceStatistics() {
+        return distanceStatistics;
+    }
+
+    /**
+     * Возвращает словарь названий коллекции.
+     *
+     * @return Словарь названий.
+     */
+    public NameDictionary getNameDictionary() {
+        return routeInterner.getNameDictionary();
+    }
+
+    /**
+     * Возвращает пул разделяемых значений маршрутов.
+     *
+     * @return Пул разделяемых значений.
+     */
+    public RouteInterner getRouteInterner() {
+        return routeInterner;
+    }
+
+    /**
+     * Сохраняет коллекцию маршрутов в файл по указанному пути, а затем рядом с ним двоичный снимок,
+     * из которого коллекция загружается при следующем запуске. Записи журнала изменений, учтенные в снимке,
+     * после этого отбрасываются.
+     * Метод снимает копию коллекции и сразу возвращает управление; файлы записываются в фоновом потоке
+     * во временные файлы, которые затем атомарно заменяют прежние.
+     * <p>
+     * Если коллекция загружена из снимка или уже сохранялась в этот файл, сохраняются только маршруты, измененные
+     * после предыдущего сохранения, и ID удаленных маршрутов: они записываются разностным сегментом снимка,
+     * а CSV файл не перезаписывается. Полностью файл и снимок перезаписываются, когда записей в сегментах становится
+     * больше четверти коллекции, сегментов становится слишком много, коллекция была очищена или сохранение не удалось.
+     * Если изменений нет, сегмент не записывается, а отбрасываются только учтенные записи журнала изменений.
      *
      * @param filePath Путь к файлу, в который будет сохранена коллекция.
      */
     public void save(String filePath) {
-        FileManager csvParser = new FileManager();
-        csvParser.parseToCsv(filePath, hashSetRouteCollection);
+        write(() -> {
+            saveRoutes(filePath);
+        });
+    }
+
+    /**
+     * Сохраняет коллекцию полностью или разностным сегментом; вызывается под блокировкой записи.
+     *
+     * @param filePath Путь к файлу, в который будет сохранена коллекция.
+     */
+    private void saveRoutes(String filePath) {
+        long lsn = mutationLog == null ? 0 : mutationLog.getLastLsn();
+        if (needsFullSave(filePath)) {
+            long snapshotId = newSnapshotId();
+            backgroundSaver.save(filePath, copyRoutes(), mutationLog, lsn, snapshotId);
+            startSnapshot(filePath, snapshotId);
+        } else if (changedIds.isEmpty() && deletedIds.isEmpty()) {
+            backgroundSaver.saveUnchanged(mutationLog, lsn);
+        } else {
+            List<Route> puts = new ArrayList<>(changedIds.size());
+            for (int id : changedIds) {
+                Route route = routes.get(id);
+                if (route != null) {
+                    puts.add(new Route(route));
+                }
+            }
+            List<Integer> deletes = new ArrayList<>(deletedIds);
+            backgroundSaver.saveDelta(filePath, baseSnapshotId, ++deltaSequence, puts, deletes, mutationLog, lsn);
+            deltaRows += puts.size() + deletes.size();
+            changedIds.clear();
+            deletedIds.clear();
+        }
+        dirtyMutations = 0;
+    }
+
+    /**
+     * Проверяет, нужно ли сохранить коллекцию полностью вместо разностного сегмента.
+     *
+     * @param filePath Путь к файлу, в который сохраняется коллекция.
+     * @return true, если нужно полное сохранение.
+     */
+    private boolean needsFullSave(String filePath) {
+        long pendingRows = deltaRows + changedIds.size() + deletedIds.size();
+        return fullSaveRequired || baseSnapshotId == 0 || !filePath.equals(basePath) || backgroundSaver.needsFullSave()
+                || deltaSequence >= MAX_DELTA_SEGMENTS || pendingRows * DELTA_FRACTION > routes.size();
+    }
+
+    /**
+     * Включает автосохранение коллекции после заданного количества изменений.
+     *
+     * @param filePath  Путь к файлу, в который сохраняется коллекция.
+     * @param mutations Количество изменений между сохранениями; 0 выключает автосохранение.
+     */
+    public void setAutosave(String filePath, int mutations) {
+        long stamp = lock.writeLock();
+        try {
+            this.autosavePath = filePath;
+            this.autosaveMutations = Math.max(mutations, 0);
+        } finally {
+            unlockWrite(stamp);
+        }
     }
 
     /**
@@ -256,66 +1233,104 @@ public class CollectionManager {
 
     /**
      * Обновляет значение указанного поля маршрута с заданным ID.
+     * Координаты и места могут разделяться несколькими маршрутами, поэтому изменяемое значение сначала копируется
+     * (copy-on-write), а измененный маршрут снова проходит через пул разделяемых значений.
      *
      * @param id    ID маршрута, который необходимо обновить.
      * @param field Название поля, которое необходимо обновить.
      * @param value Новое значение поля.
      */
     public void update(Integer id, String field, String value) {
+        write(() -> {
+            updateRoute(id, field, value);
+        });
+    }
+
+    /**
+     * Обновляет значение поля маршрута; вызывается под блокировкой записи.
+     *
+     * @param id    ID маршрута, который необходимо обновить.
+     * @param field Название поля, которое необходимо обновить.
+     * @param value Новое значение поля.
+     */
+    private void updateRoute(Integer id, String field, String value) {
         try {
             if (field.equals("stop")) {
                 return;
             }
-            for (Route route : hashSetRouteCollection) {
-                if (route.getId().equals(id)) {
-                    switch (field) {
-                        case "Name":
-                            route.setName(validateString(value));
-                            break;
-                        case "CoordinateX":
-                            route.setCoordinateX(parseDoubleWithMax(value));
-                            break;
-                        case "CoordinateY":
-                            route.setCoordinateY(parseFloat(value));
-                            break;
-                        case "LocationFromX":
-                            route.getFrom().setX(parseFloat(value));
-                            break;
-                        case "LocationFromY":
-                            route.getFrom().setY(parseInteger(value));
-                            break;
-                        case "LocationFromZ":
-                            route.getFrom().setZ(parseDouble(value));
-                            break;
-                        case "LocationFromName":
-                            route.getFrom().setName(validateString(value));
-                            break;
-                        case "LocationToX":
-                            route.getTo().setX(parseFloat(value));
-                            break;
-                        case "LocationToY":
-                            route.getTo().setY(parseInteger(value));
-                            break;
-                        case "LocationToZ":
-                            route.getTo().setZ(parseDouble(value));
-                            break;
-                        case "LocationToName":
-                            route.getTo().setName(validateString(value));
-                            break;
-                        case "Distance":
-                            route.setDistance(parseLongWithMin(value));
-                            break;
-                        case "Stop":
-                            return;
-                        default:
-                            System.out.println("Поле не распознано");
-                            return;
-                    }
-                    System.out.println("Значение поля было изменено");
+            Route stored = routes.get(id);
+            if (stored == null) {
+                System.out.println("Маршрут с ID " + id + " не найден.");
+                return;
+            }
+            Route route = new Route(stored);
+            switch (field) {
+                case "Name":
+                    route.setName(validateString(value));
+                    break;
+                case "CoordinateX":
+                    route.setCoordinateX(parseDoubleWithMax(value));
+                    break;
+                case "CoordinateY":
+                    route.setCoordinateY(parseFloat(value));
+                    break;
+                case "LocationFromX":
+                    Location fromX = new Location(route.getFrom());
+                    fromX.setX(parseFloat(value));
+                    route.setFrom(fromX);
+                    break;
+                case "LocationFromY":
+                    Location fromY = new Location(route.getFrom());
+                    fromY.setY(parseInteger(value));
+                    route.setFrom(fromY);
+                    break;
+                case "LocationFromZ":
+                    Location fromZ = new Location(route.getFrom());
+                    fromZ.setZ(parseDouble(value));
+                    route.setFrom(fromZ);
+                    break;
+                case "LocationFromName":
+                    Location fromName = new Location(route.getFrom());
+                    fromName.setName(validateString(value));
+                    route.setFrom(fromName);
+                    break;
+                case "LocationToX":
+                    Location toX = new Location(route.getTo());
+                    toX.setX(parseFloat(value));
+                    route.setTo(toX);
+                    break;
+                case "LocationToY":
+                    Location toY = new Location(route.getTo());
+                    toY.setY(parseInteger(value));
+                    route.setTo(toY);
+                    break;
+                case "LocationToZ":
+                    Location toZ = new Location(route.getTo());
+                    toZ.setZ(parseDouble(value));
+                    route.setTo(toZ);
+                    break;
+                case "LocationToName":
+                    Location toName = new Location(route.getTo());
+                    toName.setName(validateString(value));
+                    route.setTo(toName);
+                    break;
+                case "Distance":
+                    Long distance = parseLongWithMin(value);
+                    untrackDistance(route);
+                    route.setDistance(distance);
+                    trackDistance(route);
+                    break;
+                case "Stop":
+                    return;
+                default:
+                    System.out.println("Поле не распознано");
                     return;
-                }
             }
-            System.out.println("Маршрут с ID " + id + " не найден.");
+            intern(route);
+            routes.put(route);
+            markChanged(id);
+            logMutation(log -> log.appendPut(route));
+            System.out.println("Значение поля было изменено");
         } catch (NumberFormatException ex) {
             System.err.println("Ошибка: Неверный формат числа (" + ex.getMessage() + ")");
         } catch (NullPointerException ex) {
@@ -0,0 +1,314 @@
+package org.wineeenottt.Collection;
+
+import java.util.Arrays;
+
+/**
+ * Класс ColumnarRouteStore - колоночное хранилище маршрутов (struct of arrays).
+ * Каждое поле маршрута хранится в отдельном массиве примитивов, а строки занимают ячейки с одинаковым номером во всех массивах.
+ * Вместо графа примерно из десяти объектов на маршрут хранится по одному элементу в каждой колонке.
+ * Названия хранятся кодами общего словаря {@link NameDictionary} и декодируются при материализации маршрута.
+ * Порядок строк и удаление описаны в {@link AbstractRowRouteStore}.
+ */
+public class ColumnarRouteStore extends AbstractRowRouteStore {
+
+    /**
+     * Начальная емкость колонок.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Колонка ID маршрутов.
+     */
+    private int[] ids;
+
+    /**
+     * Колонка кодов названий маршрутов в словаре названий.
+     */
+    private int[] names;
+
+    /**
+     * Колонка координат X маршрутов.
+     */
+    private double[] coordinateX;
+
+    /**
+     * Колонка координат Y маршрутов.
+     */
+    private float[] coordinateY;
+
+    /**
+     * Колонка моментов даты создания в наносекундах эпохи.
+     */
+    private long[] creationNanos;
+
+    /**
+     * Колонка кодов часовых поясов даты создания в {@link ZoneDictionary}.
+     */
+    private int[] creationZones;
+
+    /**
+     * Колонка координат X мест отправления.
+     */
+    private float[] fromX;
+
+    /**
+     * Колонка координат Y мест отправления.
+     */
+    private int[] fromY;
+
+    /**
+     * Колонка координат Z мест отправления.
+     */
+    private double[] fromZ;
+
+    /**
+     * Колонка кодов названий мест отправления в словаре названий.
+     */
+    private int[] fromNames;
+
+    /**
+     * Колонка координат X мест назначения.
+     */
+    private float[] toX;
+
+    /**
+     * Колонка координат Y мест назначения.
+     */
+    private int[] toY;
+
+    /**
+     * Колонка координат Z мест назначения.
+     */
+    private double[] toZ;
+
+    /**
+     * Колонка кодов названий мест назначения в словаре названий.
+     */
+    private int[] toNames;
+
+    /**
+     * Колонка расстояний маршрутов.
+     */
+    private long[] distances;
+
+    /**
+     * Признаки удаленных строк.
+     */
+    private boolean[] deleted;
+
+    /**
+     * Словарь, в котором кодируются названия.
+     */
+    private final NameDictionary nameDictionary;
+
+    /**
+     * Конструктор класса ColumnarRouteStore. Создает пустое хранилище с собственным словарем названий.
+     */
+    public ColumnarRouteStore() {
+        this(new NameDictionary());
+    }
+
+    /**
+     * Конструктор класса ColumnarRouteStore. Создает пустое хранилище, кодирующее названия в общем словаре.
+     *
+     * @param nameDictionary словарь названий.
+     */
+    public ColumnarRouteStore(NameDictionary nameDictionary) {
+        this.nameDictionary = nameDictionary;
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Возвращает ID маршрута из колонки ID.
+     *
+     * @param row номер строки.
+     * @return ID маршрута.
+     */
+    @Override
+    protected int idAt(int row) {
+        return ids[row];
+    }
+
+    /**
+     * Возвращает расстояние маршрута из колонки расстояний.
+     *
+     * @param row номер строки.
+     * @return расстояние маршрута.
+     */
+    @Override
+    protected long distanceAt(int row) {
+        return distances[row];
+    }
+
+    /**
+     * Проверяет, помечена ли строка удаленной.
+     *
+     * @param row номер строки.
+     * @return true, если строка удалена.
+     */
+    @Override
+    protected boolean isDeleted(int row) {
+        return deleted[row];
+    }
+
+    /**
+     * Помечает строку удаленной или снимает пометку.
+     *
+     * @param row       номер строки.
+     * @param isDeleted признак удаления.
+     */
+    @Override
+    protected void setDeleted(int row, boolean isDeleted) {
+        deleted[row] = isDeleted;
+    }
+
+    /**
+     * Создает объект маршрута по значениям строки.
+     *
+     * @param row номер строки.
+     * @return объект маршрута.
+     */
+    @Override
+    protected Route read(int row) {
+        return new Route(
+                ids[row],
+                nameDictionary.decode(names[row]),
+                new Coordinates(coordinateX[row], coordinateY[row]),
+                creationNanos[row],
+                creationZones[row],
+                new Location(fromX[row], fromY[row], fromZ[row], nameDictionary.decode(fromNames[row])),
+                new Location(toX[row], toY[row], toZ[row], nameDictionary.decode(toNames[row])),
+                distances[row]
+        );
+    }
+
+    /**
+     * Записывает значения полей маршрута в строку.
+     *
+     * @param row   номер строки.
+     * @param route маршрут.
+     */
+    @Override
+    protected void write(int row, Route route) {
+        ids[row] = route.getId();
+        names[row] = nameDictionary.encode(route.getName());
+        coordinateX[row] = route.getCoordinates().getX();
+        coordinateY[row] = route.getCoordinates().getY();
+        creationNanos[row] = route.getCreationEpochNanos();
+        creationZones[row] = route.getCreationZone();
+        fromX[row] = route.getFrom().getX();
+        fromY[row] = route.getFrom().getY();
+        fromZ[row] = route.getFrom().getZ();
+        fromNames[row] = nameDictionary.encode(route.getFrom().getName());
+        toX[row] = route.getTo().getX();
+        toY[row] = route.getTo().getY();
+        toZ[row] = route.getTo().getZ();
+        toNames[row] = nameDictionary.encode(route.getTo().getName());
+        distances[row] = route.getDistance();
+    }
+
+    /**
+     * Копирует строку from в строку to.
+     *
+     * @param from номер исходной строки.
+     * @param to   номер строки назначения.
+     */
+    @Override
+    protected void move(int from, int to) {
+        ids[to] = ids[from];
+        names[to] = names[from];
+        coordinateX[to] = coordinateX[from];
+        coordinateY[to] = coordinateY[from];
+        creationNanos[to] = creationNanos[from];
+        creationZones[to] = creationZones[from];
+        fromX[to] = fromX[from];
+        fromY[to] = fromY[from];
+        fromZ[to] = fromZ[from];
+        fromNames[to] = fromNames[from];
+        toX[to] = toX[from];
+        toY[to] = toY[from];
+        toZ[to] = toZ[from];
+        toNames[to] = toNames[from];
+        distances[to] = distances[from];
+        deleted[to] = deleted[from];
+    }
+
+    /**
+     * Ничего не освобождает: колонки содержат только примитивы, а коды названий и часовых поясов
+     * остаются в словарях.
+     *
+     * @param from номер первой строки (включительно).
+     * @param to   номер последней строки (не включительно).
+     */
+    @Override
+    protected void release(int from, int to) {
+    }
+
+    /**
+     * Обеспечивает емкость колонок как минимум для указанного количества строк, увеличивая ее в полтора раза.
+     *
+     * @param rows требуемое количество строк.
+     */
+    @Override
+    protected void ensureCapacity(int rows) {
+        if (rows > ids.length) {
+            grow(Math.max(rows, ids.length + (ids.length >> 1)));
+        }
+    }
+
+    /**
+     * Заменяет колонки пустыми колонками начальной емкости.
+     */
+    @Override
+    protected void reset() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Выделяет пустые колонки заданной емкости.
+     *
+     * @param capacity емкость колонок.
+     */
+    private void allocate(int capacity) {
+        ids = new int[capacity];
+        names = new int[capacity];
+        coordinateX = new double[capacity];
+        coordinateY = new float[capacity];
+        creationNanos = new long[capacity];
+        creationZones = new int[capacity];
+        fromX = new float[capacity];
+        fromY = new int[capacity];
+        fromZ = new double[capacity];
+        fromNames = new int[capacity];
+        toX = new float[capacity];
+        toY = new int[capacity];
+        toZ = new double[capacity];
+        toNames = new int[capacity];
+        distances = new long[capacity];
+        deleted = new boolean[capacity];
+    }
+
+    /**
+     * Увеличивает емкость колонок.
+     *
+     * @param capacity новая емкость колонок.
+     */
+    private void grow(int capacity) {
+        ids = Arrays.copyOf(ids, capacity);
+        names = Arrays.copyOf(names, capacity);
+        coordinateX = Arrays.copyOf(coordinateX, capacity);
+        coordinateY = Arrays.copyOf(coordinateY, capacity);
+        creationNanos = Arrays.copyOf(creationNanos, capacity);
+        creationZones = Arrays.copyOf(creationZones, capacity);
+        fromX = Arrays.copyOf(fromX, capacity);
+        fromY = Arrays.copyOf(fromY, capacity);
+        fromZ = Arrays.copyOf(fromZ, capacity);
+        fromNames = Arrays.copyOf(fromNames, capacity);
+        toX = Arrays.copyOf(toX, capacity);
+        toY = Arrays.copyOf(toY, capacity);
+        toZ = Arrays.copyOf(toZ, capacity);
+        toNames = Arrays.copyOf(toNames, capacity);
+        distances = Arrays.copyOf(distances, capacity);
+        deleted = Arrays.copyOf(deleted, capacity);
+    }
+}
@@ -1,7 +1,11 @@
 package org.wineeenottt.Collection;
 
+import java.util.Objects;
+
 /**
  * Класс Coordinates представляет координаты с двумя значениями: "x" и "y".
+ * Равенство определяется по значениям координат, поэтому одинаковые координаты разных маршрутов
+ * могут разделять один экземпляр (см. {@link RouteInterner}); такой экземпляр не следует изменять на месте.
  */
 public class Coordinates {
 
@@ -26,6 +30,15 @@ public class Coordinates {
         this.y = y;
     }
 
+    /**
+     * Конструктор копирования.
+     *
+     * @param other координаты, значения которых копируются.
+     */
+    public Coordinates(Coordinates other) {
+        this(other.x, other.y);
+    }
+
     /**
      * Возвращает значение координаты "x".
      *
@@ -62,6 +75,34 @@ public class Coordinates {
         this.y = y;
     }
 
+    /**
+     * Сравнивает координаты по значениям.
+     *
+     * @param o объект для сравнения.
+     * @return true, если объект - координаты с теми же значениями.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Coordinates)) {
+            return false;
+        }
+        Coordinates that = (Coordinates) o;
+        return Objects.equals(x, that.x) && Objects.equals(y, that.y);
+    }
+
+    /**
+     * Возвращает хеш-код, согласованный с equals.
+     *
+     * @return хеш-код координат.
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(x, y);
+    }
+
     /**
      * Возвращает строковое представление координат.
      *
@@ -0,0 +1,666 @@
+package org.wineeenottt.Collection;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Класс DistanceIndex - упорядоченный индекс расстояний маршрутов (order-statistic tree).
+ * Хранит пары (distance, id), упорядоченные по расстоянию, а при равных расстояниях - по ID.
+ * Реализован как декартово дерево (treap) на массивах примитивов: узлы не создаются как объекты
+ * и значения не упаковываются. Каждый узел хранит размер поддерева, что позволяет за логарифмическое время
+ * находить k-й по порядку элемент и количество элементов меньше заданного значения.
+ * <p>
+ * Индекс поддерживает неизменяемые снимки ({@link #snapshot}) со структурным разделением: снимок ссылается на те же
+ * массивы, а узлы, существовавшие на момент снимка, больше не изменяются - перед изменением индекс копирует узел
+ * в новую ячейку (копирование пути от корня). Узлы, созданные после последнего снимка, изменяются на месте.
+ * Когда скопированных и освобожденных ячеек становится больше, чем элементов, индекс переписывается в новые массивы,
+ * а прежние массивы остаются у снимков, которые на них ссылаются.
+ */
+public class DistanceIndex {
+
+    /**
+     * Начальная емкость массивов узлов.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Наименьшее количество неиспользуемых ячеек, при котором индекс переписывается в новые массивы.
+     */
+    private static final int MIN_COMPACTION = 1024;
+
+    /**
+     * Расстояния, хранящиеся в узлах. Узел с номером 0 - пустой узел.
+     */
+    private long[] distances;
+
+    /**
+     * ID маршрутов, хранящиеся в узлах.
+     */
+    private int[] ids;
+
+    /**
+     * Номера левых потомков узлов.
+     */
+    private int[] left;
+
+    /**
+     * Номера правых потомков узлов.
+     */
+    private int[] right;
+
+    /**
+     * Размеры поддеревьев узлов.
+     */
+    private int[] sizes;
+
+    /**
+     * Приоритеты узлов, поддерживающие сбалансированность дерева.
+     */
+    private int[] priorities;
+
+    /**
+     * Номер корневого узла.
+     */
+    private int root;
+
+    /**
+     * Количество использованных ячеек массивов (включая пустой узел и освобожденные узлы).
+     */
+    private int used;
+
+    /**
+     * Голова списка освобожденных узлов, связанного через массив left.
+     */
+    private int freeList;
+
+    /**
+     * Граница неизменяемых узлов: узлы с номером меньше нее могут быть видны из снимков и перед изменением копируются.
+     */
+    private int frozen = 1;
+
+    /**
+     * Признак снимка: снимок только читается.
+     */
+    private final boolean readOnly;
+
+    /**
+     * Генератор приоритетов узлов.
+     */
+    private final SplittableRandom random;
+
+    /**
+     * Функциональный интерфейс для обхода элементов индекса без упаковки значений.
+     */
+    @FunctionalInterface
+    public interface EntryConsumer {
+
+        /**
+         * Обрабатывает очередной элемент индекса.
+         *
+         * @param distance расстояние маршрута.
+         * @param id       ID маршрута.
+         */
+        void accept(long distance, int id);
+    }
+
+    /**
+     * Конструктор класса DistanceIndex. Создает пустой индекс.
+     */
+    public DistanceIndex() {
+        this.readOnly = false;
+        this.random = new SplittableRandom(0x5EED);
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Конструктор снимка, разделяющего массивы узлов с индексом.
+     *
+     * @param source индекс, снимок которого создается.
+     */
+    private DistanceIndex(DistanceIndex source) {
+        this.readOnly = true;
+        this.random = null;
+        this.distances = source.distances;
+        this.ids = source.ids;
+        this.left = source.left;
+        this.right = source.right;
+        this.sizes = source.sizes;
+        this.priorities = source.priorities;
+        this.root = source.root;
+        this.used = source.used;
+        this.frozen = source.used;
+    }
+
+    /**
+     * Возвращает неизменяемый снимок индекса за константное время. Последующие изменения индекса не видны в снимке,
+     * а снимок можно читать из других потоков одновременно с изменением индекса, если он передан им
+     * с отношением happens-before (например, через volatile поле).
+     *
+     * @return снимок индекса.
+     */
+    public DistanceIndex snapshot() {
+        if (readOnly) {
+            return this;
+        }
+        frozen = used;
+        freeList = 0;
+        return new DistanceIndex(this);
+    }
+
+    /**
+     * Добавляет в индекс расстояние маршрута.
+     *
+     * @param distance расстояние маршрута.
+     * @param id       ID маршрута.
+     */
+    public void add(long distance, int id) {
+        checkWritable();
+        int node = newNode(distance, id);
+        root = insert(root, node);
+        compactIfSparse();
+    }
+
+    /**
+     * Удаляет из индекса расстояние маршрута.
+     *
+     * @param distance расстояние маршрута.
+     * @param id       ID маршрута.
+     * @return true, если элемент был найден и удален.
+     */
+    public boolean remove(long distance, int id) {
+        checkWritable();
+        if (!contains(distance, id)) {
+            return false;
+        }
+        root = delete(root, distance, id);
+        compactIfSparse();
+        return true;
+    }
+
+    /**
+     * Удаляет все элементы индекса. Снимки сохраняют прежние массивы.
+     */
+    public void clear() {
+        checkWritable();
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Возвращает количество элементов в индексе.
+     *
+     * @return количество элементов.
+     */
+    public int size() {
+        return sizes[root];
+    }
+
+    /**
+     * Проверяет, пуст ли индекс.
+     *
+     * @return true, если индекс пуст.
+     */
+    public boolean isEmpty() {
+        return root == 0;
+    }
+
+    /**
+     * Возвращает минимальное расстояние.
+     *
+     * @return минимальное расстояние.
+     * @throws IllegalStateException если индекс пуст.
+     */
+    public long min() {
+        return distanceAt(0);
+    }
+
+    /**
+     * Возвращает максимальное расстояние.
+     *
+     * @return максимальное расстояние.
+     * @throws IllegalStateException если индекс пуст.
+     */
+    public long max() {
+        return distanceAt(size() - 1);
+    }
+
+    /**
+     * Возвращает расстояние, стоящее на позиции rank в порядке возрастания.
+     *
+     * @param rank позиция элемента, начиная с 0.
+     * @return расстояние.
+     * @throws IllegalStateException     если индекс пуст.
+     * @throws IndexOutOfBoundsException если позиция выходит за границы индекса.
+     */
+    public long distanceAt(int rank) {
+        return distances[nodeAt(rank)];
+    }
+
+    /**
+     * Возвращает ID маршрута, стоящего на позиции rank в порядке возрастания расстояний.
+     *
+     * @param rank позиция элемента, начиная с 0.
+     * @return ID маршрута.
+     * @throws IllegalStateException     если индекс пуст.
+     * @throws IndexOutOfBoundsException если позиция выходит за границы индекса.
+     */
+    public int idAt(int rank) {
+        return ids[nodeAt(rank)];
+    }
+
+    /**
+     * Возвращает количество элементов с расстоянием строго меньше заданного.
+     *
+     * @param distance расстояние.
+     * @return количество элементов.
+     */
+    public int countLess(long distance) {
+        int count = 0;
+        int node = root;
+        while (node != 0) {
+            if (distances[node] < distance) {
+                count += sizes[left[node]] + 1;
+                node = right[node];
+            } else {
+                node = left[node];
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Возвращает количество элементов с расстоянием меньше или равным заданному.
+     *
+     * @param distance расстояние.
+     * @return количество элементов.
+     */
+    public int countLessOrEqual(long distance) {
+        int count = 0;
+        int node = root;
+        while (node != 0) {
+            if (distances[node] <= distance) {
+                count += sizes[left[node]] + 1;
+                node = right[node];
+            } else {
+                node = left[node];
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Возвращает количество элементов с расстоянием в отрезке [from, to].
+     *
+     * @param from нижняя граница расстояния (включительно).
+     * @param to   верхняя граница расстояния (включительно).
+     * @return количество элементов.
+     */
+    public int countBetween(long from, long to) {
+        if (from > to) {
+            return 0;
+        }
+        return countLessOrEqual(to) - countLess(from);
+    }
+
+    /**
+     * Обходит все элементы индекса в порядке возрастания расстояний.
+     *
+     * @param consumer обработчик элементов.
+     */
+    public void forEach(EntryConsumer consumer) {
+        forEach(0, size(), consumer);
+    }
+
+    /**
+     * Обходит элементы индекса с позициями из полуинтервала [fromRank, toRank) в порядке возрастания расстояний.
+     * Поиск первого элемента выполняется за логарифмическое время, далее каждый элемент обходится за амортизированную константу.
+     *
+     * @param fromRank позиция первого элемента (включительно).
+     * @param toRank   позиция последнего элемента (не включительно).
+     * @param consumer обработчик элементов.
+     */
+    public void forEach(int fromRank, int toRank, EntryConsumer consumer) {
+        int from = Math.max(0, fromRank);
+        int to = Math.min(size(), toRank);
+        if (from >= to) {
+            return;
+        }
+        int[] stack = new int[16];
+        int depth = 0;
+        int node = root;
+        int rank = from;
+        while (node != 0) {
+            int leftSize = sizes[left[node]];
+            if (rank < leftSize) {
+                if (depth == stack.length) {
+                    stack = Arrays.copyOf(stack, depth * 2);
+                }
+                stack[depth++] = node;
+                node = left[node];
+            } else if (rank == leftSize) {
+                break;
+            } else {
+                rank -= leftSize + 1;
+                node = right[node];
+            }
+        }
+        for (int remaining = to - from; remaining > 0; remaining--) {
+            consumer.accept(distances[node], ids[node]);
+            if (right[node] != 0) {
+                node = right[node];
+                while (left[node] != 0) {
+                    if (depth == stack.length) {
+                        stack = Arrays.copyOf(stack, depth * 2);
+                    }
+                    stack[depth++] = node;
+                    node = left[node];
+                }
+            } else if (depth > 0) {
+                node = stack[--depth];
+            }
+        }
+    }
+
+    /**
+     * Находит узел, стоящий на позиции rank.
+     *
+     * @param rank позиция элемента, начиная с 0.
+     * @return номер узла.
+     */
+    private int nodeAt(int rank) {
+        if (root == 0) {
+            throw new IllegalStateException("Индекс пуст");
+        }
+        if (rank < 0 || rank >= size()) {
+            throw new IndexOutOfBoundsException("Позиция " + rank + " вне диапазона [0, " + size() + ")");
+        }
+        int node = root;
+        while (true) {
+            int leftSize = sizes[left[node]];
+            if (rank < leftSize) {
+                node = left[node];
+            } else if (rank == leftSize) {
+                return node;
+            } else {
+                rank -= leftSize + 1;
+                node = right[node];
+            }
+        }
+    }
+
+    /**
+     * Проверяет наличие элемента в индексе.
+     *
+     * @param distance расстояние маршрута.
+     * @param id       ID маршрута.
+     * @return true, если элемент есть.
+     */
+    private boolean contains(long distance, int id) {
+        int node = root;
+        while (node != 0) {
+            int cmp = compare(distance, id, node);
+            if (cmp == 0) {
+                return true;
+            }
+            node = cmp < 0 ? left[node] : right[node];
+        }
+        return false;
+    }
+
+    /**
+     * Проверяет, что индекс не является снимком.
+     *
+     * @throws UnsupportedOperationException если индекс - снимок.
+     */
+    private void checkWritable() {
+        if (readOnly) {
+            throw new UnsupportedOperationException("Снимок индекса расстояний не изменяется");
+        }
+    }
+
+    /**
+     * Сравнивает пару (distance, id) с элементом узла.
+     *
+     * @param distance расстояние.
+     * @param id       ID маршрута.
+     * @param node     номер узла.
+     * @return отрицательное число, ноль или положительное число, если пара меньше, равна или больше элемента узла.
+     */
+    private int compare(long distance, int id, int node) {
+        int result = Long.compare(distance, distances[node]);
+        return result != 0 ? result : Integer.compare(id, ids[node]);
+    }
+
+    /**
+     * Вставляет узел в поддерево.
+     *
+     * @param tree корень поддерева.
+     * @param node вставляемый узел.
+     * @return новый корень поддерева.
+     */
+    private int insert(int tree, int node) {
+        if (tree == 0) {
+            return node;
+        }
+        tree = own(tree);
+        if (compare(distances[node], ids[node], tree) < 0) {
+            int child = insert(left[tree], node);
+            left[tree] = child;
+            if (priorities[child] > priorities[tree]) {
+                tree = rotateRight(tree);
+            }
+        } else {
+            int child = insert(right[tree], node);
+            right[tree] = child;
+            if (priorities[child] > priorities[tree]) {
+                tree = rotateLeft(tree);
+            }
+        }
+        updateSize(tree);
+        return tree;
+    }
+
+    /**
+     * Удаляет элемент из поддерева. Элемент должен присутствовать в поддереве.
+     *
+     * @param tree     корень поддерева.
+     * @param distance расстояние удаляемого элемента.
+     * @param id       ID удаляемого элемента.
+     * @return новый корень поддерева.
+     */
+    private int delete(int tree, long distance, int id) {
+        if (tree == 0) {
+            return 0;
+        }
+        int cmp = compare(distance, id, tree);
+        if (cmp == 0 && (left[tree] == 0 || right[tree] == 0)) {
+            int child = left[tree] == 0 ? right[tree] : left[tree];
+            freeNode(tree);
+            return child;
+        }
+        tree = own(tree);
+        if (cmp < 0) {
+            int child = delete(left[tree], distance, id);
+            left[tree] = child;
+        } else if (cmp > 0) {
+            int child = delete(right[tree], distance, id);
+            right[tree] = child;
+        } else if (priorities[left[tree]] > priorities[right[tree]]) {
+            tree = rotateRight(tree);
+            int child = delete(right[tree], distance, id);
+            right[tree] = child;
+        } else {
+            tree = rotateLeft(tree);
+            int child = delete(left[tree], distance, id);
+            left[tree] = child;
+        }
+        updateSize(tree);
+        return tree;
+    }
+
+    /**
+     * Выполняет правый поворот поддерева, корень которого уже можно изменять.
+     *
+     * @param tree корень поддерева.
+     * @return новый корень поддерева.
+     */
+    private int rotateRight(int tree) {
+        int pivot = own(left[tree]);
+        left[tree] = right[pivot];
+        right[pivot] = tree;
+        updateSize(tree);
+        updateSize(pivot);
+        return pivot;
+    }
+
+    /**
+     * Выполняет левый поворот поддерева, корень которого уже можно изменять.
+     *
+     * @param tree корень поддерева.
+     * @return новый корень поддерева.
+     */
+    private int rotateLeft(int tree) {
+        int pivot = own(right[tree]);
+        right[tree] = left[pivot];
+        left[pivot] = tree;
+        updateSize(tree);
+        updateSize(pivot);
+        return pivot;
+    }
+
+    /**
+     * Пересчитывает размер поддерева узла.
+     *
+     * @param node номер узла.
+     */
+    private void updateSize(int node) {
+        sizes[node] = sizes[left[node]] + sizes[right[node]] + 1;
+    }
+
+    /**
+     * Создает новый узел, используя освобожденную ячейку или расширяя массивы.
+     *
+     * @param distance расстояние.
+     * @param id       ID маршрута.
+     * @return номер узла.
+     */
+    private int newNode(long distance, int id) {
+        int node;
+        if (freeList != 0) {
+            node = freeList;
+            freeList = left[node];
+        } else {
+            if (used == distances.length) {
+                grow();
+            }
+            node = used++;
+        }
+        distances[node] = distance;
+        ids[node] = id;
+        left[node] = 0;
+        right[node] = 0;
+        sizes[node] = 1;
+        priorities[node] = random.nextInt();
+        return node;
+    }
+
+    /**
+     * Возвращает узел, который можно изменять: узел, видимый из снимков, копируется в новую ячейку.
+     *
+     * @param node номер узла.
+     * @return номер узла или его копии.
+     */
+    private int own(int node) {
+        if (node >= frozen) {
+            return node;
+        }
+        int copy = newNode(distances[node], ids[node]);
+        left[copy] = left[node];
+        right[copy] = right[node];
+        sizes[copy] = sizes[node];
+        priorities[copy] = priorities[node];
+        return copy;
+    }
+
+    /**
+     * Возвращает узел в список освобожденных. Узел, видимый из снимков, не освобождается.
+     *
+     * @param node номер узла.
+     */
+    private void freeNode(int node) {
+        if (node < frozen) {
+            return;
+        }
+        left[node] = freeList;
+        right[node] = 0;
+        sizes[node] = 0;
+        freeList = node;
+    }
+
+    /**
+     * Выделяет пустые массивы узлов заданной емкости.
+     *
+     * @param capacity емкость массивов.
+     */
+    private void allocate(int capacity) {
+        distances = new long[capacity];
+        ids = new int[capacity];
+        left = new int[capacity];
+        right = new int[capacity];
+        sizes = new int[capacity];
+        priorities = new int[capacity];
+        root = 0;
+        used = 1;
+        freeList = 0;
+        frozen = 1;
+    }
+
+    /**
+     * Переписывает индекс в новые массивы, если неиспользуемых ячеек (копий, оставшихся у снимков,
+     * и освобожденных узлов) стало больше, чем элементов. Форма дерева сохраняется.
+     */
+    private void compactIfSparse() {
+        int live = size();
+        if (used - 1 - live <= Math.max(live, MIN_COMPACTION)) {
+            return;
+        }
+        DistanceIndex source = new DistanceIndex(this);
+        allocate(Math.max(INITIAL_CAPACITY, live + (live >> 1) + 1));
+        root = copyFrom(source, source.root);
+    }
+
+    /**
+     * Копирует поддерево другого индекса в свободные ячейки массивов.
+     *
+     * @param source индекс, из которого копируется поддерево.
+     * @param node   корень поддерева в исходном индексе.
+     * @return корень копии.
+     */
+    private int copyFrom(DistanceIndex source, int node) {
+        if (node == 0) {
+            return 0;
+        }
+        int copy = used++;
+        distances[copy] = source.distances[node];
+        ids[copy] = source.ids[node];
+        sizes[copy] = source.sizes[node];
+        priorities[copy] = source.priorities[node];
+        int leftCopy = copyFrom(source, source.left[node]);
+        left[copy] = leftCopy;
+        int rightCopy = copyFrom(source, source.right[node]);
+        right[copy] = rightCopy;
+        return copy;
+    }
+
+    /**
+     * Увеличивает емкость массивов узлов в полтора раза.
+     */
+    private void grow() {
+        int capacity = distances.length + (distances.length >> 1);
+        distances = Arrays.copyOf(distances, capacity);
+        ids = Arrays.copyOf(ids, capacity);
+        left = Arrays.copyOf(left, capacity);
+        right = Arrays.copyOf(right, capacity);
+        sizes = Arrays.copyOf(sizes, capacity);
+        priorities = Arrays.copyOf(priorities, capacity);
+    }
+}
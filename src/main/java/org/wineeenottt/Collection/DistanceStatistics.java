@@ -0,0 +1,175 @@
+package org.wineeenottt.Collection;
+
+/**
+ * Класс DistanceStatistics хранит агрегаты по полю distance маршрутов коллекции:
+ * количество, сумму, минимум, максимум, среднее и дисперсию.
+ * Агрегаты обновляются при каждом добавлении и удалении значения, поэтому их получение не требует прохода по коллекции.
+ * Среднее и дисперсия поддерживаются по алгоритму Уэлфорда, допускающему удаление значений,
+ * минимум и максимум берутся из упорядоченного индекса расстояний.
+ */
+public class DistanceStatistics {
+
+    /**
+     * Количество учтенных значений.
+     */
+    private long count;
+
+    /**
+     * Сумма учтенных значений.
+     */
+    private long sum;
+
+    /**
+     * Текущее среднее значение.
+     */
+    private double mean;
+
+    /**
+     * Сумма квадратов отклонений от среднего.
+     */
+    private double squaredDeviations;
+
+    /**
+     * Упорядоченный индекс расстояний, из которого берутся минимум и максимум.
+     */
+    private final DistanceIndex distanceIndex;
+
+    /**
+     * Конструктор класса DistanceStatistics.
+     *
+     * @param distanceIndex упорядоченный индекс расстояний, поддерживаемый вместе с агрегатами.
+     */
+    public DistanceStatistics(DistanceIndex distanceIndex) {
+        this.distanceIndex = distanceIndex;
+    }
+
+    /**
+     * Возвращает копию агрегатов, минимум и максимум которой берутся из снимка индекса расстояний.
+     *
+     * @param snapshot снимок индекса расстояний, снятый вместе с агрегатами.
+     * @return копия агрегатов.
+     */
+    public DistanceStatistics snapshot(DistanceIndex snapshot) {
+        DistanceStatistics copy = new DistanceStatistics(snapshot);
+        copy.count = count;
+        copy.sum = sum;
+        copy.mean = mean;
+        copy.squaredDeviations = squaredDeviations;
+        return copy;
+    }
+
+    /**
+     * Учитывает новое значение расстояния.
+     *
+     * @param distance значение расстояния.
+     */
+    public void add(long distance) {
+        count++;
+        sum += distance;
+        double delta = distance - mean;
+        mean += delta / count;
+        squaredDeviations += delta * (distance - mean);
+    }
+
+    /**
+     * Исключает ранее учтенное значение расстояния.
+     *
+     * @param distance значение расстояния.
+     */
+    public void remove(long distance) {
+        if (count == 0) {
+            return;
+        }
+        count--;
+        sum -= distance;
+        if (count == 0) {
+            mean = 0;
+            squaredDeviations = 0;
+            return;
+        }
+        double delta = distance - mean;
+        mean -= delta / count;
+        squaredDeviations = Math.max(0, squaredDeviations - delta * (distance - mean));
+    }
+
+    /**
+     * Сбрасывает все агрегаты.
+     */
+    public void clear() {
+        count = 0;
+        sum = 0;
+        mean = 0;
+        squaredDeviations = 0;
+    }
+
+    /**
+     * Возвращает количество учтенных значений.
+     *
+     * @return количество значений.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Возвращает сумму учтенных значений.
+     *
+     * @return сумма значений.
+     */
+    public long getSum() {
+        return sum;
+    }
+
+    /**
+     * Возвращает минимальное значение.
+     *
+     * @return минимальное значение или null, если значений нет.
+     */
+    public Long getMin() {
+        return distanceIndex.isEmpty() ? null : distanceIndex.min();
+    }
+
+    /**
+     * Возвращает максимальное значение.
+     *
+     * @return максимальное значение или null, если значений нет.
+     */
+    public Long getMax() {
+        return distanceIndex.isEmpty() ? null : distanceIndex.max();
+    }
+
+    /**
+     * Возвращает среднее значение.
+     *
+     * @return среднее значение или 0, если значений нет.
+     */
+    public double getMean() {
+        return mean;
+    }
+
+    /**
+     * Возвращает дисперсию значений (по генеральной совокупности).
+     *
+     * @return дисперсия или 0, если значений нет.
+     */
+    public double getVariance() {
+        return count == 0 ? 0 : squaredDeviations / count;
+    }
+
+    /**
+     * Возвращает строковое представление агрегатов.
+     *
+     * @return строковое представление агрегатов.
+     */
+    @Override
+    public String toString() {
+        return "DistanceStatistics{" +
+                "count=" + count +
+                ", sum=" + sum +
+                ", min=" + getMin() +
+                ", max=" + getMax() +
+                ", mean=" + mean +
+                ", variance=" + getVariance() +
+                '}';
+    }
+}
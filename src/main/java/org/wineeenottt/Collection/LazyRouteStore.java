@@ -0,0 +1,374 @@
+package org.wineeenottt.Collection;
+
+import org.wineeenottt.WorkWithFile.RouteFileIndex;
+
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+
+/**
+ * Класс LazyRouteStore - ленивое хранилище маршрутов поверх индекса файла коллекции {@link RouteFileIndex}.
+ * При запуске строится только индекс ID, расстояний и позиций записей в отображенном в память файле;
+ * маршрут декодируется из файла при первом обращении по ID и попадает в ограниченный кеш,
+ * из которого вытесняются давно не использованные маршруты.
+ * <p>
+ * Добавленные и измененные маршруты хранятся в памяти поверх индекса, а записи файла, которые они заменили
+ * или которые были удалены, помечаются удаленными. Обход (show, save) сливает записи файла и маршруты в памяти
+ * в порядке возрастания ID, декодируя записи файла по одной и не заполняя кеш.
+ * Записи файла, которые не удалось разобрать при обращении, считаются удаленными.
+ */
+public class LazyRouteStore implements RouteStore {
+
+    /**
+     * Системное свойство с количеством маршрутов в кеше декодированных записей.
+     */
+    public static final String CACHE_SIZE_PROPERTY = "route.lazy.cacheSize";
+
+    /**
+     * Количество маршрутов в кеше по умолчанию.
+     */
+    private static final int DEFAULT_CACHE_SIZE = 10_000;
+
+    /**
+     * Индекс записей файла коллекции.
+     */
+    private final RouteFileIndex index;
+
+    /**
+     * Записи индекса, которые удалены или заменены маршрутами в памяти.
+     */
+    private final BitSet removed = new BitSet();
+
+    /**
+     * Добавленные и измененные маршруты по ID.
+     */
+    private final TreeMap<Integer, Route> overlay = new TreeMap<>();
+
+    /**
+     * Кеш декодированных записей файла в порядке обращения.
+     */
+    private final LinkedHashMap<Integer, Route> cache;
+
+    /**
+     * Количество маршрутов в хранилище.
+     */
+    private int size;
+
+    /**
+     * Конструктор класса LazyRouteStore. Размер кеша задается системным свойством {@value #CACHE_SIZE_PROPERTY}.
+     *
+     * @param index индекс записей файла коллекции.
+     */
+    public LazyRouteStore(RouteFileIndex index) {
+        this(index, Integer.getInteger(CACHE_SIZE_PROPERTY, DEFAULT_CACHE_SIZE));
+    }
+
+    /**
+     * Конструктор класса LazyRouteStore.
+     *
+     * @param index     индекс записей файла коллекции.
+     * @param cacheSize наибольшее количество декодированных маршрутов в кеше.
+     */
+    public LazyRouteStore(RouteFileIndex index, int cacheSize) {
+        this.index = index;
+        this.size = index.size();
+        int capacity = Math.max(cacheSize, 0);
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Route> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Возвращает количество маршрутов в хранилище.
+     *
+     * @return количество маршрутов.
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Сообщает, что хранилище нельзя читать из нескольких потоков одновременно: чтение заполняет кеш
+     * декодированных записей и помечает удаленными записи, которые не удалось разобрать.
+     *
+     * @return false.
+     */
+    @Override
+    public boolean supportsConcurrentReads() {
+        return false;
+    }
+
+    /**
+     * Проверяет наличие маршрута с указанным ID без декодирования записи.
+     *
+     * @param id ID маршрута.
+     * @return true, если маршрут существует.
+     */
+    @Override
+    public boolean contains(int id) {
+        return overlay.containsKey(id) || baseIndex(id) >= 0;
+    }
+
+    /**
+     * Возвращает маршрут с указанным ID из памяти, из кеша или декодирует его из файла.
+     *
+     * @param id ID маршрута.
+     * @return маршрут или null, если маршрута с таким ID нет.
+     */
+    @Override
+    public Route get(int id) {
+        Route route = overlay.get(id);
+        if (route != null) {
+            return route;
+        }
+        int entry = baseIndex(id);
+        if (entry < 0) {
+            return null;
+        }
+        route = cache.get(id);
+        if (route == null) {
+            route = decode(entry);
+            if (route != null) {
+                cache.put(id, route);
+            }
+        }
+        return route;
+    }
+
+    /**
+     * Добавляет маршрут в память, заменяя маршрут с тем же ID; запись файла с этим ID помечается удаленной.
+     *
+     * @param route маршрут.
+     */
+    @Override
+    public void put(Route route) {
+        int id = route.getId();
+        int entry = baseIndex(id);
+        if (entry >= 0) {
+            removed.set(entry);
+            cache.remove(id);
+        }
+        if (overlay.put(id, route) == null && entry < 0) {
+            size++;
+        }
+    }
+
+    /**
+     * Удаляет маршрут с указанным ID.
+     *
+     * @param id ID маршрута.
+     * @return удаленный маршрут или null, если маршрута с таким ID нет.
+     */
+    @Override
+    public Route remove(int id) {
+        Route route = overlay.remove(id);
+        if (route != null) {
+            size--;
+            return route;
+        }
+        int entry = baseIndex(id);
+        if (entry < 0) {
+            return null;
+        }
+        route = cache.remove(id);
+        if (route == null) {
+            route = decode(entry);
+            if (route == null) {
+                return null;
+            }
+        }
+        removed.set(entry);
+        size--;
+        return route;
+    }
+
+    /**
+     * Удаляет маршруты с ID больше указанного: помечает удаленными хвост индекса и удаляет хвост маршрутов в памяти.
+     * Записи файла не декодируются.
+     *
+     * @param id      граница ID (не включительно).
+     * @param removed обработчик, получающий расстояние и ID каждого удаленного маршрута.
+     */
+    @Override
+    public void removeGreater(int id, DistanceIndex.EntryConsumer removed) {
+        for (int entry = index.upperBound(id); entry < index.size(); entry++) {
+            if (!this.removed.get(entry)) {
+                this.removed.set(entry);
+                removed.accept(index.distance(entry), index.id(entry));
+                size--;
+            }
+        }
+        cache.keySet().removeIf(cached -> cached > id);
+        NavigableMap<Integer, Route> tail = overlay.tailMap(id, false);
+        for (Route route : tail.values()) {
+            if (route.getDistance() != null) {
+                removed.accept(route.getDistance(), route.getId());
+            }
+            size--;
+        }
+        tail.clear();
+    }
+
+    /**
+     * Удаляет все маршруты: все записи индекса помечаются удаленными.
+     */
+    @Override
+    public void clear() {
+        removed.set(0, index.size());
+        overlay.clear();
+        cache.clear();
+        size = 0;
+    }
+
+    /**
+     * Сообщает обработчику расстояния маршрутов в порядке возрастания ID; расстояния записей файла
+     * берутся из индекса без декодирования.
+     *
+     * @param consumer обработчик, получающий расстояние и ID маршрута.
+     */
+    @Override
+    public void forEachDistance(DistanceIndex.EntryConsumer consumer) {
+        Iterator<Route> memory = overlay.values().iterator();
+        Route next = memory.hasNext() ? memory.next() : null;
+        for (int entry = nextEntry(0); entry < index.size(); entry = nextEntry(entry + 1)) {
+            while (next != null && next.getId() < index.id(entry)) {
+                if (next.getDistance() != null) {
+                    consumer.accept(next.getDistance(), next.getId());
+                }
+                next = memory.hasNext() ? memory.next() : null;
+            }
+            consumer.accept(index.distance(entry), index.id(entry));
+        }
+        for (; next != null; next = memory.hasNext() ? memory.next() : null) {
+            if (next.getDistance() != null) {
+                consumer.accept(next.getDistance(), next.getId());
+            }
+        }
+    }
+
+    /**
+     * Возвращает наибольший ID маршрута без декодирования записей.
+     *
+     * @return наибольший ID или -1, если хранилище пусто.
+     */
+    @Override
+    public int maxId() {
+        int maxId = overlay.isEmpty() ? -1 : overlay.lastKey();
+        int entry = removed.previousClearBit(index.size() - 1);
+        return entry >= 0 ? Math.max(maxId, index.id(entry)) : maxId;
+    }
+
+    /**
+     * Возвращает итератор по маршрутам в порядке возрастания ID. Записи файла декодируются по одной
+     * при продвижении итератора и не попадают в кеш; записи, которые не удалось разобрать, пропускаются.
+     *
+     * @return итератор по маршрутам.
+     */
+    @Override
+    public Iterator<Route> iterator() {
+        return new Iterator<>() {
+
+            /**
+             * Итератор по маршрутам в памяти.
+             */
+            private final Iterator<Route> memory = overlay.values().iterator();
+
+            /**
+             * Очередной маршрут в памяти или null, если они закончились.
+             */
+            private Route nextMemory = memory.hasNext() ? memory.next() : null;
+
+            /**
+             * Номер очередной неудаленной записи индекса.
+             */
+            private int entry = nextEntry(0);
+
+            /**
+             * Очередной маршрут итератора или null, если он еще не найден.
+             */
+            private Route next;
+
+            /**
+             * Проверяет наличие следующего маршрута, при необходимости декодируя очередную запись файла.
+             *
+             * @return true, если маршрут есть.
+             */
+            @Override
+            public boolean hasNext() {
+                while (next == null) {
+                    boolean hasEntry = entry < index.size();
+                    if (nextMemory != null && (!hasEntry || nextMemory.getId() < index.id(entry))) {
+                        next = nextMemory;
+                        nextMemory = memory.hasNext() ? memory.next() : null;
+                    } else if (hasEntry) {
+                        Route cached = cache.get(index.id(entry));
+                        next = cached != null ? cached : index.read(entry);
+                        entry = nextEntry(entry + 1);
+                    } else {
+                        return false;
+                    }
+                }
+                return true;
+            }
+
+            /**
+             * Возвращает следующий маршрут.
+             *
+             * @return маршрут.
+             */
+            @Override
+            public Route next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Route route = next;
+                next = null;
+                return route;
+            }
+        };
+    }
+
+    /**
+     * Находит неудаленную запись индекса по ID маршрута.
+     *
+     * @param id ID маршрута.
+     * @return номер записи или -1, если записи нет или она удалена.
+     */
+    private int baseIndex(int id) {
+        int entry = index.find(id);
+        return entry >= 0 && !removed.get(entry) ? entry : -1;
+    }
+
+    /**
+     * Возвращает номер первой неудаленной записи индекса, начиная с указанной.
+     *
+     * @param from номер записи, с которой начинается поиск.
+     * @return номер записи или размер индекса, если таких записей нет.
+     */
+    private int nextEntry(int from) {
+        return Math.min(removed.nextClearBit(from), index.size());
+    }
+
+    /**
+     * Декодирует запись файла; запись, которую не удалось разобрать, помечается удаленной.
+     *
+     * @param entry номер записи индекса.
+     * @return маршрут или null, если запись не удалось разобрать.
+     */
+    private Route decode(int entry) {
+        Route route = index.read(entry);
+        if (route == null) {
+            removed.set(entry);
+            size--;
+        }
+        return route;
+    }
+}
@@ -1,7 +1,11 @@
 package org.wineeenottt.Collection;
 
+import java.util.Objects;
+
 /**
  * Класс Location представляет координаты назначения.
+ * Равенство определяется по значениям полей, поэтому одинаковые места разных маршрутов
+ * могут разделять один экземпляр (см. {@link RouteInterner}); такой экземпляр не следует изменять на месте.
  */
 public class Location {
 
@@ -40,6 +44,15 @@ public class Location {
         this.name = name;
     }
 
+    /**
+     * Конструктор копирования.
+     *
+     * @param other место, значения которого копируются.
+     */
+    public Location(Location other) {
+        this(other.x, other.y, other.z, other.name);
+    }
+
     /**
      * Возвращает значение координаты "x".
      *
@@ -112,6 +125,35 @@ public class Location {
         this.name = name;
     }
 
+    /**
+     * Сравнивает места по значениям всех полей.
+     *
+     * @param o объект для сравнения.
+     * @return true, если объект - место с теми же значениями.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Location)) {
+            return false;
+        }
+        Location that = (Location) o;
+        return Objects.equals(x, that.x) && Objects.equals(y, that.y)
+                && Objects.equals(z, that.z) && Objects.equals(name, that.name);
+    }
+
+    /**
+     * Возвращает хеш-код, согласованный с equals.
+     *
+     * @return хеш-код места.
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(x, y, z, name);
+    }
+
     /**
      * Возвращает строковое представление координат.
      *
@@ -0,0 +1,94 @@
+package org.wineeenottt.Collection;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Класс NameDictionary - словарь названий (таблица символов), сопоставляющий каждому различному названию
+ * компактный целочисленный код.
+ * Словарь общий для загрузчика файла, чтения полей с консоли и изменения маршрутов, поэтому повторяющиеся названия
+ * маршрутов и мест хранятся в единственном экземпляре, а колоночное хранилище держит вместо строк коды.
+ * Коды выдаются подряд начиная с 0 и не освобождаются.
+ * Словарь потокобезопасен: чтение не блокируется, блокировка берется только при добавлении нового названия.
+ */
+public class NameDictionary {
+
+    /**
+     * Начальная емкость таблицы названий.
+     */
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * Коды названий.
+     */
+    private final ConcurrentHashMap<String, Integer> codes = new ConcurrentHashMap<>();
+
+    /**
+     * Названия, упорядоченные по кодам.
+     */
+    private volatile String[] names = new String[INITIAL_CAPACITY];
+
+    /**
+     * Количество названий в словаре.
+     */
+    private volatile int size;
+
+    /**
+     * Возвращает код названия, добавляя название в словарь при первом обращении.
+     *
+     * @param name название (не null).
+     * @return код названия.
+     */
+    public int encode(String name) {
+        Integer code = codes.get(name);
+        if (code != null) {
+            return code;
+        }
+        synchronized (this) {
+            code = codes.get(name);
+            if (code == null) {
+                code = size;
+                if (code == names.length) {
+                    names = Arrays.copyOf(names, code + (code >> 1));
+                }
+                names[code] = name;
+                size = code + 1;
+                codes.put(name, code);
+            }
+            return code;
+        }
+    }
+
+    /**
+     * Возвращает название по коду.
+     *
+     * @param code код названия, полученный из {@link #encode(String)}.
+     * @return название.
+     * @throws IndexOutOfBoundsException если код не был выдан словарем.
+     */
+    public String decode(int code) {
+        if (code < 0 || code >= size) {
+            throw new IndexOutOfBoundsException("Неизвестный код названия: " + code);
+        }
+        return names[code];
+    }
+
+    /**
+     * Возвращает единственный экземпляр строки, хранящийся в словаре для данного названия.
+     *
+     * @param name название (не null).
+     * @return экземпляр названия из словаря.
+     */
+    public String canonical(String name) {
+        return decode(encode(name));
+    }
+
+    /**
+     * Возвращает количество различных названий в словаре.
+     *
+     * @return количество названий.
+     */
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,346 @@
+package org.wineeenottt.Collection;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+
+/**
+ * Класс OffHeapRouteStore - хранилище маршрутов в памяти вне кучи.
+ * Каждый маршрут занимает строку фиксированной длины в страницах, выделенных через ByteBuffer.allocateDirect,
+ * названия хранятся в {@link OffHeapStringArena}, а дата создания - как наносекунды эпохи и код пояса из {@link ZoneDictionary}.
+ * Сборщик мусора видит лишь несколько объектов на страницу вместо графа объектов на каждый маршрут,
+ * поэтому размер кучи и паузы сборки почти не зависят от количества маршрутов.
+ * Порядок строк и удаление описаны в {@link AbstractRowRouteStore}.
+ * <p>
+ * Общий объем буферов allocateDirect ограничен параметром JVM {@code -XX:MaxDirectMemorySize}, который
+ * по умолчанию равен наибольшему размеру кучи. Страница строк занимает 1,5 МБ, а маршрут вместе
+ * с названиями - около 150 байт, поэтому для больших коллекций предел нужно задать явно, например
+ * {@code -XX:MaxDirectMemorySize=4g}. Если страницу выделить не удалось, хранилище бросает
+ * {@link IllegalStateException} с объяснением вместо {@code OutOfMemoryError: Direct buffer memory}.
+ */
+public class OffHeapRouteStore extends AbstractRowRouteStore {
+
+    /**
+     * Двоичный логарифм количества строк в странице.
+     */
+    private static final int PAGE_SHIFT = 14;
+
+    /**
+     * Количество строк в странице.
+     */
+    private static final int ROWS_PER_PAGE = 1 << PAGE_SHIFT;
+
+    /**
+     * Маска номера строки внутри страницы.
+     */
+    private static final int ROW_MASK = ROWS_PER_PAGE - 1;
+
+    /**
+     * Смещение ID маршрута в строке.
+     */
+    private static final int ID = 0;
+
+    /**
+     * Смещение координаты Y маршрута в строке.
+     */
+    private static final int COORDINATE_Y = 4;
+
+    /**
+     * Смещение координаты X маршрута в строке.
+     */
+    private static final int COORDINATE_X = 8;
+
+    /**
+     * Смещение наносекунд эпохи даты создания в строке.
+     */
+    private static final int CREATION_NANOS = 16;
+
+    /**
+     * Смещение кода часового пояса даты создания в строке.
+     */
+    private static final int CREATION_ZONE = 24;
+
+    /**
+     * Смещение признака удаления в строке.
+     */
+    private static final int DELETED = 28;
+
+    /**
+     * Смещение координаты Z места отправления в строке.
+     */
+    private static final int FROM_Z = 32;
+
+    /**
+     * Смещение координаты Z места назначения в строке.
+     */
+    private static final int TO_Z = 40;
+
+    /**
+     * Смещение расстояния маршрута в строке.
+     */
+    private static final int DISTANCE = 48;
+
+    /**
+     * Смещение ссылки на название маршрута в строке.
+     */
+    private static final int NAME = 56;
+
+    /**
+     * Смещение ссылки на название места отправления в строке.
+     */
+    private static final int FROM_NAME = 64;
+
+    /**
+     * Смещение ссылки на название места назначения в строке.
+     */
+    private static final int TO_NAME = 72;
+
+    /**
+     * Смещение координаты X места отправления в строке.
+     */
+    private static final int FROM_X = 80;
+
+    /**
+     * Смещение координаты Y места отправления в строке.
+     */
+    private static final int FROM_Y = 84;
+
+    /**
+     * Смещение координаты X места назначения в строке.
+     */
+    private static final int TO_X = 88;
+
+    /**
+     * Смещение координаты Y места назначения в строке.
+     */
+    private static final int TO_Y = 92;
+
+    /**
+     * Длина строки в байтах (выровнена до 8).
+     */
+    private static final int ROW_SIZE = 96;
+
+    /**
+     * Страницы строк.
+     */
+    private final ArrayList<ByteBuffer> pages = new ArrayList<>();
+
+    /**
+     * Буфер для копирования строк между позициями.
+     */
+    private final byte[] rowBuffer = new byte[ROW_SIZE];
+
+    /**
+     * Область памяти для названий.
+     */
+    private OffHeapStringArena names = new OffHeapStringArena();
+
+    /**
+     * Возвращает ID маршрута из строки.
+     *
+     * @param row номер строки.
+     * @return ID маршрута.
+     */
+    @Override
+    protected int idAt(int row) {
+        return page(row).getInt(offset(row) + ID);
+    }
+
+    /**
+     * Возвращает расстояние маршрута из строки.
+     *
+     * @param row номер строки.
+     * @return расстояние маршрута.
+     */
+    @Override
+    protected long distanceAt(int row) {
+        return page(row).getLong(offset(row) + DISTANCE);
+    }
+
+    /**
+     * Проверяет, помечена ли строка удаленной.
+     *
+     * @param row номер строки.
+     * @return true, если строка удалена.
+     */
+    @Override
+    protected boolean isDeleted(int row) {
+        return page(row).get(offset(row) + DELETED) != 0;
+    }
+
+    /**
+     * Помечает строку удаленной или снимает пометку.
+     *
+     * @param row     номер строки.
+     * @param deleted признак удаления.
+     */
+    @Override
+    protected void setDeleted(int row, boolean deleted) {
+        page(row).put(offset(row) + DELETED, (byte) (deleted ? 1 : 0));
+    }
+
+    /**
+     * Создает объект маршрута по значениям строки.
+     *
+     * @param row номер строки.
+     * @return объект маршрута.
+     */
+    @Override
+    protected Route read(int row) {
+        ByteBuffer page = page(row);
+        int offset = offset(row);
+        return new Route(
+                page.getInt(offset + ID),
+                names.read(page.getLong(offset + NAME)),
+                new Coordinates(page.getDouble(offset + COORDINATE_X), page.getFloat(offset + COORDINATE_Y)),
+                page.getLong(offset + CREATION_NANOS),
+                page.getInt(offset + CREATION_ZONE),
+                new Location(page.getFloat(offset + FROM_X), page.getInt(offset + FROM_Y), page.getDouble(offset + FROM_Z),
+                        names.read(page.getLong(offset + FROM_NAME))),
+                new Location(page.getFloat(offset + TO_X), page.getInt(offset + TO_Y), page.getDouble(offset + TO_Z),
+                        names.read(page.getLong(offset + TO_NAME))),
+                page.getLong(offset + DISTANCE)
+        );
+    }
+
+    /**
+     * Записывает значения полей маршрута в строку, дописывая названия в область строк.
+     *
+     * @param row   номер строки.
+     * @param route маршрут.
+     */
+    @Override
+    protected void write(int row, Route route) {
+        ByteBuffer page = page(row);
+        int offset = offset(row);
+        page.putInt(offset + ID, route.getId());
+        page.putLong(offset + NAME, names.append(route.getName()));
+        page.putDouble(offset + COORDINATE_X, route.getCoordinates().getX());
+        page.putFloat(offset + COORDINATE_Y, route.getCoordinates().getY());
+        page.putLong(offset + CREATION_NANOS, route.getCreationEpochNanos());
+        page.putInt(offset + CREATION_ZONE, route.getCreationZone());
+        page.putFloat(offset + FROM_X, route.getFrom().getX());
+        page.putInt(offset + FROM_Y, route.getFrom().getY());
+        page.putDouble(offset + FROM_Z, route.getFrom().getZ());
+        page.putLong(offset + FROM_NAME, names.append(route.getFrom().getName()));
+        page.putFloat(offset + TO_X, route.getTo().getX());
+        page.putInt(offset + TO_Y, route.getTo().getY());
+        page.putDouble(offset + TO_Z, route.getTo().getZ());
+        page.putLong(offset + TO_NAME, names.append(route.getTo().getName()));
+        page.putLong(offset + DISTANCE, route.getDistance());
+    }
+
+    /**
+     * Копирует байты строки from в строку to. Ссылки на названия переходят к строке назначения.
+     *
+     * @param from номер исходной строки.
+     * @param to   номер строки назначения.
+     */
+    @Override
+    protected void move(int from, int to) {
+        page(from).get(offset(from), rowBuffer);
+        page(to).put(offset(to), rowBuffer);
+    }
+
+    /**
+     * Помечает названия строк освобожденными в области строк.
+     *
+     * @param from номер первой строки (включительно).
+     * @param to   номер последней строки (не включительно).
+     */
+    @Override
+    protected void release(int from, int to) {
+        for (int row = from; row < to; row++) {
+            ByteBuffer page = page(row);
+            int offset = offset(row);
+            names.free(page.getLong(offset + NAME));
+            names.free(page.getLong(offset + FROM_NAME));
+            names.free(page.getLong(offset + TO_NAME));
+        }
+    }
+
+    /**
+     * Выделяет новые страницы, пока их емкость меньше указанного количества строк.
+     *
+     * @param rows требуемое количество строк.
+     */
+    @Override
+    protected void ensureCapacity(int rows) {
+        while (pages.size() * ROWS_PER_PAGE < rows) {
+            pages.add(allocatePage(ROWS_PER_PAGE * ROW_SIZE));
+        }
+    }
+
+    /**
+     * Отказывается от всех страниц и области строк; память вне кучи освобождается вместе с буферами.
+     */
+    @Override
+    protected void reset() {
+        pages.clear();
+        names = new OffHeapStringArena();
+    }
+
+    /**
+     * Уплотняет область строк, когда освобожденные названия занимают в ней больше места, чем живые.
+     */
+    @Override
+    protected void afterMutation() {
+        if (!names.needsCompaction()) {
+            return;
+        }
+        OffHeapStringArena compacted = new OffHeapStringArena();
+        for (int row = nextRow(0); row < rowCount; row = nextRow(row + 1)) {
+            ByteBuffer page = page(row);
+            int offset = offset(row);
+            page.putLong(offset + NAME, compacted.copyFrom(names, page.getLong(offset + NAME)));
+            page.putLong(offset + FROM_NAME, compacted.copyFrom(names, page.getLong(offset + FROM_NAME)));
+            page.putLong(offset + TO_NAME, compacted.copyFrom(names, page.getLong(offset + TO_NAME)));
+        }
+        names = compacted;
+    }
+
+    /**
+     * Выделяет страницу памяти вне кучи. Если предел памяти вне кучи исчерпан, сообщает, как его увеличить.
+     *
+     * @param bytes размер страницы в байтах.
+     * @return новая страница.
+     * @throws IllegalStateException если памяти вне кучи не хватает.
+     */
+    static ByteBuffer allocatePage(int bytes) {
+        try {
+            return ByteBuffer.allocateDirect(bytes);
+        } catch (OutOfMemoryError e) {
+            throw new IllegalStateException("Не хватает памяти вне кучи для хранилища " + RouteStoreType.PROPERTY
+                    + "=off-heap: увеличьте предел параметром JVM"
+                    + " -XX:MaxDirectMemorySize (по умолчанию он равен размеру кучи) или выберите другое хранилище", e);
+        }
+    }
+
+    /**
+     * Возвращает объем памяти вне кучи, занятый страницами строк и областью названий.
+     *
+     * @return объем памяти в байтах.
+     */
+    public long offHeapBytes() {
+        return (long) pages.size() * ROWS_PER_PAGE * ROW_SIZE + names.allocatedBytes();
+    }
+
+    /**
+     * Возвращает страницу, содержащую строку.
+     *
+     * @param row номер строки.
+     * @return страница строк.
+     */
+    private ByteBuffer page(int row) {
+        return pages.get(row >>> PAGE_SHIFT);
+    }
+
+    /**
+     * Возвращает смещение строки внутри страницы.
+     *
+     * @param row номер строки.
+     * @return смещение в байтах.
+     */
+    private static int offset(int row) {
+        return (row & ROW_MASK) * ROW_SIZE;
+    }
+}
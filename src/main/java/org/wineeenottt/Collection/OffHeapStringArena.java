@@ -0,0 +1,142 @@
+package org.wineeenottt.Collection;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+/**
+ * Класс OffHeapStringArena - область памяти вне кучи для строк переменной длины.
+ * Строки дописываются в страницы, выделенные через ByteBuffer.allocateDirect, в кодировке UTF-8 с префиксом длины.
+ * Каждая строка адресуется ссылкой типа long: старшие 32 бита - номер страницы, младшие - смещение в странице.
+ * Освобожденные строки учитываются как мусор; место возвращается уплотнением, которое выполняет владелец арены.
+ */
+class OffHeapStringArena {
+
+    /**
+     * Размер страницы арены в байтах.
+     */
+    private static final int PAGE_SIZE = 1 << 20;
+
+    /**
+     * Размер префикса длины строки в байтах.
+     */
+    private static final int LENGTH_PREFIX = Integer.BYTES;
+
+    /**
+     * Страницы арены.
+     */
+    private final ArrayList<ByteBuffer> pages = new ArrayList<>();
+
+    /**
+     * Смещение первого свободного байта в последней странице.
+     */
+    private int position;
+
+    /**
+     * Количество байт, занятых живыми строками (включая префиксы длины).
+     */
+    private long liveBytes;
+
+    /**
+     * Количество байт, занятых освобожденными строками.
+     */
+    private long garbageBytes;
+
+    /**
+     * Дописывает строку в арену.
+     *
+     * @param value строка.
+     * @return ссылка на строку.
+     */
+    long append(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer page = pageFor(LENGTH_PREFIX + bytes.length);
+        int offset = position;
+        page.putInt(offset, bytes.length);
+        page.put(offset + LENGTH_PREFIX, bytes);
+        position += LENGTH_PREFIX + bytes.length;
+        liveBytes += LENGTH_PREFIX + bytes.length;
+        return ((long) (pages.size() - 1) << 32) | offset;
+    }
+
+    /**
+     * Копирует строку из другой арены без декодирования.
+     *
+     * @param source арена, содержащая строку.
+     * @param ref    ссылка на строку в исходной арене.
+     * @return ссылка на копию строки в этой арене.
+     */
+    long copyFrom(OffHeapStringArena source, long ref) {
+        ByteBuffer sourcePage = source.pages.get((int) (ref >>> 32));
+        int sourceOffset = (int) ref;
+        int length = LENGTH_PREFIX + sourcePage.getInt(sourceOffset);
+        ByteBuffer page = pageFor(length);
+        int offset = position;
+        page.put(offset, sourcePage, sourceOffset, length);
+        position += length;
+        liveBytes += length;
+        return ((long) (pages.size() - 1) << 32) | offset;
+    }
+
+    /**
+     * Читает строку по ссылке.
+     *
+     * @param ref ссылка на строку.
+     * @return строка.
+     */
+    String read(long ref) {
+        ByteBuffer page = pages.get((int) (ref >>> 32));
+        int offset = (int) ref;
+        byte[] bytes = new byte[page.getInt(offset)];
+        page.get(offset + LENGTH_PREFIX, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Помечает строку освобожденной.
+     *
+     * @param ref ссылка на строку.
+     */
+    void free(long ref) {
+        int length = LENGTH_PREFIX + pages.get((int) (ref >>> 32)).getInt((int) ref);
+        liveBytes -= length;
+        garbageBytes += length;
+    }
+
+    /**
+     * Проверяет, занимает ли мусор больше места, чем живые строки, и стоит ли уплотнить арену.
+     *
+     * @return true, если арену стоит уплотнить.
+     */
+    boolean needsCompaction() {
+        return garbageBytes > PAGE_SIZE && garbageBytes > liveBytes;
+    }
+
+    /**
+     * Возвращает объем памяти вне кучи, выделенный арене.
+     *
+     * @return объем памяти в байтах.
+     */
+    long allocatedBytes() {
+        long total = 0;
+        for (ByteBuffer page : pages) {
+            total += page.capacity();
+        }
+        return total;
+    }
+
+    /**
+     * Возвращает страницу, в которой есть место для записи указанного количества байт, выделяя новую при необходимости.
+     * Строки длиннее страницы получают отдельную страницу подходящего размера.
+     *
+     * @param length количество байт.
+     * @return страница для записи.
+     */
+    private ByteBuffer pageFor(int length) {
+        if (pages.isEmpty() || position + length > pages.get(pages.size() - 1).capacity()) {
+            pages.add(OffHeapRouteStore.allocatePage(Math.max(PAGE_SIZE, length)));
+            position = 0;
+        }
+        return pages.get(pages.size() - 1);
+    }
+}
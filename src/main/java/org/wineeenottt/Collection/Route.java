@@ -1,12 +1,21 @@
 package org.wineeenottt.Collection;
 
+import java.time.Instant;
 import java.time.ZonedDateTime;
 
 /**
  * Класс Route представляет маршрут с координатами, пунктами отправления и назначения.
  * Хранит информацию о дате создания и расстоянии.
+ * Дата создания хранится компактно - моментом времени в наносекундах эпохи и кодом часового пояса
+ * в {@link ZoneDictionary}; объект ZonedDateTime создается только при обращении к {@link #getCreationDate()}.
  */
 public class Route {
+
+    /**
+     * Количество наносекунд в секунде.
+     */
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
     /**
      * Идентификатор маршрута. Поле не может быть null. Значение поля должно быть больше 0 и уникальным.
      * Значение этого поля генерируется автоматически.
@@ -24,9 +33,14 @@ public class Route {
     private Coordinates coordinates;
 
     /**
-     * Дата создания маршрута. Поле не может быть null. Значение этого поля генерируется автоматически.
+     * Момент создания маршрута в наносекундах эпохи. Значение этого поля генерируется автоматически.
+     */
+    private long creationEpochNanos;
+
+    /**
+     * Код часового пояса даты создания в {@link ZoneDictionary}.
      */
-    private ZonedDateTime creationDate;
+    private int creationZone;
 
     /**
      * Место отправления. Поле не может быть null.
@@ -49,21 +63,68 @@ public class Route {
      * @param id           Идентификатор маршрута. Не может быть null, должен быть больше 0 и уникальным.
      * @param name         Название маршрута. Не может быть null или пустой строкой.
      * @param coordinates  Координаты маршрута. Не может быть null.
-     * @param creationDate Дата создания маршрута. Не может быть null.
+     * @param creationDate Дата создания маршрута. Не может быть null; должна лежать в диапазоне
+     *                     {@link #epochNanos(long, int) наносекунд эпохи}.
      * @param from         Место отправления. Не может быть null.
      * @param to           Место назначения. Не может быть null.
      * @param distance     Расстояние маршрута. Не может быть null и должно быть больше 1.
+     * @throws IllegalArgumentException если дата создания не представима в наносекундах эпохи.
      */
     public Route(Integer id, String name, Coordinates coordinates, ZonedDateTime creationDate, Location from, Location to, Long distance) {
+        this(id, name, coordinates, epochNanos(creationDate.toEpochSecond(), creationDate.getNano()),
+                ZoneDictionary.encode(creationDate.getZone()), from, to, distance);
+    }
+
+    /**
+     * Конструктор класса Route с датой создания в компактном представлении.
+     *
+     * @param id                 Идентификатор маршрута. Не может быть null, должен быть больше 0 и уникальным.
+     * @param name               Название маршрута. Не может быть null или пустой строкой.
+     * @param coordinates        Координаты маршрута. Не может быть null.
+     * @param creationEpochNanos Момент создания маршрута в наносекундах эпохи.
+     * @param creationZone       Код часового пояса даты создания в {@link ZoneDictionary}.
+     * @param from               Место отправления. Не может быть null.
+     * @param to                 Место назначения. Не может быть null.
+     * @param distance           Расстояние маршрута. Не может быть null и должно быть больше 1.
+     */
+    public Route(Integer id, String name, Coordinates coordinates, long creationEpochNanos, int creationZone,
+                 Location from, Location to, Long distance) {
         this.id = id;
         this.name = name;
         this.coordinates = coordinates;
-        this.creationDate = creationDate;
+        this.creationEpochNanos = creationEpochNanos;
+        this.creationZone = creationZone;
         this.from = from;
         this.to = to;
         this.distance = distance;
     }
 
+    /**
+     * Переводит момент времени в наносекунды эпохи. Представимы моменты примерно с 1677 по 2262 год.
+     *
+     * @param epochSecond секунды эпохи.
+     * @param nano        наносекунды в секунде (от 0 до 999 999 999).
+     * @return наносекунды эпохи.
+     * @throws IllegalArgumentException если момент не представим в наносекундах эпохи.
+     */
+    public static long epochNanos(long epochSecond, int nano) {
+        try {
+            return Math.addExact(Math.multiplyExact(epochSecond, NANOS_PER_SECOND), nano);
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("дата создания вне диапазона 1677-2262 годов");
+        }
+    }
+
+    /**
+     * Конструктор копирования. Координаты, места и дата создания не копируются: они разделяются с исходным маршрутом
+     * и не изменяются на месте.
+     *
+     * @param other маршрут, значения которого копируются.
+     */
+    public Route(Route other) {
+        this(other.id, other.name, other.coordinates, other.creationEpochNanos, other.creationZone, other.from, other.to, other.distance);
+    }
+
     /**
      * Возвращает идентификатор маршрута.
      *
@@ -101,39 +162,89 @@ public class Route {
     }
 
     /**
-     * Устанавливает координату X маршрута.
+     * Устанавливает координаты маршрута.
+     *
+     * @param coordinates Координаты маршрута. Не может быть null.
+     */
+    public void setCoordinates(Coordinates coordinates) {
+        this.coordinates = coordinates;
+    }
+
+    /**
+     * Устанавливает координату X маршрута. Координаты копируются, так как их экземпляр может разделяться
+     * с другими маршрутами.
      *
      * @param x Координата X. Не может быть null.
      */
     public void setCoordinateX(Double x) {
-        coordinates.setX(x);
+        coordinates = new Coordinates(x, coordinates.getY());
     }
 
     /**
-     * Устанавливает координату Y маршрута.
+     * Устанавливает координату Y маршрута. Координаты копируются, так как их экземпляр может разделяться
+     * с другими маршрутами.
      *
      * @param y Координата Y. Не может быть null.
      */
     public void setCoordinateY(Float y) {
-        coordinates.setY(y);
+        coordinates = new Coordinates(coordinates.getX(), y);
     }
 
     /**
-     * Возвращает дату создания маршрута.
+     * Возвращает дату создания маршрута, восстанавливая ее из момента времени и часового пояса.
      *
-     * @return Дата создания маршрута.
+     * @return Дата создания маршрута (новый объект при каждом вызове).
      */
     public ZonedDateTime getCreationDate() {
-        return creationDate;
+        return ZonedDateTime.ofInstant(Instant.ofEpochSecond(getCreationEpochSecond(), getCreationNano()),
+                ZoneDictionary.decode(creationZone));
     }
 
     /**
      * Устанавливает дату создания маршрута.
      *
      * @param creationDate Дата создания маршрута. Не может быть null.
+     * @throws IllegalArgumentException если дата создания не представима в наносекундах эпохи.
      */
     public void setCreationDate(ZonedDateTime creationDate) {
-        this.creationDate = creationDate;
+        this.creationEpochNanos = epochNanos(creationDate.toEpochSecond(), creationDate.getNano());
+        this.creationZone = ZoneDictionary.encode(creationDate.getZone());
+    }
+
+    /**
+     * Возвращает момент создания маршрута в наносекундах эпохи.
+     *
+     * @return Наносекунды эпохи.
+     */
+    public long getCreationEpochNanos() {
+        return creationEpochNanos;
+    }
+
+    /**
+     * Возвращает момент создания маршрута в секундах эпохи.
+     *
+     * @return Секунды эпохи.
+     */
+    public long getCreationEpochSecond() {
+        return Math.floorDiv(creationEpochNanos, NANOS_PER_SECOND);
+    }
+
+    /**
+     * Возвращает наносекунды в секунде момента создания маршрута.
+     *
+     * @return Наносекунды (от 0 до 999 999 999).
+     */
+    public int getCreationNano() {
+        return (int) Math.floorMod(creationEpochNanos, NANOS_PER_SECOND);
+    }
+
+    /**
+     * Возвращает код часового пояса даты создания в {@link ZoneDictionary}.
+     *
+     * @return Код часового пояса.
+     */
+    public int getCreationZone() {
+        return creationZone;
     }
 
     /**
@@ -201,7 +312,7 @@ public class Route {
                 "id=" + id +
                 ", name='" + name + '\'' +
                 ", coordinates=" + coordinates +
-                ", creationDate=" + creationDate +
+                ", creationDate=" + getCreationDate() +
                 ", from=" + from +
                 ", to=" + to +
                 ", distance=" + distance +
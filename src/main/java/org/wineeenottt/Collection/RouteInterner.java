@@ -0,0 +1,241 @@
+package org.wineeenottt.Collection;
+
+import java.lang.ref.WeakReference;
+import java.util.Locale;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Класс RouteInterner - пул разделяемых экземпляров (flyweight) значений маршрутов.
+ * Одинаковые по значению объекты Coordinates и Location заменяются единственным экземпляром из пула,
+ * а названия - экземплярами из общего словаря названий {@link NameDictionary}.
+ * <p>
+ * Разделяемые экземпляры нельзя изменять на месте: изменение одного маршрута выполняется копированием значения
+ * (copy-on-write), после чего копия снова проходит через пул.
+ * <p>
+ * Пул держит экземпляры по слабым ссылкам: значение, на которое больше не ссылается ни один маршрут (удаленное,
+ * замененное или разложенное по колонкам хранилища), освобождается сборщиком мусора, поэтому пул не больше
+ * количества различных значений живых маршрутов. Пул потокобезопасен: он разбит на несколько частей
+ * с отдельными блокировками, чтобы параллельная загрузка файла не ждала на одной блокировке.
+ */
+public class RouteInterner {
+
+    /**
+     * Оценка размера объекта Coordinates вместе с упакованными полями (при сжатых указателях), в байтах.
+     */
+    private static final long COORDINATES_BYTES = 56;
+
+    /**
+     * Оценка размера объекта Location вместе с упакованными полями (без названия), в байтах.
+     */
+    private static final long LOCATION_BYTES = 80;
+
+    /**
+     * Словарь названий.
+     */
+    private final NameDictionary nameDictionary;
+
+    /**
+     * Разделяемые экземпляры координат.
+     */
+    private final WeakPool<Coordinates> coordinates = new WeakPool<>();
+
+    /**
+     * Разделяемые экземпляры мест.
+     */
+    private final WeakPool<Location> locations = new WeakPool<>();
+
+    /**
+     * Количество повторяющихся координат, замененных разделяемым экземпляром.
+     */
+    private final LongAdder coordinateDuplicates = new LongAdder();
+
+    /**
+     * Количество повторяющихся мест, замененных разделяемым экземпляром.
+     */
+    private final LongAdder locationDuplicates = new LongAdder();
+
+    /**
+     * Конструктор класса RouteInterner с собственным словарем названий.
+     */
+    public RouteInterner() {
+        this(new NameDictionary());
+    }
+
+    /**
+     * Конструктор класса RouteInterner.
+     *
+     * @param nameDictionary общий словарь названий.
+     */
+    public RouteInterner(NameDictionary nameDictionary) {
+        this.nameDictionary = nameDictionary;
+    }
+
+    /**
+     * Возвращает словарь названий пула.
+     *
+     * @return словарь названий.
+     */
+    public NameDictionary getNameDictionary() {
+        return nameDictionary;
+    }
+
+    /**
+     * Возвращает разделяемый экземпляр координат, равный переданному.
+     *
+     * @param value координаты.
+     * @return экземпляр координат из пула.
+     */
+    public Coordinates intern(Coordinates value) {
+        Coordinates shared = coordinates.intern(value);
+        if (shared != value) {
+            coordinateDuplicates.increment();
+        }
+        return shared;
+    }
+
+    /**
+     * Возвращает разделяемый экземпляр места, равный переданному. Название места заменяется экземпляром
+     * из словаря только у места, которого еще нет в пуле: разделяемые экземпляры не изменяются.
+     *
+     * @param value место.
+     * @return экземпляр места из пула.
+     */
+    public Location intern(Location value) {
+        Location shared = locations.find(value);
+        if (shared == null) {
+            if (value.getName() != null) {
+                value.setName(nameDictionary.canonical(value.getName()));
+            }
+            shared = locations.intern(value);
+        }
+        if (shared != value) {
+            locationDuplicates.increment();
+        }
+        return shared;
+    }
+
+    /**
+     * Заменяет значения маршрута разделяемыми экземплярами: название, координаты, место отправления и назначения.
+     *
+     * @param route маршрут.
+     */
+    public void intern(Route route) {
+        if (route.getName() != null) {
+            route.setName(nameDictionary.canonical(route.getName()));
+        }
+        if (route.getCoordinates() != null) {
+            route.setCoordinates(intern(route.getCoordinates()));
+        }
+        if (route.getFrom() != null) {
+            route.setFrom(intern(route.getFrom()));
+        }
+        if (route.getTo() != null) {
+            route.setTo(intern(route.getTo()));
+        }
+    }
+
+    /**
+     * Возвращает отчет о дедупликации: сколько различных координат, мест и названий сейчас хранится в пуле,
+     * сколько повторов было заменено разделяемыми экземплярами и сколько памяти кучи (по оценке) это сэкономило.
+     * Повторная обработка уже разделяемого экземпляра не считается повтором.
+     *
+     * @return текст отчета.
+     */
+    public String report() {
+        long coordinateCount = coordinateDuplicates.sum();
+        long locationCount = locationDuplicates.sum();
+        long saved = coordinateCount * COORDINATES_BYTES + locationCount * LOCATION_BYTES;
+        return String.format(Locale.ROOT,
+                "Дедупликация: координаты %d (повторов %d), места %d (повторов %d), названия %d, сэкономлено около %.1f КБ",
+                coordinates.size(), coordinateCount, locations.size(), locationCount, nameDictionary.size(), saved / 1024.0);
+    }
+
+    /**
+     * Пул разделяемых экземпляров со слабыми ссылками, разбитый на части с отдельными блокировками.
+     *
+     * @param <T> тип значений с equals и hashCode по значению.
+     */
+    private static final class WeakPool<T> {
+
+        /**
+         * Количество частей пула (степень двойки).
+         */
+        private static final int STRIPES = 16;
+
+        /**
+         * Части пула: значение - слабая ссылка на тот же экземпляр, что и ключ, поэтому пул не удерживает экземпляры.
+         */
+        private final WeakHashMap<T, WeakReference<T>>[] stripes;
+
+        /**
+         * Конструктор класса WeakPool.
+         */
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        WeakPool() {
+            stripes = new WeakHashMap[STRIPES];
+            for (int i = 0; i < STRIPES; i++) {
+                stripes[i] = new WeakHashMap<>();
+            }
+        }
+
+        /**
+         * Возвращает разделяемый экземпляр, равный переданному, не добавляя переданный экземпляр в пул.
+         *
+         * @param value значение.
+         * @return экземпляр из пула или null, если равного значения в пуле нет.
+         */
+        T find(T value) {
+            WeakHashMap<T, WeakReference<T>> stripe = stripe(value);
+            synchronized (stripe) {
+                WeakReference<T> reference = stripe.get(value);
+                return reference == null ? null : reference.get();
+            }
+        }
+
+        /**
+         * Возвращает разделяемый экземпляр, равный переданному, или добавляет переданный экземпляр в пул.
+         *
+         * @param value значение.
+         * @return экземпляр из пула.
+         */
+        T intern(T value) {
+            WeakHashMap<T, WeakReference<T>> stripe = stripe(value);
+            synchronized (stripe) {
+                WeakReference<T> reference = stripe.get(value);
+                T shared = reference == null ? null : reference.get();
+                if (shared != null) {
+                    return shared;
+                }
+                stripe.put(value, new WeakReference<>(value));
+                return value;
+            }
+        }
+
+        /**
+         * Возвращает часть пула, в которой хранится значение.
+         *
+         * @param value значение.
+         * @return часть пула.
+         */
+        private WeakHashMap<T, WeakReference<T>> stripe(T value) {
+            int hash = value.hashCode();
+            return stripes[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+        }
+
+        /**
+         * Возвращает количество экземпляров в пуле, еще не освобожденных сборщиком мусора.
+         *
+         * @return количество экземпляров.
+         */
+        int size() {
+            int size = 0;
+            for (WeakHashMap<T, WeakReference<T>> stripe : stripes) {
+                synchronized (stripe) {
+                    size += stripe.size();
+                }
+            }
+            return size;
+        }
+    }
+}
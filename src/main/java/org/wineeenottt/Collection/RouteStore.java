@@ -0,0 +1,131 @@
+package org.wineeenottt.Collection;
+
+/**
+ * Интерфейс RouteStore определяет хранилище маршрутов, на котором работает CollectionManager.
+ * Хранилище обеспечивает уникальность ID и обход маршрутов в порядке возрастания ID.
+ * Реализации могут хранить маршруты как объекты или в собственном компактном представлении;
+ * в последнем случае методы get и iterator возвращают материализованные копии, и изменения
+ * маршрута необходимо записать обратно методом put.
+ */
+public interface RouteStore extends Iterable<Route> {
+
+    /**
+     * Возвращает количество маршрутов в хранилище.
+     *
+     * @return количество маршрутов.
+     */
+    int size();
+
+    /**
+     * Проверяет, пусто ли хранилище.
+     *
+     * @return true, если хранилище пусто.
+     */
+    default boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Проверяет, содержится ли в хранилище маршрут с указанным ID.
+     *
+     * @param id ID маршрута.
+     * @return true, если маршрут существует.
+     */
+    boolean contains(int id);
+
+    /**
+     * Возвращает маршрут с указанным ID.
+     *
+     * @param id ID маршрута.
+     * @return маршрут или null, если маршрута с таким ID нет.
+     */
+    Route get(int id);
+
+    /**
+     * Добавляет маршрут в хранилище или заменяет маршрут с тем же ID.
+     *
+     * @param route маршрут.
+     */
+    void put(Route route);
+
+    /**
+     * Удаляет маршрут с указанным ID.
+     *
+     * @param id ID маршрута.
+     * @return удаленный маршрут или null, если маршрута с таким ID нет.
+     */
+    Route remove(int id);
+
+    /**
+     * Удаляет все маршруты, ID которых превышает указанный, сообщая о каждом удаленном маршруте обработчику.
+     * Время работы пропорционально количеству удаленных маршрутов.
+     *
+     * @param id      граница ID (не включительно).
+     * @param removed обработчик, получающий расстояние и ID каждого удаленного маршрута.
+     */
+    void removeGreater(int id, DistanceIndex.EntryConsumer removed);
+
+    /**
+     * Удаляет все маршруты из хранилища.
+     */
+    void clear();
+
+    /**
+     * Проверяет, могут ли методы чтения хранилища (contains, get, iterator, forEachDistance, maxId) выполняться
+     * одновременно из нескольких потоков, пока хранилище не изменяется.
+     *
+     * @return true, если чтение не изменяет внутреннее состояние хранилища.
+     */
+    default boolean supportsConcurrentReads() {
+        return true;
+    }
+
+    /**
+     * Проверяет, хранит ли хранилище сами объекты маршрутов. Хранилища, раскладывающие маршрут по колонкам
+     * или строкам собственного представления, не хранят объекты, поэтому их маршруты не проходят через пул
+     * разделяемых значений {@link RouteInterner}.
+     * По умолчанию возвращает true.
+     *
+     * @return true, если хранилище держит объекты маршрутов.
+     */
+    default boolean keepsRouteObjects() {
+        return true;
+    }
+
+    /**
+     * Возвращает неизменяемый снимок хранилища, который можно читать из других потоков одновременно
+     * с изменением хранилища. Хранилища, которые не могут снять снимок без копирования, возвращают null.
+     *
+     * @return снимок хранилища или null.
+     */
+    default RouteStore snapshot() {
+        return null;
+    }
+
+    /**
+     * Сообщает обработчику расстояние и ID каждого маршрута, у которого задано расстояние, в порядке возрастания ID.
+     * Хранилища, которые знают расстояния без материализации маршрутов, переопределяют метод.
+     *
+     * @param consumer обработчик, получающий расстояние и ID маршрута.
+     */
+    default void forEachDistance(DistanceIndex.EntryConsumer consumer) {
+        for (Route route : this) {
+            if (route.getDistance() != null) {
+                consumer.accept(route.getDistance(), route.getId());
+            }
+        }
+    }
+
+    /**
+     * Возвращает наибольший ID маршрута в хранилище.
+     *
+     * @return наибольший ID или -1, если хранилище пусто.
+     */
+    default int maxId() {
+        int maxId = -1;
+        for (Route route : this) {
+            maxId = Math.max(maxId, route.getId());
+        }
+        return maxId;
+    }
+}
@@ -0,0 +1,86 @@
+package org.wineeenottt.Collection;
+
+import org.wineeenottt.WorkWithFile.RouteFileIndex;
+
+import java.util.Locale;
+
+/**
+ * Перечисление RouteStoreType описывает доступные реализации хранилища маршрутов.
+ * Тип хранилища выбирается системным свойством {@value #PROPERTY}, например {@code -Droute.store=columnar},
+ * {@code -Droute.store=off-heap} или {@code -Droute.store=lazy}.
+ * Хранилище off-heap ограничено параметром JVM {@code -XX:MaxDirectMemorySize} (по умолчанию - размер кучи),
+ * поэтому для больших коллекций его запускают, например, с {@code -Droute.store=off-heap -XX:MaxDirectMemorySize=4g}.
+ */
+public enum RouteStoreType {
+
+    /**
+     * Объектное хранилище на основе декартова дерева с неизменяемыми снимками.
+     */
+    TREE,
+
+    /**
+     * Колоночное хранилище на массивах примитивов.
+     */
+    COLUMNAR,
+
+    /**
+     * Хранилище в памяти вне кучи на страницах строк фиксированной длины. Объем ограничен параметром JVM
+     * {@code -XX:MaxDirectMemorySize}, см. {@link OffHeapRouteStore}.
+     */
+    OFF_HEAP,
+
+    /**
+     * Ленивое хранилище поверх индекса отображенного в память файла коллекции: маршруты декодируются
+     * из файла при обращении. При загрузке заполняется индексом файла, а не добавлением маршрутов.
+     */
+    LAZY;
+
+    /**
+     * Имя системного свойства, задающего тип хранилища.
+     */
+    public static final String PROPERTY = "route.store";
+
+    /**
+     * Создает новое пустое хранилище данного типа с собственным словарем названий.
+     *
+     * @return хранилище маршрутов.
+     */
+    public RouteStore create() {
+        return create(new NameDictionary());
+    }
+
+    /**
+     * Создает новое пустое хранилище данного типа. Хранилища, кодирующие названия, используют переданный словарь.
+     * Ленивое хранилище создается над пустым индексом.
+     *
+     * @param nameDictionary общий словарь названий.
+     * @return хранилище маршрутов.
+     */
+    public RouteStore create(NameDictionary nameDictionary) {
+        return switch (this) {
+            case TREE -> new TreeRouteStore();
+            case COLUMNAR -> new ColumnarRouteStore(nameDictionary);
+            case OFF_HEAP -> new OffHeapRouteStore();
+            case LAZY -> new LazyRouteStore(RouteFileIndex.empty());
+        };
+    }
+
+    /**
+     * Возвращает тип хранилища, заданный системным свойством {@value #PROPERTY}.
+     * Если свойство не задано, используется объектное хранилище.
+     *
+     * @return тип хранилища.
+     * @throws IllegalArgumentException если значение свойства не соответствует ни одному типу.
+     */
+    public static RouteStoreType fromSystemProperty() {
+        String value = System.getProperty(PROPERTY);
+        if (value == null || value.isBlank()) {
+            return TREE;
+        }
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Неизвестный тип хранилища: " + value);
+        }
+    }
+}
@@ -0,0 +1,640 @@
+package org.wineeenottt.Collection;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Класс TreeRouteStore - объектное хранилище маршрутов.
+ * Маршруты хранятся в декартовом дереве (treap) с ключом ID, что обеспечивает обход в порядке возрастания ID
+ * без сортировки, а удаление и обновление маршрута по ID - за логарифмическое время. Рядом с деревом хранится
+ * индекс ID - префиксное дерево по битам ID (hash array mapped trie) глубиной не больше 7 уровней, поэтому
+ * поиск маршрута по ID (get, contains) выполняется за константное время.
+ * <p>
+ * Хранилище поддерживает неизменяемые снимки ({@link #snapshot}) со структурным разделением: снимок ссылается
+ * на те же корни дерева и индекса ID, а узлы, существовавшие на момент снимка, больше не изменяются - хранилище
+ * копирует путь от корня до изменяемого узла. Узлы, созданные после последнего снимка, изменяются на месте,
+ * поэтому без снимков вставка не создает лишних объектов. Приоритет узла вычисляется по ID, поэтому форма дерева не зависит
+ * от порядка вставки.
+ */
+public class TreeRouteStore implements RouteStore {
+
+    /**
+     * Корень дерева или null, если хранилище пусто.
+     */
+    private Node root;
+
+    /**
+     * Корень индекса ID или null, если хранилище пусто.
+     */
+    private IdNode idRoot;
+
+    /**
+     * Количество маршрутов в хранилище.
+     */
+    private int size;
+
+    /**
+     * Номер поколения узлов: узлы другого поколения видны из снимков и перед изменением копируются.
+     */
+    private int epoch;
+
+    /**
+     * Признак снимка: снимок только читается.
+     */
+    private final boolean readOnly;
+
+    /**
+     * Конструктор класса TreeRouteStore. Создает пустое хранилище.
+     */
+    public TreeRouteStore() {
+        this.readOnly = false;
+    }
+
+    /**
+     * Конструктор снимка хранилища.
+     *
+     * @param source хранилище, снимок которого создается.
+     */
+    private TreeRouteStore(TreeRouteStore source) {
+        this.readOnly = true;
+        this.root = source.root;
+        this.idRoot = source.idRoot;
+        this.size = source.size;
+        this.epoch = source.epoch;
+    }
+
+    /**
+     * Возвращает неизменяемый снимок хранилища за константное время. Последующие изменения хранилища
+     * не видны в снимке, а снимок можно читать из других потоков одновременно с изменением хранилища.
+     *
+     * @return снимок хранилища.
+     */
+    @Override
+    public RouteStore snapshot() {
+        if (readOnly) {
+            return this;
+        }
+        epoch++;
+        return new TreeRouteStore(this);
+    }
+
+    /**
+     * Возвращает количество маршрутов в хранилище.
+     *
+     * @return количество маршрутов.
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Проверяет наличие маршрута с указанным ID по индексу ID.
+     *
+     * @param id ID маршрута.
+     * @return true, если маршрут существует.
+     */
+    @Override
+    public boolean contains(int id) {
+        return get(id) != null;
+    }
+
+    /**
+     * Возвращает маршрут с указанным ID по индексу ID: спуск не глубже 7 уровней по 5 битам ID.
+     *
+     * @param id ID маршрута.
+     * @return маршрут или null, если маршрута с таким ID нет.
+     */
+    @Override
+    public Route get(int id) {
+        IdNode node = idRoot;
+        for (int shift = 0; node != null; shift += IdNode.BITS) {
+            int bit = 1 << ((id >>> shift) & IdNode.MASK);
+            if ((node.bitmap & bit) == 0) {
+                return null;
+            }
+            Object slot = node.slots[Integer.bitCount(node.bitmap & (bit - 1))];
+            if (slot instanceof Route route) {
+                return route.getId() == id ? route : null;
+            }
+            node = (IdNode) slot;
+        }
+        return null;
+    }
+
+    /**
+     * Добавляет маршрут в хранилище, заменяя маршрут с тем же ID.
+     *
+     * @param route маршрут.
+     */
+    @Override
+    public void put(Route route) {
+        checkWritable();
+        if (!contains(route.getId())) {
+            size++;
+        }
+        root = insert(root, route);
+        idRoot = putId(idRoot, route, 0);
+    }
+
+    /**
+     * Удаляет маршрут с указанным ID.
+     *
+     * @param id ID маршрута.
+     * @return удаленный маршрут или null, если маршрута с таким ID нет.
+     */
+    @Override
+    public Route remove(int id) {
+        checkWritable();
+        Route route = get(id);
+        if (route == null) {
+            return null;
+        }
+        root = delete(root, id);
+        idRoot = removeId(idRoot, id);
+        size--;
+        return route;
+    }
+
+    /**
+     * Удаляет маршруты с ID больше указанного: обходит их, сообщая обработчику, и отрезает правую часть дерева.
+     *
+     * @param id      граница ID (не включительно).
+     * @param removed обработчик, получающий расстояние и ID каждого удаленного маршрута.
+     */
+    @Override
+    public void removeGreater(int id, DistanceIndex.EntryConsumer removed) {
+        checkWritable();
+        Iterator<Route> tail = iterator(id);
+        int count = 0;
+        while (tail.hasNext()) {
+            Route route = tail.next();
+            if (route.getDistance() != null) {
+                removed.accept(route.getDistance(), route.getId());
+            }
+            idRoot = removeId(idRoot, route.getId());
+            count++;
+        }
+        if (count > 0) {
+            root = head(root, id);
+            size -= count;
+        }
+    }
+
+    /**
+     * Удаляет все маршруты. Снимки сохраняют прежнее дерево.
+     */
+    @Override
+    public void clear() {
+        checkWritable();
+        root = null;
+        idRoot = null;
+        size = 0;
+    }
+
+    /**
+     * Возвращает наибольший ID маршрута - ID самого правого узла.
+     *
+     * @return наибольший ID или -1, если хранилище пусто.
+     */
+    @Override
+    public int maxId() {
+        Node node = root;
+        if (node == null) {
+            return -1;
+        }
+        while (node.right != null) {
+            node = node.right;
+        }
+        return node.id;
+    }
+
+    /**
+     * Возвращает итератор по маршрутам в порядке возрастания ID.
+     *
+     * @return итератор по маршрутам.
+     */
+    @Override
+    public Iterator<Route> iterator() {
+        return iterator(Integer.MIN_VALUE);
+    }
+
+    /**
+     * Возвращает итератор по маршрутам с ID больше указанного в порядке возрастания ID.
+     *
+     * @param afterId граница ID (не включительно); Integer.MIN_VALUE - все маршруты.
+     * @return итератор по маршрутам.
+     */
+    private Iterator<Route> iterator(int afterId) {
+        ArrayDeque<Node> path = new ArrayDeque<>();
+        for (Node node = root; node != null; ) {
+            if (afterId == Integer.MIN_VALUE || node.id > afterId) {
+                path.push(node);
+                node = node.left;
+            } else {
+                node = node.right;
+            }
+        }
+        return new Iterator<>() {
+
+            /**
+             * Проверяет наличие следующего маршрута.
+             *
+             * @return true, если маршрут есть.
+             */
+            @Override
+            public boolean hasNext() {
+                return !path.isEmpty();
+            }
+
+            /**
+             * Возвращает следующий маршрут и спускается к следующему узлу.
+             *
+             * @return маршрут.
+             */
+            @Override
+            public Route next() {
+                if (path.isEmpty()) {
+                    throw new NoSuchElementException();
+                }
+                Node node = path.pop();
+                for (Node next = node.right; next != null; next = next.left) {
+                    path.push(next);
+                }
+                return node.route;
+            }
+        };
+    }
+
+    /**
+     * Проверяет, что хранилище не является снимком.
+     *
+     * @throws UnsupportedOperationException если хранилище - снимок.
+     */
+    private void checkWritable() {
+        if (readOnly) {
+            throw new UnsupportedOperationException("Снимок хранилища не изменяется");
+        }
+    }
+
+    /**
+     * Возвращает узел, который можно изменять: узел, видимый из снимков, копируется.
+     *
+     * @param node узел.
+     * @return узел или его копия текущего поколения.
+     */
+    private Node own(Node node) {
+        return node.epoch == epoch ? node : new Node(node, epoch);
+    }
+
+    /**
+     * Возвращает узел индекса ID, который можно изменять: узел, видимый из снимков, копируется.
+     *
+     * @param node узел индекса.
+     * @return узел или его копия текущего поколения.
+     */
+    private IdNode own(IdNode node) {
+        return node.epoch == epoch ? node : new IdNode(node.bitmap, node.slots.clone(), epoch);
+    }
+
+    /**
+     * Добавляет маршрут в поддерево индекса ID, заменяя маршрут с тем же ID.
+     *
+     * @param node  узел индекса или null.
+     * @param route маршрут.
+     * @param shift сдвиг битов ID, выбирающих ячейку на уровне узла.
+     * @return новый узел поддерева.
+     */
+    private IdNode putId(IdNode node, Route route, int shift) {
+        int id = route.getId();
+        int bit = 1 << ((id >>> shift) & IdNode.MASK);
+        if (node == null) {
+            return new IdNode(bit, new Object[]{route}, epoch);
+        }
+        int index = Integer.bitCount(node.bitmap & (bit - 1));
+        if ((node.bitmap & bit) == 0) {
+            Object[] slots = new Object[node.slots.length + 1];
+            System.arraycopy(node.slots, 0, slots, 0, index);
+            slots[index] = route;
+            System.arraycopy(node.slots, index, slots, index + 1, node.slots.length - index);
+            return node.epoch == epoch ? node.replace(node.bitmap | bit, slots)
+                    : new IdNode(node.bitmap | bit, slots, epoch);
+        }
+        Object slot = node.slots[index];
+        Object replacement;
+        if (slot instanceof Route existing) {
+            replacement = existing.getId() == id ? route
+                    : putId(putId(null, existing, shift + IdNode.BITS), route, shift + IdNode.BITS);
+        } else {
+            replacement = putId((IdNode) slot, route, shift + IdNode.BITS);
+        }
+        if (replacement == slot) {
+            return node;
+        }
+        node = own(node);
+        node.slots[index] = replacement;
+        return node;
+    }
+
+    /**
+     * Удаляет маршрут с указанным ID из индекса ID. Маршрут должен присутствовать в индексе.
+     *
+     * @param node корень индекса.
+     * @param id   ID маршрута.
+     * @return новый корень индекса или null, если индекс опустел.
+     */
+    private IdNode removeId(IdNode node, int id) {
+        return (IdNode) removeId(node, id, 0);
+    }
+
+    /**
+     * Удаляет маршрут с указанным ID из поддерева индекса ID. Маршрут должен присутствовать в поддереве.
+     * Узел ниже корня, в котором остался единственный маршрут, заменяется этим маршрутом.
+     *
+     * @param node  узел индекса.
+     * @param id    ID маршрута.
+     * @param shift сдвиг битов ID, выбирающих ячейку на уровне узла.
+     * @return новый узел поддерева, оставшийся маршрут или null, если поддерево опустело.
+     */
+    private Object removeId(IdNode node, int id, int shift) {
+        int bit = 1 << ((id >>> shift) & IdNode.MASK);
+        int index = Integer.bitCount(node.bitmap & (bit - 1));
+        Object slot = node.slots[index];
+        Object replacement = slot instanceof Route ? null : removeId((IdNode) slot, id, shift + IdNode.BITS);
+        if (replacement == null) {
+            if (node.slots.length == 1) {
+                return null;
+            }
+            if (node.slots.length == 2 && shift > 0 && node.slots[1 - index] instanceof Route last) {
+                return last;
+            }
+            Object[] slots = new Object[node.slots.length - 1];
+            System.arraycopy(node.slots, 0, slots, 0, index);
+            System.arraycopy(node.slots, index + 1, slots, index, slots.length - index);
+            return node.epoch == epoch ? node.replace(node.bitmap & ~bit, slots)
+                    : new IdNode(node.bitmap & ~bit, slots, epoch);
+        }
+        if (replacement instanceof Route && node.slots.length == 1 && shift > 0) {
+            return replacement;
+        }
+        node = own(node);
+        node.slots[index] = replacement;
+        return node;
+    }
+
+    /**
+     * Вставляет маршрут в поддерево, заменяя маршрут с тем же ID.
+     *
+     * @param tree  корень поддерева.
+     * @param route маршрут.
+     * @return новый корень поддерева.
+     */
+    private Node insert(Node tree, Route route) {
+        if (tree == null) {
+            return new Node(route, epoch);
+        }
+        tree = own(tree);
+        int id = route.getId();
+        if (id == tree.id) {
+            tree.route = route;
+        } else if (id < tree.id) {
+            tree.left = insert(tree.left, route);
+            if (tree.left.priority > tree.priority) {
+                tree = rotateRight(tree);
+            }
+        } else {
+            tree.right = insert(tree.right, route);
+            if (tree.right.priority > tree.priority) {
+                tree = rotateLeft(tree);
+            }
+        }
+        return tree;
+    }
+
+    /**
+     * Удаляет узел с указанным ID из поддерева. Узел должен присутствовать в поддереве.
+     *
+     * @param tree корень поддерева.
+     * @param id   ID маршрута.
+     * @return новый корень поддерева.
+     */
+    private Node delete(Node tree, int id) {
+        if (id == tree.id) {
+            return merge(tree.left, tree.right);
+        }
+        tree = own(tree);
+        if (id < tree.id) {
+            tree.left = delete(tree.left, id);
+        } else {
+            tree.right = delete(tree.right, id);
+        }
+        return tree;
+    }
+
+    /**
+     * Объединяет два поддерева, все ID левого из которых меньше ID правого.
+     *
+     * @param left  левое поддерево.
+     * @param right правое поддерево.
+     * @return корень объединенного поддерева.
+     */
+    private Node merge(Node left, Node right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.priority > right.priority) {
+            left = own(left);
+            left.right = merge(left.right, right);
+            return left;
+        }
+        right = own(right);
+        right.left = merge(left, right.left);
+        return right;
+    }
+
+    /**
+     * Оставляет в поддереве только узлы с ID не больше указанного.
+     *
+     * @param tree корень поддерева.
+     * @param id   граница ID (включительно).
+     * @return корень оставшегося поддерева.
+     */
+    private Node head(Node tree, int id) {
+        if (tree == null) {
+            return null;
+        }
+        if (tree.id > id) {
+            return head(tree.left, id);
+        }
+        Node right = head(tree.right, id);
+        if (right == tree.right) {
+            return tree;
+        }
+        tree = own(tree);
+        tree.right = right;
+        return tree;
+    }
+
+    /**
+     * Выполняет правый поворот поддерева, корень которого уже можно изменять.
+     *
+     * @param tree корень поддерева.
+     * @return новый корень поддерева.
+     */
+    private Node rotateRight(Node tree) {
+        Node pivot = own(tree.left);
+        tree.left = pivot.right;
+        pivot.right = tree;
+        return pivot;
+    }
+
+    /**
+     * Выполняет левый поворот поддерева, корень которого уже можно изменять.
+     *
+     * @param tree корень поддерева.
+     * @return новый корень поддерева.
+     */
+    private Node rotateLeft(Node tree) {
+        Node pivot = own(tree.right);
+        tree.right = pivot.left;
+        pivot.left = tree;
+        return pivot;
+    }
+
+    /**
+     * Узел индекса ID: битовая карта занятых ячеек и плотный массив ячеек. Ячейка уровня выбирается
+     * {@value #BITS} битами ID, начиная с младших; ячейка содержит маршрут или узел следующего уровня.
+     */
+    private static final class IdNode {
+
+        /**
+         * Количество битов ID на уровень индекса.
+         */
+        private static final int BITS = 5;
+
+        /**
+         * Маска битов ID одного уровня.
+         */
+        private static final int MASK = (1 << BITS) - 1;
+
+        /**
+         * Поколение, в котором создан узел.
+         */
+        private final int epoch;
+
+        /**
+         * Битовая карта занятых ячеек.
+         */
+        private int bitmap;
+
+        /**
+         * Занятые ячейки в порядке номеров: маршруты и узлы следующего уровня.
+         */
+        private Object[] slots;
+
+        /**
+         * Конструктор класса IdNode.
+         *
+         * @param bitmap битовая карта занятых ячеек.
+         * @param slots  занятые ячейки.
+         * @param epoch  поколение узла.
+         */
+        IdNode(int bitmap, Object[] slots, int epoch) {
+            this.bitmap = bitmap;
+            this.slots = slots;
+            this.epoch = epoch;
+        }
+
+        /**
+         * Заменяет ячейки узла текущего поколения на месте.
+         *
+         * @param bitmap новая битовая карта.
+         * @param slots  новые ячейки.
+         * @return этот узел.
+         */
+        IdNode replace(int bitmap, Object[] slots) {
+            this.bitmap = bitmap;
+            this.slots = slots;
+            return this;
+        }
+    }
+
+    /**
+     * Узел дерева маршрутов.
+     */
+    private static final class Node {
+
+        /**
+         * ID маршрута - ключ узла.
+         */
+        private final int id;
+
+        /**
+         * Приоритет узла, вычисленный по ID.
+         */
+        private final int priority;
+
+        /**
+         * Поколение, в котором создан узел.
+         */
+        private final int epoch;
+
+        /**
+         * Маршрут.
+         */
+        private Route route;
+
+        /**
+         * Левый потомок.
+         */
+        private Node left;
+
+        /**
+         * Правый потомок.
+         */
+        private Node right;
+
+        /**
+         * Создает лист с маршрутом.
+         *
+         * @param route маршрут.
+         * @param epoch поколение узла.
+         */
+        Node(Route route, int epoch) {
+            this.id = route.getId();
+            this.priority = priority(id);
+            this.epoch = epoch;
+            this.route = route;
+        }
+
+        /**
+         * Создает копию узла в другом поколении.
+         *
+         * @param source копируемый узел.
+         * @param epoch  поколение копии.
+         */
+        Node(Node source, int epoch) {
+            this.id = source.id;
+            this.priority = source.priority;
+            this.epoch = epoch;
+            this.route = source.route;
+            this.left = source.left;
+            this.right = source.right;
+        }
+
+        /**
+         * Вычисляет приоритет узла перемешиванием битов ID.
+         *
+         * @param id ID маршрута.
+         * @return приоритет.
+         */
+        private static int priority(int id) {
+            int hash = id * 0x9E3779B9;
+            return hash ^ (hash >>> 16);
+        }
+    }
+}
@@ -0,0 +1,302 @@
+package org.wineeenottt.Collection;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Класс WriterLoop - цикл единственного потока, который изменяет коллекцию. Потоки, изменяющие коллекцию,
+ * кладут изменения в ограниченный кольцевой буфер без блокировок и ждут их применения, а записывающий поток
+ * забирает из буфера все накопившиеся изменения и передает их одной пачкой исполнителю
+ * (в {@link CollectionManager} - одна блокировка записи, один сброс журнала и одна публикация версии на пачку).
+ * <p>
+ * Буфер - массив ячеек с номерами последовательности: производитель занимает позицию сравнением с обменом
+ * хвоста и публикует изменение, записывая в ячейку номер позиции + 1; записывающий поток читает ячейку,
+ * когда ее номер равен позиции + 1, и освобождает ее для следующего круга номером позиции + размер буфера.
+ * Поток, отдавший изменение, ждет его применения, поэтому в буфере не бывает больше изменений, чем потоков.
+ */
+final class WriterLoop {
+
+    /**
+     * Размер кольцевого буфера (степень двойки).
+     */
+    private static final int CAPACITY = 1024;
+
+    /**
+     * Маска позиции в кольцевом буфере.
+     */
+    private static final int MASK = CAPACITY - 1;
+
+    /**
+     * Наибольшее количество изменений в одной пачке.
+     */
+    private static final int MAX_BATCH = 256;
+
+    /**
+     * Ячейки кольцевого буфера.
+     */
+    private final Task[] slots = new Task[CAPACITY];
+
+    /**
+     * Номера последовательности ячеек.
+     */
+    private final AtomicLongArray sequences = new AtomicLongArray(CAPACITY);
+
+    /**
+     * Следующая позиция, которую займет производитель.
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * Следующая позиция, которую прочитает записывающий поток; изменяется только им.
+     */
+    private long head;
+
+    /**
+     * Изменения текущей пачки.
+     */
+    private final Task[] batch = new Task[MAX_BATCH];
+
+    /**
+     * Исполнитель пачки: получает действие, которое применяет все изменения пачки по порядку.
+     */
+    private final Consumer<Runnable> executor;
+
+    /**
+     * Записывающий поток.
+     */
+    private final Thread thread;
+
+    /**
+     * Признак того, что записывающий поток собирается уснуть и его нужно разбудить после добавления изменения.
+     */
+    private volatile boolean idle;
+
+    /**
+     * Признак работы цикла.
+     */
+    private volatile boolean running = true;
+
+    /**
+     * Конструктор класса WriterLoop. Запускает записывающий поток.
+     *
+     * @param executor   Исполнитель пачки изменений.
+     * @param threadName Имя записывающего потока.
+     */
+    WriterLoop(Consumer<Runnable> executor, String threadName) {
+        this.executor = executor;
+        for (int i = 0; i < CAPACITY; i++) {
+            sequences.set(i, i);
+        }
+        this.thread = new Thread(this::run, threadName);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Отдает изменение записывающему потоку и ждет, пока оно не будет применено. Изменение, отданное из самого
+     * записывающего потока (изнутри другого изменения), выполняется сразу в текущей пачке.
+     *
+     * @param mutation Изменение коллекции.
+     * @throws RuntimeException если изменение завершилось исключением.
+     */
+    void submit(Runnable mutation) {
+        if (Thread.currentThread() == thread) {
+            mutation.run();
+            return;
+        }
+        Task task = new Task(mutation, Thread.currentThread());
+        offer(task);
+        if (idle) {
+            LockSupport.unpark(thread);
+        }
+        boolean interrupted = false;
+        while (!task.done) {
+            LockSupport.park(this);
+            if (Thread.interrupted()) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (task.failure instanceof RuntimeException e) {
+            throw e;
+        }
+        if (task.failure instanceof Error e) {
+            throw e;
+        }
+    }
+
+    /**
+     * Останавливает цикл после применения уже отданных изменений и ждет завершения записывающего потока.
+     * Вызывается, когда другие потоки больше не отдают изменения.
+     */
+    void stop() {
+        running = false;
+        LockSupport.unpark(thread);
+        boolean interrupted = false;
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Кладет изменение в кольцевой буфер. Если буфер заполнен, ждет, пока записывающий поток не освободит ячейку.
+     *
+     * @param task Изменение.
+     */
+    private void offer(Task task) {
+        long position = tail.get();
+        while (true) {
+            int index = (int) (position & MASK);
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    slots[index] = task;
+                    sequences.set(index, position + 1);
+                    return;
+                }
+            } else if (difference < 0) {
+                LockSupport.unpark(thread);
+                Thread.onSpinWait();
+            }
+            position = tail.get();
+        }
+    }
+
+    /**
+     * Цикл записывающего потока: забирает пачку изменений, применяет ее и засыпает, когда буфер пуст.
+     */
+    private void run() {
+        while (true) {
+            int count = drain();
+            if (count > 0) {
+                apply(count);
+                continue;
+            }
+            if (!running) {
+                return;
+            }
+            idle = true;
+            if (isEmpty() && running) {
+                LockSupport.park(this);
+            }
+            idle = false;
+        }
+    }
+
+    /**
+     * Забирает из кольцевого буфера опубликованные изменения, но не больше размера пачки.
+     *
+     * @return Количество забранных изменений.
+     */
+    private int drain() {
+        int count = 0;
+        while (count < MAX_BATCH) {
+            int index = (int) (head & MASK);
+            if (sequences.get(index) != head + 1) {
+                break;
+            }
+            batch[count++] = slots[index];
+            slots[index] = null;
+            sequences.set(index, head + CAPACITY);
+            head++;
+        }
+        return count;
+    }
+
+    /**
+     * Проверяет, пуст ли кольцевой буфер.
+     *
+     * @return true, если опубликованных изменений нет.
+     */
+    private boolean isEmpty() {
+        return sequences.get((int) (head & MASK)) != head + 1;
+    }
+
+    /**
+     * Применяет пачку изменений через исполнителя и будит потоки, отдавшие изменения. Исключение одного изменения
+     * не мешает остальным и передается отдавшему его потоку.
+     *
+     * @param count Количество изменений в пачке.
+     */
+    private void apply(int count) {
+        try {
+            executor.accept(() -> {
+                for (int i = 0; i < count; i++) {
+                    batch[i].run();
+                }
+            });
+        } catch (RuntimeException | Error e) {
+            for (int i = 0; i < count; i++) {
+                if (batch[i].failure == null) {
+                    batch[i].failure = e;
+                }
+            }
+        } finally {
+            for (int i = 0; i < count; i++) {
+                Task task = batch[i];
+                batch[i] = null;
+                task.done = true;
+                LockSupport.unpark(task.submitter);
+            }
+        }
+    }
+
+    /**
+     * Изменение, ожидающее применения, и поток, который его ждет.
+     */
+    private static final class Task {
+
+        /**
+         * Изменение коллекции.
+         */
+        private final Runnable mutation;
+
+        /**
+         * Поток, который ждет применения изменения.
+         */
+        private final Thread submitter;
+
+        /**
+         * Исключение, которым завершилось изменение, или null.
+         */
+        private Throwable failure;
+
+        /**
+         * Признак того, что изменение применено.
+         */
+        private volatile boolean done;
+
+        /**
+         * Конструктор класса Task.
+         *
+         * @param mutation  Изменение коллекции.
+         * @param submitter Поток, который ждет применения изменения.
+         */
+        Task(Runnable mutation, Thread submitter) {
+            this.mutation = mutation;
+            this.submitter = submitter;
+        }
+
+        /**
+         * Выполняет изменение, запоминая исключение вместо того, чтобы прервать пачку.
+         */
+        void run() {
+            try {
+                mutation.run();
+            } catch (RuntimeException | Error e) {
+                failure = e;
+            }
+        }
+    }
+}
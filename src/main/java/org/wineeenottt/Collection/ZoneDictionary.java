@@ -0,0 +1,162 @@
+package org.wineeenottt.Collection;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Класс ZoneDictionary - общий словарь часовых поясов дат создания маршрутов, сопоставляющий каждому
+ * различному часовому поясу компактный код. Маршрут хранит вместо ZonedDateTime момент времени и код пояса,
+ * а пояс восстанавливается по коду из словаря. Различных поясов в коллекции единицы, поэтому словарь общий
+ * для всей программы; коды выдаются подряд начиная с 0 и не освобождаются.
+ * <p>
+ * Для каждого пояса запоминается последний найденный интервал времени, на котором смещение пояса постоянно,
+ * поэтому смещение для очередной даты обычно находится без обращения к правилам пояса.
+ * Словарь потокобезопасен: чтение не блокируется, блокировка берется только при добавлении нового пояса.
+ */
+public final class ZoneDictionary {
+
+    /**
+     * Коды часовых поясов.
+     */
+    private static final ConcurrentHashMap<ZoneId, Integer> CODES = new ConcurrentHashMap<>();
+
+    /**
+     * Часовые пояса, упорядоченные по кодам.
+     */
+    private static volatile Entry[] entries = new Entry[0];
+
+    private ZoneDictionary() {
+    }
+
+    /**
+     * Возвращает код часового пояса, добавляя пояс в словарь при первом обращении.
+     *
+     * @param zone часовой пояс (не null).
+     * @return код пояса.
+     */
+    public static int encode(ZoneId zone) {
+        Integer code = CODES.get(zone);
+        if (code != null) {
+            return code;
+        }
+        synchronized (ZoneDictionary.class) {
+            code = CODES.get(zone);
+            if (code == null) {
+                Entry[] grown = Arrays.copyOf(entries, entries.length + 1);
+                code = entries.length;
+                grown[code] = new Entry(zone);
+                entries = grown;
+                CODES.put(zone, code);
+            }
+            return code;
+        }
+    }
+
+    /**
+     * Возвращает часовой пояс по коду.
+     *
+     * @param code код пояса, выданный методом {@link #encode}.
+     * @return часовой пояс.
+     */
+    public static ZoneId decode(int code) {
+        return entries[code].zone;
+    }
+
+    /**
+     * Возвращает смещение часового пояса от UTC в указанный момент времени.
+     *
+     * @param code        код пояса.
+     * @param epochSecond момент времени в секундах эпохи.
+     * @return смещение пояса.
+     */
+    public static ZoneOffset offset(int code, long epochSecond) {
+        Entry entry = entries[code];
+        if (entry.fixedOffset != null) {
+            return entry.fixedOffset;
+        }
+        Window window = entry.window;
+        if (window == null || epochSecond < window.from || epochSecond >= window.to) {
+            window = new Window(entry.rules, epochSecond);
+            entry.window = window;
+        }
+        return window.offset;
+    }
+
+    /**
+     * Часовой пояс словаря.
+     */
+    private static final class Entry {
+
+        /**
+         * Часовой пояс.
+         */
+        private final ZoneId zone;
+
+        /**
+         * Правила пояса.
+         */
+        private final ZoneRules rules;
+
+        /**
+         * Смещение пояса, если оно не меняется, иначе null.
+         */
+        private final ZoneOffset fixedOffset;
+
+        /**
+         * Последний найденный интервал постоянного смещения.
+         */
+        private volatile Window window;
+
+        /**
+         * Конструктор класса Entry.
+         *
+         * @param zone часовой пояс.
+         */
+        Entry(ZoneId zone) {
+            this.zone = zone;
+            this.rules = zone.getRules();
+            this.fixedOffset = rules.isFixedOffset() ? rules.getOffset(Instant.EPOCH) : null;
+        }
+    }
+
+    /**
+     * Интервал времени [from, to), на котором смещение часового пояса постоянно.
+     */
+    private static final class Window {
+
+        /**
+         * Начало интервала в секундах эпохи (включительно).
+         */
+        private final long from;
+
+        /**
+         * Конец интервала в секундах эпохи (не включительно).
+         */
+        private final long to;
+
+        /**
+         * Смещение пояса на интервале.
+         */
+        private final ZoneOffset offset;
+
+        /**
+         * Находит интервал постоянного смещения, содержащий момент времени.
+         *
+         * @param rules       правила пояса.
+         * @param epochSecond момент времени в секундах эпохи.
+         */
+        Window(ZoneRules rules, long epochSecond) {
+            Instant instant = Instant.ofEpochSecond(epochSecond);
+            ZoneOffsetTransition previous = rules.previousTransition(instant.plusSeconds(1));
+            ZoneOffsetTransition next = rules.nextTransition(instant);
+            this.from = previous == null ? Long.MIN_VALUE : previous.toEpochSecond();
+            this.to = next == null ? Long.MAX_VALUE : next.toEpochSecond();
+            this.offset = rules.getOffset(instant);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package org.wineeenottt.Commands;
+
+/**
+ * Класс CancelCommand реализует интерфейс CommandWithArguments и представляет команду,
+ * которая отменяет фоновое задание с указанным номером.
+ */
+public class CancelCommand implements CommandWithArguments {
+
+    /**
+     * Поле, хранящее ссылку на объект класса JobManager, который хранит фоновые задания.
+     */
+    private final JobManager jobManager;
+
+    /**
+     * Поле, хранящее массив аргументов команды.
+     */
+    private String[] commandArguments;
+
+    /**
+     * Конструктор класса CancelCommand.
+     *
+     * @param jobManager объект класса JobManager, который хранит фоновые задания.
+     */
+    public CancelCommand(JobManager jobManager) {
+        this.jobManager = jobManager;
+    }
+
+    /**
+     * Метод, выполняющий команду. Отменяет задание, не прерывая его поток, и отбрасывает его вывод.
+     * В случае ошибки (например, если аргумент не указан или имеет неверный формат) выводит соответствующее сообщение.
+     */
+    @Override
+    public void execute() {
+        try {
+            jobManager.cancel(Integer.parseInt(commandArguments[0]));
+        } catch (IndexOutOfBoundsException ex) {
+            System.err.println("Не указан номер задания");
+        } catch (NumberFormatException ex) {
+            System.err.println("Формат аргумента не соответствует целочисленному: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Метод, возвращающий описание команды.
+     *
+     * @return строка с описанием команды.
+     */
+    @Override
+    public String getDescription() {
+        return "отменяет фоновое задание с указанным номером";
+    }
+
+    /**
+     * Метод, получающий аргументы команды.
+     *
+     * @param commandArguments массив строк, содержащий аргументы команды.
+     */
+    @Override
+    public void getCommandArguments(String[] commandArguments) {
+        this.commandArguments = commandArguments;
+    }
+
+    /**
+     * Метод, сообщающий, нужна ли команде коллекция.
+     *
+     * @return false, так как команда отменяет задание, а не обращается к коллекции.
+     */
+    @Override
+    public boolean requiresCollection() {
+        return false;
+    }
+}
\ No newline at end of file
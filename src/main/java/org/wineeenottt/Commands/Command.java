@@ -24,4 +24,26 @@ public interface Command {
     default String getDescription() {
         return "Описание команды";
     }
+
+    /**
+     * Метод, сообщающий, нужна ли команде коллекция. Пока коллекция загружается, такие команды
+     * ждут окончания загрузки, а остальные выполняются сразу.
+     * По умолчанию возвращает true.
+     *
+     * @return true, если команда обращается к коллекции.
+     */
+    default boolean requiresCollection() {
+        return true;
+    }
+
+    /**
+     * Метод, сообщающий, изменяет ли команда коллекцию или файл коллекции. Команды, которые только читают
+     * коллекцию, по запросу (префикс partial) можно выполнить над уже загруженной частью коллекции.
+     * По умолчанию возвращает true.
+     *
+     * @return true, если команда изменяет коллекцию.
+     */
+    default boolean modifiesCollection() {
+        return true;
+    }
 }
\ No newline at end of file
@@ -8,6 +8,8 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Locale;
+import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Класс CommandInvoker отвечает за вызов и выполнение команд, управляющих коллекцией маршрутов.
@@ -15,6 +17,17 @@ import java.util.Locale;
  */
 public class CommandInvoker {
 
+    /**
+     * Префикс, с которым команда чтения выполняется над уже загруженной частью коллекции, не дожидаясь
+     * окончания загрузки.
+     */
+    public static final String PARTIAL_PREFIX = "partial";
+
+    /**
+     * Период вывода хода загрузки, пока команда ждет окончания загрузки коллекции, в секундах.
+     */
+    private static final long PROGRESS_PERIOD_SECONDS = 1;
+
     /**
      * Коллекция команд, которые не требуют дополнительных аргументов и записываются с новой строки.
      */
@@ -55,6 +68,16 @@ public class CommandInvoker {
      */
     ArrayList<String> commandsHistoryList = new ArrayList<>();
 
+    /**
+     * Фоновые задания, запущенные этим обработчиком команд.
+     */
+    private final JobManager jobManager = new JobManager();
+
+    /**
+     * Действие команды exit в режиме сервера (закрытие подключения клиента) или null, если exit завершает программу.
+     */
+    private Runnable exitAction;
+
     /**
      * Конструктор класса CommandInvoker, используемый при работе с файлом.
      * Инициализирует поля и добавляет команды в коллекцию команд.
@@ -117,16 +140,53 @@ public class CommandInvoker {
         hashMapCommands.put("remove_by_id", new RemoveByIdCommand(collectionManager));
         hashMapCommands.put("execute_script", new ExecuteScriptCommand(collectionManager, routeFieldsReader, script, inputFile, inputData));
         hashMapCommands.put("remove_greater", new RemoveGreaterCommand(collectionManager));
+        hashMapCommands.put("distance_percentile", new DistancePercentileCommand(collectionManager));
+        hashMapCommands.put("count_distance_between", new CountDistanceBetweenCommand(collectionManager));
+        hashMapCommands.put("routes_with_distance_rank", new RoutesWithDistanceRankCommand(collectionManager));
+        hashMapCommands.put("jobs", new JobsCommand(jobManager));
+        hashMapCommands.put("wait", new WaitCommand(jobManager));
+        hashMapCommands.put("cancel", new CancelCommand(jobManager));
+    }
+
+    /**
+     * Переводит обработчик команд в режим сервера: команда exit, в том числе в фоне и в скриптах, закрывает
+     * подключение клиента вместо завершения программы.
+     *
+     * @param exitAction Действие, закрывающее подключение клиента.
+     */
+    public void setExitAction(Runnable exitAction) {
+        this.exitAction = exitAction;
+        hashMapCommands.put("exit", new ExitCommand(exitAction));
+        ((ExecuteScriptCommand) hashMapCommands.get("execute_script")).setExitAction(exitAction);
     }
 
     /**
      * Метод, который определяет команду из полученной строки, выполняет её и передает необходимые аргументы.
      * Если команда не распознана, выводится соответствующее сообщение.
+     * Пока коллекция загружается, команды, которым она не нужна, выполняются сразу, а остальные ждут окончания
+     * загрузки; команда чтения с префиксом {@value #PARTIAL_PREFIX} выполняется над уже загруженной частью.
+     * Команды чтения работают с последней опубликованной версией коллекции, а изменения коллекции, если задано
+     * системное свойство {@value CollectionManager#WRITER_LOOP_PROPERTY}, применяет единственный записывающий поток.
+     * Команда с {@value JobManager#BACKGROUND_SUFFIX} в конце строки выполняется в фоне (см. {@link JobManager}),
+     * а перед каждой командой выводятся фоновые задания, завершившиеся с прошлой команды.
      *
      * @param firstCommandLine Строка, содержащая команду и её аргументы.
      */
     public void execute(String firstCommandLine) {
-        String[] words = firstCommandLine.trim().split("\\s+");
+        jobManager.reportFinished();
+        String line = firstCommandLine.trim();
+        if (line.endsWith(JobManager.BACKGROUND_SUFFIX)) {
+            String jobLine = line.substring(0, line.length() - JobManager.BACKGROUND_SUFFIX.length()).trim();
+            if (!jobLine.isEmpty()) {
+                startJob(jobLine);
+                return;
+            }
+        }
+        String[] words = line.split("\\s+");
+        boolean partial = words.length > 1 && words[0].equalsIgnoreCase(PARTIAL_PREFIX);
+        if (partial) {
+            words = Arrays.copyOfRange(words, 1, words.length);
+        }
         String commandKey = words[0].toLowerCase(Locale.ROOT);
         String[] args = Arrays.copyOfRange(words, 1, words.length);
 
@@ -141,10 +201,16 @@ public class CommandInvoker {
                 if (command instanceof UpdateElementCommand updateCommand) {
                     updateCommand.setIsScriptExecution(isScriptExecution);
                 }
+            }
 
-                commandWithArgs.execute();
-            } else {
+            if (!command.requiresCollection() || collectionManager.isLoaded()) {
+                command.execute();
+            } else if (partial && !command.modifiesCollection()) {
+                collectionManager.withLoadedPrefix(command::execute);
+            } else if (awaitCollection(command, partial)) {
                 command.execute();
+            } else {
+                return;
             }
             addToCommandsHistory(commandKey);
         } else {
@@ -152,6 +218,53 @@ public class CommandInvoker {
         }
     }
 
+    /**
+     * Запускает команду в фоне. Команда выполняется отдельным обработчиком команд с собственными объектами команд,
+     * поэтому ее аргументы не затираются следующими командами консоли; ввод с консоли фоновой команде недоступен.
+     *
+     * @param commandLine Строка, содержащая команду и её аргументы.
+     */
+    private void startJob(String commandLine) {
+        UserIO jobIO = new UserIO(new Scanner(""));
+        CommandInvoker jobInvoker = new CommandInvoker(collectionManager, jobIO, inputFile,
+                new RouteFieldsReader(jobIO, collectionManager));
+        if (exitAction != null) {
+            jobInvoker.setExitAction(exitAction);
+        }
+        int id = jobManager.submit(commandLine, () -> jobInvoker.execute(commandLine));
+        System.out.println("[" + id + "] запущено в фоне: " + commandLine);
+        addToCommandsHistory(commandLine.split("\\s+")[0].toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Ждет окончания загрузки коллекции, периодически выводя ход загрузки.
+     *
+     * @param command Команда, которая ждет коллекцию.
+     * @param partial true, если команду просили выполнить над загруженной частью коллекции.
+     * @return true, если коллекция загружена, false, если ожидание прервано или фоновое задание отменено.
+     */
+    private boolean awaitCollection(Command command, boolean partial) {
+        if (partial && command.modifiesCollection()) {
+            System.out.println("Команда изменяет коллекцию и не может выполняться над ее загруженной частью");
+        }
+        System.out.println("Коллекция загружается (" + collectionManager.loadStatus()
+                + "), команда будет выполнена после окончания загрузки. Команду чтения можно выполнить над уже"
+                + " загруженной частью, указав перед ней " + PARTIAL_PREFIX);
+        try {
+            while (!collectionManager.awaitLoaded(PROGRESS_PERIOD_SECONDS, TimeUnit.SECONDS)) {
+                if (JobManager.cancelRequested()) {
+                    return false;
+                }
+                System.out.println("Загрузка коллекции: " + collectionManager.loadStatus());
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("Ожидание загрузки коллекции прервано");
+            return false;
+        }
+    }
+
     /**
      * Метод, добавляющий команду в историю команд.
      * Если размер списка команд достигает 11, удаляется самая старая команда, после чего добавляется новая.
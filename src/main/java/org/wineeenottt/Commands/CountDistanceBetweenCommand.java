@@ -0,0 +1,79 @@
+package org.wineeenottt.Commands;
+
+import org.wineeenottt.Collection.CollectionManager;
+
+/**
+ * Класс CountDistanceBetweenCommand реализует интерфейс CommandWithArguments и представляет команду,
+ * которая выводит количество элементов коллекции, значение поля distance которых лежит в заданном отрезке.
+ */
+public class CountDistanceBetweenCommand implements CommandWithArguments {
+
+    /**
+     * Поле, хранящее ссылку на объект класса CollectionManager.
+     * Используется для подсчета элементов по индексу расстояний.
+     */
+    private final CollectionManager collectionManager;
+
+    /**
+     * Поле, хранящее аргументы команды.
+     */
+    private String[] commandArguments;
+
+    /**
+     * Конструктор класса CountDistanceBetweenCommand.
+     *
+     * @param collectionManager объект класса CollectionManager, используемый для управления коллекцией.
+     */
+    public CountDistanceBetweenCommand(CollectionManager collectionManager) {
+        this.collectionManager = collectionManager;
+    }
+
+    /**
+     * Метод, выполняющий команду. Выводит количество элементов, значение поля distance которых
+     * не меньше первого и не больше второго аргумента.
+     * В случае ошибки (например, если аргументы не указаны или имеют неверный формат) выводит соответствующее сообщение.
+     */
+    @Override
+    public void execute() {
+        try {
+            long from = Long.parseLong(commandArguments[0]);
+            long to = Long.parseLong(commandArguments[1]);
+            System.out.println("Количество маршрутов с distance от " + from + " до " + to + ": "
+                    + collectionManager.countDistanceBetween(from, to));
+        } catch (IndexOutOfBoundsException ex) {
+            System.err.println("Не указаны все аргументы команды.");
+        } catch (NumberFormatException ex) {
+            System.err.println("Формат аргумента не соответствует целочисленному: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Метод, возвращающий описание команды.
+     *
+     * @return строка с описанием команды.
+     */
+    @Override
+    public String getDescription() {
+        return "выводит количество элементов, значение поля distance которых лежит в отрезке [a, b]";
+    }
+
+    /**
+     * Метод, получающий аргументы команды.
+     *
+     * @param commandArguments массив строк, содержащий аргументы команды.
+     */
+    @Override
+    public void getCommandArguments(String[] commandArguments) {
+        this.commandArguments = commandArguments;
+    }
+
+    /**
+     * Метод, сообщающий, изменяет ли команда коллекцию.
+     *
+     * @return false, так как команда только читает коллекцию.
+     */
+    @Override
+    public boolean modifiesCollection() {
+        return false;
+    }
+}
@@ -0,0 +1,83 @@
+package org.wineeenottt.Commands;
+
+import org.wineeenottt.Collection.CollectionManager;
+
+/**
+ * Класс DistancePercentileCommand реализует интерфейс CommandWithArguments и представляет команду,
+ * которая выводит заданный перцентиль значений поля distance элементов коллекции.
+ */
+public class DistancePercentileCommand implements CommandWithArguments {
+
+    /**
+     * Поле, хранящее ссылку на объект класса CollectionManager.
+     * Используется для получения перцентиля из индекса расстояний.
+     */
+    private final CollectionManager collectionManager;
+
+    /**
+     * Поле, хранящее аргументы команды.
+     */
+    private String[] commandArguments;
+
+    /**
+     * Конструктор класса DistancePercentileCommand.
+     *
+     * @param collectionManager объект класса CollectionManager, используемый для управления коллекцией.
+     */
+    public DistancePercentileCommand(CollectionManager collectionManager) {
+        this.collectionManager = collectionManager;
+    }
+
+    /**
+     * Метод, выполняющий команду. Выводит перцентиль значений поля distance.
+     * В случае ошибки (например, если аргумент не указан или имеет неверный формат) выводит соответствующее сообщение.
+     */
+    @Override
+    public void execute() {
+        try {
+            double percentile = Double.parseDouble(commandArguments[0]);
+            Long distance = collectionManager.distancePercentile(percentile);
+            if (distance == null) {
+                System.out.println("Коллекция пуста");
+            } else {
+                System.out.println("Перцентиль " + commandArguments[0] + " расстояний: " + distance);
+            }
+        } catch (IndexOutOfBoundsException ex) {
+            System.err.println("Не указаны аргументы команды.");
+        } catch (NumberFormatException ex) {
+            System.err.println("Формат аргумента не соответствует числовому: " + ex.getMessage());
+        } catch (IllegalArgumentException ex) {
+            System.err.println(ex.getMessage());
+        }
+    }
+
+    /**
+     * Метод, возвращающий описание команды.
+     *
+     * @return строка с описанием команды.
+     */
+    @Override
+    public String getDescription() {
+        return "выводит перцентиль p (от 0 до 100) значений поля distance";
+    }
+
+    /**
+     * Метод, получающий аргументы команды.
+     *
+     * @param commandArguments массив строк, содержащий аргументы команды.
+     */
+    @Override
+    public void getCommandArguments(String[] commandArguments) {
+        this.commandArguments = commandArguments;
+    }
+
+    /**
+     * Метод, сообщающий, изменяет ли команда коллекцию.
+     *
+     * @return false, так как команда только читает коллекцию.
+     */
+    @Override
+    public boolean modifiesCollection() {
+        return false;
+    }
+}
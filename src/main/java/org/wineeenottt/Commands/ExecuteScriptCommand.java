@@ -56,6 +56,11 @@ public class ExecuteScriptCommand implements CommandWithArguments {
      */
     private String inputData;
 
+    /**
+     * Поле, хранящее действие команды exit в режиме сервера (закрытие подключения) или null.
+     */
+    private Runnable exitAction;
+
     /**
      * Конструктор класса ExecuteScriptCommand.
      *
@@ -109,8 +114,15 @@ public class ExecuteScriptCommand implements CommandWithArguments {
 
                 userIO = new UserIO(scanner);
                 CommandInvoker commandInvoker = new CommandInvoker(collectionManager, userIO, routeFieldsReader, script, inputFile, dataPath);
+                boolean[] exited = new boolean[1];
+                if (exitAction != null) {
+                    commandInvoker.setExitAction(() -> {
+                        exited[0] = true;
+                        exitAction.run();
+                    });
+                }
 
-                while (scanner.hasNext()) {
+                while (scanner.hasNext() && !exited[0] && !JobManager.cancelRequested()) {
                     commandInvoker.execute(scanner.nextLine().trim());
                 }
             }
@@ -123,6 +135,16 @@ public class ExecuteScriptCommand implements CommandWithArguments {
         }
     }
 
+    /**
+     * Устанавливает действие команды exit для команд скрипта: в режиме сервера exit в скрипте закрывает
+     * подключение, а не завершает программу, и останавливает выполнение скрипта.
+     *
+     * @param exitAction действие, закрывающее подключение клиента.
+     */
+    public void setExitAction(Runnable exitAction) {
+        this.exitAction = exitAction;
+    }
+
     /**
      * Устанавливает аргументы команды.
      *
@@ -3,22 +3,45 @@ package org.wineeenottt.Commands;
 /**
  * Класс ExitCommand реализует интерфейс Command и представляет команду завершения работы программы.
  * При выполнении команды программа завершает свою работу с выводом соответствующего сообщения.
+ * В режиме сервера команда вместо этого закрывает подключение клиента.
  */
 public class ExitCommand implements Command {
 
+    /**
+     * Действие, закрывающее подключение клиента, или null, если команда завершает программу.
+     */
+    private final Runnable closeAction;
+
     /**
      * Конструктор класса ExitCommand.
      * Создает объект команды завершения работы программы.
      */
     public ExitCommand() {
+        this(null);
+    }
+
+    /**
+     * Конструктор класса ExitCommand, используемый в режиме сервера.
+     * Создает объект команды, которая закрывает подключение клиента и не завершает программу.
+     *
+     * @param closeAction действие, закрывающее подключение клиента, или null, если команда завершает программу.
+     */
+    public ExitCommand(Runnable closeAction) {
+        this.closeAction = closeAction;
     }
 
     /**
      * Метод, выполняющий команду завершения работы программы.
      * После вывода сообщения о завершении программа завершает свою работу с кодом 0.
+     * В режиме сервера закрывается только подключение клиента.
      */
     @Override
     public void execute() {
+        if (closeAction != null) {
+            System.out.println("Подключение закрыто");
+            closeAction.run();
+            return;
+        }
         System.out.println("Завершение работы программы");
         System.exit(0);
     }
@@ -26,10 +49,21 @@ public class ExitCommand implements Command {
     /**
      * Метод, возвращающий описание команды.
      *
-     * @return строка с описанием команды, указывающая, что команда завершает работу программы.
+     * @return строка с описанием команды, указывающая, что команда завершает работу программы
+     * (в режиме сервера - закрывает подключение).
      */
     @Override
     public String getDescription() {
-        return "завершает работу программы";
+        return closeAction != null ? "закрывает подключение к серверу" : "завершает работу программы";
+    }
+
+    /**
+     * Метод, сообщающий, нужна ли команде коллекция.
+     *
+     * @return false, так как команда только завершает программу и выполняется, не дожидаясь загрузки коллекции.
+     */
+    @Override
+    public boolean requiresCollection() {
+        return false;
     }
 }
\ No newline at end of file
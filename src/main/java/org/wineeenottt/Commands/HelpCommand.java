@@ -25,13 +25,15 @@ public class HelpCommand implements Command {
 
     /**
      * Метод, выполняющий команду. Выводит описание всех доступных в программе команд.
-     * Для каждой команды выводится её имя и описание.
+     * Для каждой команды выводится её имя и описание, а затем описание префикса partial.
      */
     @Override
     public void execute() {
         for (Map.Entry<String, Command> entry : commandMap.entrySet()) {
             System.out.println(entry.getKey() + ": " + entry.getValue().getDescription());
         }
+        System.out.println(CommandInvoker.PARTIAL_PREFIX + " <команда>: выполняет команду чтения над уже загруженной "
+                + "частью коллекции, не дожидаясь окончания загрузки");
     }
 
     /**
@@ -43,4 +45,14 @@ public class HelpCommand implements Command {
     public String getDescription() {
         return "выводит справку по всем командам";
     }
+
+    /**
+     * Метод, сообщающий, нужна ли команде коллекция.
+     *
+     * @return false, так как команда выводит только справку и выполняется, не дожидаясь загрузки коллекции.
+     */
+    @Override
+    public boolean requiresCollection() {
+        return false;
+    }
 }
\ No newline at end of file
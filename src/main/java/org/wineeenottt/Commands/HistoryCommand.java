@@ -43,4 +43,14 @@ public class HistoryCommand implements Command {
     public String getDescription() {
         return "вывести последние 11 команд";
     }
+
+    /**
+     * Метод, сообщающий, нужна ли команде коллекция.
+     *
+     * @return false, так как команда выводит только историю команд и выполняется, не дожидаясь загрузки коллекции.
+     */
+    @Override
+    public boolean requiresCollection() {
+        return false;
+    }
 }
\ No newline at end of file
@@ -39,6 +39,16 @@ public class InfoCommand implements Command {
      */
     @Override
     public String getDescription() {
-        return "получить информацию о коллекции (тип, дата инициализации, кол-во элементов, тип элементов коллекции)";
+        return "получить информацию о коллекции (тип, дата инициализации, кол-во элементов, тип элементов коллекции, агрегаты по distance)";
+    }
+
+    /**
+     * Метод, сообщающий, изменяет ли команда коллекцию.
+     *
+     * @return false, так как команда только читает коллекцию.
+     */
+    @Override
+    public boolean modifiesCollection() {
+        return false;
     }
 }
\ No newline at end of file
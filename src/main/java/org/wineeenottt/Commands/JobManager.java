@@ -0,0 +1,309 @@
+package org.wineeenottt.Commands;
+
+import org.wineeenottt.IO.ConsoleCapture;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Класс JobManager выполняет команды в фоне (команда с {@value #BACKGROUND_SUFFIX} в конце строки) и хранит
+ * их задания, которыми управляют команды jobs, wait и cancel. Вывод команды задания перехватывается
+ * ({@link ConsoleCapture}) и показывается командой wait, поэтому не смешивается с выводом консоли.
+ * <p>
+ * Задание отменяется без прерывания потока: прерывание посреди записи журнала изменений закрыло бы файл журнала.
+ * Вместо этого задание получает признак отмены, который скрипт и ожидание загрузки коллекции проверяют между
+ * командами ({@link #cancelRequested()}).
+ * <p>
+ * Задания выполняются в виртуальных потоках, если JVM их поддерживает (Java 21 и новее; исполнитель
+ * создается через reflection, чтобы программа собиралась и работала на Java 17), иначе - в потоках-демонах
+ * общего пула.
+ */
+public class JobManager {
+
+    /**
+     * Окончание строки команды, по которому команда выполняется в фоне.
+     */
+    public static final String BACKGROUND_SUFFIX = "&";
+
+    /**
+     * Задание, которое выполняет текущий поток, или null.
+     */
+    private static final ThreadLocal<Job> CURRENT = new ThreadLocal<>();
+
+    /**
+     * Исполнитель заданий.
+     */
+    private final ExecutorService executor = newExecutor();
+
+    /**
+     * Задания по номеру.
+     */
+    private final Map<Integer, Job> jobs = new TreeMap<>();
+
+    /**
+     * Номер последнего задания.
+     */
+    private final AtomicInteger lastId = new AtomicInteger();
+
+    /**
+     * Запускает команду в фоне.
+     *
+     * @param commandLine Строка команды без {@value #BACKGROUND_SUFFIX}.
+     * @param action      Выполнение команды; его вывод перехватывается.
+     * @return Номер задания.
+     */
+    public int submit(String commandLine, Runnable action) {
+        ConsoleCapture.install();
+        Job job = new Job(lastId.incrementAndGet(), commandLine);
+        job.future = executor.submit(() -> {
+            CURRENT.set(job);
+            try {
+                job.output = ConsoleCapture.capture(() -> {
+                    try {
+                        action.run();
+                    } catch (NoSuchElementException e) {
+                        System.err.println("Ошибка ввода: фоновая команда не может читать ввод с консоли");
+                    }
+                });
+            } finally {
+                CURRENT.remove();
+                job.finished = System.nanoTime();
+            }
+        });
+        synchronized (jobs) {
+            jobs.put(job.id, job);
+        }
+        return job.id;
+    }
+
+    /**
+     * Проверяет, отменено ли задание, которое выполняет текущий поток. Команды, выполняющие несколько шагов
+     * (скрипт, ожидание загрузки коллекции), проверяют признак между шагами и останавливаются.
+     *
+     * @return true, если текущий поток выполняет отмененное задание.
+     */
+    public static boolean cancelRequested() {
+        Job job = CURRENT.get();
+        return job != null && job.cancelled;
+    }
+
+    /**
+     * Выводит список заданий с их состоянием и временем выполнения.
+     */
+    public void printJobs() {
+        List<Job> snapshot = snapshot();
+        if (snapshot.isEmpty()) {
+            System.out.println("Фоновых заданий нет");
+            return;
+        }
+        for (Job job : snapshot) {
+            long end = job.finished != 0 ? job.finished : System.nanoTime();
+            System.out.println("[" + job.id + "] " + job.state() + ", " + TimeUnit.NANOSECONDS.toMillis(end - job.started)
+                    + " мс: " + job.commandLine);
+        }
+    }
+
+    /**
+     * Ждет окончания задания, выводит его вывод и удаляет задание из списка.
+     *
+     * @param id Номер задания.
+     */
+    public void await(int id) {
+        Job job = find(id);
+        if (job == null) {
+            return;
+        }
+        try {
+            job.future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("Ожидание задания " + id + " прервано");
+            return;
+        } catch (CancellationException e) {
+            System.out.println("Задание " + id + " отменено");
+            remove(id);
+            return;
+        } catch (ExecutionException e) {
+            System.err.println("Задание " + id + " завершилось ошибкой: " + e.getCause());
+            remove(id);
+            return;
+        }
+        System.out.print(job.output.getText());
+        System.out.println("[" + id + "] выполнено: " + job.commandLine);
+        remove(id);
+    }
+
+    /**
+     * Отменяет задание и отбрасывает его вывод. Поток задания не прерывается: выполняемая команда доработает
+     * до конца, а скрипт остановится перед следующей командой. Задание, которое еще не начало выполняться,
+     * не выполняется.
+     *
+     * @param id Номер задания.
+     */
+    public void cancel(int id) {
+        Job job = find(id);
+        if (job == null) {
+            return;
+        }
+        job.cancelled = true;
+        if (job.future.cancel(false)) {
+            job.finished = System.nanoTime();
+            System.out.println("Задание " + id + " отменено");
+        } else {
+            System.out.println("Задание " + id + " уже завершено, его вывод покажет wait " + id);
+        }
+    }
+
+    /**
+     * Сообщает о заданиях, завершившихся после предыдущего сообщения. Вызывается перед выполнением
+     * очередной команды консоли.
+     */
+    public void reportFinished() {
+        for (Job job : snapshot()) {
+            if (job.future.isDone() && !job.reported) {
+                job.reported = true;
+                System.out.println("[" + job.id + "] " + job.state() + ": " + job.commandLine
+                        + (job.future.isCancelled() ? "" : " (вывод: wait " + job.id + ")"));
+            }
+        }
+    }
+
+    /**
+     * Находит задание по номеру; если его нет, выводит сообщение.
+     *
+     * @param id Номер задания.
+     * @return Задание или null.
+     */
+    private Job find(int id) {
+        Job job;
+        synchronized (jobs) {
+            job = jobs.get(id);
+        }
+        if (job == null) {
+            System.err.println("Задания с номером " + id + " нет");
+        }
+        return job;
+    }
+
+    /**
+     * Удаляет задание из списка.
+     *
+     * @param id Номер задания.
+     */
+    private void remove(int id) {
+        synchronized (jobs) {
+            jobs.remove(id);
+        }
+    }
+
+    /**
+     * Возвращает копию списка заданий в порядке номеров.
+     *
+     * @return Задания.
+     */
+    private List<Job> snapshot() {
+        synchronized (jobs) {
+            return new ArrayList<>(jobs.values());
+        }
+    }
+
+    /**
+     * Создает исполнитель заданий: виртуальный поток на задание, если JVM поддерживает виртуальные потоки,
+     * иначе пул потоков-демонов.
+     *
+     * @return Исполнитель заданий.
+     */
+    private static ExecutorService newExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger threadNumber = new AtomicInteger();
+            return Executors.newCachedThreadPool(task -> {
+                Thread thread = new Thread(task, "command-job-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Фоновое задание.
+     */
+    private static final class Job {
+
+        /**
+         * Номер задания.
+         */
+        private final int id;
+
+        /**
+         * Строка команды.
+         */
+        private final String commandLine;
+
+        /**
+         * Время запуска.
+         */
+        private final long started = System.nanoTime();
+
+        /**
+         * Результат выполнения команды.
+         */
+        private volatile Future<?> future;
+
+        /**
+         * Перехваченный вывод команды или null, пока команда выполняется.
+         */
+        private volatile ConsoleCapture.Output output;
+
+        /**
+         * Время окончания или 0, пока команда выполняется.
+         */
+        private volatile long finished;
+
+        /**
+         * Признак того, что об окончании задания уже сообщено.
+         */
+        private volatile boolean reported;
+
+        /**
+         * Признак отмены задания.
+         */
+        private volatile boolean cancelled;
+
+        /**
+         * Конструктор класса Job.
+         *
+         * @param id          Номер задания.
+         * @param commandLine Строка команды.
+         */
+        Job(int id, String commandLine) {
+            this.id = id;
+            this.commandLine = commandLine;
+        }
+
+        /**
+         * Возвращает состояние задания.
+         *
+         * @return Описание состояния.
+         */
+        String state() {
+            if (future.isCancelled()) {
+                return "отменено";
+            }
+            return future.isDone() ? "выполнено" : "выполняется";
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package org.wineeenottt.Commands;
+
+/**
+ * Класс JobsCommand реализует интерфейс Command и представляет команду,
+ * которая выводит список фоновых заданий и их состояние.
+ */
+public class JobsCommand implements Command {
+
+    /**
+     * Поле, хранящее ссылку на объект класса JobManager, который хранит фоновые задания.
+     */
+    private final JobManager jobManager;
+
+    /**
+     * Конструктор класса JobsCommand.
+     *
+     * @param jobManager объект класса JobManager, который хранит фоновые задания.
+     */
+    public JobsCommand(JobManager jobManager) {
+        this.jobManager = jobManager;
+    }
+
+    /**
+     * Метод, выполняющий команду. Выводит номер, состояние, время выполнения и строку каждого задания.
+     */
+    @Override
+    public void execute() {
+        jobManager.printJobs();
+    }
+
+    /**
+     * Метод, возвращающий описание команды.
+     *
+     * @return строка с описанием команды.
+     */
+    @Override
+    public String getDescription() {
+        return "выводит фоновые задания (команда с " + JobManager.BACKGROUND_SUFFIX + " в конце выполняется в фоне)";
+    }
+
+    /**
+     * Метод, сообщающий, нужна ли команде коллекция.
+     *
+     * @return false, так как команда выводит только список заданий.
+     */
+    @Override
+    public boolean requiresCollection() {
+        return false;
+    }
+}
\ No newline at end of file
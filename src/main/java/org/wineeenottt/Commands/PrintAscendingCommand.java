@@ -42,4 +42,14 @@ public class PrintAscendingCommand implements Command {
     public String getDescription() {
         return "выводит элементы коллекции в порядке возрастания";
     }
+
+    /**
+     * Метод, сообщающий, изменяет ли команда коллекцию.
+     *
+     * @return false, так как команда только читает коллекцию.
+     */
+    @Override
+    public boolean modifiesCollection() {
+        return false;
+    }
 }
\ No newline at end of file
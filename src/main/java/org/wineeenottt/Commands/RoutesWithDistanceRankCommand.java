@@ -0,0 +1,75 @@
+package org.wineeenottt.Commands;
+
+import org.wineeenottt.Collection.CollectionManager;
+
+/**
+ * Класс RoutesWithDistanceRankCommand реализует интерфейс CommandWithArguments и представляет команду,
+ * которая выводит элементы коллекции, значение поля distance которых равно k-му по возрастанию.
+ */
+public class RoutesWithDistanceRankCommand implements CommandWithArguments {
+
+    /**
+     * Поле, хранящее ссылку на объект класса CollectionManager.
+     * Используется для поиска элементов по индексу расстояний.
+     */
+    private final CollectionManager collectionManager;
+
+    /**
+     * Поле, хранящее аргументы команды.
+     */
+    private String[] commandArguments;
+
+    /**
+     * Конструктор класса RoutesWithDistanceRankCommand.
+     *
+     * @param collectionManager объект класса CollectionManager, используемый для управления коллекцией.
+     */
+    public RoutesWithDistanceRankCommand(CollectionManager collectionManager) {
+        this.collectionManager = collectionManager;
+    }
+
+    /**
+     * Метод, выполняющий команду. Выводит элементы, значение поля distance которых равно k-му по возрастанию.
+     * В случае ошибки (например, если аргумент не указан или имеет неверный формат) выводит соответствующее сообщение.
+     */
+    @Override
+    public void execute() {
+        try {
+            collectionManager.showRoutesWithDistanceRank(Integer.parseInt(commandArguments[0]));
+        } catch (IndexOutOfBoundsException ex) {
+            System.err.println("Не указаны аргументы команды.");
+        } catch (NumberFormatException ex) {
+            System.err.println("Формат аргумента не соответствует целочисленному: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Метод, возвращающий описание команды.
+     *
+     * @return строка с описанием команды.
+     */
+    @Override
+    public String getDescription() {
+        return "выводит элементы, значение поля distance которых равно k-му по возрастанию (k начинается с 1)";
+    }
+
+    /**
+     * Метод, получающий аргументы команды.
+     *
+     * @param commandArguments массив строк, содержащий аргументы команды.
+     */
+    @Override
+    public void getCommandArguments(String[] commandArguments) {
+        this.commandArguments = commandArguments;
+    }
+
+    /**
+     * Метод, сообщающий, изменяет ли команда коллекцию.
+     *
+     * @return false, так как команда только читает коллекцию.
+     */
+    @Override
+    public boolean modifiesCollection() {
+        return false;
+    }
+}
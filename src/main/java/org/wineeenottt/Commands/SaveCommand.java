@@ -31,14 +31,13 @@ public class SaveCommand implements Command {
     }
 
     /**
-     * Метод, выполняющий команду. Сохраняет коллекцию в указанный файл.
-     * В случае успешного сохранения выводит сообщение об успешном выполнении.
-     * В случае ошибки выводит соответствующее сообщение.
+     * Метод, выполняющий команду. Снимает копию коллекции и сохраняет ее в указанный файл в фоновом потоке,
+     * не дожидаясь окончания записи. Ход сохранения выводит команда info, ошибки записи выводятся при их возникновении.
      */
     @Override
     public void execute() {
         collectionManager.save(inputFile);
-        System.out.println("Коллекция была сохранена");
+        System.out.println("Сохранение коллекции запущено в фоновом режиме");
     }
 
     /**
@@ -41,4 +41,14 @@ public class ShowCommand implements Command {
     public String getDescription() {
         return "показывает подробное содержимое всех элементов коллекции";
     }
+
+    /**
+     * Метод, сообщающий, изменяет ли команда коллекцию.
+     *
+     * @return false, так как команда только читает коллекцию.
+     */
+    @Override
+    public boolean modifiesCollection() {
+        return false;
+    }
 }
\ No newline at end of file
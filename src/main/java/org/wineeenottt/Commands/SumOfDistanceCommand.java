@@ -43,4 +43,14 @@ public class SumOfDistanceCommand implements Command {
     public String getDescription() {
         return "выводит сумму значений поля distance для всех элементов коллекции";
     }
+
+    /**
+     * Метод, сообщающий, изменяет ли команда коллекцию.
+     *
+     * @return false, так как команда только читает коллекцию.
+     */
+    @Override
+    public boolean modifiesCollection() {
+        return false;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,72 @@
+package org.wineeenottt.Commands;
+
+/**
+ * Класс WaitCommand реализует интерфейс CommandWithArguments и представляет команду,
+ * которая ждет окончания фонового задания с указанным номером и выводит его вывод.
+ */
+public class WaitCommand implements CommandWithArguments {
+
+    /**
+     * Поле, хранящее ссылку на объект класса JobManager, который хранит фоновые задания.
+     */
+    private final JobManager jobManager;
+
+    /**
+     * Поле, хранящее массив аргументов команды.
+     */
+    private String[] commandArguments;
+
+    /**
+     * Конструктор класса WaitCommand.
+     *
+     * @param jobManager объект класса JobManager, который хранит фоновые задания.
+     */
+    public WaitCommand(JobManager jobManager) {
+        this.jobManager = jobManager;
+    }
+
+    /**
+     * Метод, выполняющий команду. Ждет окончания задания и выводит перехваченный вывод его команды.
+     * В случае ошибки (например, если аргумент не указан или имеет неверный формат) выводит соответствующее сообщение.
+     */
+    @Override
+    public void execute() {
+        try {
+            jobManager.await(Integer.parseInt(commandArguments[0]));
+        } catch (IndexOutOfBoundsException ex) {
+            System.err.println("Не указан номер задания");
+        } catch (NumberFormatException ex) {
+            System.err.println("Формат аргумента не соответствует целочисленному: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Метод, возвращающий описание команды.
+     *
+     * @return строка с описанием команды.
+     */
+    @Override
+    public String getDescription() {
+        return "ждет окончания фонового задания с указанным номером и выводит его результат";
+    }
+
+    /**
+     * Метод, получающий аргументы команды.
+     *
+     * @param commandArguments массив строк, содержащий аргументы команды.
+     */
+    @Override
+    public void getCommandArguments(String[] commandArguments) {
+        this.commandArguments = commandArguments;
+    }
+
+    /**
+     * Метод, сообщающий, нужна ли команде коллекция.
+     *
+     * @return false, так как команда ждет задание, а не обращается к коллекции.
+     */
+    @Override
+    public boolean requiresCollection() {
+        return false;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,462 @@
+package org.wineeenottt.IO;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Класс ConsoleCapture перехватывает вывод команд отдельного потока. Команды печатают результат в System.out
+ * и System.err; после {@link #install()} эти потоки вывода заменяются потоками, которые передают каждый вызов
+ * печати в исходную консоль, а для потока, выполняющего {@link #capture(Runnable)}, - в буфер этого потока.
+ * Так несколько клиентов сервера выполняют команды одновременно и получают каждый свой вывод.
+ * <p>
+ * Вызовы печати перенаправляются до кодирования символов, поэтому консоль получает текст в своей кодировке,
+ * а буфер перехвата - в UTF-8 без потерь, какой бы ни была кодировка консоли.
+ */
+public final class ConsoleCapture {
+
+    /**
+     * Буфер перехвата текущего потока или null, если вывод потока идет в консоль.
+     */
+    private static final ThreadLocal<Capture> CURRENT = new ThreadLocal<>();
+
+    /**
+     * Признак того, что потоки вывода уже заменены.
+     */
+    private static boolean installed;
+
+    /**
+     * Закрытый конструктор: класс содержит только статические методы.
+     */
+    private ConsoleCapture() {
+    }
+
+    /**
+     * Заменяет System.out и System.err перехватывающими потоками вывода. Повторный вызов ничего не делает.
+     */
+    public static synchronized void install() {
+        if (installed) {
+            return;
+        }
+        installed = true;
+        System.setOut(new RoutingStream(System.out, false));
+        System.setErr(new RoutingStream(System.err, true));
+    }
+
+    /**
+     * Выполняет действие, перехватывая весь его вывод в System.out и System.err в текущем потоке.
+     *
+     * @param action действие.
+     * @return перехваченный вывод.
+     */
+    public static Output capture(Runnable action) {
+        Capture previous = CURRENT.get();
+        Capture capture = new Capture();
+        CURRENT.set(capture);
+        try {
+            action.run();
+        } finally {
+            System.out.flush();
+            System.err.flush();
+            CURRENT.set(previous);
+        }
+        return new Output(capture.finish(), capture.error);
+    }
+
+    /**
+     * Привязывает действие к буферу перехвата текущего потока: вывод действия попадет в этот буфер,
+     * в каком бы потоке оно ни выполнялось. Используется, когда действие выполняет другой поток, а текущий
+     * ждет его окончания.
+     *
+     * @param action действие.
+     * @return действие с привязанным буфером или исходное действие, если вывод текущего потока не перехватывается.
+     */
+    public static Runnable bind(Runnable action) {
+        Capture capture = CURRENT.get();
+        if (capture == null) {
+            return action;
+        }
+        return () -> {
+            Capture previous = CURRENT.get();
+            CURRENT.set(capture);
+            try {
+                action.run();
+            } finally {
+                System.out.flush();
+                System.err.flush();
+                CURRENT.set(previous);
+            }
+        };
+    }
+
+    /**
+     * Перехваченный вывод команды.
+     */
+    public static final class Output {
+
+        /**
+         * Текст, выведенный в System.out и System.err, в порядке вывода.
+         */
+        private final String text;
+
+        /**
+         * Признак вывода в System.err.
+         */
+        private final boolean error;
+
+        /**
+         * Конструктор класса Output.
+         *
+         * @param text  перехваченный текст.
+         * @param error true, если что-либо выведено в System.err.
+         */
+        Output(String text, boolean error) {
+            this.text = text;
+            this.error = error;
+        }
+
+        /**
+         * Возвращает перехваченный текст.
+         *
+         * @return текст в порядке вывода.
+         */
+        public String getText() {
+            return text;
+        }
+
+        /**
+         * Проверяет, выводилось ли что-либо в System.err.
+         *
+         * @return true, если команда сообщила об ошибке.
+         */
+        public boolean hasError() {
+            return error;
+        }
+    }
+
+    /**
+     * Перехватывающий поток вывода: передает каждый вызов печати потоку перехвата текущего потока,
+     * а если вывод текущего потока не перехватывается, - потоку консоли.
+     */
+    private static final class RoutingStream extends PrintStream {
+
+        /**
+         * Поток вывода консоли.
+         */
+        private final PrintStream console;
+
+        /**
+         * true для потока ошибок.
+         */
+        private final boolean error;
+
+        /**
+         * Конструктор класса RoutingStream.
+         *
+         * @param console поток вывода консоли.
+         * @param error   true для потока ошибок.
+         */
+        RoutingStream(PrintStream console, boolean error) {
+            super(console, true);
+            this.console = console;
+            this.error = error;
+        }
+
+        /**
+         * Возвращает поток, которому передается вывод текущего потока.
+         *
+         * @return поток перехвата текущего потока или поток консоли.
+         */
+        private PrintStream target() {
+            Capture capture = CURRENT.get();
+            return capture == null ? console : capture.stream(error);
+        }
+
+        /**
+         * Передает вызов потоку {@link #target()}.
+         */
+        @Override
+        public void write(int b) {
+            target().write(b);
+        }
+
+        /**
+         * Передает вызов потоку {@link #target()}.
+         */
+        @Override
+        public void write(byte[] bytes, int offset, int length) {
+            target().write(bytes, offset, length);
+        }
+
+        /**
+         * Передает вызов потоку {@link #target()}.
+         */
+        @Override
+        public void flush() {
+            target().flush();
+        }
+
+        /**
+         * Передает вызов потоку {@link #target()}.
+         */
+        @Override
+        public void print(boolean b) {
+            target().print(b);
+        }
+
+        /**
+         * Передает вызов потоку {@link #target()}.
+         */
+        @Override
+        public void print(char c) {
+            target().print(c);
+        }
+
+        /**
+         * Передает вызов потоку {@link #target()}.
+         */
+        @Override
+        public void print(int i) {
+            target().print(i);
+        }
+
+        /**
+         * Передает вызов потоку {@link #target()}.
+         */
+        @Override
+        public void print(long l) {
+            target().print(l);
+        }
+
+        /**
+         * Передает вызов потоку {@link #target()}.
+         */
+        @Override
+        public void print(float f) {
+            target().print(f);
+        }
+
+        /**
+         * Передает вызов потоку {@link #target()}.
+         */
+        @Override
+        public void print(double d) {
+            target().print(d);
+        }
+
+        /**
+         * Передает вызов потоку {@link #target()}.
+         */
+        @Override
+        public void print(char[] s) {
+            target().print(s);
+        }
+
+        /**
+         * Передает вызов потоку {@link #target()}.
+         */
+        @Override
+        public void print(String s) {
+            target().print(s);
+        }
+
+        /**
+         * Передает вызов потоку {@link #target()}.
+         */
+        @Override
+        public void print(Object obj) {
+            target().print(obj);
+        }
+
+        /**
+         * Передает вызов потоку {@link #target()}.
+         */
+        @Override
+        public void println() {
+            target().println();
+        }
+
+        /**
+         * Передает вызов потоку {@link #target()}.
+         */
+        @Override
+        public void println(boolean x) {
+            target().println(x);
+        }
+
+        /**
+         * Передает вызов потоку {@link #target()}.
+         */
+        @Override
+        public void println(char x) {
+            target().println(x);
+        }
+
+        /**
+         * Передает вызов потоку {@link #target()}.
+         */
+        @Override
+        public void println(int x) {
+            target().println(x);
+        }
+
+        /**
+         * Передает вызов потоку {@link #target()}.
+         */
+        @Override
+        public void println(long x) {
+            target().println(x);
+        }
+
+        /**
+         * Передает вызов потоку {@link #target()}.
+         */
+        @Override
+        public void println(float x) {
+            target().println(x);
+        }
+
+        /**
+         * Передает вызов потоку {@link #target()}.
+         */
+        @Override
+        public void println(double x) {
+            target().println(x);
+        }
+
+        /**
+         * Передает вызов потоку {@link #target()}.
+         */
+        @Override
+        public void println(char[] x) {
+            target().println(x);
+        }
+
+        /**
+         * Передает вызов потоку {@link #target()}.
+         */
+        @Override
+        public void println(String x) {
+            target().println(x);
+        }
+
+        /**
+         * Передает вызов потоку {@link #target()}.
+         */
+        @Override
+        public void println(Object x) {
+            target().println(x);
+        }
+
+        /**
+         * Передает вызов потоку {@link #target()}.
+         */
+        @Override
+        public PrintStream format(String format, Object... args) {
+            target().format(format, args);
+            return this;
+        }
+
+        /**
+         * Передает вызов потоку {@link #target()}.
+         */
+        @Override
+        public PrintStream format(Locale l, String format, Object... args) {
+            target().format(l, format, args);
+            return this;
+        }
+    }
+
+    /**
+     * Буфер перехвата одного потока: собирает вывод в System.out и System.err в порядке вывода в UTF-8.
+     */
+    private static final class Capture {
+
+        /**
+         * Перехваченный вывод в UTF-8.
+         */
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        /**
+         * Поток перехвата вывода в System.out.
+         */
+        private final PrintStream out = new PrintStream(new Sink(false), true, StandardCharsets.UTF_8);
+
+        /**
+         * Поток перехвата вывода в System.err.
+         */
+        private final PrintStream err = new PrintStream(new Sink(true), true, StandardCharsets.UTF_8);
+
+        /**
+         * Признак вывода в System.err.
+         */
+        private boolean error;
+
+        /**
+         * Возвращает поток перехвата для System.out или System.err.
+         *
+         * @param error true для потока ошибок.
+         * @return поток перехвата.
+         */
+        PrintStream stream(boolean error) {
+            return error ? err : out;
+        }
+
+        /**
+         * Возвращает весь перехваченный текст.
+         *
+         * @return перехваченный текст.
+         */
+        synchronized String finish() {
+            return bytes.toString(StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Приемник байт одного из потоков перехвата; вывод может приходить из нескольких потоков
+         * (см. {@link #bind(Runnable)}), поэтому запись синхронизирована на буфере.
+         */
+        private final class Sink extends OutputStream {
+
+            /**
+             * true для потока ошибок.
+             */
+            private final boolean error;
+
+            /**
+             * Конструктор класса Sink.
+             *
+             * @param error true для потока ошибок.
+             */
+            Sink(boolean error) {
+                this.error = error;
+            }
+
+            /**
+             * Добавляет байт в буфер.
+             *
+             * @param b байт.
+             */
+            @Override
+            public void write(int b) {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            /**
+             * Добавляет байты в буфер.
+             *
+             * @param data   массив байт.
+             * @param offset начало байт в массиве.
+             * @param length количество байт.
+             */
+            @Override
+            public void write(byte[] data, int offset, int length) {
+                synchronized (Capture.this) {
+                    bytes.write(data, offset, length);
+                    Capture.this.error |= error;
+                }
+            }
+        }
+    }
+}
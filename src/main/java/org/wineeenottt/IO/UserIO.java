@@ -32,6 +32,15 @@ public class UserIO {
         this.scanner = scanner;
     }
 
+    /**
+     * Метод, заменяющий источник ввода, например строками очередного запроса клиента сервера.
+     *
+     * @param scanner объект Scanner, который будет использоваться для чтения данных.
+     */
+    public void setScanner(Scanner scanner) {
+        this.scanner = scanner;
+    }
+
     /**
      * Метод для чтения строки данных из источника, указанного в объекте Scanner.
      *
@@ -0,0 +1,176 @@
+package org.wineeenottt.Network;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Scanner;
+
+/**
+ * Класс CommandClient - консольный клиент сервера команд ({@link CommandServer}).
+ * Каждая введенная строка отправляется как запрос, а ответ сервера выводится в консоль. Строка, оканчивающаяся
+ * обратной косой чертой, продолжается следующей строкой: так вместе с командой передается ее ввод, например
+ * поля маршрута для add. Команда exit закрывает подключение.
+ * Запуск: {@code java -cp <classpath> org.wineeenottt.Network.CommandClient <порт>}.
+ */
+public class CommandClient implements Closeable {
+
+    /**
+     * Канал подключения к серверу.
+     */
+    private final SocketChannel channel;
+
+    /**
+     * Буфер заголовка ответа.
+     */
+    private final ByteBuffer header = ByteBuffer.allocate(Protocol.HEADER_SIZE);
+
+    /**
+     * Конструктор класса CommandClient. Подключается к серверу на локальном порту.
+     *
+     * @param port порт сервера.
+     * @throws IOException если не удалось подключиться.
+     */
+    public CommandClient(int port) throws IOException {
+        channel = SocketChannel.open(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        channel.socket().setTcpNoDelay(true);
+    }
+
+    /**
+     * Отправляет запрос и ждет ответа; ответ из нескольких кадров собирается целиком.
+     *
+     * @param request текст запроса: команда и строки ее ввода, разделенные переводом строки.
+     * @return ответ сервера.
+     * @throws IOException если подключение разорвано.
+     */
+    public Response execute(String request) throws IOException {
+        ByteBuffer frame = Protocol.request(request);
+        while (frame.hasRemaining()) {
+            channel.write(frame);
+        }
+        ByteArrayOutputStream text = new ByteArrayOutputStream();
+        byte status;
+        do {
+            header.clear();
+            readFully(header);
+            int length = header.getInt(0);
+            if (length < 1 || length > Protocol.MAX_FRAME_SIZE) {
+                throw new IOException("Недопустимая длина ответа: " + length);
+            }
+            ByteBuffer body = ByteBuffer.allocate(length);
+            readFully(body);
+            status = body.get(0);
+            text.write(body.array(), 1, length - 1);
+        } while (status == Protocol.MORE);
+        return new Response(status, text.toString(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Читает из канала, пока буфер не заполнится.
+     *
+     * @param buffer буфер.
+     * @throws IOException если сервер закрыл подключение.
+     */
+    private void readFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("Сервер закрыл подключение");
+            }
+        }
+    }
+
+    /**
+     * Закрывает подключение.
+     *
+     * @throws IOException если произошла ошибка при закрытии.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Запускает консольный клиент.
+     *
+     * @param args аргументы командной строки: порт сервера.
+     */
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.err.println("Укажите порт сервера");
+            return;
+        }
+        Scanner scanner = new Scanner(System.in, StandardCharsets.UTF_8);
+        try (CommandClient client = new CommandClient(Integer.parseInt(args[0]))) {
+            System.out.println("Подключено к серверу, введите команду (\\ в конце строки - продолжение запроса)");
+            StringBuilder request = new StringBuilder();
+            while (scanner.hasNextLine()) {
+                String line = scanner.nextLine();
+                if (line.endsWith("\\")) {
+                    request.append(line, 0, line.length() - 1).append('\n');
+                    continue;
+                }
+                request.append(line);
+                Response response = client.execute(request.toString());
+                request.setLength(0);
+                (response.getStatus() == Protocol.ERROR ? System.err : System.out).print(response.getText());
+                if (response.getStatus() == Protocol.CLOSED) {
+                    return;
+                }
+            }
+        } catch (NumberFormatException e) {
+            System.err.println("Порт должен быть целым числом");
+        } catch (IOException e) {
+            System.err.println("Ошибка подключения к серверу: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Ответ сервера.
+     */
+    public static final class Response {
+
+        /**
+         * Состояние ответа ({@link Protocol#OK}, {@link Protocol#ERROR} или {@link Protocol#CLOSED}).
+         */
+        private final byte status;
+
+        /**
+         * Текст, выведенный командой.
+         */
+        private final String text;
+
+        /**
+         * Конструктор класса Response.
+         *
+         * @param status состояние ответа.
+         * @param text   текст ответа.
+         */
+        Response(byte status, String text) {
+            this.status = status;
+            this.text = text;
+        }
+
+        /**
+         * Возвращает состояние ответа.
+         *
+         * @return состояние.
+         */
+        public byte getStatus() {
+            return status;
+        }
+
+        /**
+         * Возвращает текст ответа.
+         *
+         * @return текст, выведенный командой.
+         */
+        public String getText() {
+            return text;
+        }
+    }
+}
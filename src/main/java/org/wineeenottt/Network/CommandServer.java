@@ -0,0 +1,462 @@
+package org.wineeenottt.Network;
+
+import org.wineeenottt.Collection.CollectionManager;
+import org.wineeenottt.Commands.CommandInvoker;
+import org.wineeenottt.IO.ConsoleCapture;
+import org.wineeenottt.IO.UserIO;
+import org.wineeenottt.Utility.RouteFieldsReader;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Scanner;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Класс CommandServer - сервер команд, который принимает подключения многих клиентов на локальном TCP порту
+ * и выполняет их запросы ({@link Protocol}) над общей коллекцией.
+ * <p>
+ * Один поток с {@link Selector} принимает подключения, читает и пишет кадры без блокировок, а команды выполняются
+ * пулом рабочих потоков (размер задается системным свойством {@value #WORKERS_PROPERTY}). У каждого подключения
+ * свой {@link CommandInvoker} с собственными объектами команд и историей; запросы одного подключения
+ * выполняются по порядку, запросы разных подключений - одновременно. Вывод команды перехватывается
+ * ({@link ConsoleCapture}) и возвращается клиенту в ответе. Команда exit, в том числе в фоне и в скриптах,
+ * закрывает подключение и никогда не завершает сервер.
+ */
+public class CommandServer {
+
+    /**
+     * Системное свойство, задающее количество рабочих потоков, выполняющих команды.
+     */
+    public static final String WORKERS_PROPERTY = "route.server.workers";
+
+    /**
+     * Наибольшее количество запросов подключения, ожидающих выполнения; после него чтение подключения
+     * приостанавливается, пока очередь не уменьшится.
+     */
+    private static final int MAX_PIPELINED = 64;
+
+    /**
+     * Пауза приема подключений после ошибки accept (например, когда исчерпаны дескрипторы файлов), в миллисекундах.
+     */
+    private static final long ACCEPT_BACKOFF_MILLIS = 100;
+
+    /**
+     * Менеджер коллекций, общий для всех подключений.
+     */
+    private final CollectionManager collectionManager;
+
+    /**
+     * Адрес файла для сохранения коллекции.
+     */
+    private final String inputFile;
+
+    /**
+     * Порт, на котором сервер принимает подключения.
+     */
+    private final int port;
+
+    /**
+     * Селектор каналов сервера.
+     */
+    private Selector selector;
+
+    /**
+     * Пул рабочих потоков, выполняющих команды.
+     */
+    private ExecutorService workers;
+
+    /**
+     * Ключ канала сервера в селекторе.
+     */
+    private SelectionKey serverKey;
+
+    /**
+     * Время (System.nanoTime), до которого прием подключений приостановлен после ошибки, или 0.
+     */
+    private long acceptPausedUntil;
+
+    /**
+     * Подключения, для которых рабочие потоки подготовили ответы; обрабатываются потоком селектора.
+     */
+    private final ConcurrentLinkedQueue<Session> ready = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Конструктор класса CommandServer.
+     *
+     * @param collectionManager Менеджер коллекций, общий для всех подключений.
+     * @param inputFile         Адрес файла для сохранения коллекции.
+     * @param port              Порт, на котором сервер принимает подключения (0 - любой свободный).
+     */
+    public CommandServer(CollectionManager collectionManager, String inputFile, int port) {
+        this.collectionManager = collectionManager;
+        this.inputFile = inputFile;
+        this.port = port;
+    }
+
+    /**
+     * Запускает сервер и обслуживает подключения до прерывания потока.
+     *
+     * @throws IOException если не удалось открыть порт или селектор.
+     */
+    public void run() throws IOException {
+        ConsoleCapture.install();
+        int threads = Integer.getInteger(WORKERS_PROPERTY, Runtime.getRuntime().availableProcessors() * 2);
+        AtomicInteger workerNumber = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(Math.max(threads, 1), task -> {
+            Thread thread = new Thread(task, "command-worker-" + workerNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try (Selector selector = Selector.open(); ServerSocketChannel server = ServerSocketChannel.open()) {
+            this.selector = selector;
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 1 << 12);
+            server.configureBlocking(false);
+            serverKey = server.register(selector, SelectionKey.OP_ACCEPT);
+            System.out.println("Сервер принимает подключения на " + server.getLocalAddress());
+            while (!Thread.currentThread().isInterrupted()) {
+                if (acceptPausedUntil == 0) {
+                    selector.select();
+                } else {
+                    selector.select(Math.max(TimeUnit.NANOSECONDS.toMillis(acceptPausedUntil - System.nanoTime()), 1));
+                    resumeAccept();
+                }
+                for (Session session; (session = ready.poll()) != null; ) {
+                    session.updateInterest();
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept(server);
+                    } else {
+                        Session session = (Session) key.attachment();
+                        try {
+                            if (key.isReadable()) {
+                                session.read();
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                session.write();
+                            }
+                        } catch (IOException e) {
+                            session.close();
+                        }
+                    }
+                }
+            }
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    /**
+     * Принимает все ожидающие подключения. Ошибка приема не останавливает сервер: она выводится, подключение,
+     * которое не удалось настроить, закрывается, а прием приостанавливается на {@value #ACCEPT_BACKOFF_MILLIS} мс,
+     * чтобы, например, при исчерпании дескрипторов файлов сервер не повторял accept в цикле.
+     *
+     * @param server Канал сервера.
+     */
+    private void accept(ServerSocketChannel server) {
+        while (true) {
+            SocketChannel channel;
+            try {
+                channel = server.accept();
+            } catch (IOException e) {
+                System.err.println("Ошибка приема подключения: " + e.getMessage());
+                pauseAccept();
+                return;
+            }
+            if (channel == null) {
+                return;
+            }
+            try {
+                channel.configureBlocking(false);
+                channel.socket().setTcpNoDelay(true);
+                Session session = new Session(channel);
+                session.key = channel.register(selector, SelectionKey.OP_READ, session);
+            } catch (IOException e) {
+                System.err.println("Ошибка настройки подключения: " + e.getMessage());
+                try {
+                    channel.close();
+                } catch (IOException closeError) {
+                    // подключение уже не используется
+                }
+            }
+        }
+    }
+
+    /**
+     * Приостанавливает прием подключений на {@value #ACCEPT_BACKOFF_MILLIS} мс.
+     */
+    private void pauseAccept() {
+        serverKey.interestOps(0);
+        acceptPausedUntil = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ACCEPT_BACKOFF_MILLIS);
+    }
+
+    /**
+     * Возобновляет прием подключений, если пауза после ошибки закончилась.
+     */
+    private void resumeAccept() {
+        if (System.nanoTime() - acceptPausedUntil >= 0) {
+            acceptPausedUntil = 0;
+            serverKey.interestOps(SelectionKey.OP_ACCEPT);
+        }
+    }
+
+    /**
+     * Подключение клиента: разбор входящих кадров, очередь запросов, выполняемых рабочими потоками по одному,
+     * и очередь ответов, которые пишет поток селектора.
+     */
+    private final class Session {
+
+        /**
+         * Канал подключения.
+         */
+        private final SocketChannel channel;
+
+        /**
+         * Ключ канала в селекторе.
+         */
+        private SelectionKey key;
+
+        /**
+         * Сборщик входящих кадров; используется только потоком селектора.
+         */
+        private final Protocol.FrameDecoder decoder = new Protocol.FrameDecoder();
+
+        /**
+         * Запросы, ожидающие выполнения.
+         */
+        private final ArrayDeque<String> requests = new ArrayDeque<>();
+
+        /**
+         * Ответы, ожидающие отправки.
+         */
+        private final ArrayDeque<ByteBuffer> responses = new ArrayDeque<>();
+
+        /**
+         * Признак того, что рабочий поток выполняет запросы подключения.
+         */
+        private boolean busy;
+
+        /**
+         * Признак того, что подключение закрывается после отправки ответов.
+         */
+        private boolean closing;
+
+        /**
+         * Источник ввода команд подключения; перед каждым запросом в него подставляются строки запроса.
+         */
+        private UserIO userIO;
+
+        /**
+         * Обработчик команд подключения; создается при первом запросе.
+         */
+        private CommandInvoker commandInvoker;
+
+        /**
+         * Конструктор класса Session.
+         *
+         * @param channel Канал подключения.
+         */
+        Session(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        /**
+         * Читает доступные байты и ставит принятые запросы в очередь. Вызывается потоком селектора.
+         *
+         * @throws IOException если клиент закрыл подключение или прислал недопустимый кадр.
+         */
+        void read() throws IOException {
+            if (channel.read(decoder.buffer()) < 0) {
+                throw new IOException("Подключение закрыто клиентом");
+            }
+            boolean start = false;
+            for (byte[] body; (body = decoder.next()) != null; ) {
+                String request = new String(body, StandardCharsets.UTF_8);
+                synchronized (this) {
+                    requests.add(request);
+                    if (!busy) {
+                        busy = true;
+                        start = true;
+                    }
+                }
+            }
+            if (start) {
+                workers.execute(this::process);
+            }
+            updateInterest();
+        }
+
+        /**
+         * Пишет ответы, пока канал их принимает. Вызывается потоком селектора.
+         *
+         * @throws IOException если не удалось записать в канал.
+         */
+        void write() throws IOException {
+            synchronized (this) {
+                while (!responses.isEmpty()) {
+                    ByteBuffer response = responses.peek();
+                    channel.write(response);
+                    if (response.hasRemaining()) {
+                        return;
+                    }
+                    responses.poll();
+                }
+            }
+            updateInterest();
+        }
+
+        /**
+         * Выставляет интерес канала в селекторе по состоянию очередей, а после отправки последнего ответа
+         * закрывающегося подключения закрывает его. Вызывается потоком селектора.
+         */
+        void updateInterest() {
+            if (!key.isValid()) {
+                return;
+            }
+            int interest;
+            synchronized (this) {
+                if (closing && !busy && responses.isEmpty()) {
+                    interest = -1;
+                } else {
+                    interest = (responses.isEmpty() ? 0 : SelectionKey.OP_WRITE)
+                            | (closing || requests.size() >= MAX_PIPELINED ? 0 : SelectionKey.OP_READ);
+                }
+            }
+            if (interest < 0) {
+                close();
+            } else {
+                key.interestOps(interest);
+            }
+        }
+
+        /**
+         * Выполняет запросы подключения по одному, пока очередь не опустеет. Вызывается рабочим потоком;
+         * одновременно выполняется не больше одного такого вызова на подключение. На каждый запрос ставится
+         * ответ, даже если выполнение завершилось исключением; если рабочий поток прерван ошибкой JVM,
+         * подключение закрывается, чтобы клиент не ждал ответа бесконечно. Закрывающееся подключение
+         * закрывается не раньше, чем рабочий поток поставит ответ на последний выполненный запрос.
+         */
+        void process() {
+            boolean stopped = false;
+            try {
+                while (true) {
+                    String request;
+                    synchronized (this) {
+                        request = closing ? null : requests.poll();
+                        if (request == null) {
+                            stopped = true;
+                            return;
+                        }
+                    }
+                    ByteBuffer response;
+                    try {
+                        response = execute(request);
+                    } catch (RuntimeException e) {
+                        response = Protocol.response(Protocol.ERROR, "Ошибка выполнения запроса: " + e + "\n");
+                    }
+                    synchronized (this) {
+                        responses.add(response);
+                    }
+                    ready.add(this);
+                    selector.wakeup();
+                }
+            } finally {
+                boolean close;
+                synchronized (this) {
+                    busy = false;
+                    closing |= !stopped;
+                    close = closing;
+                }
+                if (close) {
+                    ready.add(this);
+                    selector.wakeup();
+                }
+            }
+        }
+
+        /**
+         * Выполняет один запрос и кодирует ответ.
+         *
+         * @param request Текст запроса: команда и строки ввода.
+         * @return Кадр ответа.
+         */
+        private ByteBuffer execute(String request) {
+            int lineEnd = request.indexOf('\n');
+            String commandLine = lineEnd < 0 ? request : request.substring(0, lineEnd);
+            String input = lineEnd < 0 ? "" : request.substring(lineEnd + 1);
+            if (commandInvoker == null) {
+                userIO = new UserIO(new Scanner(""));
+                commandInvoker = new CommandInvoker(collectionManager, userIO, inputFile,
+                        new RouteFieldsReader(userIO, collectionManager));
+                commandInvoker.setExitAction(this::closeAfterResponses);
+            }
+            userIO.setScanner(new Scanner(input));
+            ConsoleCapture.Output output = ConsoleCapture.capture(() -> {
+                try {
+                    commandInvoker.execute(commandLine);
+                } catch (NoSuchElementException e) {
+                    System.err.println("Ошибка ввода: в запросе не хватает строк для команды");
+                } catch (RuntimeException e) {
+                    System.err.println("Ошибка выполнения команды: " + e);
+                }
+            });
+            byte status;
+            synchronized (this) {
+                status = closing ? Protocol.CLOSED : output.hasError() ? Protocol.ERROR : Protocol.OK;
+            }
+            return Protocol.response(status, output.getText());
+        }
+
+        /**
+         * Помечает подключение закрывающимся: оставшиеся запросы не выполняются, а после отправки готовых
+         * ответов подключение закрывается. Выполняет команду exit подключения, в том числе из фонового задания
+         * или скрипта.
+         */
+        private void closeAfterResponses() {
+            synchronized (this) {
+                closing = true;
+            }
+            ready.add(this);
+            selector.wakeup();
+        }
+
+        /**
+         * Закрывает подключение. Вызывается потоком селектора.
+         */
+        void close() {
+            if (!channel.isOpen()) {
+                return;
+            }
+            synchronized (this) {
+                closing = true;
+                requests.clear();
+            }
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // подключение уже не используется
+            }
+        }
+    }
+}
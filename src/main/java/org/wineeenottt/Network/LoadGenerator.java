@@ -0,0 +1,340 @@
+package org.wineeenottt.Network;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Класс LoadGenerator - генератор нагрузки на сервер команд ({@link CommandServer}). Открывает заданное количество
+ * подключений в одном потоке с {@link Selector}; каждое подключение в цикле отправляет запрос и ждет ответа.
+ * Запросы - команды чтения (sum_of_distance, count_distance_between, distance_percentile) и с заданной долей
+ * команда add. После разогрева в течение заданного времени считаются выполненные запросы и задержки,
+ * затем выводятся количество запросов в секунду и процентили задержки.
+ * Запуск: {@code java -cp <classpath> org.wineeenottt.Network.LoadGenerator <порт> [подключений] [секунд]
+ * [процент записи] [секунд разогрева]} или {@code ./gradlew loadgen -Pargs="<порт> 1000 10 10"}.
+ */
+public class LoadGenerator {
+
+    /**
+     * Запросы чтения.
+     */
+    private static final String[] READS = {
+            "sum_of_distance",
+            "count_distance_between 0 100",
+            "distance_percentile 50"
+    };
+
+    /**
+     * Запрос добавления маршрута: команда и значения полей в порядке их чтения.
+     */
+    private static final String ADD = String.join("\n", "add", "load", "1.5", "2.5",
+            "1", "2", "3", "from", "4", "5", "6", "to", "42");
+
+    /**
+     * Адрес сервера.
+     */
+    private final InetSocketAddress address;
+
+    /**
+     * Количество подключений.
+     */
+    private final int connections;
+
+    /**
+     * Время измерения в наносекундах.
+     */
+    private final long durationNanos;
+
+    /**
+     * Время разогрева в наносекундах.
+     */
+    private final long warmupNanos;
+
+    /**
+     * Доля запросов добавления в процентах.
+     */
+    private final int writePercent;
+
+    /**
+     * Генератор выбора запросов.
+     */
+    private final SplittableRandom random = new SplittableRandom(42);
+
+    /**
+     * Задержки запросов, завершенных за время измерения, в наносекундах.
+     */
+    private long[] latencies = new long[1 << 16];
+
+    /**
+     * Количество запросов, завершенных за время измерения.
+     */
+    private int completed;
+
+    /**
+     * Количество ответов с сообщением об ошибке за время измерения.
+     */
+    private int errors;
+
+    /**
+     * Количество подключений, разорванных во время работы.
+     */
+    private int failedConnections;
+
+    /**
+     * Начало времени измерения.
+     */
+    private long measureStart;
+
+    /**
+     * Конструктор класса LoadGenerator.
+     *
+     * @param port           порт сервера.
+     * @param connections    количество подключений.
+     * @param seconds        время измерения в секундах.
+     * @param writePercent   доля запросов добавления в процентах.
+     * @param warmupSeconds  время разогрева в секундах.
+     */
+    public LoadGenerator(int port, int connections, int seconds, int writePercent, int warmupSeconds) {
+        this.address = new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+        this.connections = connections;
+        this.durationNanos = TimeUnit.SECONDS.toNanos(seconds);
+        this.warmupNanos = TimeUnit.SECONDS.toNanos(warmupSeconds);
+        this.writePercent = writePercent;
+    }
+
+    /**
+     * Запускает генератор нагрузки.
+     *
+     * @param args порт сервера, количество подключений (1000), время измерения в секундах (10),
+     *             процент запросов добавления (10) и время разогрева в секундах (2).
+     */
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.err.println("Укажите порт сервера");
+            return;
+        }
+        try {
+            LoadGenerator generator = new LoadGenerator(Integer.parseInt(args[0]), intArg(args, 1, 1000),
+                    intArg(args, 2, 10), intArg(args, 3, 10), intArg(args, 4, 2));
+            generator.run();
+            System.out.println(generator.report());
+        } catch (NumberFormatException e) {
+            System.err.println("Аргументы должны быть целыми числами");
+        } catch (IOException e) {
+            System.err.println("Ошибка генератора нагрузки: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Возвращает целочисленный аргумент или значение по умолчанию, если аргумент не указан.
+     *
+     * @param args         аргументы командной строки.
+     * @param index        номер аргумента.
+     * @param defaultValue значение по умолчанию.
+     * @return значение аргумента.
+     */
+    private static int intArg(String[] args, int index, int defaultValue) {
+        return args.length > index ? Integer.parseInt(args[index]) : defaultValue;
+    }
+
+    /**
+     * Открывает подключения и нагружает сервер в течение разогрева и измерения.
+     *
+     * @throws IOException если не удалось открыть селектор.
+     */
+    public void run() throws IOException {
+        List<Connection> opened = new ArrayList<>(connections);
+        try (Selector selector = Selector.open()) {
+            for (int i = 0; i < connections; i++) {
+                SocketChannel channel = SocketChannel.open();
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                Connection connection = new Connection(channel);
+                opened.add(connection);
+                if (channel.connect(address)) {
+                    connection.key = channel.register(selector, 0, connection);
+                    connection.send();
+                } else {
+                    connection.key = channel.register(selector, SelectionKey.OP_CONNECT, connection);
+                }
+            }
+            long start = System.nanoTime();
+            measureStart = start + warmupNanos;
+            long end = measureStart + durationNanos;
+            while (System.nanoTime() < end) {
+                selector.select(100);
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    Connection connection = (Connection) key.attachment();
+                    try {
+                        if (key.isConnectable()) {
+                            connection.channel.finishConnect();
+                            connection.send();
+                        } else {
+                            if (key.isWritable()) {
+                                connection.flush();
+                            }
+                            if (key.isValid() && key.isReadable()) {
+                                connection.read();
+                            }
+                        }
+                    } catch (IOException e) {
+                        failedConnections++;
+                        key.cancel();
+                        connection.channel.close();
+                    }
+                }
+            }
+        } finally {
+            for (Connection connection : opened) {
+                connection.channel.close();
+            }
+        }
+    }
+
+    /**
+     * Возвращает отчет о количестве запросов в секунду и процентилях задержки.
+     *
+     * @return отчет.
+     */
+    public String report() {
+        long[] sorted = Arrays.copyOf(latencies, completed);
+        Arrays.sort(sorted);
+        double seconds = durationNanos / 1e9;
+        return String.format(Locale.ROOT, "Подключений: %d (разорвано %d), запись: %d%%%n"
+                        + "Запросов: %d за %.0f с, %.0f запросов/с, ответов с ошибкой: %d%n"
+                        + "Задержка, мс: p50 = %.3f, p90 = %.3f, p99 = %.3f, p99.9 = %.3f, максимум = %.3f",
+                connections, failedConnections, writePercent, completed, seconds, completed / seconds, errors,
+                percentile(sorted, 0.5), percentile(sorted, 0.9), percentile(sorted, 0.99),
+                percentile(sorted, 0.999), percentile(sorted, 1));
+    }
+
+    /**
+     * Возвращает процентиль отсортированных задержек в миллисекундах.
+     *
+     * @param sorted   отсортированные задержки в наносекундах.
+     * @param fraction доля от 0 до 1.
+     * @return значение процентиля или 0, если задержек нет.
+     */
+    private static double percentile(long[] sorted, double fraction) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(fraction * sorted.length) - 1;
+        return sorted[Math.max(index, 0)] / 1e6;
+    }
+
+    /**
+     * Учитывает завершенный запрос, если он завершен во время измерения.
+     *
+     * @param sentAt время отправки запроса.
+     * @param status состояние ответа.
+     */
+    private void record(long sentAt, byte status) {
+        long now = System.nanoTime();
+        if (now < measureStart) {
+            return;
+        }
+        if (completed == latencies.length) {
+            latencies = Arrays.copyOf(latencies, completed * 2);
+        }
+        latencies[completed++] = now - sentAt;
+        if (status != Protocol.OK) {
+            errors++;
+        }
+    }
+
+    /**
+     * Подключение генератора: отправляет запрос, ждет ответа и отправляет следующий.
+     */
+    private final class Connection {
+
+        /**
+         * Канал подключения.
+         */
+        private final SocketChannel channel;
+
+        /**
+         * Ключ канала в селекторе.
+         */
+        private SelectionKey key;
+
+        /**
+         * Сборщик кадров ответа.
+         */
+        private final Protocol.FrameDecoder decoder = new Protocol.FrameDecoder();
+
+        /**
+         * Неотправленная часть текущего запроса.
+         */
+        private ByteBuffer pending;
+
+        /**
+         * Время отправки текущего запроса.
+         */
+        private long sentAt;
+
+        /**
+         * Конструктор класса Connection.
+         *
+         * @param channel канал подключения.
+         */
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        /**
+         * Выбирает и отправляет следующий запрос.
+         *
+         * @throws IOException если не удалось записать в канал.
+         */
+        void send() throws IOException {
+            String request = random.nextInt(100) < writePercent ? ADD : READS[random.nextInt(READS.length)];
+            pending = Protocol.request(request);
+            sentAt = System.nanoTime();
+            flush();
+        }
+
+        /**
+         * Пишет неотправленную часть запроса и выставляет интерес канала.
+         *
+         * @throws IOException если не удалось записать в канал.
+         */
+        void flush() throws IOException {
+            channel.write(pending);
+            key.interestOps(pending.hasRemaining() ? SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+        }
+
+        /**
+         * Читает ответ; если принят его последний кадр, учитывает ответ и отправляет следующий запрос.
+         *
+         * @throws IOException если сервер закрыл подключение или прислал недопустимый кадр.
+         */
+        void read() throws IOException {
+            if (channel.read(decoder.buffer()) < 0) {
+                throw new IOException("Сервер закрыл подключение");
+            }
+            for (byte[] body; (body = decoder.next()) != null; ) {
+                byte status = body.length > 0 ? body[0] : Protocol.ERROR;
+                if (status != Protocol.MORE) {
+                    record(sentAt, status);
+                    send();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package org.wineeenottt.Network;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Класс Protocol описывает протокол сервера команд. Каждое сообщение - кадр: длина тела (int, big-endian)
+ * и тело указанной длины.
+ * <p>
+ * Тело запроса - текст в UTF-8: первая строка - команда с аргументами, как в консоли, остальные строки -
+ * ввод, который команда прочитала бы с консоли (например, поля маршрута для add или пары
+ * "поле значение" и stop для update). Тело ответа - состояние ({@link #OK}, {@link #ERROR} или {@link #CLOSED})
+ * и текст, который команда вывела в System.out и System.err, в UTF-8. Ответ, не помещающийся в один кадр,
+ * передается несколькими кадрами: все кадры, кроме последнего, имеют состояние {@link #MORE}, а текст ответа -
+ * байты тел всех кадров подряд.
+ * <p>
+ * Клиент может отправлять следующие запросы, не дожидаясь ответов; сервер отвечает на запросы одного
+ * подключения по порядку.
+ */
+public final class Protocol {
+
+    /**
+     * Длина заголовка кадра в байтах.
+     */
+    public static final int HEADER_SIZE = Integer.BYTES;
+
+    /**
+     * Наибольшая длина тела кадра в байтах.
+     */
+    public static final int MAX_FRAME_SIZE = 1 << 20;
+
+    /**
+     * Состояние ответа: команда выполнена без сообщений об ошибках.
+     */
+    public static final byte OK = 0;
+
+    /**
+     * Состояние ответа: команда сообщила об ошибке.
+     */
+    public static final byte ERROR = 1;
+
+    /**
+     * Состояние ответа: сервер закрывает подключение (ответ на exit).
+     */
+    public static final byte CLOSED = 2;
+
+    /**
+     * Состояние кадра ответа: ответ продолжается в следующем кадре.
+     */
+    public static final byte MORE = 3;
+
+    /**
+     * Закрытый конструктор: класс содержит только статические методы.
+     */
+    private Protocol() {
+    }
+
+    /**
+     * Кодирует запрос в кадр.
+     *
+     * @param request текст запроса.
+     * @return кадр, готовый к отправке.
+     */
+    public static ByteBuffer request(String request) {
+        byte[] body = request.getBytes(StandardCharsets.UTF_8);
+        checkLength(body.length);
+        ByteBuffer frame = ByteBuffer.allocate(HEADER_SIZE + body.length);
+        frame.putInt(body.length).put(body);
+        return frame.flip();
+    }
+
+    /**
+     * Кодирует ответ в кадры: текст длиннее одного кадра делится на несколько кадров, все кроме последнего
+     * с состоянием {@link #MORE}.
+     *
+     * @param status состояние ответа.
+     * @param text   текст ответа.
+     * @return кадры подряд, готовые к отправке.
+     */
+    public static ByteBuffer response(byte status, String text) {
+        byte[] body = text.getBytes(StandardCharsets.UTF_8);
+        int chunk = MAX_FRAME_SIZE - 1;
+        int frames = Math.max((body.length + chunk - 1) / chunk, 1);
+        ByteBuffer buffer = ByteBuffer.allocate(frames * (HEADER_SIZE + 1) + body.length);
+        for (int offset = 0, i = 1; i <= frames; i++, offset += chunk) {
+            int length = Math.min(chunk, body.length - offset);
+            buffer.putInt(length + 1).put(i < frames ? MORE : status).put(body, offset, length);
+        }
+        return buffer.flip();
+    }
+
+    /**
+     * Проверяет длину тела кадра.
+     *
+     * @param length длина тела в байтах.
+     * @throws IllegalArgumentException если тело длиннее {@link #MAX_FRAME_SIZE}.
+     */
+    private static void checkLength(int length) {
+        if (length > MAX_FRAME_SIZE) {
+            throw new IllegalArgumentException("Сообщение длиннее " + MAX_FRAME_SIZE + " байт");
+        }
+    }
+
+    /**
+     * Собирает кадры из байт, приходящих частями из неблокирующего канала.
+     */
+    public static final class FrameDecoder {
+
+        /**
+         * Буфер принятых, но еще не разобранных байт (в режиме записи).
+         */
+        private ByteBuffer buffer = ByteBuffer.allocate(1 << 12);
+
+        /**
+         * Возвращает буфер, в который следует прочитать очередные байты из канала; в нем есть свободное место.
+         *
+         * @return буфер в режиме записи.
+         */
+        public ByteBuffer buffer() {
+            if (!buffer.hasRemaining()) {
+                ByteBuffer grown = ByteBuffer.allocate(buffer.capacity() * 2);
+                buffer.flip();
+                grown.put(buffer);
+                buffer = grown;
+            }
+            return buffer;
+        }
+
+        /**
+         * Извлекает следующий полностью принятый кадр.
+         *
+         * @return тело кадра или null, если кадр еще не принят целиком.
+         * @throws IOException если длина кадра недопустима.
+         */
+        public byte[] next() throws IOException {
+            if (buffer.position() < HEADER_SIZE) {
+                return null;
+            }
+            int length = buffer.getInt(0);
+            if (length < 0 || length > MAX_FRAME_SIZE) {
+                throw new IOException("Недопустимая длина сообщения: " + length);
+            }
+            if (buffer.position() < HEADER_SIZE + length) {
+                if (buffer.capacity() < HEADER_SIZE + length) {
+                    ByteBuffer grown = ByteBuffer.allocate(HEADER_SIZE + length);
+                    buffer.flip();
+                    grown.put(buffer);
+                    buffer = grown;
+                }
+                return null;
+            }
+            byte[] body = new byte[length];
+            buffer.flip();
+            buffer.position(HEADER_SIZE);
+            buffer.get(body);
+            buffer.compact();
+            return body;
+        }
+    }
+}
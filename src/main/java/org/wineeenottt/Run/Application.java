@@ -1,16 +1,26 @@
 package org.wineeenottt.Run;
 
 import org.wineeenottt.Collection.CollectionManager;
+import org.wineeenottt.Collection.LazyRouteStore;
+import org.wineeenottt.Collection.NameDictionary;
 import org.wineeenottt.Collection.Route;
+import org.wineeenottt.Collection.RouteInterner;
+import org.wineeenottt.Collection.RouteStoreType;
 import org.wineeenottt.Commands.CommandInvoker;
 import org.wineeenottt.IO.UserIO;
+import org.wineeenottt.Network.CommandServer;
 import org.wineeenottt.Utility.RouteFieldsReader;
 import org.wineeenottt.WorkWithFile.FileManager;
+import org.wineeenottt.WorkWithFile.MutationLog;
+import org.wineeenottt.WorkWithFile.RouteSnapshot;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
 import java.util.NoSuchElementException;
-import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Класс Application является основным классом программы, который управляет запуском и выполнением команд.
@@ -19,6 +29,11 @@ import java.util.Set;
  */
 public class Application {
 
+    /**
+     * Имя потока, загружающего коллекцию.
+     */
+    private static final String LOADER_THREAD_NAME = "collection-loader";
+
     /**
      * Менеджер коллекций, управляющий данными коллекции маршрутов.
      */
@@ -44,41 +59,214 @@ public class Application {
      */
     private RouteFieldsReader routeFieldsReader;
 
+    /**
+     * Снимок, из которого загружена коллекция, или null, если коллекция загружена из CSV файла.
+     */
+    private RouteSnapshot loadedSnapshot;
+
     /**
      * Метод, выполняющий запуск программы. Инициализирует необходимые компоненты и загружает данные из файла.
+     * Тип хранилища маршрутов задается системным свойством route.store (см. {@link RouteStoreType}); для хранилища
+     * off-heap объем памяти вне кучи ограничен параметром JVM -XX:MaxDirectMemorySize.
+     * Загрузчик, хранилище и чтение полей используют общий словарь названий и пул разделяемых значений;
+     * после загрузки выводится отчет о дедупликации.
+     * Если рядом с файлом есть двоичный снимок, записанный не раньше файла, коллекция загружается из снимка.
+     * Затем поверх коллекции применяется журнал изменений, в который далее записывается каждое изменение коллекции.
+     * Системное свойство route.autosave включает автосохранение после заданного количества изменений.
+     * Вместо файла можно указать каталог: тогда коллекция хранится в нем частями (см. {@link FileManager}),
+     * которые загружаются и сохраняются параллельно; пустой каталог начинает пустую коллекцию.
+     * С ленивым хранилищем ({@code -Droute.store=lazy}) при запуске строится только индекс файла, а маршруты
+     * декодируются при обращении.
+     * Коллекция загружается в фоновом потоке, а приглашение к вводу выводится сразу: команды, которым коллекция
+     * не нужна, выполняются немедленно, остальные ждут окончания загрузки (см. {@link CommandInvoker}).
+     * Если загрузить коллекцию не удалось, программа завершается.
      *
-     * @param inputFile путь к файлу, из которого будут загружены данные.
+     * @param inputFile путь к файлу или каталогу, из которого будут загружены данные.
      */
     public void start(String inputFile) {
-        csvParser = new FileManager();
+        inputFile = open(inputFile);
+        if (inputFile == null) {
+            return;
+        }
+
+        routeFieldsReader = new RouteFieldsReader(userIO, collectionManager);
+        commandInvoker = new CommandInvoker(collectionManager, userIO, inputFile, routeFieldsReader);
+
+        try {
+            cycle();
+
+        } catch (NoSuchElementException ex) {
+            System.err.println("Ошибка ввода: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Метод, запускающий программу в режиме сервера: коллекция загружается так же, как в {@link #start(String)},
+     * а команды вместо консоли принимаются от клиентов по TCP на локальном порту ({@link CommandServer}).
+     *
+     * @param inputFile путь к файлу или каталогу, из которого будут загружены данные.
+     * @param port      порт, на котором сервер принимает подключения.
+     */
+    public void serve(String inputFile, int port) {
+        inputFile = open(inputFile);
+        if (inputFile == null) {
+            return;
+        }
+        try {
+            new CommandServer(collectionManager, inputFile, port).run();
+        } catch (IOException e) {
+            System.err.println("Ошибка сервера: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Инициализирует компоненты и запускает загрузку коллекции в фоновом потоке.
+     *
+     * @param inputFile путь к файлу или каталогу, из которого будут загружены данные.
+     * @return нормализованный путь к файлу или null, если файл недоступен.
+     */
+    private String open(String inputFile) {
+        // без завершающего разделителя журнал и снимок каталога лежат рядом с ним, а не внутри
+        inputFile = Path.of(inputFile).toString();
+        NameDictionary nameDictionary = new NameDictionary();
+        RouteInterner routeInterner = new RouteInterner(nameDictionary);
+        csvParser = new FileManager(routeInterner);
         userIO = new UserIO();
 
-        Set<Route> routes;
         try {
             File ioFile = new File(inputFile);
-            if (!ioFile.exists() || ioFile.isDirectory() || !ioFile.canRead()) {
+            if (!ioFile.exists() || !ioFile.canRead()) {
                 throw new IOException("Ошибка с файлом");
             }
 
-            routes = csvParser.parseCsvFile(inputFile);
-
-            collectionManager = new CollectionManager(routes);
+            MutationLog mutationLog = new MutationLog(inputFile);
+            RouteStoreType storeType = RouteStoreType.fromSystemProperty();
+            collectionManager = CollectionManager.loading(routeInterner, mutationLog);
+            collectionManager.setAutosave(inputFile, Integer.getInteger(CollectionManager.AUTOSAVE_PROPERTY, 0));
+            if (Boolean.getBoolean(CollectionManager.WRITER_LOOP_PROPERTY)) {
+                collectionManager.startWriterLoop();
+            }
 
-            userIO.printCommandText("Элементы коллекции из указанного файла были загружены\n");
+            String path = inputFile;
+            Thread loader = new Thread(() -> load(path, storeType, nameDictionary, routeInterner, mutationLog),
+                    LOADER_THREAD_NAME);
+            loader.setDaemon(true);
+            loader.start();
         } catch (IOException e) {
             System.err.println("Ошибка при чтении файла: " + e.getMessage());
-            return;
+            return null;
+        } catch (IllegalArgumentException e) {
+            System.err.println("Ошибка: " + e.getMessage());
+            return null;
         }
+        return inputFile;
+    }
 
-        routeFieldsReader = new RouteFieldsReader(userIO, collectionManager);
-        commandInvoker = new CommandInvoker(collectionManager, userIO, inputFile, routeFieldsReader);
+    /**
+     * Загружает коллекцию в фоновом потоке и завершает ее загрузку в менеджере коллекций.
+     * Обычные хранилища заполняются по мере разбора файла, и уже загруженную часть можно просматривать
+     * до окончания загрузки; в заданное хранилище коллекция переносится в конце.
+     * При ошибке загрузки программа завершается.
+     *
+     * @param inputFile      путь к CSV файлу.
+     * @param storeType      тип хранилища маршрутов.
+     * @param nameDictionary общий словарь названий.
+     * @param routeInterner  пул разделяемых значений маршрутов.
+     * @param mutationLog    журнал изменений коллекции.
+     */
+    private void load(String inputFile, RouteStoreType storeType, NameDictionary nameDictionary,
+                      RouteInterner routeInterner, MutationLog mutationLog) {
+        long start = System.nanoTime();
+        try {
+            if (storeType == RouteStoreType.LAZY) {
+                LazyRouteStore store = loadLazyRoutes(inputFile, routeInterner, mutationLog);
+                setSnapshotBase(inputFile);
+                collectionManager.finishLoading(store);
+            } else {
+                loadRoutes(inputFile, routeInterner);
+                setSnapshotBase(inputFile);
+                collectionManager.finishLoading(storeType == RouteStoreType.TREE ? null : storeType.create(nameDictionary));
+            }
+        } catch (IOException e) {
+            System.err.println("Ошибка при чтении файла: " + e.getMessage());
+            System.exit(1);
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            System.err.println("Ошибка: " + e.getMessage());
+            System.exit(1);
+        }
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        userIO.printCommandText("Элементы коллекции из указанного файла были загружены за " + millis + " мс\n");
+        userIO.printCommandText(routeInterner.report() + "\n");
+    }
 
+    /**
+     * Загружает маршруты в менеджер коллекций из двоичного снимка, если он не старше CSV файла, иначе из CSV файла
+     * по частям, и применяет к ним журнал изменений. Если снимок не удалось прочитать, маршруты загружаются из CSV файла.
+     *
+     * @param inputFile     путь к CSV файлу.
+     * @param routeInterner пул разделяемых значений маршрутов.
+     * @throws IOException если произошла ошибка ввода-вывода при чтении CSV файла или журнала.
+     */
+    private void loadRoutes(String inputFile, RouteInterner routeInterner) throws IOException {
+        if (RouteSnapshot.isFresh(inputFile)) {
+            RouteSnapshot snapshot = new RouteSnapshot(routeInterner);
+            List<Route> routes = null;
+            try {
+                routes = snapshot.read(RouteSnapshot.pathFor(inputFile));
+            } catch (IOException e) {
+                System.err.println("Не удалось загрузить снимок, используется CSV файл: " + e.getMessage());
+            }
+            if (routes != null) {
+                userIO.printCommandText("Коллекция загружена из снимка " + RouteSnapshot.pathFor(inputFile) + "\n");
+                collectionManager.addLoadedRoutes(routes, 1);
+                collectionManager.recoverMutationLog(snapshot.getLsn());
+                loadedSnapshot = snapshot;
+                return;
+            }
+        }
+        csvParser.parseCsvFile(inputFile, ForkJoinPool.commonPool(), collectionManager::addLoadedRoutes);
+        collectionManager.recoverMutationLog(0);
+    }
 
-        try {
-            cycle();
+    /**
+     * Строит ленивое хранилище над индексом двоичного снимка, если он не старше CSV файла, иначе над индексом
+     * CSV файла, и применяет к нему разностные сегменты снимка и журнал изменений. Маршруты при этом
+     * не декодируются: они читаются из отображенного в память файла при обращении.
+     *
+     * @param inputFile     путь к CSV файлу.
+     * @param routeInterner пул разделяемых значений маршрутов.
+     * @param mutationLog   журнал изменений коллекции.
+     * @return заполненное ленивое хранилище.
+     * @throws IOException если произошла ошибка ввода-вывода при чтении CSV файла или журнала.
+     */
+    private LazyRouteStore loadLazyRoutes(String inputFile, RouteInterner routeInterner, MutationLog mutationLog) throws IOException {
+        if (RouteSnapshot.isFresh(inputFile)) {
+            try {
+                RouteSnapshot snapshot = new RouteSnapshot(routeInterner);
+                LazyRouteStore store = new LazyRouteStore(snapshot.index(RouteSnapshot.pathFor(inputFile)));
+                snapshot.applyDeltas(RouteSnapshot.pathFor(inputFile), store);
+                userIO.printCommandText("Индекс коллекции построен по снимку " + RouteSnapshot.pathFor(inputFile) + "\n");
+                mutationLog.recover(store, snapshot.getLsn());
+                loadedSnapshot = snapshot;
+                return store;
+            } catch (IOException e) {
+                System.err.println("Не удалось загрузить снимок, используется CSV файл: " + e.getMessage());
+            }
+        }
+        LazyRouteStore store = new LazyRouteStore(csvParser.indexCsvFile(inputFile));
+        mutationLog.recover(store, 0);
+        return store;
+    }
 
-        } catch (NoSuchElementException ex) {
-            System.err.println("Ошибка ввода: " + ex.getMessage());
+    /**
+     * Сообщает менеджеру коллекций снимок, из которого загружена коллекция, если она загружена из снимка.
+     *
+     * @param inputFile путь к CSV файлу.
+     */
+    private void setSnapshotBase(String inputFile) {
+        if (loadedSnapshot != null) {
+            collectionManager.setSnapshotBase(inputFile, loadedSnapshot.getSnapshotId(),
+                    loadedSnapshot.getDeltaSequence(), loadedSnapshot.getDeltaRows());
         }
     }
 
@@ -93,7 +281,11 @@ public class Application {
             userIO.printCommandText("\nВведите название команды:)\n");
             userIO.printPreamble();
             String line = userIO.readLine();
-            commandInvoker.execute(line);
+            try {
+                commandInvoker.execute(line);
+            } catch (IllegalStateException e) {
+                System.err.println("Ошибка: " + e.getMessage());
+            }
         }
     }
 }
\ No newline at end of file
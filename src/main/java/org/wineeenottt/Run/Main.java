@@ -2,25 +2,48 @@ package org.wineeenottt.Run;
 
 /**
  * Класс Main является точкой входа в программу.
- * Он проверяет аргументы командной строки и запускает приложение с указанным файлом для хранения данных.
+ * Он проверяет аргументы командной строки и запускает приложение с указанным файлом для хранения данных
+ * (или каталогом, в котором коллекция хранится частями).
  * Если аргументы командной строки отсутствуют, используется путь по умолчанию.
+ * С аргументами {@code --server <порт> [файл]} программа запускается в режиме сервера команд.
  */
 public class Main {
 
+    /**
+     * Аргумент командной строки, запускающий режим сервера.
+     */
+    private static final String SERVER_OPTION = "--server";
+
+    /**
+     * Путь к файлу коллекции по умолчанию.
+     */
+    private static final String DEFAULT_FILE = "Files/RouteStorage";
+
     /**
      * Основной метод, который запускает программу.
      *
-     * @param args аргументы командной строки. Первый аргумент (если присутствует) должен содержать путь к файлу для хранения данных.
+     * @param args аргументы командной строки. Первый аргумент (если присутствует) должен содержать путь к файлу
+     *             или каталогу для хранения данных, либо {@value #SERVER_OPTION}, порт и путь к файлу.
      */
     public static void main(String[] args) {
-        if (args.length > 0) {
+        if (args.length > 0 && args[0].equals(SERVER_OPTION)) {
+            if (args.length < 2) {
+                System.err.println("Укажите порт сервера: " + SERVER_OPTION + " <порт> [файл]");
+                return;
+            }
+            try {
+                new Application().serve(args.length > 2 ? args[2] : DEFAULT_FILE, Integer.parseInt(args[1]));
+            } catch (NumberFormatException e) {
+                System.err.println("Порт должен быть целым числом");
+            }
+        } else if (args.length > 0) {
             if (!args[0].isEmpty()) {
                 Application application = new Application();
                 application.start(args[0]);
             }
         } else {
             Application application = new Application();
-            application.start("Files/RouteStorage");
+            application.start(DEFAULT_FILE);
         }
     }
 }
\ No newline at end of file
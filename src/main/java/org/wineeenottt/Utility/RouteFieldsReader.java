@@ -5,10 +5,12 @@ import org.wineeenottt.Collection.Coordinates;
 import org.wineeenottt.Collection.Location;
 import org.wineeenottt.Exceptions.ValidValuesRangeException;
 import org.wineeenottt.IO.UserIO;
+import org.wineeenottt.WorkWithFile.CsvTokenizer;
 
-import java.io.File;
-import java.io.FileNotFoundException;
-import java.util.Scanner;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
 
 /**
  * Класс, предназначенный для чтения и валидации полей маршрута (Route).
@@ -27,19 +29,14 @@ public class RouteFieldsReader {
     private CollectionManager collectionManager;
 
     /**
-     * Сканер для чтения данных из файла.
+     * Разборщик данных, считанных из файла, или null, если данные читаются с консоли.
      */
-    private Scanner scanner;
+    private CsvTokenizer inputData;
 
     /**
-     * Массив строк, содержащий данные, считанные из файла.
+     * Количество еще не прочитанных значений текущей строки файла.
      */
-    private String[] inputDataArray;
-
-    /**
-     * Индекс текущего элемента в массиве inputDataArray.
-     */
-    private int inputIndex = 0;
+    private int inputRemaining = 0;
 
     /**
      * Максимальное допустимое значение координаты X.
@@ -69,29 +66,32 @@ public class RouteFieldsReader {
      */
     public void setInputData(String fileName) {
         try {
-            scanner = new Scanner(new File(fileName));
-        } catch (FileNotFoundException e) {
+            inputData = new CsvTokenizer(ByteBuffer.wrap(Files.readAllBytes(Path.of(fileName))));
+        } catch (IOException e) {
             System.out.println("Не удалось открыть файл: " + fileName);
-            scanner = null;
+            inputData = null;
         }
-        inputDataArray = null;
-        inputIndex = 0;
+        inputRemaining = 0;
     }
 
     /**
      * Читает следующее значение из файла или запрашивает его у пользователя.
+     * Строки файла разбираются побайтово: строка и каждое значение очищаются от пробельных символов по краям,
+     * значения разделяются запятыми, пустые значения в конце строки пропускаются.
      *
      * @param val сообщение, которое будет выведено пользователю, если данные читаются с консоли.
      * @return следующее значение.
      */
     private String readNextValue(String val) {
-        while ((inputDataArray == null || inputIndex >= inputDataArray.length) && scanner != null && scanner.hasNextLine()) {
-            inputDataArray = scanner.nextLine().trim().split(",");
-            inputIndex = 0;
+        while (inputRemaining == 0 && inputData != null && inputData.nextLine()) {
+            inputData.trimLine();
+            inputRemaining = inputData.fieldCount();
         }
 
-        if (inputDataArray != null && inputIndex < inputDataArray.length) {
-            return inputDataArray[inputIndex++].trim();
+        if (inputRemaining > 0) {
+            inputRemaining--;
+            inputData.nextField();
+            return inputData.string();
         }
 
         userIO.printCommandText(val);
@@ -101,12 +101,12 @@ public class RouteFieldsReader {
     /**
      * Читает и валидирует имя маршрута.
      *
-     * @return валидное имя маршрута.
+     * @return валидное имя маршрута (экземпляр из словаря названий коллекции).
      */
     public String readName() {
         while (true) {
             String str = readNextValue("Name (not null): ");
-            if (!str.isEmpty()) return str;
+            if (!str.isEmpty()) return collectionManager.getNameDictionary().canonical(str);
             userIO.printCommandError("Значение поля не может быть null или пустой строкой\n");
         }
     }
@@ -187,12 +187,12 @@ public class RouteFieldsReader {
     /**
      * Читает и валидирует имя для Location.
      *
-     * @return валидное имя Location.
+     * @return валидное имя Location (экземпляр из словаря названий коллекции).
      */
     public String readLocationName() {
         while (true) {
             String str = readNextValue("LocationName (not null): ");
-            if (!str.isEmpty()) return str;
+            if (!str.isEmpty()) return collectionManager.getNameDictionary().canonical(str);
             userIO.printCommandError("Значение поля не может быть null или пустой строкой\n");
         }
     }
@@ -0,0 +1,310 @@
+package org.wineeenottt.WorkWithFile;
+
+import org.wineeenottt.Collection.Route;
+
+import java.io.IOException;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Класс BackgroundSaver - фоновый поток записи коллекции на диск.
+ * Сохранение CSV файла со снимком и уплотнение журнала изменений выполняются в одном потоке в порядке постановки
+ * в очередь, поэтому более поздний снимок никогда не перезаписывается более ранним.
+ * Задачи получают копию коллекции на момент постановки в очередь, поэтому цикл команд не ждет записи.
+ * Перед завершением программы поток дописывает поставленные в очередь задачи.
+ */
+public class BackgroundSaver {
+
+    /**
+     * Формат времени последнего сохранения.
+     */
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss");
+
+    /**
+     * Наибольшее время ожидания незаконченных задач при завершении программы, в секундах.
+     */
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 60;
+
+    /**
+     * Количество поставленных в очередь и выполняющихся задач.
+     */
+    private final AtomicInteger pending = new AtomicInteger();
+
+    /**
+     * Поток записи или null, если еще не было ни одной задачи.
+     */
+    private ExecutorService writer;
+
+    /**
+     * Время окончания последнего сохранения или null.
+     */
+    private volatile ZonedDateTime lastSaveTime;
+
+    /**
+     * Длительность последнего сохранения в миллисекундах.
+     */
+    private volatile long lastSaveMillis;
+
+    /**
+     * Описание последнего сохранения: полное или разностное и сколько строк записано.
+     */
+    private volatile String lastSaveKind;
+
+    /**
+     * Сообщение о последней ошибке записи или null.
+     */
+    private volatile String lastError;
+
+    /**
+     * Признак того, что после последнего полного снимка какое-либо сохранение не удалось. Пока он установлен,
+     * разностные сегменты не отбрасывают записи журнала изменений, а следующее сохранение должно быть полным.
+     */
+    private volatile boolean chainBroken;
+
+    /**
+     * Ставит в очередь полное сохранение коллекции: CSV файл, затем снимок рядом с ним; после этого отбрасываются
+     * разностные сегменты прежнего снимка и записи журнала изменений, учтенные в снимке.
+     *
+     * @param csvPath     путь к CSV файлу.
+     * @param routes      копия маршрутов коллекции, которую больше никто не изменяет.
+     * @param mutationLog журнал изменений или null.
+     * @param lsn         номер последней записи журнала, учтенной в маршрутах.
+     * @param snapshotId  идентификатор нового снимка.
+     */
+    public void save(String csvPath, List<Route> routes, MutationLog mutationLog, long lsn, long snapshotId) {
+        submit(() -> {
+            long start = System.nanoTime();
+            try {
+                new FileManager().writeCsv(csvPath, routes);
+                new RouteSnapshot().write(RouteSnapshot.pathFor(csvPath), routes, lsn, snapshotId);
+                chainBroken = false;
+                saved(mutationLog, lsn, start, "полное, строк " + routes.size());
+            } catch (IOException e) {
+                failed(e);
+            }
+        });
+    }
+
+    /**
+     * Ставит в очередь разностное сохранение коллекции: в сегмент снимка записываются только маршруты,
+     * измененные после предыдущего сохранения, и ID удаленных маршрутов; CSV файл не перезаписывается.
+     * После этого отбрасываются записи журнала изменений, учтенные в сегменте, если все предыдущие сегменты записаны.
+     *
+     * @param csvPath        путь к CSV файлу.
+     * @param baseSnapshotId идентификатор снимка, к которому относится сегмент.
+     * @param sequence       номер сегмента.
+     * @param puts           копии добавленных и измененных маршрутов.
+     * @param deletes        ID удаленных маршрутов.
+     * @param mutationLog    журнал изменений или null.
+     * @param lsn            номер последней записи журнала, учтенной в сегменте.
+     */
+    public void saveDelta(String csvPath, long baseSnapshotId, int sequence, List<Route> puts, List<Integer> deletes,
+                          MutationLog mutationLog, long lsn) {
+        submit(() -> {
+            long start = System.nanoTime();
+            try {
+                new RouteSnapshot().writeDelta(RouteSnapshot.pathFor(csvPath), baseSnapshotId, sequence, puts, deletes, lsn);
+                saved(chainBroken ? null : mutationLog, lsn, start, "разностное, изменено " + puts.size() + ", удалено " + deletes.size());
+            } catch (IOException e) {
+                failed(e);
+            }
+        });
+    }
+
+    /**
+     * Ставит в очередь сохранение коллекции, в которой нет изменений после предыдущего сохранения: сегмент
+     * не записывается, а после записи предыдущих сегментов отбрасываются записи журнала изменений до указанной.
+     *
+     * @param mutationLog журнал изменений или null.
+     * @param lsn         номер последней записи журнала, учтенной в сохраненных файлах.
+     */
+    public void saveUnchanged(MutationLog mutationLog, long lsn) {
+        submit(() -> {
+            try {
+                saved(chainBroken ? null : mutationLog, lsn, System.nanoTime(), "изменений нет");
+            } catch (IOException e) {
+                failed(e);
+            }
+        });
+    }
+
+    /**
+     * Ставит в очередь уплотнение журнала изменений, начатое {@link MutationLog#seal()}: копия коллекции
+     * записывается в снимок, после чего прежний файл журнала удаляется.
+     *
+     * @param routes      копия маршрутов коллекции, которую больше никто не изменяет.
+     * @param mutationLog журнал изменений.
+     * @param lsn         номер последней записи журнала, учтенной в маршрутах.
+     * @param snapshotId  идентификатор нового снимка.
+     */
+    public void compact(List<Route> routes, MutationLog mutationLog, long lsn, long snapshotId) {
+        submit(() -> {
+            boolean success = false;
+            try {
+                new RouteSnapshot().write(RouteSnapshot.pathFor(mutationLog.getCsvPath()), routes, lsn, snapshotId);
+                chainBroken = false;
+                success = true;
+            } catch (IOException e) {
+                chainBroken = true;
+                System.err.println("Ошибка при уплотнении журнала изменений: " + e.getMessage());
+            }
+            try {
+                mutationLog.compacted(success);
+            } catch (IOException e) {
+                System.err.println("Ошибка при удалении уплотненного журнала изменений: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Отмечает успешное сохранение и отбрасывает учтенные в нем записи журнала изменений.
+     * Выполняется в потоке записи.
+     *
+     * @param mutationLog журнал изменений или null.
+     * @param lsn         номер последней записи журнала, учтенной в сохранении.
+     * @param start       время начала сохранения (System.nanoTime).
+     * @param kind        описание сохранения для команды info.
+     * @throws IOException если не удалось очистить журнал.
+     */
+    private void saved(MutationLog mutationLog, long lsn, long start, String kind) throws IOException {
+        if (mutationLog != null) {
+            mutationLog.truncate(lsn);
+        }
+        lastSaveMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        lastSaveKind = kind;
+        lastSaveTime = ZonedDateTime.now();
+        lastError = null;
+    }
+
+    /**
+     * Отмечает неудачное сохранение. Выполняется в потоке записи.
+     *
+     * @param e ошибка записи.
+     */
+    private void failed(IOException e) {
+        chainBroken = true;
+        lastError = e.getMessage();
+        System.err.println("Ошибка при сохранении коллекции: " + e.getMessage());
+    }
+
+    /**
+     * Проверяет, должно ли следующее сохранение быть полным, потому что одно из сохранений после последнего
+     * полного снимка не удалось.
+     *
+     * @return true, если разностные сегменты нельзя продолжать.
+     */
+    public boolean needsFullSave() {
+        return chainBroken;
+    }
+
+    /**
+     * Проверяет, есть ли незаконченные задачи записи.
+     *
+     * @return true, если запись выполняется или ждет в очереди.
+     */
+    public boolean isBusy() {
+        return pending.get() > 0;
+    }
+
+    /**
+     * Ждет окончания всех поставленных в очередь задач записи.
+     */
+    public void awaitIdle() {
+        ExecutorService current;
+        synchronized (this) {
+            current = writer;
+        }
+        if (current == null) {
+            return;
+        }
+        try {
+            current.submit(() -> { }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            System.err.println("Ошибка при ожидании фонового сохранения: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Возвращает состояние фонового сохранения для команды info.
+     *
+     * @return текст состояния.
+     */
+    public String status() {
+        StringBuilder status = new StringBuilder("Фоновое сохранение: ");
+        int tasks = pending.get();
+        if (tasks > 0) {
+            status.append("выполняется (задач в очереди: ").append(tasks).append(")");
+        } else if (lastSaveTime == null) {
+            status.append("не выполнялось");
+        } else {
+            status.append("последнее в ").append(lastSaveTime.format(TIME_FORMAT))
+                    .append(" за ").append(lastSaveMillis).append(" мс (").append(lastSaveKind).append(")");
+        }
+        if (lastError != null) {
+            status.append(", последняя ошибка: ").append(lastError);
+        }
+        return status.toString();
+    }
+
+    /**
+     * Ставит задачу в очередь потока записи, создавая поток при первом обращении.
+     *
+     * @param task задача записи.
+     */
+    private void submit(Runnable task) {
+        pending.incrementAndGet();
+        writerThread().execute(() -> {
+            try {
+                task.run();
+            } finally {
+                pending.decrementAndGet();
+            }
+        });
+    }
+
+    /**
+     * Возвращает поток записи, создавая его при первом обращении. Поток не мешает завершению программы,
+     * но перед завершением программа ждет окончания поставленных в очередь задач.
+     *
+     * @return поток записи.
+     */
+    private synchronized ExecutorService writerThread() {
+        if (writer == null) {
+            writer = Executors.newSingleThreadExecutor(task -> {
+                Thread thread = new Thread(task, "collection-saver");
+                thread.setDaemon(true);
+                return thread;
+            });
+            Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown, "collection-saver-shutdown"));
+        }
+        return writer;
+    }
+
+    /**
+     * Дописывает поставленные в очередь задачи перед завершением программы.
+     */
+    private void shutdown() {
+        ExecutorService current;
+        synchronized (this) {
+            current = writer;
+        }
+        if (isBusy()) {
+            System.out.println("Ожидание окончания фонового сохранения...");
+        }
+        current.shutdown();
+        try {
+            if (!current.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                System.err.println("Фоновое сохранение не закончилось за " + SHUTDOWN_TIMEOUT_SECONDS + " с");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
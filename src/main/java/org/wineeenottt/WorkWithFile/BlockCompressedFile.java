@@ -0,0 +1,524 @@
+package org.wineeenottt.WorkWithFile;
+
+import org.wineeenottt.Collection.Route;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Класс BlockCompressedFile - файл коллекции, в котором текст CSV (заголовок и строки маршрутов) разделен на блоки
+ * по целым строкам, и каждый блок сжат алгоритмом Deflate ({@link java.util.zip}) независимо от остальных.
+ * Блоки можно распаковывать параллельно, а отдельный блок - без распаковки предыдущих, поэтому по индексу
+ * блоков маршрут читается из одного блока.
+ * <p>
+ * Формат (порядок байт big-endian):
+ * <pre>
+ * заголовок: магическое число "RTCZ" (int), версия (int), количество блоков (int), количество строк (long),
+ *            смещение индекса блоков (long)
+ * блоки:     сжатые байты блоков подряд; распакованный блок 0 начинается с заголовка CSV
+ * индекс:    для каждого блока смещение в файле (long), длина сжатых байт (int), длина распакованных байт (int),
+ *            количество строк маршрутов (int), CRC32 распакованных байт (int)
+ * </pre>
+ * Распакованные блоки, записанные подряд, образуют обычный CSV файл.
+ */
+public final class BlockCompressedFile {
+
+    /**
+     * Магическое число файла ("RTCZ").
+     */
+    private static final int MAGIC = 0x5254435A;
+
+    /**
+     * Версия формата.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * Длина заголовка в байтах.
+     */
+    private static final int HEADER_SIZE = 28;
+
+    /**
+     * Длина записи индекса блоков в байтах.
+     */
+    private static final int INDEX_ENTRY_SIZE = 24;
+
+    /**
+     * Размер блока до сжатия в байтах, после которого блок закрывается на конце строки.
+     */
+    private static final int BLOCK_SIZE = 1 << 16;
+
+    /**
+     * Уровень сжатия: повторяющиеся названия и поля сжимаются хорошо уже на быстром уровне.
+     */
+    private static final int LEVEL = Deflater.BEST_SPEED;
+
+    /**
+     * Содержимое файла, отображенное в память.
+     */
+    private final MappedByteBuffer data;
+
+    /**
+     * Смещения сжатых блоков в файле.
+     */
+    private final long[] offsets;
+
+    /**
+     * Длины сжатых блоков.
+     */
+    private final int[] compressedLengths;
+
+    /**
+     * Длины распакованных блоков.
+     */
+    private final int[] lengths;
+
+    /**
+     * Контрольные суммы CRC32 распакованных блоков.
+     */
+    private final int[] checksums;
+
+    /**
+     * Количество строк маршрутов в файле.
+     */
+    private final long rowCount;
+
+    /**
+     * Конструктор класса BlockCompressedFile.
+     *
+     * @param data     содержимое файла.
+     * @param blocks   количество блоков.
+     * @param rowCount количество строк маршрутов.
+     */
+    private BlockCompressedFile(MappedByteBuffer data, int blocks, long rowCount) {
+        this.data = data;
+        this.offsets = new long[blocks];
+        this.compressedLengths = new int[blocks];
+        this.lengths = new int[blocks];
+        this.checksums = new int[blocks];
+        this.rowCount = rowCount;
+    }
+
+    /**
+     * Проверяет, записан ли файл в блочном сжатом формате (по магическому числу в начале файла).
+     *
+     * @param path путь к файлу.
+     * @return true, если файл существует и начинается с магического числа формата.
+     * @throws IOException если не удалось прочитать начало файла.
+     */
+    public static boolean isCompressed(Path path) throws IOException {
+        if (!Files.isRegularFile(path)) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(Integer.BYTES);
+            while (magic.hasRemaining() && channel.read(magic) > 0) {
+                // читаем, пока не заполнится буфер или не кончится файл
+            }
+            return !magic.hasRemaining() && magic.getInt(0) == MAGIC;
+        }
+    }
+
+    /**
+     * Открывает файл: отображает его в память и читает индекс блоков. Блоки не распаковываются.
+     *
+     * @param path путь к файлу.
+     * @return открытый файл.
+     * @throws IOException если файл не удалось прочитать или его заголовок либо индекс повреждены.
+     */
+    public static BlockCompressedFile open(Path path) throws IOException {
+        MappedByteBuffer data;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Сжатый файл " + path + " больше 2 ГБ");
+            }
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (data.limit() < HEADER_SIZE || data.getInt(0) != MAGIC) {
+            throw new IOException("Файл " + path + " не является сжатым файлом коллекции");
+        }
+        if (data.getInt(4) != VERSION) {
+            throw new IOException("Неподдерживаемая версия сжатого файла: " + data.getInt(4));
+        }
+        int blocks = data.getInt(8);
+        long indexOffset = data.getLong(20);
+        if (blocks < 0 || indexOffset < HEADER_SIZE
+                || indexOffset + (long) blocks * INDEX_ENTRY_SIZE != data.limit()) {
+            throw new IOException("Индекс блоков файла " + path + " поврежден");
+        }
+        BlockCompressedFile file = new BlockCompressedFile(data, blocks, data.getLong(12));
+        int position = (int) indexOffset;
+        for (int block = 0; block < blocks; block++) {
+            file.offsets[block] = data.getLong(position);
+            file.compressedLengths[block] = data.getInt(position + 8);
+            file.lengths[block] = data.getInt(position + 12);
+            file.checksums[block] = data.getInt(position + 20);
+            if (file.offsets[block] < HEADER_SIZE || file.compressedLengths[block] < 0 || file.lengths[block] < 0
+                    || file.offsets[block] + file.compressedLengths[block] > indexOffset) {
+                throw new IOException("Индекс блоков файла " + path + " поврежден");
+            }
+            position += INDEX_ENTRY_SIZE;
+        }
+        return file;
+    }
+
+    /**
+     * Возвращает количество блоков в файле.
+     *
+     * @return количество блоков.
+     */
+    public int blockCount() {
+        return offsets.length;
+    }
+
+    /**
+     * Возвращает количество строк маршрутов в файле.
+     *
+     * @return количество строк.
+     */
+    public long rowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Распаковывает блок и проверяет его контрольную сумму. Метод потокобезопасен: блоки можно распаковывать
+     * одновременно из разных потоков.
+     *
+     * @param block номер блока.
+     * @return буфер в куче с текстом CSV блока; блок 0 начинается с заголовка CSV.
+     * @throws IOException если блок поврежден.
+     */
+    public ByteBuffer block(int block) throws IOException {
+        byte[] bytes = new byte[lengths[block]];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data.slice((int) offsets[block], compressedLengths[block]));
+            int length = 0;
+            while (length < bytes.length && !inflater.finished()) {
+                int read = inflater.inflate(bytes, length, bytes.length - length);
+                if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                length += read;
+            }
+            if (length != bytes.length || !inflater.finished()) {
+                throw new IOException("Блок " + block + " сжатого файла поврежден: неверная длина");
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Блок " + block + " сжатого файла поврежден: " + e.getMessage());
+        } finally {
+            inflater.end();
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        if ((int) crc.getValue() != checksums[block]) {
+            throw new IOException("Блок " + block + " сжатого файла поврежден: неверная контрольная сумма");
+        }
+        return ByteBuffer.wrap(bytes);
+    }
+
+    /**
+     * Запись маршрутов в блочном сжатом формате. Строки кодируются {@link CsvWriter} в текущий блок;
+     * заполненный блок сжимается задачей пула (или в текущем потоке, если пул не задан), пока следующие
+     * блоки продолжают заполняться. Сжатые блоки записываются в канал в исходном порядке; индекс и заголовок
+     * записываются при закрытии. Экземпляр не потокобезопасен, канал не закрывается вместе с ним.
+     */
+    public static final class Writer implements Closeable {
+
+        /**
+         * Канал файла, в который записываются блоки.
+         */
+        private final FileChannel channel;
+
+        /**
+         * Пул, в котором сжимаются блоки, или null, если блоки сжимаются в текущем потоке.
+         */
+        private final ForkJoinPool pool;
+
+        /**
+         * Наибольшее количество сжимаемых одновременно блоков.
+         */
+        private final int maxPending;
+
+        /**
+         * Сжимаемые блоки в порядке файла.
+         */
+        private final ArrayDeque<ForkJoinTask<CompressedBlock>> pending = new ArrayDeque<>();
+
+        /**
+         * Кодировщик строк CSV, записывающий в текущий блок.
+         */
+        private final CsvWriter csv;
+
+        /**
+         * Байты текущего блока.
+         */
+        private byte[] buffer = new byte[BLOCK_SIZE * 2];
+
+        /**
+         * Количество заполненных байт текущего блока.
+         */
+        private int length;
+
+        /**
+         * Количество строк маршрутов в текущем блоке.
+         */
+        private int blockRows;
+
+        /**
+         * Количество байт, записанных кодировщиком до начала текущего блока.
+         */
+        private long blockStart;
+
+        /**
+         * Индекс записанных блоков.
+         */
+        private ByteBuffer index = ByteBuffer.allocate(INDEX_ENTRY_SIZE * 64);
+
+        /**
+         * Количество записанных блоков.
+         */
+        private int blocks;
+
+        /**
+         * Количество записанных строк маршрутов.
+         */
+        private long rowCount;
+
+        /**
+         * Позиция в файле, с которой записывается следующий блок.
+         */
+        private long position = HEADER_SIZE;
+
+        /**
+         * Конструктор класса Writer. Первый блок начинается с заголовка CSV.
+         *
+         * @param channel канал пустого файла, открытый на запись.
+         * @param pool    пул, в котором сжимаются блоки, или null, чтобы сжимать их в текущем потоке.
+         * @throws IOException если не удалось записать заголовок CSV.
+         */
+        public Writer(FileChannel channel, ForkJoinPool pool) throws IOException {
+            this.channel = channel;
+            this.pool = pool;
+            this.maxPending = pool == null ? 0 : pool.getParallelism() * 2;
+            this.csv = new CsvWriter(new WritableByteChannel() {
+
+                /**
+                 * Дописывает байты кодировщика в текущий блок.
+                 *
+                 * @param source байты для записи.
+                 * @return количество записанных байт.
+                 */
+                @Override
+                public int write(ByteBuffer source) {
+                    int count = source.remaining();
+                    if (length + count > buffer.length) {
+                        buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + count));
+                    }
+                    source.get(buffer, length, count);
+                    length += count;
+                    return count;
+                }
+
+                /**
+                 * Канал всегда открыт.
+                 *
+                 * @return true.
+                 */
+                @Override
+                public boolean isOpen() {
+                    return true;
+                }
+
+                /**
+                 * Закрытие канала ничего не делает.
+                 */
+                @Override
+                public void close() {
+                }
+            }, BLOCK_SIZE);
+            csv.writeHeader();
+        }
+
+        /**
+         * Записывает маршрут строкой CSV в текущий блок и закрывает блок, если он заполнен.
+         *
+         * @param route маршрут.
+         * @throws IOException если произошла ошибка записи предыдущих блоков.
+         */
+        public void writeRoute(Route route) throws IOException {
+            csv.writeRoute(route);
+            blockRows++;
+            if (csv.size() - blockStart >= BLOCK_SIZE) {
+                finishBlock();
+            }
+        }
+
+        /**
+         * Закрывает последний блок, дожидается сжатия всех блоков и записывает индекс и заголовок файла.
+         *
+         * @throws IOException если произошла ошибка записи.
+         */
+        @Override
+        public void close() throws IOException {
+            finishBlock();
+            while (!pending.isEmpty()) {
+                writeBlock(pending.removeFirst().join());
+            }
+            index.flip();
+            long indexOffset = position;
+            while (index.hasRemaining()) {
+                position += channel.write(index, position);
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putInt(blocks).putLong(rowCount).putLong(indexOffset).flip();
+            long headerPosition = 0;
+            while (header.hasRemaining()) {
+                headerPosition += channel.write(header, headerPosition);
+            }
+        }
+
+        /**
+         * Передает текущий блок на сжатие и начинает новый; если на сжатии слишком много блоков,
+         * сначала записывает самый ранний из них.
+         *
+         * @throws IOException если произошла ошибка записи блока.
+         */
+        private void finishBlock() throws IOException {
+            csv.flush();
+            if (length == 0) {
+                return;
+            }
+            byte[] bytes = buffer;
+            int size = length;
+            int count = blockRows;
+            buffer = new byte[bytes.length];
+            length = 0;
+            blockRows = 0;
+            blockStart = csv.size();
+            if (pool == null) {
+                writeBlock(compress(bytes, size, count));
+                return;
+            }
+            pending.addLast(pool.submit(() -> compress(bytes, size, count)));
+            while (pending.size() > maxPending || !pending.isEmpty() && pending.peekFirst().isDone()) {
+                writeBlock(pending.removeFirst().join());
+            }
+        }
+
+        /**
+         * Записывает сжатый блок в канал и добавляет запись о нем в индекс.
+         *
+         * @param block сжатый блок.
+         * @throws IOException если произошла ошибка записи в канал.
+         */
+        private void writeBlock(CompressedBlock block) throws IOException {
+            ByteBuffer bytes = ByteBuffer.wrap(block.bytes, 0, block.compressedLength);
+            long offset = position;
+            while (bytes.hasRemaining()) {
+                position += channel.write(bytes, position);
+            }
+            if (index.remaining() < INDEX_ENTRY_SIZE) {
+                ByteBuffer grown = ByteBuffer.allocate(index.capacity() * 2);
+                grown.put(index.flip());
+                index = grown;
+            }
+            index.putLong(offset).putInt(block.compressedLength).putInt(block.length)
+                    .putInt(block.rows).putInt(block.checksum);
+            blocks++;
+            rowCount += block.rows;
+        }
+
+        /**
+         * Сжимает байты блока и вычисляет их контрольную сумму.
+         *
+         * @param bytes  байты блока.
+         * @param length количество байт блока.
+         * @param rows   количество строк маршрутов в блоке.
+         * @return сжатый блок.
+         */
+        private static CompressedBlock compress(byte[] bytes, int length, int rows) {
+            CRC32 crc = new CRC32();
+            crc.update(bytes, 0, length);
+            Deflater deflater = new Deflater(LEVEL);
+            try {
+                deflater.setInput(bytes, 0, length);
+                deflater.finish();
+                byte[] output = new byte[length / 4 + 64];
+                int compressed = 0;
+                while (!deflater.finished()) {
+                    if (compressed == output.length) {
+                        output = Arrays.copyOf(output, output.length * 2);
+                    }
+                    compressed += deflater.deflate(output, compressed, output.length - compressed);
+                }
+                return new CompressedBlock(output, compressed, length, rows, (int) crc.getValue());
+            } finally {
+                deflater.end();
+            }
+        }
+    }
+
+    /**
+     * Сжатый блок, ожидающий записи в файл.
+     */
+    private static final class CompressedBlock {
+
+        /**
+         * Сжатые байты (заполнены первые compressedLength).
+         */
+        private final byte[] bytes;
+
+        /**
+         * Длина сжатых байт.
+         */
+        private final int compressedLength;
+
+        /**
+         * Длина распакованных байт.
+         */
+        private final int length;
+
+        /**
+         * Количество строк маршрутов в блоке.
+         */
+        private final int rows;
+
+        /**
+         * Контрольная сумма CRC32 распакованных байт.
+         */
+        private final int checksum;
+
+        /**
+         * Конструктор класса CompressedBlock.
+         *
+         * @param bytes            сжатые байты.
+         * @param compressedLength длина сжатых байт.
+         * @param length           длина распакованных байт.
+         * @param rows             количество строк маршрутов.
+         * @param checksum         контрольная сумма распакованных байт.
+         */
+        private CompressedBlock(byte[] bytes, int compressedLength, int length, int rows, int checksum) {
+            this.bytes = bytes;
+            this.compressedLength = compressedLength;
+            this.length = length;
+            this.rows = rows;
+            this.checksum = checksum;
+        }
+    }
+}
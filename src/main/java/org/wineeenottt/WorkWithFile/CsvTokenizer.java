@@ -0,0 +1,705 @@
+package org.wineeenottt.WorkWithFile;
+
+import org.wineeenottt.Collection.Route;
+import org.wineeenottt.Collection.ZoneDictionary;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+
+/**
+ * Класс CsvTokenizer - побайтовый разборщик CSV данных в кодировке UTF-8.
+ * Проходит буфер один раз: сначала по строкам ({@link #nextLine()}), внутри строки - по полям ({@link #nextField()}).
+ * Границы текущего поля хранятся как диапазон байт с отброшенными пробельными символами по краям (как String.trim()),
+ * числа разбираются прямо из этого диапазона, а строка создается только по запросу ({@link #string()}).
+ * <p>
+ * Быстрый разбор чисел охватывает обычную десятичную запись, а разбор дат ({@link #parseDate()}) - запись
+ * ZonedDateTime.toString с годом из четырех цифр; остальные формы, которые принимают
+ * Integer.parseInt, Double.parseDouble, ZonedDateTime.parse и т.п. (экспонента, NaN, суффиксы типа, цифры других алфавитов),
+ * а также ошибочные значения передаются этим методам, поэтому результат и сообщения об ошибках совпадают с ними.
+ * Экземпляр не потокобезопасен; для параллельного разбора каждому потоку нужен свой экземпляр.
+ */
+public class CsvTokenizer {
+
+    /**
+     * Точные степени десяти для типа double.
+     */
+    private static final double[] DOUBLE_POWERS = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /**
+     * Наибольшее количество значащих цифр, при котором мантисса заведомо помещается в long.
+     */
+    private static final int MAX_SIGNIFICANT_DIGITS = 18;
+
+    /**
+     * Старшие 64 бита 128-битных приближений (с округлением вниз) степеней 10^-k, нормализованных
+     * так, что старший бит установлен; индекс - k.
+     */
+    private static final long[] POWER_HIGH = new long[23];
+
+    /**
+     * Младшие 64 бита 128-битных приближений степеней 10^-k; индекс - k.
+     */
+    private static final long[] POWER_LOW = new long[23];
+
+    static {
+        BigInteger mask = BigInteger.ONE.shiftLeft(64).subtract(BigInteger.ONE);
+        for (int k = 0; k < POWER_HIGH.length; k++) {
+            BigInteger power = BigInteger.TEN.pow(k);
+            BigInteger approximation = k == 0
+                    ? BigInteger.ONE.shiftLeft(127)
+                    : BigInteger.ONE.shiftLeft(127 + power.bitLength()).divide(power);
+            POWER_HIGH[k] = approximation.shiftRight(64).longValue();
+            POWER_LOW[k] = approximation.and(mask).longValue();
+        }
+    }
+
+    /**
+     * Наибольшая мантисса, точно представимая типом double.
+     */
+    private static final long DOUBLE_EXACT_MANTISSA = 1L << 53;
+
+    /**
+     * Маска младших бит мантиссы double, отбрасываемых при округлении до float.
+     */
+    private static final long FLOAT_ROUNDING_MASK = (1L << 29) - 1;
+
+    /**
+     * Значение младших бит мантиссы double, лежащего ровно посередине между соседними float.
+     */
+    private static final long FLOAT_MIDPOINT = 1L << 28;
+
+    /**
+     * Разбираемые данные.
+     */
+    private ByteBuffer buffer;
+
+    /**
+     * Граница данных (не включительно).
+     */
+    private int limit;
+
+    /**
+     * Позиция начала следующей строки.
+     */
+    private int position;
+
+    /**
+     * Начало текущей строки.
+     */
+    private int lineStart;
+
+    /**
+     * Конец текущей строки (не включительно, без символов перевода строки).
+     */
+    private int lineEnd;
+
+    /**
+     * Позиция начала следующего поля текущей строки или lineEnd + 1, если поля закончились.
+     */
+    private int fieldCursor;
+
+    /**
+     * Начало текущего поля без начальных пробельных символов.
+     */
+    private int fieldStart;
+
+    /**
+     * Конец текущего поля без конечных пробельных символов (не включительно).
+     */
+    private int fieldEnd;
+
+    /**
+     * Буфер для декодирования строк.
+     */
+    private byte[] scratch = new byte[64];
+
+    /**
+     * Код часового пояса последней разобранной даты в {@link ZoneDictionary}.
+     */
+    private int dateZone;
+
+    /**
+     * Наносекунды последней даты, разобранной быстрым путем.
+     */
+    private int dateNano;
+
+    /**
+     * Байты названия часового пояса (в квадратных скобках) последней даты, разобранной быстрым путем.
+     */
+    private byte[] zoneName = new byte[0];
+
+    /**
+     * Код часового пояса с названием zoneName.
+     */
+    private int zoneNameCode = -1;
+
+    /**
+     * Смещение в секундах последней даты без названия пояса, разобранной быстрым путем.
+     */
+    private int offsetSeconds = Integer.MIN_VALUE;
+
+    /**
+     * Код часового пояса-смещения offsetSeconds.
+     */
+    private int offsetCode = -1;
+
+    /**
+     * Конструктор класса CsvTokenizer.
+     *
+     * @param buffer данные для разбора от позиции 0 до limit.
+     */
+    public CsvTokenizer(ByteBuffer buffer) {
+        reset(buffer);
+    }
+
+    /**
+     * Начинает разбор новых данных.
+     *
+     * @param data данные для разбора от позиции 0 до limit.
+     */
+    public void reset(ByteBuffer data) {
+        reset(data, 0);
+    }
+
+    /**
+     * Начинает разбор новых данных с указанной позиции, например с начала строки, найденной ранее
+     * методом {@link #lineStart()}.
+     *
+     * @param data     данные для разбора до limit.
+     * @param position позиция, с которой начинается первая строка.
+     */
+    public void reset(ByteBuffer data, int position) {
+        this.buffer = data;
+        this.limit = data.limit();
+        this.position = position;
+        this.lineStart = position;
+        this.lineEnd = position;
+        this.fieldCursor = position + 1;
+    }
+
+    /**
+     * Возвращает позицию начала текущей строки в данных.
+     *
+     * @return позиция начала строки.
+     */
+    public int lineStart() {
+        return lineStart;
+    }
+
+    /**
+     * Переходит к следующей строке. Строки разделяются символом '\n', завершающий символ '\r' отбрасывается.
+     *
+     * @return true, если строка есть, false - если данные закончились.
+     */
+    public boolean nextLine() {
+        if (position >= limit) {
+            return false;
+        }
+        int end = position;
+        while (end < limit && buffer.get(end) != '\n') {
+            end++;
+        }
+        lineStart = position;
+        lineEnd = end > lineStart && buffer.get(end - 1) == '\r' ? end - 1 : end;
+        position = end + 1;
+        fieldCursor = lineStart;
+        return true;
+    }
+
+    /**
+     * Отбрасывает пробельные символы в начале и в конце текущей строки (как String.trim()).
+     */
+    public void trimLine() {
+        while (lineStart < lineEnd && isBlank(buffer.get(lineStart))) {
+            lineStart++;
+        }
+        while (lineEnd > lineStart && isBlank(buffer.get(lineEnd - 1))) {
+            lineEnd--;
+        }
+        fieldCursor = lineStart;
+    }
+
+    /**
+     * Возвращает количество полей текущей строки по правилам String.split(","):
+     * пустые поля в конце строки не учитываются, а пустая строка содержит одно пустое поле.
+     *
+     * @return количество полей.
+     */
+    public int fieldCount() {
+        if (lineStart == lineEnd) {
+            return 1;
+        }
+        int index = 0;
+        int count = 0;
+        int start = lineStart;
+        for (int i = lineStart; i <= lineEnd; i++) {
+            if (i == lineEnd || buffer.get(i) == ',') {
+                if (i > start) {
+                    count = index + 1;
+                }
+                index++;
+                start = i + 1;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Переходит к следующему полю текущей строки.
+     *
+     * @return true, если поле есть, false - если поля строки закончились.
+     */
+    public boolean nextField() {
+        if (fieldCursor > lineEnd) {
+            return false;
+        }
+        int end = fieldCursor;
+        while (end < lineEnd && buffer.get(end) != ',') {
+            end++;
+        }
+        int start = fieldCursor;
+        fieldCursor = end + 1;
+        while (start < end && isBlank(buffer.get(start))) {
+            start++;
+        }
+        while (end > start && isBlank(buffer.get(end - 1))) {
+            end--;
+        }
+        fieldStart = start;
+        fieldEnd = end;
+        return true;
+    }
+
+    /**
+     * Возвращает текущее поле как строку.
+     *
+     * @return значение поля.
+     */
+    public String string() {
+        int length = fieldEnd - fieldStart;
+        if (length > scratch.length) {
+            scratch = Arrays.copyOf(scratch, Math.max(length, scratch.length * 2));
+        }
+        buffer.get(fieldStart, scratch, 0, length);
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Разбирает текущее поле как int.
+     *
+     * @return значение поля.
+     * @throws NumberFormatException если поле не является числом типа int.
+     */
+    public int parseInt() {
+        long value = parseDecimalInteger(Integer.MAX_VALUE);
+        return value == Long.MIN_VALUE ? Integer.parseInt(string()) : (int) value;
+    }
+
+    /**
+     * Разбирает текущее поле как long.
+     *
+     * @return значение поля.
+     * @throws NumberFormatException если поле не является числом типа long.
+     */
+    public long parseLong() {
+        long value = parseDecimalInteger(Long.MAX_VALUE);
+        return value == Long.MIN_VALUE ? Long.parseLong(string()) : value;
+    }
+
+    /**
+     * Разбирает текущее поле как double.
+     *
+     * @return значение поля.
+     * @throws NumberFormatException если поле не является числом типа double.
+     * @see #parseDecimal()
+     */
+    public double parseDouble() {
+        double value = parseDecimal();
+        return Double.isNaN(value) ? Double.parseDouble(string()) : value;
+    }
+
+    /**
+     * Разбирает текущее поле как float. Значение сначала точно округляется до double; повторное округление
+     * до float дает тот же результат, если double не попал ровно на середину между соседними float.
+     *
+     * @return значение поля.
+     * @throws NumberFormatException если поле не является числом типа float.
+     */
+    public float parseFloat() {
+        double value = parseDecimal();
+        if (Double.isNaN(value) || isFloatMidpoint(value)) {
+            return Float.parseFloat(string());
+        }
+        return (float) value;
+    }
+
+    /**
+     * Разбирает текущее поле как дату в формате ZonedDateTime.toString и возвращает ее момент в наносекундах эпохи;
+     * код часового пояса даты после этого возвращает {@link #dateZone()}. Запись вида
+     * {@code 2025-02-27T12:44:20.650883+03:00[Europe/Moscow]} (год из четырех цифр, необязательные секунды и доли
+     * секунды, смещение, необязательное название пояса) разбирается прямо из байт, название пояса
+     * сравнивается с названием из предыдущей строки; остальные формы передаются ZonedDateTime.parse.
+     * Как и ZonedDateTime.parse, момент определяется датой, временем и смещением, а пояс берется из названия.
+     *
+     * @return момент даты в наносекундах эпохи.
+     * @throws java.time.format.DateTimeParseException если поле не является датой.
+     * @throws IllegalArgumentException                если дата не представима в наносекундах эпохи.
+     */
+    public long parseDate() {
+        long epochSecond = parseIsoDate();
+        if (epochSecond != Long.MIN_VALUE) {
+            return Route.epochNanos(epochSecond, dateNano);
+        }
+        ZonedDateTime date = ZonedDateTime.parse(string());
+        dateZone = ZoneDictionary.encode(date.getZone());
+        return Route.epochNanos(date.toEpochSecond(), date.getNano());
+    }
+
+    /**
+     * Возвращает код часового пояса даты, разобранной последним вызовом {@link #parseDate()}.
+     *
+     * @return код пояса в {@link ZoneDictionary}.
+     */
+    public int dateZone() {
+        return dateZone;
+    }
+
+    /**
+     * Разбирает текущее поле как дату в записи ZonedDateTime.toString с годом из четырех цифр.
+     * Наносекунды даты записываются в dateNano, код пояса - в dateZone.
+     *
+     * @return момент даты в секундах эпохи или Long.MIN_VALUE, если поле нужно разобрать стандартным методом.
+     */
+    private long parseIsoDate() {
+        int i = fieldStart;
+        int end = fieldEnd;
+        if (end - i < 17 || buffer.get(i + 4) != '-' || buffer.get(i + 7) != '-' || buffer.get(i + 10) != 'T'
+                || buffer.get(i + 13) != ':') {
+            return Long.MIN_VALUE;
+        }
+        int year = digits(i, 4);
+        int month = digits(i + 5, 2);
+        int day = digits(i + 8, 2);
+        int hour = digits(i + 11, 2);
+        int minute = digits(i + 14, 2);
+        int p = i + 16;
+        int second = 0;
+        int nano = 0;
+        if (buffer.get(p) == ':') {
+            second = p + 3 <= end ? digits(p + 1, 2) : -1;
+            p += 3;
+            if (p < end && buffer.get(p) == '.') {
+                int start = ++p;
+                while (p < end && p - start < 9 && isDigit(buffer.get(p))) {
+                    nano = nano * 10 + buffer.get(p++) - '0';
+                }
+                if (p == start || p < end && isDigit(buffer.get(p))) {
+                    return Long.MIN_VALUE;
+                }
+                for (int digits = p - start; digits < 9; digits++) {
+                    nano *= 10;
+                }
+            }
+        }
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > monthLength(year, month)
+                || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59 || p >= end) {
+            return Long.MIN_VALUE;
+        }
+
+        int offset;
+        byte sign = buffer.get(p);
+        if (sign == 'Z') {
+            offset = 0;
+            p++;
+        } else if ((sign == '+' || sign == '-') && p + 6 <= end && buffer.get(p + 3) == ':') {
+            int offsetHours = digits(p + 1, 2);
+            int offsetMinutes = digits(p + 4, 2);
+            int offsetSecondsPart = 0;
+            p += 6;
+            if (p < end && buffer.get(p) == ':') {
+                offsetSecondsPart = p + 3 <= end ? digits(p + 1, 2) : -1;
+                p += 3;
+            }
+            if (offsetHours < 0 || offsetHours > 18 || offsetMinutes < 0 || offsetMinutes > 59
+                    || offsetSecondsPart < 0 || offsetSecondsPart > 59) {
+                return Long.MIN_VALUE;
+            }
+            offset = offsetHours * 3600 + offsetMinutes * 60 + offsetSecondsPart;
+            if (offset > 18 * 3600) {
+                return Long.MIN_VALUE;
+            }
+            offset = sign == '-' ? -offset : offset;
+        } else {
+            return Long.MIN_VALUE;
+        }
+
+        if (p == end) {
+            if (offset != offsetSeconds) {
+                offsetCode = ZoneDictionary.encode(ZoneOffset.ofTotalSeconds(offset));
+                offsetSeconds = offset;
+            }
+            dateZone = offsetCode;
+        } else if (buffer.get(p) == '[' && buffer.get(end - 1) == ']' && end - p > 2) {
+            int code = zoneCode(p + 1, end - 1);
+            if (code < 0) {
+                return Long.MIN_VALUE;
+            }
+            dateZone = code;
+        } else {
+            return Long.MIN_VALUE;
+        }
+
+        // номер дня эпохи по году, месяцу и дню григорианского календаря
+        long shiftedYear = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(shiftedYear, 400);
+        long yearOfEra = shiftedYear - era * 400;
+        int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        long epochDay = era * 146_097 + dayOfEra - 719_468;
+        dateNano = nano;
+        return epochDay * 86_400 + hour * 3600 + minute * 60 + second - offset;
+    }
+
+    /**
+     * Возвращает код часового пояса по названию в байтах [start, end). Если название совпадает с названием
+     * из предыдущего вызова, пояс не ищется заново.
+     *
+     * @param start начало названия.
+     * @param end   конец названия (не включительно).
+     * @return код пояса или -1, если название не является идентификатором пояса.
+     */
+    private int zoneCode(int start, int end) {
+        int length = end - start;
+        boolean same = length == zoneName.length;
+        for (int i = 0; same && i < length; i++) {
+            same = buffer.get(start + i) == zoneName[i];
+        }
+        if (same) {
+            return zoneNameCode;
+        }
+        byte[] name = new byte[length];
+        buffer.get(start, name);
+        try {
+            zoneNameCode = ZoneDictionary.encode(ZoneId.of(new String(name, StandardCharsets.UTF_8)));
+        } catch (DateTimeException e) {
+            return -1;
+        }
+        zoneName = name;
+        return zoneNameCode;
+    }
+
+    /**
+     * Разбирает десятичное число из заданного количества ASCII-цифр.
+     *
+     * @param start  позиция первой цифры.
+     * @param length количество цифр.
+     * @return число или -1, если среди байт есть не цифры.
+     */
+    private int digits(int start, int length) {
+        int value = 0;
+        for (int i = start; i < start + length; i++) {
+            byte b = buffer.get(i);
+            if (!isDigit(b)) {
+                return -1;
+            }
+            value = value * 10 + b - '0';
+        }
+        return value;
+    }
+
+    /**
+     * Проверяет, является ли байт ASCII-цифрой.
+     *
+     * @param b байт.
+     * @return true, если байт - цифра от 0 до 9.
+     */
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    /**
+     * Возвращает количество дней в месяце григорианского календаря.
+     *
+     * @param year  год.
+     * @param month месяц (от 1 до 12).
+     * @return количество дней.
+     */
+    private static int monthLength(int year, int month) {
+        if (month == 2) {
+            return year % 4 == 0 && (year % 100 != 0 || year % 400 == 0) ? 29 : 28;
+        }
+        return month == 4 || month == 6 || month == 9 || month == 11 ? 30 : 31;
+    }
+
+    /**
+     * Разбирает текущее поле вида [-]цифры[.цифры], содержащее не более 18 значащих цифр
+     * и не более 22 цифр после точки, с точным округлением до double.
+     * Мантисса до 2^53 делится на точную степень десяти (одна точно округляемая операция),
+     * большая мантисса обрабатывается алгоритмом Айзеля-Лемира.
+     *
+     * @return значение поля или NaN, если поле нужно разобрать стандартным методом.
+     */
+    private double parseDecimal() {
+        int i = fieldStart;
+        boolean negative = i < fieldEnd && buffer.get(i) == '-';
+        if (negative) {
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int significant = 0;
+        int fraction = -1;
+        for (; i < fieldEnd; i++) {
+            byte b = buffer.get(i);
+            if (b >= '0' && b <= '9') {
+                mantissa = mantissa * 10 + (b - '0');
+                digits++;
+                if (mantissa != 0 && ++significant > MAX_SIGNIFICANT_DIGITS) {
+                    return Double.NaN;
+                }
+                if (fraction >= 0) {
+                    fraction++;
+                }
+            } else if (b == '.' && fraction < 0) {
+                fraction = 0;
+            } else {
+                return Double.NaN;
+            }
+        }
+        if (digits == 0 || fraction >= DOUBLE_POWERS.length) {
+            return Double.NaN;
+        }
+        int scale = Math.max(fraction, 0);
+        if (mantissa <= DOUBLE_EXACT_MANTISSA) {
+            double value = mantissa / DOUBLE_POWERS[scale];
+            return negative ? -value : value;
+        }
+        return eiselLemire(mantissa, scale, negative);
+    }
+
+    /**
+     * Вычисляет точно округленное значение mantissa / 10^scale алгоритмом Айзеля-Лемира:
+     * мантисса умножается на 128-битное приближение 10^-scale, а неоднозначные случаи отклоняются.
+     *
+     * @param mantissa положительная мантисса.
+     * @param scale    количество цифр после точки (от 0 до 22).
+     * @param negative true, если число отрицательное.
+     * @return значение или NaN, если результат нельзя гарантировать.
+     */
+    private static double eiselLemire(long mantissa, int scale, boolean negative) {
+        int leadingZeros = Long.numberOfLeadingZeros(mantissa);
+        long normalized = mantissa << leadingZeros;
+        long exponent = ((217706L * -scale) >> 16) + 64 + 1023 - leadingZeros;
+        long high = unsignedMultiplyHigh(normalized, POWER_HIGH[scale]);
+        long low = normalized * POWER_HIGH[scale];
+        if ((high & 0x1FF) == 0x1FF && Long.compareUnsigned(low + normalized, normalized) < 0) {
+            long wideHigh = unsignedMultiplyHigh(normalized, POWER_LOW[scale]);
+            long wideLow = normalized * POWER_LOW[scale];
+            long mergedHigh = high;
+            long mergedLow = low + wideHigh;
+            if (Long.compareUnsigned(mergedLow, low) < 0) {
+                mergedHigh++;
+            }
+            if ((mergedHigh & 0x1FF) == 0x1FF && mergedLow == -1
+                    && Long.compareUnsigned(wideLow + normalized, normalized) < 0) {
+                return Double.NaN;
+            }
+            high = mergedHigh;
+            low = mergedLow;
+        }
+        long topBit = high >>> 63;
+        long result = high >>> (topBit + 9);
+        exponent -= 1 ^ topBit;
+        if (low == 0 && (high & 0x1FF) == 0 && (result & 3) == 1) {
+            return Double.NaN;
+        }
+        result += result & 1;
+        result >>>= 1;
+        if (result >>> 53 > 0) {
+            result >>>= 1;
+            exponent++;
+        }
+        if (exponent <= 0 || exponent >= 0x7FF) {
+            return Double.NaN;
+        }
+        long bits = exponent << 52 | (result & 0x000FFFFFFFFFFFFFL);
+        return Double.longBitsToDouble(negative ? bits | Long.MIN_VALUE : bits);
+    }
+
+    /**
+     * Возвращает старшие 64 бита беззнакового 128-битного произведения.
+     *
+     * @param x первый множитель (без знака).
+     * @param y второй множитель (без знака).
+     * @return старшие 64 бита произведения.
+     */
+    private static long unsignedMultiplyHigh(long x, long y) {
+        return Math.multiplyHigh(x, y) + ((x >> 63) & y) + ((y >> 63) & x);
+    }
+
+    /**
+     * Проверяет, нельзя ли округлить double до float без потери точного округления: значение лежит ровно
+     * посередине между соседними float либо вне диапазона нормализованных float.
+     *
+     * @param value значение, точно округленное до double.
+     * @return true, если для float нужен стандартный разбор.
+     */
+    private static boolean isFloatMidpoint(double value) {
+        double magnitude = Math.abs(value);
+        if (magnitude == 0) {
+            return false;
+        }
+        if (magnitude < Float.MIN_NORMAL || magnitude > Float.MAX_VALUE) {
+            return true;
+        }
+        return (Double.doubleToRawLongBits(value) & FLOAT_ROUNDING_MASK) == FLOAT_MIDPOINT;
+    }
+
+    /**
+     * Разбирает текущее поле как десятичное целое, записанное ASCII-цифрами с необязательным минусом.
+     *
+     * @param max наибольшее допустимое абсолютное значение.
+     * @return значение поля или Long.MIN_VALUE, если поле нужно разобрать стандартным методом.
+     */
+    private long parseDecimalInteger(long max) {
+        int i = fieldStart;
+        boolean negative = i < fieldEnd && buffer.get(i) == '-';
+        if (negative) {
+            i++;
+        }
+        if (i == fieldEnd || fieldEnd - i > 18) {
+            return Long.MIN_VALUE;
+        }
+        long value = 0;
+        for (; i < fieldEnd; i++) {
+            byte b = buffer.get(i);
+            if (b < '0' || b > '9') {
+                return Long.MIN_VALUE;
+            }
+            value = value * 10 + (b - '0');
+        }
+        if (value > max) {
+            return Long.MIN_VALUE;
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Проверяет, является ли байт пробельным символом в смысле String.trim() (код не больше пробела).
+     *
+     * @param b байт.
+     * @return true, если байт - пробельный символ.
+     */
+    private static boolean isBlank(byte b) {
+        return b >= 0 && b <= ' ';
+    }
+}
@@ -0,0 +1,615 @@
+package org.wineeenottt.WorkWithFile;
+
+import org.wineeenottt.Collection.Coordinates;
+import org.wineeenottt.Collection.Location;
+import org.wineeenottt.Collection.Route;
+import org.wineeenottt.Collection.ZoneDictionary;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+/**
+ * Класс CsvWriter - побайтовая запись маршрутов в CSV формате в кодировке UTF-8.
+ * Строки кодируются прямо в переиспользуемый байтовый буфер, который записывается в канал крупными блоками.
+ * Целые числа, дробные числа и даты форматируются без промежуточных строк; результат совпадает с записью
+ * через String.valueOf и ZonedDateTime.toString (дробное число может отличаться только формой записи, но при разборе
+ * дает то же значение). Редкие значения вне быстрого пути (экспонента, NaN, годы вне 0..9999) записываются
+ * через стандартные методы.
+ * Экземпляр не потокобезопасен. Канал не закрывается вместе с экземпляром.
+ */
+public class CsvWriter implements Closeable {
+
+    /**
+     * Заголовок CSV файла с маршрутами.
+     */
+    public static final String HEADER =
+            "id,name,coordinateX,coordinateY,creationDate,fromX,fromY,fromZ,fromName,toX,toY,toZ,toName,distance\n";
+
+    /**
+     * Размер буфера по умолчанию, в байтах.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+
+    /**
+     * Запас места в буфере, достаточный для любого поля, кроме строк: число, дата без названия зоны.
+     */
+    private static final int FIELD_RESERVE = 64;
+
+    /**
+     * Количество секунд в сутках.
+     */
+    private static final long SECONDS_PER_DAY = 86_400;
+
+    /**
+     * Количество дней в 400-летнем цикле григорианского календаря.
+     */
+    private static final long DAYS_PER_ERA = 146_097;
+
+    /**
+     * Количество дней от 1 марта 0000 года до 1 января 1970 года.
+     */
+    private static final long DAYS_0000_TO_1970 = 719_468;
+
+    /**
+     * Точные степени десяти для типа double.
+     */
+    private static final double[] DOUBLE_POWERS = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /**
+     * Степени десяти для типа long.
+     */
+    private static final long[] LONG_POWERS = {
+            1L, 10L, 100L, 1000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L, 1_000_000_000L,
+            10_000_000_000L, 100_000_000_000L, 1_000_000_000_000L, 10_000_000_000_000L, 100_000_000_000_000L,
+            1_000_000_000_000_000L, 10_000_000_000_000_000L, 100_000_000_000_000_000L
+    };
+
+    /**
+     * Количество значащих цифр, достаточное для точной записи любого числа типа double.
+     */
+    private static final int DOUBLE_DIGITS = 17;
+
+    /**
+     * Количество значащих цифр, достаточное для точной записи любого числа типа float.
+     */
+    private static final int FLOAT_DIGITS = 9;
+
+    /**
+     * Маска битов мантиссы числа типа double.
+     */
+    private static final long DOUBLE_SIGNIFICAND_MASK = (1L << 52) - 1;
+
+    /**
+     * Маска битов мантиссы числа типа float.
+     */
+    private static final int FLOAT_SIGNIFICAND_MASK = (1 << 23) - 1;
+
+    /**
+     * Запас при сравнении с серединой между соседними числами: перекрывает погрешность вычислений в double.
+     */
+    private static final double BOUNDARY_MARGIN = 1 - 1e-9;
+
+    /**
+     * Нижняя граница модуля числа, которое String.valueOf записывает без экспоненты.
+     */
+    private static final double PLAIN_MIN = 1e-3;
+
+    /**
+     * Верхняя граница (не включительно) модуля числа, которое String.valueOf записывает без экспоненты.
+     */
+    private static final double PLAIN_MAX = 1e7;
+
+    /**
+     * Канал, в который записываются данные.
+     */
+    private final WritableByteChannel channel;
+
+    /**
+     * Байты текущего блока.
+     */
+    private final byte[] bytes;
+
+    /**
+     * Обертка над байтами блока для записи в канал.
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * Количество заполненных байт блока.
+     */
+    private int position;
+
+    /**
+     * Количество байт, записанных в канал.
+     */
+    private long written;
+
+    /**
+     * Конструктор класса CsvWriter с буфером размера по умолчанию.
+     *
+     * @param channel канал, в который записываются данные.
+     */
+    public CsvWriter(WritableByteChannel channel) {
+        this(channel, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Конструктор класса CsvWriter.
+     *
+     * @param channel    канал, в который записываются данные.
+     * @param bufferSize размер буфера в байтах.
+     */
+    public CsvWriter(WritableByteChannel channel, int bufferSize) {
+        this.channel = channel;
+        this.bytes = new byte[Math.max(bufferSize, FIELD_RESERVE * 4)];
+        this.buffer = ByteBuffer.wrap(bytes);
+    }
+
+    /**
+     * Записывает заголовок CSV файла.
+     *
+     * @throws IOException если произошла ошибка записи в канал.
+     */
+    public void writeHeader() throws IOException {
+        writeString(HEADER);
+    }
+
+    /**
+     * Записывает маршрут одной строкой CSV файла.
+     *
+     * @param route маршрут.
+     * @throws IOException если произошла ошибка записи в канал.
+     */
+    public void writeRoute(Route route) throws IOException {
+        Coordinates coordinates = route.getCoordinates();
+        Location from = route.getFrom();
+        Location to = route.getTo();
+        writeLong(route.getId());
+        writeSeparator();
+        writeString(route.getName());
+        writeSeparator();
+        writeDouble(coordinates.getX());
+        writeSeparator();
+        writeFloat(coordinates.getY());
+        writeSeparator();
+        writeDate(route);
+        writeSeparator();
+        writeLocation(from);
+        writeSeparator();
+        writeLocation(to);
+        writeSeparator();
+        writeLong(route.getDistance());
+        ensure(1);
+        bytes[position++] = '\n';
+    }
+
+    /**
+     * Записывает поля места: X, Y, Z и название.
+     *
+     * @param location место.
+     * @throws IOException если произошла ошибка записи в канал.
+     */
+    private void writeLocation(Location location) throws IOException {
+        writeFloat(location.getX());
+        writeSeparator();
+        writeLong(location.getY());
+        writeSeparator();
+        writeDouble(location.getZ());
+        writeSeparator();
+        writeString(location.getName());
+    }
+
+    /**
+     * Записывает разделитель полей.
+     *
+     * @throws IOException если произошла ошибка записи в канал.
+     */
+    private void writeSeparator() throws IOException {
+        ensure(1);
+        bytes[position++] = ',';
+    }
+
+    /**
+     * Записывает целое число в десятичной записи.
+     *
+     * @param value число.
+     * @throws IOException если произошла ошибка записи в канал.
+     */
+    private void writeLong(long value) throws IOException {
+        ensure(FIELD_RESERVE);
+        if (value == Long.MIN_VALUE) {
+            writeAscii(Long.toString(value));
+            return;
+        }
+        if (value < 0) {
+            bytes[position++] = '-';
+            value = -value;
+        }
+        putDigits(value, digitCount(value));
+    }
+
+    /**
+     * Записывает число типа double так, чтобы Double.parseDouble вернул то же значение.
+     * Числа от 0.001 до 10^7 записываются самой короткой такой десятичной записью ({@link #putShortest});
+     * остальные - через String.valueOf.
+     *
+     * @param value число.
+     * @throws IOException если произошла ошибка записи в канал.
+     */
+    private void writeDouble(double value) throws IOException {
+        ensure(FIELD_RESERVE);
+        boolean negative = Double.doubleToRawLongBits(value) < 0;
+        double magnitude = Math.abs(value);
+        if (magnitude == 0) {
+            putDecimal(negative, 0, 1);
+            return;
+        }
+        if (magnitude >= PLAIN_MIN && magnitude < PLAIN_MAX) {
+            double halfUlp = Math.ulp(magnitude) / 2;
+            boolean powerOfTwo = (Double.doubleToRawLongBits(magnitude) & DOUBLE_SIGNIFICAND_MASK) == 0;
+            if (putShortest(negative, magnitude, halfUlp, powerOfTwo ? halfUlp / 2 : halfUlp, DOUBLE_DIGITS)) {
+                return;
+            }
+        }
+        writeAscii(String.valueOf(value));
+    }
+
+    /**
+     * Записывает число типа float так, чтобы Float.parseFloat вернул то же значение.
+     * Числа от 0.001 до 10^7 записываются самой короткой такой десятичной записью ({@link #putShortest});
+     * остальные - через String.valueOf.
+     *
+     * @param value число.
+     * @throws IOException если произошла ошибка записи в канал.
+     */
+    private void writeFloat(float value) throws IOException {
+        ensure(FIELD_RESERVE);
+        boolean negative = Float.floatToRawIntBits(value) < 0;
+        float magnitude = Math.abs(value);
+        if (magnitude == 0) {
+            putDecimal(negative, 0, 1);
+            return;
+        }
+        if (magnitude >= PLAIN_MIN && magnitude < PLAIN_MAX) {
+            double halfUlp = Math.ulp(magnitude) / 2.0;
+            boolean powerOfTwo = (Float.floatToRawIntBits(magnitude) & FLOAT_SIGNIFICAND_MASK) == 0;
+            if (putShortest(negative, magnitude, halfUlp, powerOfTwo ? halfUlp / 2 : halfUlp, FLOAT_DIGITS)) {
+                return;
+            }
+        }
+        writeAscii(String.valueOf(value));
+    }
+
+    /**
+     * Записывает самую короткую десятичную запись, которая ближе к значению, чем к соседним числам того же типа,
+     * поэтому при разборе дает то же значение; из двух одинаково коротких выбирается более близкая к значению.
+     * Значение умножается на степень десяти так, чтобы в целой части было {@code digits} цифр; произведение
+     * вычисляется точно как сумма двух double (Math.fma), после чего у целой части по одной отбрасываются младшие
+     * цифры, пока округленное число остается в пределах половины расстояния до соседних чисел.
+     * Границы проверяются с небольшим запасом, поэтому в редких случаях на самой границе запись получается
+     * на цифру длиннее, но по-прежнему точной.
+     *
+     * @param negative признак отрицательного числа.
+     * @param value    модуль числа, от 0.001 до 10^7.
+     * @param halfUp   половина расстояния до следующего числа того же типа.
+     * @param halfDown половина расстояния до предыдущего числа того же типа.
+     * @param digits   количество значащих цифр, достаточное для точной записи любого числа типа.
+     * @return true, если число записано; false, если подходящая запись не найдена.
+     */
+    private boolean putShortest(boolean negative, double value, double halfUp, double halfDown, int digits) {
+        int scale = digits - 1 - (int) Math.floor(Math.log10(value));
+        double high = value * DOUBLE_POWERS[scale];
+        if (high < LONG_POWERS[digits - 1]) {
+            // Math.log10 округлил вверх значение чуть меньше степени десяти
+            high = value * DOUBLE_POWERS[++scale];
+        }
+        double power = DOUBLE_POWERS[scale];
+        double low = Math.fma(value, power, -high);
+        // степени двойки, умноженные на 10^scale при scale <= 22, представимы точно
+        double up = halfUp * power;
+        double down = halfDown * power;
+        // точное произведение равно whole + fraction, где |fraction| <= 0.5
+        long whole = (long) Math.floor(high);
+        double fraction = (high - whole) + low;
+        long carry = Math.round(fraction);
+        whole += carry;
+        fraction -= carry;
+        // если подходит кратное 10^(drop+1), то оно же подходит как кратное 10^drop, поэтому цифры
+        // отбрасываются по одной, пока ближайшие к значению кратные остаются в пределах
+        long unscaled = 0;
+        boolean found = false;
+        for (int drop = 0; drop < digits; drop++) {
+            long step = LONG_POWERS[drop];
+            long below = whole - Math.floorMod(whole, step);
+            long above = below + step;
+            double belowOffset = (below - whole) - fraction;
+            double aboveOffset = (above - whole) - fraction;
+            boolean belowFits = fits(belowOffset, up, down);
+            boolean aboveFits = fits(aboveOffset, up, down);
+            if (!belowFits && !aboveFits) {
+                break;
+            }
+            double belowDistance = Math.abs(belowOffset);
+            double aboveDistance = Math.abs(aboveOffset);
+            if (!aboveFits || belowFits && (belowDistance < aboveDistance
+                    || belowDistance == aboveDistance && (below / step) % 2 == 0)) {
+                unscaled = below;
+            } else {
+                unscaled = above;
+            }
+            found = true;
+        }
+        if (found) {
+            putDecimal(negative, unscaled, scale);
+        }
+        return found;
+    }
+
+    /**
+     * Проверяет, что десятичная запись при разборе дает исходное значение: она отстоит от значения меньше,
+     * чем на половину расстояния до соседнего числа в ту же сторону (с запасом {@link #BOUNDARY_MARGIN}).
+     *
+     * @param offset разность записи и значения (в единицах младшей цифры произведения).
+     * @param up     половина расстояния до следующего числа.
+     * @param down   половина расстояния до предыдущего числа.
+     * @return true, если запись подходит.
+     */
+    private static boolean fits(double offset, double up, double down) {
+        return offset >= 0 ? offset < up * BOUNDARY_MARGIN : -offset < down * BOUNDARY_MARGIN;
+    }
+
+    /**
+     * Записывает десятичную дробь unscaled / 10^scale без лишних нулей в конце дробной части
+     * (хотя бы одна дробная цифра остается).
+     *
+     * @param negative признак отрицательного числа.
+     * @param unscaled цифры числа без точки.
+     * @param scale    количество дробных цифр.
+     */
+    private void putDecimal(boolean negative, long unscaled, int scale) {
+        while (scale > 1 && unscaled % 10 == 0) {
+            unscaled /= 10;
+            scale--;
+        }
+        if (negative) {
+            bytes[position++] = '-';
+        }
+        int digits = digitCount(unscaled);
+        if (digits <= scale) {
+            bytes[position++] = '0';
+            bytes[position++] = '.';
+            for (int i = digits; i < scale; i++) {
+                bytes[position++] = '0';
+            }
+            putDigits(unscaled, digits);
+            return;
+        }
+        int end = position + digits + 1;
+        int index = end;
+        for (int i = 0; i < scale; i++) {
+            bytes[--index] = (byte) ('0' + unscaled % 10);
+            unscaled /= 10;
+        }
+        bytes[--index] = '.';
+        while (index > position) {
+            bytes[--index] = (byte) ('0' + unscaled % 10);
+            unscaled /= 10;
+        }
+        position = end;
+    }
+
+    /**
+     * Записывает дату создания маршрута в формате ZonedDateTime.toString: дата и время ISO-8601, смещение и,
+     * если зона задана не смещением, название зоны в квадратных скобках. Дата вычисляется прямо из момента
+     * времени и кода зоны маршрута, без создания ZonedDateTime.
+     *
+     * @param route маршрут.
+     * @throws IOException если произошла ошибка записи в канал.
+     */
+    private void writeDate(Route route) throws IOException {
+        long epochSecond = route.getCreationEpochSecond();
+        int nano = route.getCreationNano();
+        ZoneOffset offset = ZoneDictionary.offset(route.getCreationZone(), epochSecond);
+        long localSecond = epochSecond + offset.getTotalSeconds();
+        long epochDay = Math.floorDiv(localSecond, SECONDS_PER_DAY);
+        int secondOfDay = (int) Math.floorMod(localSecond, SECONDS_PER_DAY);
+
+        // перевод номера дня эпохи в год, месяц и день григорианского календаря
+        long shifted = epochDay + DAYS_0000_TO_1970;
+        long era = Math.floorDiv(shifted, DAYS_PER_ERA);
+        int dayOfEra = (int) (shifted - era * DAYS_PER_ERA);
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int shiftedMonth = (5 * dayOfYear + 2) / 153;
+        int day = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+        int month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        if (year < 0 || year > 9999) {
+            writeAscii(route.getCreationDate().toString());
+            return;
+        }
+
+        ensure(FIELD_RESERVE);
+        putPadded((int) year, 4);
+        bytes[position++] = '-';
+        putPadded(month, 2);
+        bytes[position++] = '-';
+        putPadded(day, 2);
+        bytes[position++] = 'T';
+        putPadded(secondOfDay / 3600, 2);
+        bytes[position++] = ':';
+        putPadded(secondOfDay / 60 % 60, 2);
+        int second = secondOfDay % 60;
+        if (second > 0 || nano > 0) {
+            bytes[position++] = ':';
+            putPadded(second, 2);
+            if (nano > 0) {
+                bytes[position++] = '.';
+                if (nano % 1_000_000 == 0) {
+                    putPadded(nano / 1_000_000, 3);
+                } else if (nano % 1000 == 0) {
+                    putPadded(nano / 1000, 6);
+                } else {
+                    putPadded(nano, 9);
+                }
+            }
+        }
+        writeAscii(offset.getId());
+        ZoneId zone = ZoneDictionary.decode(route.getCreationZone());
+        if (!(zone instanceof ZoneOffset)) {
+            ensure(1);
+            bytes[position++] = '[';
+            writeString(zone.getId());
+            ensure(1);
+            bytes[position++] = ']';
+        }
+    }
+
+    /**
+     * Записывает строку в кодировке UTF-8; null записывается как "null", как при сложении строк.
+     *
+     * @param value строка.
+     * @throws IOException если произошла ошибка записи в канал.
+     */
+    private void writeString(String value) throws IOException {
+        if (value == null) {
+            value = "null";
+        }
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            if (bytes.length - position < 4) {
+                flush();
+            }
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                bytes[position++] = (byte) c;
+            } else if (c < 0x800) {
+                bytes[position++] = (byte) (0xC0 | c >> 6);
+                bytes[position++] = (byte) (0x80 | c & 0x3F);
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                bytes[position++] = (byte) (0xF0 | codePoint >> 18);
+                bytes[position++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+                bytes[position++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+                bytes[position++] = (byte) (0x80 | codePoint & 0x3F);
+            } else if (Character.isSurrogate(c)) {
+                // одиночный суррогат заменяется так же, как при String.getBytes(UTF_8)
+                bytes[position++] = '?';
+            } else {
+                bytes[position++] = (byte) (0xE0 | c >> 12);
+                bytes[position++] = (byte) (0x80 | c >> 6 & 0x3F);
+                bytes[position++] = (byte) (0x80 | c & 0x3F);
+            }
+        }
+    }
+
+    /**
+     * Записывает строку, состоящую из символов ASCII.
+     *
+     * @param value строка.
+     * @throws IOException если произошла ошибка записи в канал.
+     */
+    private void writeAscii(String value) throws IOException {
+        ensure(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            bytes[position++] = (byte) value.charAt(i);
+        }
+    }
+
+    /**
+     * Записывает неотрицательное число заданным количеством цифр с ведущими нулями.
+     *
+     * @param value  число.
+     * @param digits количество цифр.
+     */
+    private void putPadded(int value, int digits) {
+        for (int index = position + digits - 1; index >= position; index--) {
+            bytes[index] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        position += digits;
+    }
+
+    /**
+     * Записывает цифры неотрицательного числа.
+     *
+     * @param value  число.
+     * @param digits количество цифр числа.
+     */
+    private void putDigits(long value, int digits) {
+        for (int index = position + digits - 1; index >= position; index--) {
+            bytes[index] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        position += digits;
+    }
+
+    /**
+     * Возвращает количество десятичных цифр неотрицательного числа.
+     *
+     * @param value число.
+     * @return количество цифр (не меньше 1).
+     */
+    private static int digitCount(long value) {
+        int digits = 1;
+        for (long bound = 10; digits < 19 && value >= bound; bound *= 10) {
+            digits++;
+        }
+        return digits;
+    }
+
+    /**
+     * Освобождает в буфере место под заданное количество байт, записывая заполненную часть в канал.
+     *
+     * @param size количество байт.
+     * @throws IOException если произошла ошибка записи в канал.
+     */
+    private void ensure(int size) throws IOException {
+        if (bytes.length - position < size) {
+            flush();
+            if (bytes.length < size) {
+                throw new IOException("Поле не помещается в буфер записи: " + size + " байт");
+            }
+        }
+    }
+
+    /**
+     * Записывает заполненную часть буфера в канал.
+     *
+     * @throws IOException если произошла ошибка записи в канал.
+     */
+    public void flush() throws IOException {
+        buffer.clear().limit(position);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        written += position;
+        position = 0;
+    }
+
+    /**
+     * Возвращает количество байт, записанных в канал и ожидающих записи в буфере.
+     *
+     * @return количество байт.
+     */
+    public long size() {
+        return written + position;
+    }
+
+    /**
+     * Записывает оставшиеся данные буфера в канал.
+     *
+     * @throws IOException если произошла ошибка записи в канал.
+     */
+    @Override
+    public void close() throws IOException {
+        flush();
+    }
+}
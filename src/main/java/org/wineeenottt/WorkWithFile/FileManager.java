@@ -2,75 +2,590 @@ package org.wineeenottt.WorkWithFile;
 
 import org.wineeenottt.Collection.Coordinates;
 import org.wineeenottt.Collection.Location;
+import org.wineeenottt.Collection.RouteInterner;
 import org.wineeenottt.Collection.Route;
 
 import java.io.*;
-import java.nio.charset.StandardCharsets;
-import java.time.ZonedDateTime;
-import java.util.HashSet;
-import java.util.Set;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 /**
  * Класс для работы с файлами, содержащими данные о маршрутах.
  * Предоставляет методы для чтения и записи данных в формате CSV.
+ * Вместо одного файла коллекция может храниться в каталоге, разделенной на несколько CSV файлов (частей)
+ * с манифестом {@link ShardManifest}; части читаются и записываются параллельно, по задаче на часть.
+ * Файл коллекции (и файл каждой части) может храниться в блочном сжатом формате {@link BlockCompressedFile};
+ * формат файла при чтении определяется по его началу.
  */
 public class FileManager {
 
+    /**
+     * Системное свойство с количеством частей, на которое делится коллекция при первом сохранении в пустой каталог.
+     * По умолчанию - количество доступных процессоров.
+     */
+    public static final String SHARDS_PROPERTY = "route.shards";
+
+    /**
+     * Системное свойство, включающее (true) или выключающее (false) блочное сжатие при сохранении.
+     * Если свойство не задано, сохраняется формат, в котором коллекция уже хранится.
+     */
+    public static final String COMPRESSION_PROPERTY = "route.compressed";
+
+    /**
+     * Минимальный размер части файла, разбираемой одной задачей, в байтах.
+     */
+    private static final long MIN_CHUNK_SIZE = 1 << 20;
+
+    /**
+     * Количество частей файла на один поток пула, позволяющее выровнять нагрузку между потоками.
+     */
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    /**
+     * Размер буфера, которым ищется конец строки на границе части файла.
+     */
+    private static final int BOUNDARY_SCAN_SIZE = 8192;
+
+    /**
+     * Количество распакованных блоков сжатого файла, которые индекс держит в памяти для чтения маршрутов.
+     */
+    private static final int BLOCK_CACHE_SIZE = 16;
+
+    /**
+     * Пул, через который проходят названия, координаты и места маршрутов при разборе файла.
+     */
+    private final RouteInterner routeInterner;
+
+    /**
+     * Конструктор класса FileManager с собственным пулом разделяемых значений.
+     */
+    public FileManager() {
+        this(new RouteInterner());
+    }
+
+    /**
+     * Конструктор класса FileManager.
+     *
+     * @param routeInterner общий пул разделяемых значений; повторяющиеся названия, координаты и места из файла
+     *                      заменяются его экземплярами.
+     */
+    public FileManager(RouteInterner routeInterner) {
+        this.routeInterner = routeInterner;
+    }
+
+    /**
+     * Проверяет, хранится ли коллекция по указанному пути в каталоге, разделенной на части.
+     *
+     * @param path путь к файлу или каталогу коллекции
+     * @return true, если путь указывает на каталог
+     */
+    public static boolean isSharded(String path) {
+        return Files.isDirectory(Path.of(path));
+    }
+
+    /**
+     * Возвращает время последнего изменения хранилища коллекции: файла или, для каталога, самого позднего
+     * из времен изменения каталога и файлов в нем.
+     *
+     * @param path путь к файлу или каталогу коллекции
+     * @return время изменения в миллисекундах или 0, если хранилища нет
+     */
+    public static long lastModified(String path) {
+        File storage = new File(path);
+        long modified = storage.lastModified();
+        File[] files = storage.isDirectory() ? storage.listFiles() : null;
+        if (files != null) {
+            for (File file : files) {
+                modified = Math.max(modified, file.lastModified());
+            }
+        }
+        return modified;
+    }
+
+    /**
+     * Парсит CSV файл (или каталог с частями коллекции) в общем пуле ForkJoinPool и возвращает список маршрутов
+     * в порядке строк файла.
+     *
+     * @param filePath путь к CSV файлу или каталогу
+     * @return список маршрутов, содержащихся в файле
+     * @throws IOException если произошла ошибка ввода-вывода при чтении файла
+     * @see #parseCsvFile(String, ForkJoinPool)
+     */
+    public List<Route> parseCsvFile(String filePath) throws IOException {
+        return parseCsvFile(filePath, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Парсит CSV файл и возвращает список маршрутов в порядке строк файла.
+     *
+     * @param filePath путь к CSV файлу или каталогу
+     * @param pool     пул, в котором разбираются части файла
+     * @return список маршрутов, содержащихся в файле
+     * @throws IOException если произошла ошибка ввода-вывода при чтении файла
+     * @see #parseCsvFile(String, ForkJoinPool, ChunkConsumer)
+     */
+    public List<Route> parseCsvFile(String filePath, ForkJoinPool pool) throws IOException {
+        List<Route> routes = new ArrayList<>();
+        parseCsvFile(filePath, pool, (chunk, progress) -> routes.addAll(chunk));
+        return routes;
+    }
+
+    /**
+     * Парсит CSV файл и передает маршруты обработчику частями в порядке строк файла, как только очередная часть
+     * разобрана, поэтому начало коллекции доступно до окончания разбора всего файла.
+     * Файл отображается в память и делится на части, выровненные по границам строк; части разбираются
+     * параллельно задачами пула. Сообщения об ошибочных строках выводятся в том же порядке, в каком строки
+     * следуют в файле.
+     * Названия, координаты и места маршрутов заменяются экземплярами из пула разделяемых значений,
+     * поэтому повторяющееся значение хранится в памяти один раз.
+     * Если путь указывает на каталог, каждый файл части, перечисленный в манифесте, разбирается отдельной задачей
+     * пула (пустой каталог без манифеста считается пустой коллекцией); блоки сжатого файла распаковываются
+     * и разбираются параллельно, по задаче на блок.
+     *
+     * @param filePath путь к CSV файлу или каталогу
+     * @param pool     пул, в котором разбираются части файла
+     * @param consumer обработчик частей маршрутов
+     * @throws IOException если в непустом каталоге нет манифеста или произошла ошибка ввода-вывода при чтении файла
+     */
+    public void parseCsvFile(String filePath, ForkJoinPool pool, ChunkConsumer consumer) throws IOException {
+        List<ForkJoinTask<ParsedChunk>> tasks;
+        if (isSharded(filePath)) {
+            tasks = submitShards(Path.of(filePath), pool);
+        } else if (BlockCompressedFile.isCompressed(Path.of(filePath))) {
+            tasks = submitBlocks(BlockCompressedFile.open(Path.of(filePath)), pool);
+        } else {
+            tasks = new ArrayList<>();
+            try (FileChannel channel = FileChannel.open(Path.of(filePath), StandardOpenOption.READ)) {
+                long[] bounds = chunkBounds(channel, pool.getParallelism());
+                for (int i = 0; i + 1 < bounds.length; i++) {
+                    MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, bounds[i], bounds[i + 1] - bounds[i]);
+                    boolean hasHeader = i == 0;
+                    tasks.add(pool.submit(() -> parseChunk(chunk, hasHeader)));
+                }
+            }
+        }
+        for (int i = 0; i < tasks.size(); i++) {
+            ParsedChunk chunk = await(tasks.get(i));
+            for (String error : chunk.errors) {
+                System.err.println(error);
+            }
+            consumer.accept(chunk.routes, (i + 1.0) / tasks.size());
+        }
+    }
+
+    /**
+     * Запускает разбор блоков сжатого файла, по задаче пула на блок.
+     *
+     * @param file открытый сжатый файл
+     * @param pool пул, в котором разбираются блоки
+     * @return задачи разбора в порядке блоков
+     */
+    private List<ForkJoinTask<ParsedChunk>> submitBlocks(BlockCompressedFile file, ForkJoinPool pool) {
+        List<ForkJoinTask<ParsedChunk>> tasks = new ArrayList<>(file.blockCount());
+        for (int block = 0; block < file.blockCount(); block++) {
+            int index = block;
+            tasks.add(pool.submit(() -> parseChunk(file.block(index), index == 0)));
+        }
+        return tasks;
+    }
+
+    /**
+     * Запускает разбор файлов частей, перечисленных в манифесте каталога, по задаче пула на файл.
+     *
+     * @param directory каталог с частями коллекции
+     * @param pool      пул, в котором разбираются файлы частей
+     * @return задачи разбора в порядке частей; пустой список для пустого каталога без манифеста
+     * @throws IOException если в непустом каталоге нет манифеста
+     */
+    private List<ForkJoinTask<ParsedChunk>> submitShards(Path directory, ForkJoinPool pool) throws IOException {
+        ShardManifest manifest = ShardManifest.read(directory);
+        if (manifest == null) {
+            requireEmpty(directory);
+            return new ArrayList<>();
+        }
+        List<ForkJoinTask<ParsedChunk>> tasks = new ArrayList<>();
+        for (String file : manifest.getFiles()) {
+            Path shard = directory.resolve(file);
+            tasks.add(pool.submit(() -> parseShard(shard)));
+        }
+        return tasks;
+    }
 
     /**
-     * Парсит CSV файл и возвращает набор маршрутов.
+     * Строит индекс маршрутов CSV файла (или каталога с частями коллекции) в общем пуле ForkJoinPool.
      *
-     * @param filePath путь к CSV файлу
-     * @return набор маршрутов, содержащихся в файле
+     * @param filePath путь к CSV файлу или каталогу
+     * @return индекс маршрутов файла
      * @throws IOException если произошла ошибка ввода-вывода при чтении файла
+     * @see #indexCsvFile(String, ForkJoinPool)
      */
-    public Set<Route> parseCsvFile(String filePath) throws IOException {
-        Set<Route> routes = new HashSet<>();
-
-        try (BufferedInputStream inputStream = new BufferedInputStream(new FileInputStream(filePath));
-             BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
-            boolean isFirstLine = true;
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (isFirstLine) {
-                    isFirstLine = false;
-                    continue;
+    public RouteFileIndex indexCsvFile(String filePath) throws IOException {
+        return indexCsvFile(filePath, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Строит индекс маршрутов CSV файла без построения самих маршрутов. Файл (или каждый файл части каталога)
+     * отображается в память и делится на страницы так же, как при разборе; страницы индексируются параллельно
+     * задачами пула. Из каждой строки разбираются только ID и расстояние, остальные поля проверяются лишь
+     * по количеству; строка целиком разбирается, когда маршрут впервые запрашивается из индекса.
+     * Отображения страниц остаются в индексе до тех пор, пока он используется. Блоки сжатого файла
+     * распаковываются для индексирования параллельно и не сохраняются; при чтении маршрута распаковывается
+     * только его блок, а последние {@value #BLOCK_CACHE_SIZE} распакованных блоков остаются в памяти.
+     * Декодированные маршруты не проходят через пул разделяемых значений, чтобы пул не рос при каждом обходе
+     * коллекции.
+     *
+     * @param filePath путь к CSV файлу или каталогу
+     * @param pool     пул, в котором индексируются страницы
+     * @return индекс маршрутов файла
+     * @throws IOException если в непустом каталоге нет манифеста или произошла ошибка чтения файла
+     */
+    public RouteFileIndex indexCsvFile(String filePath, ForkJoinPool pool) throws IOException {
+        List<Path> files = new ArrayList<>();
+        if (isSharded(filePath)) {
+            Path directory = Path.of(filePath);
+            ShardManifest manifest = ShardManifest.read(directory);
+            if (manifest == null) {
+                requireEmpty(directory);
+                return RouteFileIndex.empty();
+            }
+            for (String file : manifest.getFiles()) {
+                files.add(directory.resolve(file));
+            }
+        } else {
+            files.add(Path.of(filePath));
+        }
+
+        List<Page> pages = new ArrayList<>();
+        List<ForkJoinTask<IndexedChunk>> tasks = new ArrayList<>();
+        for (Path file : files) {
+            if (BlockCompressedFile.isCompressed(file)) {
+                BlockCompressedFile compressed = BlockCompressedFile.open(file);
+                for (int block = 0; block < compressed.blockCount(); block++) {
+                    int index = block;
+                    Page page = () -> compressed.block(index);
+                    pages.add(page);
+                    tasks.add(pool.submit(() -> indexChunk(page.load(), index == 0)));
                 }
-                String[] fields = line.split(",");
-                if (fields.length < 14) {
-                    System.err.println("Ошибка: некорректный формат строки в CSV файле");
-                    continue;
+                continue;
+            }
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                long[] bounds = chunkBounds(channel, pool.getParallelism());
+                for (int i = 0; i + 1 < bounds.length; i++) {
+                    MappedByteBuffer page = channel.map(FileChannel.MapMode.READ_ONLY, bounds[i], bounds[i + 1] - bounds[i]);
+                    boolean hasHeader = i == 0;
+                    pages.add(() -> page);
+                    tasks.add(pool.submit(() -> indexChunk(page, hasHeader)));
                 }
+            }
+        }
 
+        int total = 0;
+        List<IndexedChunk> chunks = new ArrayList<>(tasks.size());
+        for (ForkJoinTask<IndexedChunk> task : tasks) {
+            IndexedChunk chunk = await(task);
+            for (String error : chunk.errors) {
+                System.err.println(error);
+            }
+            chunks.add(chunk);
+            total += chunk.count;
+        }
+        int[] ids = new int[total];
+        long[] positions = new long[total];
+        long[] distances = new long[total];
+        int count = 0;
+        for (int page = 0; page < chunks.size(); page++) {
+            IndexedChunk chunk = chunks.get(page);
+            System.arraycopy(chunk.ids, 0, ids, count, chunk.count);
+            System.arraycopy(chunk.distances, 0, distances, count, chunk.count);
+            for (int i = 0; i < chunk.count; i++) {
+                positions[count + i] = (long) page << 32 | chunk.offsets[i];
+            }
+            count += chunk.count;
+        }
+
+        CsvTokenizer tokenizer = new CsvTokenizer(ByteBuffer.allocate(0));
+        List<String> errors = new ArrayList<>(1);
+        Map<Integer, ByteBuffer> loaded = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, ByteBuffer> eldest) {
+                return size() > BLOCK_CACHE_SIZE;
+            }
+        };
+        return RouteFileIndex.of(ids, positions, distances, count, position -> {
+            int page = (int) (position >>> 32);
+            ByteBuffer bytes = loaded.get(page);
+            if (bytes == null) {
                 try {
-                    int id = Integer.parseInt(fields[0].trim());
-                    String name = fields[1].trim();
-                    double coordX = Double.parseDouble(fields[2].trim());
-                    float coordY = Float.parseFloat(fields[3].trim());
-                    ZonedDateTime creationDate = ZonedDateTime.parse(fields[4].trim());
-                    float locFromX = Float.parseFloat(fields[5].trim());
-                    int locFromY = Integer.parseInt(fields[6].trim());
-                    double locFromZ = Double.parseDouble(fields[7].trim());
-                    String locFromName = fields[8].trim();
-
-                    float locToX = Float.parseFloat(fields[9].trim());
-                    int locToY = Integer.parseInt(fields[10].trim());
-                    double locToZ = Double.parseDouble(fields[11].trim());
-                    String locToName = fields[12].trim();
-                    long distance = Long.parseLong(fields[13].trim());
-
-                    Coordinates coordinates = new Coordinates(coordX, coordY);
-                    Location from = new Location(locFromX, locFromY, locFromZ, locFromName);
-                    Location to = new Location(locToX, locToY, locToZ, locToName);
-                    Route route = new Route(id, name, coordinates, creationDate, from, to, distance);
-
-                    routes.add(route);
-                } catch (Exception e) {
-                    System.err.println("Ошибка при разборе строки: " + e.getMessage());
+                    bytes = pages.get(page).load();
+                } catch (IOException e) {
+                    System.err.println("Ошибка при чтении файла: " + e.getMessage());
+                    return null;
                 }
+                loaded.put(page, bytes);
+            }
+            tokenizer.reset(bytes, (int) position);
+            tokenizer.nextLine();
+            Route route = parseLine(tokenizer, errors);
+            for (String error : errors) {
+                System.err.println(error);
             }
+            errors.clear();
+            return route;
+        });
+    }
+
+    /**
+     * Индексирует страницу файла: запоминает начало, ID и расстояние каждой строки.
+     *
+     * @param chunk     байты страницы файла
+     * @param hasHeader true, если первая строка страницы - заголовок файла
+     * @return записи индекса и сообщения об ошибках страницы в порядке строк
+     */
+    private IndexedChunk indexChunk(ByteBuffer chunk, boolean hasHeader) {
+        IndexedChunk result = new IndexedChunk();
+        CsvTokenizer tokenizer = new CsvTokenizer(chunk);
+        if (hasHeader) {
+            tokenizer.nextLine();
+        }
+        while (tokenizer.nextLine()) {
+            if (tokenizer.fieldCount() < 14) {
+                result.errors.add("Ошибка: некорректный формат строки в CSV файле");
+                continue;
+            }
+            try {
+                tokenizer.nextField();
+                int id = tokenizer.parseInt();
+                for (int field = 1; field < 14; field++) {
+                    tokenizer.nextField();
+                }
+                result.add(tokenizer.lineStart(), id, tokenizer.parseLong());
+            } catch (Exception e) {
+                result.errors.add("Ошибка при разборе строки: " + e.getMessage());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Проверяет, что каталог без манифеста пуст и поэтому считается пустой коллекцией.
+     *
+     * @param directory каталог с частями коллекции
+     * @throws IOException если в каталоге есть файлы
+     */
+    private static void requireEmpty(Path directory) throws IOException {
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+            if (entries.iterator().hasNext()) {
+                throw new IOException("В каталоге " + directory + " нет манифеста " + ShardManifest.FILE_NAME);
+            }
+        }
+    }
+
+    /**
+     * Разбирает файл части коллекции в текущем потоке.
+     *
+     * @param path путь к файлу части
+     * @return маршруты и сообщения об ошибках в порядке строк файла
+     * @throws IOException если произошла ошибка ввода-вывода при чтении файла
+     */
+    private ParsedChunk parseShard(Path path) throws IOException {
+        ParsedChunk result = new ParsedChunk();
+        if (BlockCompressedFile.isCompressed(path)) {
+            BlockCompressedFile file = BlockCompressedFile.open(path);
+            for (int block = 0; block < file.blockCount(); block++) {
+                ParsedChunk chunk = parseChunk(file.block(block), block == 0);
+                result.routes.addAll(chunk.routes);
+                result.errors.addAll(chunk.errors);
+            }
+            return result;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long[] bounds = chunkBounds(channel, 1);
+            for (int i = 0; i + 1 < bounds.length; i++) {
+                ParsedChunk chunk = parseChunk(channel.map(FileChannel.MapMode.READ_ONLY, bounds[i], bounds[i + 1] - bounds[i]), i == 0);
+                result.routes.addAll(chunk.routes);
+                result.errors.addAll(chunk.errors);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Ждет окончания задачи пула и возвращает ее результат; ошибка ввода-вывода задачи пробрасывается как есть,
+     * даже если пул обернул ее в RuntimeException.
+     *
+     * @param task задача
+     * @param <T>  тип результата
+     * @return результат задачи
+     * @throws IOException если задача завершилась ошибкой ввода-вывода или ожидание было прервано
+     */
+    private static <T> T await(ForkJoinTask<T> task) throws IOException {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Ожидание чтения или записи части коллекции прервано");
+        } catch (ExecutionException e) {
+            for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Делит файл на части, каждая из которых заканчивается концом строки (или концом файла).
+     *
+     * @param channel     канал открытого файла
+     * @param parallelism количество потоков, между которыми распределяются части
+     * @return границы частей: часть i занимает байты с bounds[i] (включительно) по bounds[i + 1] (не включительно)
+     * @throws IOException если произошла ошибка ввода-вывода при чтении файла
+     */
+    private long[] chunkBounds(FileChannel channel, int parallelism) throws IOException {
+        long size = channel.size();
+        long target = Math.max(MIN_CHUNK_SIZE, size / ((long) Math.max(1, parallelism) * CHUNKS_PER_THREAD));
+        target = Math.min(target, Integer.MAX_VALUE - BOUNDARY_SCAN_SIZE);
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(0L);
+        long start = 0;
+        ByteBuffer scan = ByteBuffer.allocate(BOUNDARY_SCAN_SIZE);
+        while (start < size) {
+            long end = start + target;
+            if (end >= size) {
+                end = size;
+            } else {
+                end = nextLineStart(channel, end, scan);
+            }
+            bounds.add(end);
+            start = end;
+        }
+        if (bounds.size() == 1) {
+            bounds.add(0L);
+        }
+        return bounds.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    /**
+     * Находит начало строки, следующей за позицией.
+     *
+     * @param channel  канал открытого файла
+     * @param position позиция, с которой начинается поиск символа перевода строки
+     * @param scan     буфер для чтения
+     * @return позиция после ближайшего символа перевода строки или размер файла, если его нет
+     * @throws IOException если произошла ошибка ввода-вывода при чтении файла
+     */
+    private long nextLineStart(FileChannel channel, long position, ByteBuffer scan) throws IOException {
+        while (true) {
+            scan.clear();
+            int read = channel.read(scan, position);
+            if (read <= 0) {
+                return channel.size();
+            }
+            for (int i = 0; i < read; i++) {
+                if (scan.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+    }
+
+    /**
+     * Разбирает часть файла построчно побайтовым разборщиком {@link CsvTokenizer}.
+     *
+     * @param chunk     байты части файла
+     * @param hasHeader true, если первая строка части - заголовок файла
+     * @return маршруты и сообщения об ошибках части в порядке строк
+     */
+    private ParsedChunk parseChunk(ByteBuffer chunk, boolean hasHeader) {
+        ParsedChunk result = new ParsedChunk();
+        CsvTokenizer tokenizer = new CsvTokenizer(chunk);
+        if (hasHeader) {
+            tokenizer.nextLine();
+        }
+        while (tokenizer.nextLine()) {
+            Route route = parseLine(tokenizer, result.errors);
+            if (route != null) {
+                routeInterner.intern(route);
+                result.routes.add(route);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Разбирает текущую строку разборщика в маршрут. Числа разбираются прямо из байт,
+     * строки создаются только для названий. Значения маршрута не проходят через пул разделяемых значений.
+     *
+     * @param tokenizer разборщик, стоящий на строке файла
+     * @param errors    список, в который добавляется сообщение, если строку не удалось разобрать
+     * @return маршрут или null, если строка некорректна
+     */
+    private Route parseLine(CsvTokenizer tokenizer, List<String> errors) {
+        if (tokenizer.fieldCount() < 14) {
+            errors.add("Ошибка: некорректный формат строки в CSV файле");
+            return null;
+        }
+
+        try {
+            tokenizer.nextField();
+            int id = tokenizer.parseInt();
+            tokenizer.nextField();
+            String name = tokenizer.string();
+            tokenizer.nextField();
+            double coordX = tokenizer.parseDouble();
+            tokenizer.nextField();
+            float coordY = tokenizer.parseFloat();
+            tokenizer.nextField();
+            long creationDate = tokenizer.parseDate();
+            int creationZone = tokenizer.dateZone();
+            tokenizer.nextField();
+            float locFromX = tokenizer.parseFloat();
+            tokenizer.nextField();
+            int locFromY = tokenizer.parseInt();
+            tokenizer.nextField();
+            double locFromZ = tokenizer.parseDouble();
+            tokenizer.nextField();
+            String locFromName = tokenizer.string();
+
+            tokenizer.nextField();
+            float locToX = tokenizer.parseFloat();
+            tokenizer.nextField();
+            int locToY = tokenizer.parseInt();
+            tokenizer.nextField();
+            double locToZ = tokenizer.parseDouble();
+            tokenizer.nextField();
+            String locToName = tokenizer.string();
+            tokenizer.nextField();
+            long distance = tokenizer.parseLong();
+
+            Coordinates coordinates = new Coordinates(coordX, coordY);
+            Location from = new Location(locFromX, locFromY, locFromZ, locFromName);
+            Location to = new Location(locToX, locToY, locToZ, locToName);
+            return new Route(id, name, coordinates, creationDate, creationZone, from, to, distance);
+        } catch (Exception e) {
+            errors.add("Ошибка при разборе строки: " + e.getMessage());
+            return null;
         }
-        return routes;
     }
 
     /**
@@ -79,39 +594,168 @@ public class FileManager {
      * @param filePath путь к файлу, в который будут записаны данные
      * @param routes   набор маршрутов для записи
      */
-    public void parseToCsv(String filePath, Set<Route> routes) {
-        try (FileWriter writer = new FileWriter(filePath)) {
-
-            writer.write("id,name,coordinateX,coordinateY,creationDate,fromX,fromY,fromZ,fromName,toX,toY,toZ,toName,distance\n");
-
-            for (Route route : routes) {
-                writer.write(route.getId() + "," +
-                        route.getName() + "," +
-                        route.getCoordinates().getX() + "," +
-                        route.getCoordinates().getY() + "," +
-                        route.getCreationDate() + "," +
-                        route.getFrom().getX() + "," +
-                        route.getFrom().getY() + "," +
-                        route.getFrom().getZ() + "," +
-                        route.getFrom().getName() + "," +
-                        route.getTo().getX() + "," +
-                        route.getTo().getY() + "," +
-                        route.getTo().getZ() + "," +
-                        route.getTo().getName() + "," +
-                        route.getDistance() + "\n");
-            }
+    public void parseToCsv(String filePath, Iterable<Route> routes) {
+        try {
+            writeCsv(filePath, routes);
         } catch (IOException e) {
             System.err.println("Ошибка при записи в файл: " + e.getMessage());
         }
     }
 
+    /**
+     * Записывает набор маршрутов в CSV файл (или каталог с частями коллекции), используя общий пул ForkJoinPool.
+     *
+     * @param filePath путь к файлу или каталогу, в который будут записаны данные
+     * @param routes   набор маршрутов для записи
+     * @throws IOException если произошла ошибка ввода-вывода при записи
+     * @see #writeCsv(String, Iterable, ForkJoinPool)
+     */
+    public void writeCsv(String filePath, Iterable<Route> routes) throws IOException {
+        writeCsv(filePath, routes, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Записывает набор маршрутов в CSV файл в кодировке UTF-8. Строки кодируются {@link CsvWriter} в байтовый буфер
+     * и записываются в канал файла крупными блоками. Данные сначала записываются во временный файл рядом с целевым
+     * и сбрасываются на диск, затем временный файл атомарно заменяет целевой, поэтому при сбое во время записи
+     * прежнее содержимое файла сохраняется.
+     * Если включено блочное сжатие (см. {@value #COMPRESSION_PROPERTY}), файл записывается в формате
+     * {@link BlockCompressedFile}, а блоки сжимаются задачами пула.
+     * Если путь указывает на каталог, маршруты делятся на части, которые записываются параллельно
+     * (см. {@link #writeShards(Path, Iterable, ForkJoinPool)}).
+     *
+     * @param filePath путь к файлу или каталогу, в который будут записаны данные
+     * @param routes   набор маршрутов для записи
+     * @param pool     пул, в котором записываются части каталога
+     * @throws IOException если произошла ошибка ввода-вывода при записи
+     */
+    public void writeCsv(String filePath, Iterable<Route> routes, ForkJoinPool pool) throws IOException {
+        if (isSharded(filePath)) {
+            writeShards(Path.of(filePath), routes, pool);
+            return;
+        }
+        Path target = Path.of(filePath);
+        Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+        writeFile(temporary, routes, isCompressionEnabled(target), pool);
+        Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Записывает маршруты в каталог частями. Маршрут попадает в часть по хешу ID ({@link ShardManifest#shardOf});
+     * количество частей берется из текущего манифеста, а для пустого каталога - из системного свойства
+     * {@value #SHARDS_PROPERTY}. Файлы частей нового поколения записываются параллельно, по задаче пула на часть,
+     * после чего новый манифест атомарно заменяет прежний и файлы прежнего поколения удаляются.
+     * Блоки сжатой части сжимаются в задаче этой части.
+     *
+     * @param directory каталог с частями коллекции
+     * @param routes    набор маршрутов для записи
+     * @param pool      пул, в котором записываются части
+     * @throws IOException если произошла ошибка ввода-вывода при записи
+     */
+    private void writeShards(Path directory, Iterable<Route> routes, ForkJoinPool pool) throws IOException {
+        ShardManifest previous = ShardManifest.read(directory);
+        int shards = previous != null ? previous.getShardCount()
+                : Math.max(1, Integer.getInteger(SHARDS_PROPERTY, Runtime.getRuntime().availableProcessors()));
+        long generation = previous == null ? 1 : previous.getGeneration() + 1;
+        boolean compressed = isCompressionEnabled(previous == null ? null : directory.resolve(previous.getFiles().get(0)));
+
+        List<List<Route>> parts = new ArrayList<>(shards);
+        for (int shard = 0; shard < shards; shard++) {
+            parts.add(new ArrayList<>());
+        }
+        for (Route route : routes) {
+            parts.get(ShardManifest.shardOf(route.getId(), shards)).add(route);
+        }
+
+        List<String> files = new ArrayList<>(shards);
+        List<Long> rows = new ArrayList<>(shards);
+        List<ForkJoinTask<Void>> tasks = new ArrayList<>(shards);
+        for (int shard = 0; shard < shards; shard++) {
+            List<Route> part = parts.get(shard);
+            Path file = directory.resolve(ShardManifest.fileName(generation, shard));
+            files.add(file.getFileName().toString());
+            rows.add((long) part.size());
+            tasks.add(pool.submit(() -> {
+                writeFile(file, part, compressed, null);
+                return null;
+            }));
+        }
+        try {
+            for (ForkJoinTask<Void> task : tasks) {
+                await(task);
+            }
+            new ShardManifest(generation, files, rows).write(directory);
+        } catch (IOException | RuntimeException e) {
+            for (ForkJoinTask<Void> task : tasks) {
+                task.quietlyJoin();
+            }
+            for (String file : files) {
+                Files.deleteIfExists(directory.resolve(file));
+            }
+            throw e;
+        }
+        if (previous != null) {
+            for (String file : previous.getFiles()) {
+                if (!files.contains(file)) {
+                    Files.deleteIfExists(directory.resolve(file));
+                }
+            }
+        }
+    }
+
+    /**
+     * Записывает маршруты в файл с заголовком и сбрасывает его на диск.
+     *
+     * @param path       путь к файлу
+     * @param routes     набор маршрутов для записи
+     * @param compressed true, если файл записывается в блочном сжатом формате
+     * @param pool       пул, в котором сжимаются блоки, или null, чтобы сжимать их в текущем потоке
+     * @throws IOException если произошла ошибка ввода-вывода при записи
+     */
+    private void writeFile(Path path, Iterable<Route> routes, boolean compressed, ForkJoinPool pool) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            if (compressed) {
+                try (BlockCompressedFile.Writer writer = new BlockCompressedFile.Writer(channel, pool)) {
+                    for (Route route : routes) {
+                        writer.writeRoute(route);
+                    }
+                }
+            } else {
+                try (CsvWriter writer = new CsvWriter(channel)) {
+                    writer.writeHeader();
+                    for (Route route : routes) {
+                        writer.writeRoute(route);
+                    }
+                }
+            }
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Определяет, записывать ли файл в блочном сжатом формате: по системному свойству
+     * {@value #COMPRESSION_PROPERTY}, а если оно не задано - по формату текущего файла.
+     *
+     * @param current текущий файл коллекции или части, либо null, если его нет
+     * @return true, если файл нужно сжать
+     * @throws IOException если не удалось прочитать начало текущего файла
+     */
+    private static boolean isCompressionEnabled(Path current) throws IOException {
+        String property = System.getProperty(COMPRESSION_PROPERTY);
+        if (property != null) {
+            return Boolean.parseBoolean(property);
+        }
+        return current != null && BlockCompressedFile.isCompressed(current);
+    }
+
     /**
      * Находит максимальный ID среди маршрутов.
      *
      * @param routes набор маршрутов
      * @return максимальный ID или -1, если набор пуст
      */
-    public int findMaxId(Set<Route> routes) {
+    public int findMaxId(Collection<Route> routes) {
         int maxId = -1;
         for (Route route : routes) {
             if (route.getId() > maxId) {
@@ -120,4 +764,100 @@ public class FileManager {
         }
         return maxId;
     }
+
+    /**
+     * Обработчик маршрутов, получаемых при разборе файла частями.
+     */
+    @FunctionalInterface
+    public interface ChunkConsumer {
+
+        /**
+         * Получает очередную часть маршрутов.
+         *
+         * @param routes   маршруты части в порядке строк файла
+         * @param progress доля разобранных частей файла, от 0 до 1
+         */
+        void accept(List<Route> routes, double progress);
+    }
+
+    /**
+     * Страница индекса: отображенная в память часть файла или блок сжатого файла, распаковываемый при обращении.
+     */
+    @FunctionalInterface
+    private interface Page {
+
+        /**
+         * Возвращает байты страницы.
+         *
+         * @return байты страницы
+         * @throws IOException если блок сжатого файла поврежден
+         */
+        ByteBuffer load() throws IOException;
+    }
+
+    /**
+     * Результат разбора части файла.
+     */
+    private static final class ParsedChunk {
+
+        /**
+         * Маршруты части в порядке строк.
+         */
+        private final List<Route> routes = new ArrayList<>();
+
+        /**
+         * Сообщения об ошибочных строках части в порядке строк.
+         */
+        private final List<String> errors = new ArrayList<>();
+    }
+
+    /**
+     * Результат индексирования страницы файла.
+     */
+    private static final class IndexedChunk {
+
+        /**
+         * Смещения начал строк от начала страницы.
+         */
+        private int[] offsets = new int[1024];
+
+        /**
+         * ID маршрутов строк.
+         */
+        private int[] ids = new int[1024];
+
+        /**
+         * Расстояния маршрутов строк.
+         */
+        private long[] distances = new long[1024];
+
+        /**
+         * Количество проиндексированных строк.
+         */
+        private int count;
+
+        /**
+         * Сообщения об ошибочных строках страницы в порядке строк.
+         */
+        private final List<String> errors = new ArrayList<>();
+
+        /**
+         * Добавляет запись индекса, расширяя массивы при необходимости.
+         *
+         * @param offset   смещение начала строки
+         * @param id       ID маршрута
+         * @param distance расстояние маршрута
+         */
+        private void add(int offset, int id, long distance) {
+            if (count == ids.length) {
+                offsets = Arrays.copyOf(offsets, count * 2);
+                ids = Arrays.copyOf(ids, count * 2);
+                distances = Arrays.copyOf(distances, count * 2);
+            }
+            offsets[count] = offset;
+            ids[count] = id;
+            distances[count] = distance;
+            count++;
+        }
+    }
 }
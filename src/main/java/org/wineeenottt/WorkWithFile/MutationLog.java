@@ -0,0 +1,780 @@
+package org.wineeenottt.WorkWithFile;
+
+import org.wineeenottt.Collection.Coordinates;
+import org.wineeenottt.Collection.Location;
+import org.wineeenottt.Collection.Route;
+import org.wineeenottt.Collection.RouteStore;
+import org.wineeenottt.Collection.TreeRouteStore;
+import org.wineeenottt.Collection.ZoneDictionary;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+/**
+ * Класс MutationLog - журнал изменений коллекции (write-ahead log), который хранится рядом с CSV файлом
+ * ({@code <файл>.wal}). Каждая изменяющая команда дописывает в журнал одну короткую запись вместо перезаписи всего файла,
+ * а при запуске журнал применяется поверх загруженной коллекции.
+ * <p>
+ * Формат записи (порядок байт big-endian): длина данных (int), контрольная сумма CRC32 данных (int), данные:
+ * номер записи (long), тип записи (byte) и поля записи. Запись маршрута содержит все его поля, поэтому добавление
+ * и изменение маршрута записываются одинаково. Все записи идемпотентны: повторное применение журнала к коллекции,
+ * уже содержащей его изменения, не меняет коллекцию.
+ * <p>
+ * Запись становится долговечной после сброса файла на диск. Сброс выполняется групповой фиксацией: поток,
+ * который первым ждет своей записи, сбрасывает на диск все накопленные к этому моменту записи,
+ * а остальные потоки ждут окончания этого сброса.
+ * <p>
+ * Когда журнал вырастает больше порога (системное свойство {@value #COMPACTION_PROPERTY}, в байтах),
+ * он уплотняется: текущий файл журнала переименовывается в {@code <файл>.wal.old} ({@link #seal()}),
+ * новые записи идут в новый файл, а {@link BackgroundSaver} записывает копию коллекции в двоичный снимок
+ * {@link RouteSnapshot} с номером последней учтенной записи; после этого старый файл журнала удаляется
+ * ({@link #compacted(boolean)}).
+ */
+public class MutationLog {
+
+    /**
+     * Системное свойство, задающее размер журнала в байтах, после которого журнал уплотняется в снимок.
+     */
+    public static final String COMPACTION_PROPERTY = "route.wal.compactionBytes";
+
+    /**
+     * Размер журнала по умолчанию, после которого журнал уплотняется в снимок.
+     */
+    private static final long DEFAULT_COMPACTION_BYTES = 4L << 20;
+
+    /**
+     * Расширение файла журнала.
+     */
+    private static final String EXTENSION = ".wal";
+
+    /**
+     * Расширение файла журнала, который уплотняется в снимок.
+     */
+    private static final String SEALED_EXTENSION = ".wal.old";
+
+    /**
+     * Длина заголовка записи в байтах: длина данных и контрольная сумма.
+     */
+    private static final int RECORD_HEADER_SIZE = 8;
+
+    /**
+     * Наибольшая длина данных записи в байтах.
+     */
+    private static final int MAX_RECORD_SIZE = 1 << 20;
+
+    /**
+     * Тип записи: маршрут добавлен или изменен.
+     */
+    private static final byte PUT = 1;
+
+    /**
+     * Тип записи: маршрут удален по ID.
+     */
+    private static final byte REMOVE = 2;
+
+    /**
+     * Тип записи: удалены маршруты с ID больше указанного.
+     */
+    private static final byte REMOVE_GREATER = 3;
+
+    /**
+     * Тип записи: коллекция очищена.
+     */
+    private static final byte CLEAR = 4;
+
+    /**
+     * Путь к CSV файлу коллекции.
+     */
+    private final String csvPath;
+
+    /**
+     * Путь к файлу журнала.
+     */
+    private final Path activePath;
+
+    /**
+     * Путь к файлу журнала, который уплотняется в снимок.
+     */
+    private final Path sealedPath;
+
+    /**
+     * Размер журнала в байтах, после которого журнал уплотняется в снимок.
+     */
+    private final long compactionBytes;
+
+    /**
+     * Монитор, защищающий состояние журнала.
+     */
+    private final Object lock = new Object();
+
+    /**
+     * Канал файла журнала или null, если журнал не открыт.
+     */
+    private FileChannel channel;
+
+    /**
+     * Записи, добавленные в журнал, но еще не записанные в файл.
+     */
+    private ByteBuffer pending = ByteBuffer.allocate(1 << 12);
+
+    /**
+     * Свободный буфер, который заменяет буфер накопленных записей на время сброса.
+     */
+    private ByteBuffer spare = ByteBuffer.allocate(1 << 12);
+
+    /**
+     * Позиция в буфере накопленных записей, с которой начинается записываемая запись.
+     */
+    private int recordStart;
+
+    /**
+     * Номер последней добавленной записи.
+     */
+    private long lastLsn;
+
+    /**
+     * Номер последней записи, сброшенной на диск.
+     */
+    private long durableLsn;
+
+    /**
+     * Признак того, что какой-либо поток сейчас сбрасывает записи на диск.
+     */
+    private boolean flushing;
+
+    /**
+     * Ошибка сброса, после которой журнал больше не принимает записи, или null.
+     */
+    private IOException failure;
+
+    /**
+     * Размер файла журнала в байтах вместе с накопленными записями.
+     */
+    private long activeBytes;
+
+    /**
+     * Признак того, что журнал уплотняется в снимок.
+     */
+    private boolean compacting;
+
+    /**
+     * Конструктор класса MutationLog. Журнал начинает принимать записи после {@link #recover(List, long)}.
+     *
+     * @param csvPath путь к CSV файлу коллекции.
+     */
+    public MutationLog(String csvPath) {
+        this.csvPath = csvPath;
+        this.activePath = Path.of(csvPath + EXTENSION);
+        this.sealedPath = Path.of(csvPath + SEALED_EXTENSION);
+        this.compactionBytes = Long.getLong(COMPACTION_PROPERTY, DEFAULT_COMPACTION_BYTES);
+    }
+
+    /**
+     * Применяет журнал к загруженной коллекции и открывает журнал для записи.
+     * Записи с номером не больше номера, учтенного в снимке, пропускаются. Чтение файла останавливается на первой
+     * неполной или поврежденной записи (например, дописанной не до конца при сбое), и файл журнала обрезается по ней.
+     *
+     * @param routes  маршруты, загруженные из снимка или CSV файла.
+     * @param baseLsn номер последней записи журнала, учтенной в загруженных маршрутах (0 для CSV файла).
+     * @return маршруты с примененными изменениями; исходный список, если применять нечего.
+     * @throws IOException если произошла ошибка ввода-вывода при чтении или открытии журнала.
+     */
+    public List<Route> recover(List<Route> routes, long baseLsn) throws IOException {
+        RouteStore state = replay(baseLsn, () -> {
+            TreeRouteStore store = new TreeRouteStore();
+            for (Route route : routes) {
+                store.put(route);
+            }
+            return store;
+        });
+        if (state == null) {
+            return routes;
+        }
+        List<Route> recovered = new ArrayList<>(state.size());
+        for (Route route : state) {
+            recovered.add(route);
+        }
+        return recovered;
+    }
+
+    /**
+     * Применяет журнал прямо к хранилищу загруженной коллекции и открывает журнал для записи.
+     * Правила чтения журнала те же, что и в {@link #recover(List, long)}.
+     *
+     * @param store   хранилище с маршрутами, загруженными из снимка или CSV файла.
+     * @param baseLsn номер последней записи журнала, учтенной в загруженных маршрутах (0 для CSV файла).
+     * @return true, если к хранилищу применена хотя бы одна запись.
+     * @throws IOException если произошла ошибка ввода-вывода при чтении или открытии журнала.
+     */
+    public boolean recover(RouteStore store, long baseLsn) throws IOException {
+        return replay(baseLsn, () -> store) != null;
+    }
+
+    /**
+     * Применяет записи журнала с номером больше учтенного к хранилищу и открывает журнал для записи.
+     *
+     * @param baseLsn номер последней записи журнала, учтенной в загруженных маршрутах.
+     * @param target  поставщик хранилища, к которому применяются записи; вызывается один раз перед первой записью.
+     * @return хранилище, к которому применялись записи, или null, если применять было нечего.
+     * @throws IOException если произошла ошибка ввода-вывода при чтении или открытии журнала.
+     */
+    private RouteStore replay(long baseLsn, Supplier<RouteStore> target) throws IOException {
+        RouteStore state = null;
+        long maxLsn = baseLsn;
+        int applied = 0;
+        HashMap<String, Integer> zones = new HashMap<>();
+        for (Path path : new Path[]{sealedPath, activePath}) {
+            if (!Files.exists(path)) {
+                continue;
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+            while (buffer.hasRemaining()) {
+                int start = buffer.position();
+                ByteBuffer payload = nextRecord(buffer);
+                if (payload == null) {
+                    System.err.println("Журнал изменений " + path + " поврежден после позиции " + start
+                            + ", дальнейшие записи пропущены");
+                    if (path.equals(activePath)) {
+                        try (FileChannel truncated = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                            truncated.truncate(start);
+                        }
+                    }
+                    break;
+                }
+                long lsn = payload.getLong();
+                if (lsn <= baseLsn) {
+                    continue;
+                }
+                if (state == null) {
+                    state = target.get();
+                }
+                try {
+                    apply(state, payload, zones);
+                } catch (BufferUnderflowException | IllegalArgumentException | DateTimeException e) {
+                    throw new IOException("Поврежденная запись журнала " + lsn + ": " + e, e);
+                }
+                maxLsn = Math.max(maxLsn, lsn);
+                applied++;
+            }
+        }
+        if (applied > 0) {
+            System.out.println("Из журнала изменений применено записей: " + applied);
+        }
+        synchronized (lock) {
+            channel = FileChannel.open(activePath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            activeBytes = channel.size();
+            lastLsn = maxLsn;
+            durableLsn = maxLsn;
+        }
+        return state;
+    }
+
+    /**
+     * Записывает в журнал добавление или изменение маршрута и ждет, пока запись не будет сброшена на диск.
+     *
+     * @param route маршрут с новыми значениями полей.
+     * @throws IOException если запись не удалось сбросить на диск.
+     */
+    public void put(Route route) throws IOException {
+        awaitDurable(appendPut(route));
+    }
+
+    /**
+     * Добавляет в журнал запись о добавлении или изменении маршрута, не дожидаясь сброса на диск.
+     * Запись становится долговечной после {@link #sync(long)} с ее номером или с номером более поздней записи.
+     *
+     * @param route маршрут с новыми значениями полей.
+     * @return номер записи.
+     * @throws IOException если журнал не открыт или недоступен после ошибки.
+     */
+    public long appendPut(Route route) throws IOException {
+        synchronized (lock) {
+            String zone = ZoneDictionary.decode(route.getCreationZone()).getId();
+            ByteBuffer payload = beginRecord(PUT, 64 + maxBytes(route.getName()) + maxBytes(zone)
+                    + maxBytes(route.getFrom().getName()) + maxBytes(route.getTo().getName()));
+            payload.putInt(route.getId());
+            putString(payload, route.getName());
+            payload.putDouble(route.getCoordinates().getX());
+            payload.putFloat(route.getCoordinates().getY());
+            payload.putLong(route.getCreationEpochSecond());
+            payload.putInt(route.getCreationNano());
+            putString(payload, zone);
+            putLocation(payload, route.getFrom());
+            putLocation(payload, route.getTo());
+            payload.putLong(route.getDistance());
+            return endRecord();
+        }
+    }
+
+    /**
+     * Записывает в журнал удаление маршрута по ID и ждет, пока запись не будет сброшена на диск.
+     *
+     * @param id ID удаленного маршрута.
+     * @throws IOException если запись не удалось сбросить на диск.
+     */
+    public void remove(int id) throws IOException {
+        awaitDurable(appendRemove(id));
+    }
+
+    /**
+     * Добавляет в журнал запись об удалении маршрута по ID, не дожидаясь сброса на диск.
+     *
+     * @param id ID удаленного маршрута.
+     * @return номер записи.
+     * @throws IOException если журнал не открыт или недоступен после ошибки.
+     */
+    public long appendRemove(int id) throws IOException {
+        synchronized (lock) {
+            beginRecord(REMOVE, Integer.BYTES).putInt(id);
+            return endRecord();
+        }
+    }
+
+    /**
+     * Записывает в журнал удаление маршрутов с ID больше указанного и ждет, пока запись не будет сброшена на диск.
+     *
+     * @param id ID, после которого маршруты удалены.
+     * @throws IOException если запись не удалось сбросить на диск.
+     */
+    public void removeGreater(int id) throws IOException {
+        awaitDurable(appendRemoveGreater(id));
+    }
+
+    /**
+     * Добавляет в журнал запись об удалении маршрутов с ID больше указанного, не дожидаясь сброса на диск.
+     *
+     * @param id ID, после которого маршруты удалены.
+     * @return номер записи.
+     * @throws IOException если журнал не открыт или недоступен после ошибки.
+     */
+    public long appendRemoveGreater(int id) throws IOException {
+        synchronized (lock) {
+            beginRecord(REMOVE_GREATER, Integer.BYTES).putInt(id);
+            return endRecord();
+        }
+    }
+
+    /**
+     * Записывает в журнал очистку коллекции и ждет, пока запись не будет сброшена на диск.
+     *
+     * @throws IOException если запись не удалось сбросить на диск.
+     */
+    public void clear() throws IOException {
+        awaitDurable(appendClear());
+    }
+
+    /**
+     * Добавляет в журнал запись об очистке коллекции, не дожидаясь сброса на диск.
+     *
+     * @return номер записи.
+     * @throws IOException если журнал не открыт или недоступен после ошибки.
+     */
+    public long appendClear() throws IOException {
+        synchronized (lock) {
+            beginRecord(CLEAR, 0);
+            return endRecord();
+        }
+    }
+
+    /**
+     * Ждет, пока запись с указанным номером и все предыдущие записи не будут сброшены на диск.
+     * Позволяет добавить несколько записей методами {@code append...} и сбросить их на диск одним вызовом.
+     *
+     * @param lsn номер записи.
+     * @throws IOException если запись не удалось сбросить на диск.
+     */
+    public void sync(long lsn) throws IOException {
+        awaitDurable(lsn);
+    }
+
+    /**
+     * Возвращает путь к CSV файлу коллекции, рядом с которым хранится журнал.
+     *
+     * @return путь к CSV файлу.
+     */
+    public String getCsvPath() {
+        return csvPath;
+    }
+
+    /**
+     * Возвращает номер последней добавленной записи журнала.
+     *
+     * @return номер записи.
+     */
+    public long getLastLsn() {
+        synchronized (lock) {
+            return lastLsn;
+        }
+    }
+
+    /**
+     * Проверяет, вырос ли журнал настолько, что его следует уплотнить в снимок, и не выполняется ли уже уплотнение.
+     *
+     * @return true, если следует запустить уплотнение.
+     */
+    public boolean needsCompaction() {
+        synchronized (lock) {
+            return channel != null && activeBytes >= compactionBytes && !compacting;
+        }
+    }
+
+    /**
+     * Начинает уплотнение журнала: сбрасывает накопленные записи и переключает журнал на новый файл,
+     * а прежний файл оставляет до окончания уплотнения. Если файл от прошлого неудачного уплотнения еще не удален,
+     * записи продолжают идти в текущий файл. Вызывается в потоке, который снимает копию коллекции для снимка.
+     *
+     * @return номер последней записи, которую должен учитывать снимок.
+     * @throws IOException если не удалось переключиться на новый файл журнала.
+     */
+    public long seal() throws IOException {
+        synchronized (lock) {
+            if (channel == null) {
+                throw new IOException("Журнал изменений не открыт");
+            }
+            compacting = true;
+            if (!Files.exists(sealedPath)) {
+                awaitFlushIdle();
+                flushPending();
+                channel.close();
+                channel = null;
+                Files.move(activePath, sealedPath, StandardCopyOption.ATOMIC_MOVE);
+                channel = FileChannel.open(activePath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+                activeBytes = 0;
+            }
+            return lastLsn;
+        }
+    }
+
+    /**
+     * Заканчивает уплотнение журнала, начатое {@link #seal()}. Если снимок записан, прежний файл журнала удаляется.
+     *
+     * @param success true, если снимок, учитывающий прежний файл журнала, записан.
+     * @throws IOException если не удалось удалить прежний файл журнала.
+     */
+    public void compacted(boolean success) throws IOException {
+        synchronized (lock) {
+            compacting = false;
+            if (success) {
+                Files.deleteIfExists(sealedPath);
+            }
+        }
+    }
+
+    /**
+     * Отбрасывает записи журнала после того, как коллекция целиком сохранена в снимок, учитывающий их.
+     * Если после указанной записи в журнал уже добавлены новые, журнал не изменяется.
+     *
+     * @param lsn номер последней записи, учтенной в сохраненном снимке.
+     * @throws IOException если произошла ошибка ввода-вывода при очистке журнала.
+     */
+    public void truncate(long lsn) throws IOException {
+        synchronized (lock) {
+            if (channel == null || lastLsn != lsn) {
+                return;
+            }
+            awaitFlushIdle();
+            pending.clear();
+            durableLsn = lastLsn;
+            lock.notifyAll();
+            channel.truncate(0);
+            channel.force(true);
+            activeBytes = 0;
+            Files.deleteIfExists(sealedPath);
+        }
+    }
+
+    /**
+     * Ждет, пока запись с указанным номером не будет сброшена на диск. Если сброс никем не выполняется,
+     * текущий поток сам сбрасывает все накопленные записи, в том числе записи других потоков.
+     *
+     * @param lsn номер записи.
+     * @throws IOException если запись не удалось сбросить на диск.
+     */
+    private void awaitDurable(long lsn) throws IOException {
+        while (true) {
+            ByteBuffer batch;
+            long batchLsn;
+            FileChannel target;
+            synchronized (lock) {
+                while (durableLsn < lsn && flushing && failure == null) {
+                    waitForFlush();
+                }
+                if (failure != null) {
+                    throw new IOException("Журнал изменений недоступен: " + failure.getMessage(), failure);
+                }
+                if (durableLsn >= lsn) {
+                    return;
+                }
+                flushing = true;
+                batch = pending;
+                batchLsn = lastLsn;
+                target = channel;
+                pending = spare;
+                spare = null;
+            }
+            IOException error = null;
+            try {
+                batch.flip();
+                while (batch.hasRemaining()) {
+                    target.write(batch);
+                }
+                target.force(false);
+            } catch (IOException e) {
+                error = e;
+            }
+            synchronized (lock) {
+                flushing = false;
+                batch.clear();
+                spare = batch;
+                if (error == null) {
+                    durableLsn = batchLsn;
+                } else {
+                    failure = error;
+                }
+                lock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Сбрасывает накопленные записи на диск в текущем потоке. Вызывается с захваченным монитором,
+     * когда никакой другой поток не выполняет сброс.
+     *
+     * @throws IOException если произошла ошибка ввода-вывода при записи.
+     */
+    private void flushPending() throws IOException {
+        if (pending.position() == 0) {
+            return;
+        }
+        pending.flip();
+        while (pending.hasRemaining()) {
+            channel.write(pending);
+        }
+        channel.force(false);
+        pending.clear();
+        durableLsn = lastLsn;
+        lock.notifyAll();
+    }
+
+    /**
+     * Ждет, пока другой поток не закончит сброс записей. Вызывается с захваченным монитором.
+     *
+     * @throws IOException если ожидание прервано.
+     */
+    private void awaitFlushIdle() throws IOException {
+        while (flushing) {
+            waitForFlush();
+        }
+    }
+
+    /**
+     * Ждет уведомления об окончании сброса записей. Вызывается с захваченным монитором.
+     *
+     * @throws IOException если ожидание прервано.
+     */
+    private void waitForFlush() throws IOException {
+        try {
+            lock.wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Ожидание записи журнала прервано");
+        }
+    }
+
+    /**
+     * Начинает новую запись в буфере накопленных записей: резервирует место под заголовок и записывает номер и тип.
+     * Вызывается с захваченным монитором.
+     *
+     * @param type      тип записи.
+     * @param maxLength наибольшая длина полей записи в байтах.
+     * @return буфер накопленных записей, в который дописываются поля записи.
+     * @throws IOException если журнал не открыт, недоступен после ошибки или запись слишком длинная.
+     */
+    private ByteBuffer beginRecord(byte type, int maxLength) throws IOException {
+        if (channel == null) {
+            throw new IOException("Журнал изменений не открыт");
+        }
+        if (failure != null) {
+            throw new IOException("Журнал изменений недоступен: " + failure.getMessage(), failure);
+        }
+        int length = Long.BYTES + 1 + maxLength;
+        if (length > MAX_RECORD_SIZE) {
+            throw new IOException("Запись журнала изменений слишком длинная: " + length + " байт");
+        }
+        ensurePending(RECORD_HEADER_SIZE + length);
+        recordStart = pending.position();
+        pending.position(recordStart + RECORD_HEADER_SIZE);
+        pending.putLong(lastLsn + 1);
+        pending.put(type);
+        return pending;
+    }
+
+    /**
+     * Заканчивает запись, начатую {@link #beginRecord(byte, int)}: заполняет длину и контрольную сумму.
+     * Вызывается с захваченным монитором.
+     *
+     * @return номер записи.
+     */
+    private long endRecord() {
+        int end = pending.position();
+        int start = recordStart;
+        int length = end - start - RECORD_HEADER_SIZE;
+        CRC32 crc = new CRC32();
+        crc.update(pending.array(), pending.arrayOffset() + start + RECORD_HEADER_SIZE, length);
+        pending.putInt(start, length);
+        pending.putInt(start + Integer.BYTES, (int) crc.getValue());
+        activeBytes += end - start;
+        return ++lastLsn;
+    }
+
+    /**
+     * Увеличивает буфер накопленных записей, если в нем осталось меньше указанного количества байт.
+     * Вызывается с захваченным монитором.
+     *
+     * @param bytes требуемое количество свободных байт.
+     */
+    private void ensurePending(int bytes) {
+        if (pending.remaining() < bytes) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + bytes));
+            pending.flip();
+            grown.put(pending);
+            pending = grown;
+        }
+    }
+
+    /**
+     * Выделяет из буфера следующую запись и проверяет ее длину и контрольную сумму.
+     *
+     * @param buffer буфер с содержимым файла журнала, стоящий на начале записи.
+     * @return данные записи или null, если запись неполная или повреждена.
+     */
+    private static ByteBuffer nextRecord(ByteBuffer buffer) {
+        if (buffer.remaining() < RECORD_HEADER_SIZE) {
+            return null;
+        }
+        int length = buffer.getInt();
+        int checksum = buffer.getInt();
+        if (length < Long.BYTES + 1 || length > MAX_RECORD_SIZE || length > buffer.remaining()) {
+            return null;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), buffer.arrayOffset() + buffer.position(), length);
+        if ((int) crc.getValue() != checksum) {
+            return null;
+        }
+        ByteBuffer payload = buffer.slice(buffer.position(), length);
+        buffer.position(buffer.position() + length);
+        return payload;
+    }
+
+    /**
+     * Применяет запись журнала к коллекции.
+     *
+     * @param state   хранилище маршрутов коллекции.
+     * @param payload данные записи после номера записи.
+     * @param zones   коды часовых поясов по названиям, уже прочитанным из журнала.
+     */
+    private static void apply(RouteStore state, ByteBuffer payload, HashMap<String, Integer> zones) {
+        byte type = payload.get();
+        switch (type) {
+            case PUT:
+                int id = payload.getInt();
+                String name = getString(payload);
+                Coordinates coordinates = new Coordinates(payload.getDouble(), payload.getFloat());
+                long creationDate = Route.epochNanos(payload.getLong(), payload.getInt());
+                int zone = zones.computeIfAbsent(getString(payload), zoneId -> ZoneDictionary.encode(ZoneId.of(zoneId)));
+                Location from = getLocation(payload);
+                Location to = getLocation(payload);
+                state.put(new Route(id, name, coordinates, creationDate, zone, from, to, payload.getLong()));
+                break;
+            case REMOVE:
+                state.remove(payload.getInt());
+                break;
+            case REMOVE_GREATER:
+                state.removeGreater(payload.getInt(), (distance, removed) -> {
+                });
+                break;
+            case CLEAR:
+                state.clear();
+                break;
+            default:
+                throw new IllegalArgumentException("неизвестный тип записи " + type);
+        }
+    }
+
+    /**
+     * Записывает поля места.
+     *
+     * @param payload  буфер записи.
+     * @param location место.
+     */
+    private static void putLocation(ByteBuffer payload, Location location) {
+        payload.putFloat(location.getX());
+        payload.putInt(location.getY());
+        payload.putDouble(location.getZ());
+        putString(payload, location.getName());
+    }
+
+    /**
+     * Читает поля места.
+     *
+     * @param payload буфер записи.
+     * @return место.
+     */
+    private static Location getLocation(ByteBuffer payload) {
+        return new Location(payload.getFloat(), payload.getInt(), payload.getDouble(), getString(payload));
+    }
+
+    /**
+     * Возвращает наибольшую длину строки, записанной {@link #putString(ByteBuffer, String)}, в байтах.
+     *
+     * @param string строка.
+     * @return наибольшая длина в байтах.
+     */
+    private static int maxBytes(String string) {
+        return Integer.BYTES + string.length() * 3;
+    }
+
+    /**
+     * Записывает строку: длину в байтах (int) и байты UTF-8.
+     *
+     * @param payload буфер записи.
+     * @param string  строка.
+     */
+    private static void putString(ByteBuffer payload, String string) {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        payload.putInt(bytes.length);
+        payload.put(bytes);
+    }
+
+    /**
+     * Читает строку, записанную {@link #putString(ByteBuffer, String)}.
+     *
+     * @param payload буфер записи.
+     * @return строка.
+     */
+    private static String getString(ByteBuffer payload) {
+        int length = payload.getInt();
+        if (length < 0 || length > payload.remaining()) {
+            throw new IllegalArgumentException("неверная длина строки " + length);
+        }
+        String string = new String(payload.array(), payload.arrayOffset() + payload.position(), length, StandardCharsets.UTF_8);
+        payload.position(payload.position() + length);
+        return string;
+    }
+}
@@ -0,0 +1,182 @@
+package org.wineeenottt.WorkWithFile;
+
+import org.wineeenottt.Collection.Route;
+
+import java.util.Arrays;
+
+/**
+ * Класс RouteFileIndex - индекс маршрутов, хранящихся в файле, отображенном в память: для каждого маршрута
+ * хранятся только ID, расстояние и позиция записи в файле, а сам маршрут декодируется по запросу.
+ * Записи индекса упорядочены по возрастанию ID; если ID встречается в файле повторно, остается первая запись,
+ * как и при обычной загрузке.
+ * <p>
+ * Индекс занимает около 20 байт кучи на маршрут вместо сотен байт на полностью построенный маршрут.
+ * Индекс не изменяется после построения; декодирование не потокобезопасно.
+ */
+public final class RouteFileIndex {
+
+    /**
+     * Декодер записи маршрута по позиции в файле.
+     */
+    @FunctionalInterface
+    public interface Decoder {
+
+        /**
+         * Декодирует маршрут, записанный в файле на указанной позиции.
+         *
+         * @param position позиция записи, сохраненная в индексе.
+         * @return маршрут или null, если запись не удалось разобрать (сообщение об ошибке уже выведено).
+         */
+        Route decode(long position);
+    }
+
+    /**
+     * ID маршрутов по возрастанию.
+     */
+    private final int[] ids;
+
+    /**
+     * Позиции записей маршрутов в файле; индекс совпадает с индексом ID.
+     */
+    private final long[] positions;
+
+    /**
+     * Расстояния маршрутов; индекс совпадает с индексом ID.
+     */
+    private final long[] distances;
+
+    /**
+     * Декодер записей.
+     */
+    private final Decoder decoder;
+
+    /**
+     * Конструктор класса RouteFileIndex.
+     *
+     * @param ids       ID маршрутов по возрастанию.
+     * @param positions позиции записей.
+     * @param distances расстояния маршрутов.
+     * @param decoder   декодер записей.
+     */
+    private RouteFileIndex(int[] ids, long[] positions, long[] distances, Decoder decoder) {
+        this.ids = ids;
+        this.positions = positions;
+        this.distances = distances;
+        this.decoder = decoder;
+    }
+
+    /**
+     * Возвращает пустой индекс.
+     *
+     * @return индекс без маршрутов.
+     */
+    public static RouteFileIndex empty() {
+        return new RouteFileIndex(new int[0], new long[0], new long[0], position -> null);
+    }
+
+    /**
+     * Строит индекс из записей в порядке файла: упорядочивает их по ID и отбрасывает повторы ID
+     * (с сообщением об ошибке, как при обычной загрузке).
+     *
+     * @param ids       ID маршрутов в порядке файла.
+     * @param positions позиции записей.
+     * @param distances расстояния маршрутов.
+     * @param count     количество заполненных записей в массивах.
+     * @param decoder   декодер записей.
+     * @return индекс.
+     */
+    public static RouteFileIndex of(int[] ids, long[] positions, long[] distances, int count, Decoder decoder) {
+        boolean sorted = true;
+        for (int i = 1; i < count && sorted; i++) {
+            sorted = ids[i - 1] < ids[i];
+        }
+        if (sorted) {
+            return new RouteFileIndex(Arrays.copyOf(ids, count), Arrays.copyOf(positions, count),
+                    Arrays.copyOf(distances, count), decoder);
+        }
+        // ID в старших 32 битах, номер записи в файле - в младших: при равных ID первой остается более ранняя запись
+        long[] order = new long[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = (long) ids[i] << 32 | i;
+        }
+        Arrays.sort(order);
+        int[] sortedIds = new int[count];
+        long[] sortedPositions = new long[count];
+        long[] sortedDistances = new long[count];
+        int size = 0;
+        for (long entry : order) {
+            int id = (int) (entry >> 32);
+            int index = (int) entry;
+            if (size > 0 && sortedIds[size - 1] == id) {
+                System.err.println("Ошибка: маршрут с ID " + id + " встречается повторно и не был добавлен");
+                continue;
+            }
+            sortedIds[size] = id;
+            sortedPositions[size] = positions[index];
+            sortedDistances[size] = distances[index];
+            size++;
+        }
+        return new RouteFileIndex(Arrays.copyOf(sortedIds, size), Arrays.copyOf(sortedPositions, size),
+                Arrays.copyOf(sortedDistances, size), decoder);
+    }
+
+    /**
+     * Возвращает количество маршрутов в индексе.
+     *
+     * @return количество маршрутов.
+     */
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * Возвращает ID маршрута записи индекса.
+     *
+     * @param index номер записи индекса.
+     * @return ID маршрута.
+     */
+    public int id(int index) {
+        return ids[index];
+    }
+
+    /**
+     * Возвращает расстояние маршрута записи индекса.
+     *
+     * @param index номер записи индекса.
+     * @return расстояние маршрута.
+     */
+    public long distance(int index) {
+        return distances[index];
+    }
+
+    /**
+     * Находит запись индекса по ID маршрута.
+     *
+     * @param id ID маршрута.
+     * @return номер записи или отрицательное число, если маршрута нет.
+     */
+    public int find(int id) {
+        return Arrays.binarySearch(ids, id);
+    }
+
+    /**
+     * Возвращает номер первой записи индекса, ID которой больше указанного.
+     *
+     * @param id граница ID.
+     * @return номер записи или размер индекса, если таких записей нет.
+     */
+    public int upperBound(int id) {
+        int index = Arrays.binarySearch(ids, id);
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+
+    /**
+     * Декодирует маршрут записи индекса из файла.
+     *
+     * @param index номер записи индекса.
+     * @return новый маршрут или null, если запись не удалось разобрать.
+     */
+    public Route read(int index) {
+        return decoder.decode(positions[index]);
+    }
+}
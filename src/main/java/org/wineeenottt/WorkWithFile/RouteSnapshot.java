@@ -0,0 +1,833 @@
+package org.wineeenottt.WorkWithFile;
+
+import org.wineeenottt.Collection.Coordinates;
+import org.wineeenottt.Collection.Location;
+import org.wineeenottt.Collection.Route;
+import org.wineeenottt.Collection.RouteInterner;
+import org.wineeenottt.Collection.RouteStore;
+import org.wineeenottt.Collection.ZoneDictionary;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * Класс RouteSnapshot - двоичный снимок коллекции маршрутов, который записывается рядом с CSV файлом
+ * и позволяет загрузить коллекцию без разбора текста.
+ * <p>
+ * Формат (порядок байт big-endian):
+ * <pre>
+ * заголовок:  магическое число "RTSN" (int), версия (int), количество строк (int),
+ *             смещение таблицы строк (long), номер последней записи журнала изменений, учтенной в снимке (long),
+ *             идентификатор снимка (long)
+ * строки:     записи фиксированной длины {@value #ROW_SIZE} байт: id (int), название (int - номер в таблице строк),
+ *             coordinateX (double), coordinateY (float), секунды эпохи (long), наносекунды (int),
+ *             часовой пояс (int - номер в таблице строк), fromX (float), fromY (int), fromZ (double),
+ *             fromName (int), toX (float), toY (int), toZ (double), toName (int), distance (long)
+ * таблица строк: количество (int), затем для каждой строки длина в байтах (int) и байты UTF-8
+ * </pre>
+ * Дата создания хранится как момент времени и идентификатор часового пояса, поэтому восстанавливается без разбора текста.
+ * CSV файл остается основным форматом обмена; снимок используется только при запуске, если он не старше CSV файла.
+ * Снимок записывается во временный файл, который затем атомарно заменяет прежний снимок, поэтому сбой во время
+ * записи не портит уже записанный снимок. Снимки версий 1 и 2 (без номера записи журнала и идентификатора)
+ * читаются как снимки с нулевыми значениями этих полей.
+ * <p>
+ * Изменения после полного снимка могут сохраняться разностными сегментами ({@code <снимок>.delta.<номер>}):
+ * заголовок "RTDL" с идентификатором снимка, к которому относится сегмент, номером сегмента и номером записи журнала,
+ * затем строки добавленных и измененных маршрутов в формате снимка, ID удаленных маршрутов и таблица строк.
+ * При чтении снимка сегменты его идентификатора применяются по возрастанию номеров; сегменты другого снимка
+ * (оставшиеся после сбоя) пропускаются и удаляются при следующей записи полного снимка.
+ */
+public class RouteSnapshot {
+
+    /**
+     * Магическое число снимка ("RTSN").
+     */
+    private static final int MAGIC = 0x5254534E;
+
+    /**
+     * Магическое число разностного сегмента ("RTDL").
+     */
+    private static final int DELTA_MAGIC = 0x5254444C;
+
+    /**
+     * Версия формата снимка.
+     */
+    private static final int VERSION = 3;
+
+    /**
+     * Версия формата разностного сегмента.
+     */
+    private static final int DELTA_VERSION = 1;
+
+    /**
+     * Длина заголовка снимка версии 1 в байтах.
+     */
+    private static final int HEADER_SIZE_V1 = 20;
+
+    /**
+     * Длина заголовка снимка версии 2 в байтах.
+     */
+    private static final int HEADER_SIZE_V2 = 28;
+
+    /**
+     * Длина заголовка в байтах.
+     */
+    private static final int HEADER_SIZE = 36;
+
+    /**
+     * Длина заголовка разностного сегмента в байтах.
+     */
+    private static final int DELTA_HEADER_SIZE = 44;
+
+    /**
+     * Длина записи маршрута в байтах.
+     */
+    private static final int ROW_SIZE = 84;
+
+    /**
+     * Смещение расстояния от начала записи маршрута.
+     */
+    private static final int DISTANCE_OFFSET = ROW_SIZE - Long.BYTES;
+
+    /**
+     * Размер буфера записи в байтах.
+     */
+    private static final int WRITE_BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Расширение файла снимка.
+     */
+    private static final String EXTENSION = ".snapshot";
+
+    /**
+     * Часть имени файла разностного сегмента между именем снимка и номером сегмента.
+     */
+    private static final String DELTA_EXTENSION = ".delta.";
+
+    /**
+     * Пул, через который проходят значения загруженных маршрутов.
+     */
+    private final RouteInterner routeInterner;
+
+    /**
+     * Номер последней записи журнала изменений, учтенной в последнем прочитанном снимке.
+     */
+    private long lsn;
+
+    /**
+     * Идентификатор последнего прочитанного снимка.
+     */
+    private long snapshotId;
+
+    /**
+     * Номер последнего разностного сегмента, примененного к последнему прочитанному снимку.
+     */
+    private int deltaSequence;
+
+    /**
+     * Количество строк и удаленных ID в разностных сегментах, примененных к последнему прочитанному снимку.
+     */
+    private long deltaRows;
+
+    /**
+     * Конструктор класса RouteSnapshot с собственным пулом разделяемых значений.
+     */
+    public RouteSnapshot() {
+        this(new RouteInterner());
+    }
+
+    /**
+     * Конструктор класса RouteSnapshot.
+     *
+     * @param routeInterner пул разделяемых значений маршрутов.
+     */
+    public RouteSnapshot(RouteInterner routeInterner) {
+        this.routeInterner = routeInterner;
+    }
+
+    /**
+     * Возвращает путь к снимку, соответствующему CSV файлу.
+     *
+     * @param csvPath путь к CSV файлу.
+     * @return путь к файлу снимка.
+     */
+    public static String pathFor(String csvPath) {
+        return csvPath + EXTENSION;
+    }
+
+    /**
+     * Проверяет, есть ли для CSV файла (или каталога с частями коллекции) снимок, записанный не раньше
+     * самого файла или любого файла каталога.
+     *
+     * @param csvPath путь к CSV файлу или каталогу.
+     * @return true, если снимок существует и не старше CSV файла.
+     */
+    public static boolean isFresh(String csvPath) {
+        File snapshot = new File(pathFor(csvPath));
+        return snapshot.isFile() && snapshot.canRead() && snapshot.lastModified() >= FileManager.lastModified(csvPath);
+    }
+
+    /**
+     * Возвращает номер последней записи журнала изменений, учтенной в последнем прочитанном снимке
+     * вместе с его разностными сегментами.
+     *
+     * @return номер записи журнала или 0, если снимок не учитывает журнал.
+     */
+    public long getLsn() {
+        return lsn;
+    }
+
+    /**
+     * Возвращает идентификатор последнего прочитанного снимка.
+     *
+     * @return идентификатор снимка или 0, если снимок записан без идентификатора.
+     */
+    public long getSnapshotId() {
+        return snapshotId;
+    }
+
+    /**
+     * Возвращает номер последнего разностного сегмента, примененного к последнему прочитанному снимку.
+     *
+     * @return номер сегмента или 0, если сегментов нет.
+     */
+    public int getDeltaSequence() {
+        return deltaSequence;
+    }
+
+    /**
+     * Возвращает количество строк и удаленных ID в разностных сегментах, примененных к последнему прочитанному снимку.
+     *
+     * @return количество записей в сегментах.
+     */
+    public long getDeltaRows() {
+        return deltaRows;
+    }
+
+    /**
+     * Записывает маршруты в файл снимка, не учитывающего журнал изменений. Все поля маршрутов должны быть заданы (не null).
+     *
+     * @param path   путь к файлу снимка.
+     * @param routes маршруты.
+     * @throws IOException если произошла ошибка ввода-вывода при записи.
+     */
+    public void write(String path, Iterable<Route> routes) throws IOException {
+        write(path, routes, 0, 0);
+    }
+
+    /**
+     * Записывает маршруты в файл снимка. Все поля маршрутов должны быть заданы (не null).
+     * Снимок сначала записывается во временный файл и сбрасывается на диск, затем атомарно заменяет прежний снимок;
+     * после этого разностные сегменты прежнего снимка удаляются.
+     *
+     * @param path       путь к файлу снимка.
+     * @param routes     маршруты.
+     * @param lsn        номер последней записи журнала изменений, учтенной в маршрутах.
+     * @param snapshotId идентификатор снимка, на который будут ссылаться его разностные сегменты (0 - без сегментов).
+     * @throws IOException если произошла ошибка ввода-вывода при записи.
+     */
+    public void write(String path, Iterable<Route> routes, long lsn, long snapshotId) throws IOException {
+        Path target = Path.of(path);
+        Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+        try (SegmentWriter out = new SegmentWriter(temporary, HEADER_SIZE)) {
+            int count = 0;
+            for (Route route : routes) {
+                out.putRoute(route);
+                count++;
+            }
+            long stringTableOffset = HEADER_SIZE + (long) count * ROW_SIZE;
+            out.putStrings();
+            out.writeHeader(ByteBuffer.allocate(HEADER_SIZE)
+                    .putInt(MAGIC).putInt(VERSION).putInt(count).putLong(stringTableOffset).putLong(lsn).putLong(snapshotId));
+        }
+        Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        for (Path delta : deltaPaths(path).values()) {
+            Files.deleteIfExists(delta);
+        }
+    }
+
+    /**
+     * Записывает разностный сегмент снимка: маршруты, добавленные или измененные после предыдущего сохранения,
+     * и ID удаленных маршрутов. Сегмент записывается во временный файл и атомарно переименовывается.
+     *
+     * @param path           путь к файлу снимка, к которому относится сегмент.
+     * @param baseSnapshotId идентификатор снимка.
+     * @param sequence       номер сегмента, больший номеров уже записанных сегментов снимка.
+     * @param puts           добавленные и измененные маршруты.
+     * @param deletes        ID удаленных маршрутов.
+     * @param lsn            номер последней записи журнала изменений, учтенной в сегменте.
+     * @throws IOException если произошла ошибка ввода-вывода при записи.
+     */
+    public void writeDelta(String path, long baseSnapshotId, int sequence, Collection<Route> puts,
+                           Collection<Integer> deletes, long lsn) throws IOException {
+        Path target = Path.of(path + DELTA_EXTENSION + sequence);
+        Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+        try (SegmentWriter out = new SegmentWriter(temporary, DELTA_HEADER_SIZE)) {
+            for (Route route : puts) {
+                out.putRoute(route);
+            }
+            for (int id : deletes) {
+                out.putInt(id);
+            }
+            long stringTableOffset = DELTA_HEADER_SIZE + (long) puts.size() * ROW_SIZE + (long) deletes.size() * Integer.BYTES;
+            out.putStrings();
+            out.writeHeader(ByteBuffer.allocate(DELTA_HEADER_SIZE)
+                    .putInt(DELTA_MAGIC).putInt(DELTA_VERSION).putLong(baseSnapshotId).putInt(sequence).putLong(lsn)
+                    .putInt(puts.size()).putInt(deletes.size()).putLong(stringTableOffset));
+        }
+        Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Читает маршруты из файла снимка и применяет к ним разностные сегменты снимка.
+     * Значения маршрутов проходят через пул разделяемых значений.
+     *
+     * @param path путь к файлу снимка.
+     * @return список маршрутов; маршруты из снимка идут в порядке записи.
+     * @throws IOException если произошла ошибка ввода-вывода или файл не является снимком поддерживаемой версии.
+     */
+    public List<Route> read(String path) throws IOException {
+        ByteBuffer buffer = map(Path.of(path));
+        Header header = readHeader(buffer);
+        List<Route> routes;
+        try {
+            StringTable strings = new StringTable(buffer, header.stringTableOffset, true);
+            routes = new ArrayList<>(header.count);
+            buffer.position(header.size);
+            for (int i = 0; i < header.count; i++) {
+                Route route = readRoute(buffer, strings);
+                routeInterner.intern(route);
+                routes.add(route);
+            }
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException | DateTimeException e) {
+            throw new IOException("Поврежденный снимок: " + e, e);
+        }
+        lsn = header.lsn;
+        snapshotId = header.snapshotId;
+        deltaSequence = 0;
+        deltaRows = 0;
+        if (snapshotId != 0 && !deltaPaths(path).isEmpty()) {
+            LinkedHashMap<Integer, Route> state = new LinkedHashMap<>();
+            for (Route route : routes) {
+                state.put(route.getId(), route);
+            }
+            readDeltas(path, route -> state.put(route.getId(), route), state::remove);
+            routes = new ArrayList<>(state.values());
+        }
+        return routes;
+    }
+
+    /**
+     * Строит индекс маршрутов файла снимка без построения самих маршрутов: из каждой строки читаются только ID
+     * и расстояние, а таблица строк лишь размечается. Маршрут декодируется из отображенного файла, когда он
+     * запрашивается из индекса; значения декодированных маршрутов не проходят через пул разделяемых значений.
+     * Разностные сегменты к индексу не применяются (см. {@link #applyDeltas(String, RouteStore)}).
+     *
+     * @param path путь к файлу снимка.
+     * @return индекс маршрутов снимка.
+     * @throws IOException если произошла ошибка ввода-вывода или файл не является снимком поддерживаемой версии.
+     */
+    public RouteFileIndex index(String path) throws IOException {
+        ByteBuffer buffer = map(Path.of(path));
+        Header header = readHeader(buffer);
+        StringTable strings;
+        int[] ids = new int[header.count];
+        long[] positions = new long[header.count];
+        long[] distances = new long[header.count];
+        try {
+            strings = new StringTable(buffer, header.stringTableOffset, false);
+            for (int i = 0; i < header.count; i++) {
+                int row = header.size + i * ROW_SIZE;
+                ids[i] = buffer.getInt(row);
+                distances[i] = buffer.getLong(row + DISTANCE_OFFSET);
+                positions[i] = row;
+            }
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new IOException("Поврежденный снимок: " + e, e);
+        }
+        lsn = header.lsn;
+        snapshotId = header.snapshotId;
+        deltaSequence = 0;
+        deltaRows = 0;
+        ByteBuffer rows = buffer.duplicate();
+        return RouteFileIndex.of(ids, positions, distances, header.count, position -> {
+            try {
+                return readRoute(rows.position((int) position), strings);
+            } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException | DateTimeException e) {
+                System.err.println("Ошибка: поврежденная запись снимка: " + e);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Применяет к хранилищу разностные сегменты снимка, индекс которого был построен последним
+     * методом {@link #index(String)}: добавленные и измененные маршруты записываются в хранилище,
+     * удаленные - удаляются из него.
+     *
+     * @param path  путь к файлу снимка.
+     * @param store хранилище с маршрутами снимка.
+     * @throws IOException если произошла ошибка ввода-вывода или сегмент поврежден.
+     */
+    public void applyDeltas(String path, RouteStore store) throws IOException {
+        if (snapshotId != 0) {
+            readDeltas(path, store::put, store::remove);
+        }
+    }
+
+    /**
+     * Читает разностные сегменты последнего прочитанного снимка по возрастанию номеров и передает их записи
+     * обработчикам; сегменты другого снимка пропускаются. Номер записи журнала, номер последнего сегмента
+     * и количество записей в сегментах учитываются в полях снимка.
+     *
+     * @param path    путь к файлу снимка.
+     * @param puts    обработчик добавленных и измененных маршрутов.
+     * @param deletes обработчик ID удаленных маршрутов.
+     * @throws IOException если произошла ошибка ввода-вывода или сегмент поврежден.
+     */
+    private void readDeltas(String path, Consumer<Route> puts, IntConsumer deletes) throws IOException {
+        for (Path delta : deltaPaths(path).values()) {
+            ByteBuffer segment = map(delta);
+            try {
+                if (segment.getInt() != DELTA_MAGIC || segment.getInt() != DELTA_VERSION) {
+                    throw new IOException("Файл " + delta + " не является разностным сегментом снимка");
+                }
+                if (segment.getLong() != snapshotId) {
+                    continue;
+                }
+                int sequence = segment.getInt();
+                long segmentLsn = segment.getLong();
+                int putCount = segment.getInt();
+                int deleteCount = segment.getInt();
+                long stringTableOffset = segment.getLong();
+                if (putCount < 0 || deleteCount < 0 || stringTableOffset > segment.limit() || stringTableOffset
+                        != DELTA_HEADER_SIZE + (long) putCount * ROW_SIZE + (long) deleteCount * Integer.BYTES) {
+                    throw new IOException("Поврежденный заголовок разностного сегмента " + delta);
+                }
+                StringTable strings = new StringTable(segment, stringTableOffset, true);
+                segment.position(DELTA_HEADER_SIZE);
+                for (int i = 0; i < putCount; i++) {
+                    Route route = readRoute(segment, strings);
+                    routeInterner.intern(route);
+                    puts.accept(route);
+                }
+                for (int i = 0; i < deleteCount; i++) {
+                    deletes.accept(segment.getInt());
+                }
+                deltaSequence = sequence;
+                lsn = Math.max(lsn, segmentLsn);
+                deltaRows += putCount + deleteCount;
+            } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException | DateTimeException e) {
+                throw new IOException("Поврежденный разностный сегмент " + delta + ": " + e, e);
+            }
+        }
+    }
+
+    /**
+     * Читает и проверяет заголовок снимка с начала буфера.
+     *
+     * @param buffer буфер с содержимым файла снимка.
+     * @return заголовок снимка.
+     * @throws IOException если файл не является снимком поддерживаемой версии или заголовок поврежден.
+     */
+    private static Header readHeader(ByteBuffer buffer) throws IOException {
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Файл не является снимком коллекции");
+            }
+            int version = buffer.getInt();
+            if (version < 1 || version > VERSION) {
+                throw new IOException("Неподдерживаемая версия снимка: " + version);
+            }
+            Header header = new Header();
+            header.size = version == 1 ? HEADER_SIZE_V1 : version == 2 ? HEADER_SIZE_V2 : HEADER_SIZE;
+            header.count = buffer.getInt();
+            header.stringTableOffset = buffer.getLong();
+            header.lsn = version == 1 ? 0 : buffer.getLong();
+            header.snapshotId = version < 3 ? 0 : buffer.getLong();
+            if (header.count < 0 || header.stringTableOffset != header.size + (long) header.count * ROW_SIZE
+                    || header.stringTableOffset > buffer.limit() || header.lsn < 0) {
+                throw new IOException("Поврежденный заголовок снимка");
+            }
+            return header;
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Поврежденный снимок: " + e, e);
+        }
+    }
+
+    /**
+     * Отображает файл в память только для чтения.
+     *
+     * @param path путь к файлу.
+     * @return буфер с содержимым файла.
+     * @throws IOException если произошла ошибка ввода-вывода или файл слишком большой.
+     */
+    private static MappedByteBuffer map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Файл " + path + " слишком большой: " + channel.size() + " байт");
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * Находит разностные сегменты снимка.
+     *
+     * @param path путь к файлу снимка.
+     * @return пути к сегментам по возрастанию номеров.
+     * @throws IOException если не удалось прочитать каталог снимка.
+     */
+    private static TreeMap<Integer, Path> deltaPaths(String path) throws IOException {
+        Path snapshot = Path.of(path).toAbsolutePath();
+        String prefix = snapshot.getFileName() + DELTA_EXTENSION;
+        TreeMap<Integer, Path> deltas = new TreeMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(snapshot.getParent(), prefix + "*")) {
+            for (Path file : files) {
+                try {
+                    deltas.put(Integer.parseInt(file.getFileName().toString().substring(prefix.length())), file);
+                } catch (NumberFormatException e) {
+                    // временный файл недописанного сегмента
+                }
+            }
+        }
+        return deltas;
+    }
+
+    /**
+     * Читает маршрут с текущей позиции буфера. Значения маршрута не проходят через пул разделяемых значений.
+     *
+     * @param buffer  буфер, стоящий на начале строки маршрута.
+     * @param strings таблица строк.
+     * @return маршрут.
+     */
+    private static Route readRoute(ByteBuffer buffer, StringTable strings) {
+        int id = buffer.getInt();
+        String name = strings.get(buffer.getInt());
+        Coordinates coordinates = new Coordinates(buffer.getDouble(), buffer.getFloat());
+        long creationDate = Route.epochNanos(buffer.getLong(), buffer.getInt());
+        int zone = strings.zone(buffer.getInt());
+        Location from = new Location(buffer.getFloat(), buffer.getInt(), buffer.getDouble(), strings.get(buffer.getInt()));
+        Location to = new Location(buffer.getFloat(), buffer.getInt(), buffer.getDouble(), strings.get(buffer.getInt()));
+        return new Route(id, name, coordinates, creationDate, zone, from, to, buffer.getLong());
+    }
+
+    /**
+     * Заголовок снимка.
+     */
+    private static final class Header {
+
+        /**
+         * Длина заголовка в байтах (зависит от версии).
+         */
+        private int size;
+
+        /**
+         * Количество строк маршрутов.
+         */
+        private int count;
+
+        /**
+         * Смещение таблицы строк.
+         */
+        private long stringTableOffset;
+
+        /**
+         * Номер последней записи журнала изменений, учтенной в снимке.
+         */
+        private long lsn;
+
+        /**
+         * Идентификатор снимка.
+         */
+        private long snapshotId;
+    }
+
+    /**
+     * Таблица строк снимка или разностного сегмента. Строки либо декодируются все сразу при чтении таблицы,
+     * либо таблица только размечается, а строка декодируется из буфера при каждом обращении.
+     * Часовой пояс ищется в словаре один раз на номер строки.
+     */
+    private static final class StringTable {
+
+        /**
+         * Буфер, в котором находится таблица строк.
+         */
+        private final ByteBuffer buffer;
+
+        /**
+         * Смещения байт строк в буфере, если строки декодируются при обращении, иначе null.
+         */
+        private final int[] offsets;
+
+        /**
+         * Декодированные строки, если таблица прочитана целиком, иначе null.
+         */
+        private final String[] strings;
+
+        /**
+         * Коды часовых поясов в {@link ZoneDictionary}, увеличенные на 1, по номерам строк; 0 - пояс еще не искался.
+         */
+        private final int[] zones;
+
+        /**
+         * Читает таблицу строк; позиция буфера не изменяется.
+         *
+         * @param buffer буфер с содержимым файла.
+         * @param offset смещение таблицы строк.
+         * @param decode true - декодировать все строки сразу, false - только разметить таблицу.
+         */
+        StringTable(ByteBuffer buffer, long offset, boolean decode) {
+            this.buffer = buffer;
+            int position = Math.toIntExact(offset);
+            int count = buffer.getInt(position);
+            position += Integer.BYTES;
+            offsets = decode ? null : new int[count];
+            strings = decode ? new String[count] : null;
+            zones = new int[count];
+            for (int i = 0; i < count; i++) {
+                int length = buffer.getInt(position);
+                if (length < 0) {
+                    throw new IllegalArgumentException("отрицательная длина строки " + i);
+                }
+                position += Integer.BYTES;
+                if (decode) {
+                    strings[i] = decode(position, length);
+                } else {
+                    offsets[i] = position;
+                }
+                position = Math.addExact(position, length);
+            }
+            if (position > buffer.limit()) {
+                throw new IndexOutOfBoundsException("таблица строк выходит за конец файла");
+            }
+        }
+
+        /**
+         * Возвращает строку по номеру.
+         *
+         * @param index номер строки.
+         * @return строка.
+         */
+        String get(int index) {
+            if (strings != null) {
+                return strings[index];
+            }
+            int offset = offsets[index];
+            return decode(offset, buffer.getInt(offset - Integer.BYTES));
+        }
+
+        /**
+         * Возвращает код часового пояса, идентификатор которого записан в строке с указанным номером.
+         *
+         * @param index номер строки.
+         * @return код пояса в {@link ZoneDictionary}.
+         */
+        int zone(int index) {
+            if (zones[index] == 0) {
+                zones[index] = ZoneDictionary.encode(ZoneId.of(get(index))) + 1;
+            }
+            return zones[index] - 1;
+        }
+
+        /**
+         * Декодирует строку UTF-8 из буфера.
+         *
+         * @param offset смещение байт строки.
+         * @param length длина строки в байтах.
+         * @return строка.
+         */
+        private String decode(int offset, int length) {
+            byte[] bytes = new byte[length];
+            buffer.get(offset, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Буферизованная запись файла снимка или разностного сегмента: строки маршрутов с таблицей строк
+     * и заголовок, который записывается в начало файла после данных.
+     */
+    private static final class SegmentWriter implements AutoCloseable {
+
+        /**
+         * Канал файла.
+         */
+        private final FileChannel channel;
+
+        /**
+         * Буфер записи.
+         */
+        private final ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+
+        /**
+         * Номера строк в таблице строк.
+         */
+        private final HashMap<String, Integer> codes = new HashMap<>();
+
+        /**
+         * Таблица строк.
+         */
+        private final List<String> strings = new ArrayList<>();
+
+        /**
+         * Открывает файл и оставляет в его начале место под заголовок.
+         *
+         * @param path       путь к файлу.
+         * @param headerSize длина заголовка в байтах.
+         * @throws IOException если не удалось открыть файл.
+         */
+        SegmentWriter(Path path, int headerSize) throws IOException {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            buffer.position(headerSize);
+        }
+
+        /**
+         * Записывает строку маршрута. Все поля маршрута должны быть заданы (не null).
+         *
+         * @param route маршрут.
+         * @throws IOException если произошла ошибка ввода-вывода при записи.
+         */
+        void putRoute(Route route) throws IOException {
+            ensureRemaining(ROW_SIZE);
+            buffer.putInt(route.getId());
+            buffer.putInt(code(route.getName()));
+            buffer.putDouble(route.getCoordinates().getX());
+            buffer.putFloat(route.getCoordinates().getY());
+            buffer.putLong(route.getCreationEpochSecond());
+            buffer.putInt(route.getCreationNano());
+            buffer.putInt(code(ZoneDictionary.decode(route.getCreationZone()).getId()));
+            putLocation(route.getFrom());
+            putLocation(route.getTo());
+            buffer.putLong(route.getDistance());
+        }
+
+        /**
+         * Записывает целое число.
+         *
+         * @param value число.
+         * @throws IOException если произошла ошибка ввода-вывода при записи.
+         */
+        void putInt(int value) throws IOException {
+            ensureRemaining(Integer.BYTES);
+            buffer.putInt(value);
+        }
+
+        /**
+         * Записывает таблицу строк, накопленную при записи маршрутов.
+         *
+         * @throws IOException если произошла ошибка ввода-вывода при записи.
+         */
+        void putStrings() throws IOException {
+            putInt(strings.size());
+            for (String string : strings) {
+                byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+                putInt(bytes.length);
+                for (int offset = 0; offset < bytes.length; ) {
+                    ensureRemaining(1);
+                    int length = Math.min(buffer.remaining(), bytes.length - offset);
+                    buffer.put(bytes, offset, length);
+                    offset += length;
+                }
+            }
+        }
+
+        /**
+         * Дописывает данные из буфера, записывает заголовок в начало файла и сбрасывает файл на диск.
+         *
+         * @param header заполненный заголовок.
+         * @throws IOException если произошла ошибка ввода-вывода при записи.
+         */
+        void writeHeader(ByteBuffer header) throws IOException {
+            flush();
+            header.flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            channel.force(false);
+        }
+
+        /**
+         * Закрывает файл.
+         *
+         * @throws IOException если произошла ошибка ввода-вывода при закрытии.
+         */
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+
+        /**
+         * Записывает поля места.
+         *
+         * @param location место.
+         */
+        private void putLocation(Location location) {
+            buffer.putFloat(location.getX());
+            buffer.putInt(location.getY());
+            buffer.putDouble(location.getZ());
+            buffer.putInt(code(location.getName()));
+        }
+
+        /**
+         * Возвращает номер строки в таблице строк, добавляя строку при первом использовании.
+         *
+         * @param string строка.
+         * @return номер строки.
+         */
+        private int code(String string) {
+            Integer code = codes.get(string);
+            if (code == null) {
+                code = strings.size();
+                strings.add(string);
+                codes.put(string, code);
+            }
+            return code;
+        }
+
+        /**
+         * Сбрасывает буфер в канал, если в нем осталось меньше указанного количества байт.
+         *
+         * @param bytes требуемое количество свободных байт.
+         * @throws IOException если произошла ошибка ввода-вывода при записи.
+         */
+        private void ensureRemaining(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        /**
+         * Записывает содержимое буфера в канал и очищает буфер.
+         *
+         * @throws IOException если произошла ошибка ввода-вывода при записи.
+         */
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package org.wineeenottt.WorkWithFile;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Класс ShardManifest - манифест каталога с коллекцией, разделенной на части (шарды).
+ * Каждая часть - CSV файл с заголовком (обычный или в формате {@link BlockCompressedFile}); маршрут попадает в часть по хешу своего ID.
+ * Манифест хранится в каталоге в файле {@value #FILE_NAME} в формате properties и перечисляет файлы частей
+ * текущего поколения и количество строк в них.
+ * <p>
+ * Файлы частей нового сохранения получают номер следующего поколения и не затрагивают файлы текущего;
+ * новое поколение становится текущим, когда манифест атомарно заменяется новым. Поэтому при сбое во время
+ * сохранения в каталоге остается прежнее согласованное состояние.
+ */
+public class ShardManifest {
+
+    /**
+     * Имя файла манифеста в каталоге.
+     */
+    public static final String FILE_NAME = "manifest.properties";
+
+    /**
+     * Версия формата манифеста.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * Способ разделения маршрутов по частям.
+     */
+    private static final String PARTITION = "hash";
+
+    /**
+     * Номер поколения частей.
+     */
+    private final long generation;
+
+    /**
+     * Имена файлов частей; индекс - номер части.
+     */
+    private final List<String> files;
+
+    /**
+     * Количество строк в частях; индекс - номер части.
+     */
+    private final List<Long> rows;
+
+    /**
+     * Конструктор класса ShardManifest.
+     *
+     * @param generation номер поколения частей.
+     * @param files      имена файлов частей.
+     * @param rows       количество строк в частях.
+     */
+    public ShardManifest(long generation, List<String> files, List<Long> rows) {
+        this.generation = generation;
+        this.files = List.copyOf(files);
+        this.rows = List.copyOf(rows);
+    }
+
+    /**
+     * Возвращает номер части, в которую попадает маршрут. ID перемешивается, чтобы подряд идущие ID
+     * равномерно распределялись по частям.
+     *
+     * @param id     ID маршрута.
+     * @param shards количество частей.
+     * @return номер части.
+     */
+    public static int shardOf(int id, int shards) {
+        int hash = id * 0x9E3779B9;
+        return Math.floorMod(hash ^ (hash >>> 16), shards);
+    }
+
+    /**
+     * Возвращает имя файла части.
+     *
+     * @param generation номер поколения.
+     * @param shard      номер части.
+     * @return имя файла.
+     */
+    public static String fileName(long generation, int shard) {
+        return String.format("routes-%d-%03d.csv", generation, shard);
+    }
+
+    /**
+     * Читает манифест каталога.
+     *
+     * @param directory каталог с частями коллекции.
+     * @return манифест или null, если в каталоге нет манифеста.
+     * @throws IOException если манифест не удалось прочитать или он имеет неверный формат.
+     */
+    public static ShardManifest read(Path directory) throws IOException {
+        Path path = directory.resolve(FILE_NAME);
+        if (!Files.exists(path)) {
+            return null;
+        }
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        try {
+            int version = Integer.parseInt(properties.getProperty("version"));
+            if (version != VERSION) {
+                throw new IOException("Неподдерживаемая версия манифеста " + path + ": " + version);
+            }
+            if (!PARTITION.equals(properties.getProperty("partition"))) {
+                throw new IOException("Неподдерживаемый способ разделения в манифесте " + path);
+            }
+            long generation = Long.parseLong(properties.getProperty("generation"));
+            int shards = Integer.parseInt(properties.getProperty("shards"));
+            if (shards <= 0) {
+                throw new IOException("Некорректное количество частей в манифесте " + path + ": " + shards);
+            }
+            List<String> files = new ArrayList<>(shards);
+            List<Long> rows = new ArrayList<>(shards);
+            for (int shard = 0; shard < shards; shard++) {
+                String file = properties.getProperty("shard." + shard + ".file");
+                if (file == null || Path.of(file).getNameCount() != 1) {
+                    throw new IOException("Некорректный файл части " + shard + " в манифесте " + path);
+                }
+                files.add(file);
+                rows.add(Long.parseLong(properties.getProperty("shard." + shard + ".rows", "0")));
+            }
+            return new ShardManifest(generation, files, rows);
+        } catch (NumberFormatException e) {
+            throw new IOException("Некорректный манифест " + path + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Записывает манифест в каталог: во временный файл со сбросом на диск, затем атомарной заменой прежнего.
+     *
+     * @param directory каталог с частями коллекции.
+     * @throws IOException если произошла ошибка ввода-вывода при записи.
+     */
+    public void write(Path directory) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("version", Integer.toString(VERSION));
+        properties.setProperty("partition", PARTITION);
+        properties.setProperty("generation", Long.toString(generation));
+        properties.setProperty("shards", Integer.toString(files.size()));
+        for (int shard = 0; shard < files.size(); shard++) {
+            properties.setProperty("shard." + shard + ".file", files.get(shard));
+            properties.setProperty("shard." + shard + ".rows", Long.toString(rows.get(shard)));
+        }
+        Path target = directory.resolve(FILE_NAME);
+        Path temporary = directory.resolve(FILE_NAME + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            Writer writer = Channels.newWriter(channel, StandardCharsets.UTF_8);
+            properties.store(writer, "Route storage shards");
+            writer.flush();
+            channel.force(true);
+        }
+        Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Возвращает номер поколения частей.
+     *
+     * @return номер поколения.
+     */
+    public long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Возвращает количество частей.
+     *
+     * @return количество частей.
+     */
+    public int getShardCount() {
+        return files.size();
+    }
+
+    /**
+     * Возвращает имена файлов частей в порядке номеров частей.
+     *
+     * @return неизменяемый список имен файлов.
+     */
+    public List<String> getFiles() {
+        return files;
+    }
+
+    /**
+     * Возвращает общее количество строк во всех частях.
+     *
+     * @return количество строк.
+     */
+    public long getTotalRows() {
+        long total = 0;
+        for (long count : rows) {
+            total += count;
+        }
+        return total;
+    }
+}